@@ -92,6 +92,15 @@ public class BulkShardRequest extends ReplicationRequest<BulkShardRequest> {
         refresh = in.readBoolean();
     }
 
+    @Override
+    public void onRetry() {
+        for (BulkItemRequest item : items) {
+            if (item != null && item.request() instanceof ReplicationRequest) {
+                ((ReplicationRequest) item.request()).onRetry();
+            }
+        }
+    }
+
     @Override
     public String toString() {
         return "shard bulk {" + super.toString() + "}";
@@ -0,0 +1,236 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.bulk;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.DocumentRequest;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.action.admin.indices.refresh.RefreshResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.util.concurrent.AtomicArray;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Executes a large {@link BulkRequest} as a sequence of smaller bulk requests of roughly {@code batchSizeInBytes} each,
+ * keeping at most {@code maxConcurrentBatches} of them in flight, and stitches the item responses back together in
+ * request order. Limiting the concurrency keeps a single huge request from flooding the <tt>bulk</tt> thread pool queue
+ * on the target nodes. It doesn't reduce the memory the request needs on the coordinating node: the request is
+ * received and parsed as a whole before the first batch is sent. If the request asks for a refresh, the batches don't
+ * refresh their shards; the indices of the request are refreshed once after the last batch completed.
+ */
+public class ConcurrencyLimitedBulkExecutor {
+
+    private final Client client;
+    private final BulkRequest bulkRequest;
+    private final long batchSizeInBytes;
+    private final int maxConcurrentBatches;
+    private final ActionListener<BulkResponse> listener;
+    private final AtomicArray<BulkItemResponse> responses;
+    private final long startTime;
+
+    private final Object mutex = new Object();
+    // guarded by mutex
+    private int nextItem = 0;
+    private int inFlight = 0;
+    private boolean finished = false;
+    // whether a thread is sending batches, batches that complete meanwhile leave the next ones to that thread
+    private boolean dispatching = false;
+
+    public ConcurrencyLimitedBulkExecutor(Client client, BulkRequest bulkRequest, long batchSizeInBytes, int maxConcurrentBatches,
+                               ActionListener<BulkResponse> listener) {
+        if (batchSizeInBytes <= 0) {
+            throw new IllegalArgumentException("batch size must be positive but was [" + batchSizeInBytes + "]");
+        }
+        if (maxConcurrentBatches <= 0) {
+            throw new IllegalArgumentException("max concurrent batches must be positive but was [" + maxConcurrentBatches + "]");
+        }
+        this.client = client;
+        this.bulkRequest = bulkRequest;
+        this.batchSizeInBytes = batchSizeInBytes;
+        this.maxConcurrentBatches = maxConcurrentBatches;
+        this.listener = listener;
+        this.responses = new AtomicArray<>(bulkRequest.numberOfActions());
+        this.startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Starts executing the bulk request. If it is no larger than a single batch it is sent as is.
+     */
+    public void execute() {
+        if (bulkRequest.estimatedSizeInBytes() <= batchSizeInBytes) {
+            client.bulk(bulkRequest, listener);
+        } else {
+            dispatch();
+        }
+    }
+
+    /**
+     * Sends batches until the window is full or all items were sent. Batches may complete on the calling thread, so
+     * instead of dispatching recursively from their listener only one thread dispatches at a time and picks up the
+     * room that completed batches made in the window.
+     */
+    private void dispatch() {
+        final List<ActionRequest> requests = bulkRequest.requests();
+        synchronized (mutex) {
+            if (dispatching) {
+                return;
+            }
+            dispatching = true;
+        }
+        while (true) {
+            final int offset;
+            final BulkRequest batch;
+            synchronized (mutex) {
+                if (finished) {
+                    dispatching = false;
+                    return;
+                }
+                if (nextItem >= requests.size()) {
+                    dispatching = false;
+                    if (inFlight > 0) {
+                        return;
+                    }
+                    finished = true;
+                    batch = null;
+                    offset = -1;
+                } else if (inFlight >= maxConcurrentBatches) {
+                    dispatching = false;
+                    return;
+                } else {
+                    offset = nextItem;
+                    batch = new BulkRequest(bulkRequest);
+                    batch.consistencyLevel(bulkRequest.consistencyLevel());
+                    batch.timeout(bulkRequest.timeout());
+                    // always take at least one item so that a single oversized document still makes progress
+                    do {
+                        batch.add(requests.get(nextItem++));
+                    } while (nextItem < requests.size() && batch.estimatedSizeInBytes() < batchSizeInBytes);
+                    inFlight++;
+                }
+            }
+            if (batch == null) {
+                finish();
+                return;
+            }
+            client.bulk(batch, new BatchListener(batch, offset));
+        }
+    }
+
+    private void finish() {
+        final BulkResponse response = new BulkResponse(responses.toArray(new BulkItemResponse[responses.length()]),
+                buildTookInMillis());
+        if (bulkRequest.refresh() == false) {
+            listener.onResponse(response);
+            return;
+        }
+        // refreshing each batch would refresh the same shards over and over again
+        final Set<String> indices = new HashSet<>();
+        for (ActionRequest request : bulkRequest.requests()) {
+            if (request instanceof DocumentRequest) {
+                indices.add(((DocumentRequest<?>) request).index());
+            }
+        }
+        final RefreshRequest refreshRequest = new RefreshRequest(bulkRequest);
+        refreshRequest.indices(indices.toArray(new String[indices.size()]));
+        refreshRequest.indicesOptions(IndicesOptions.lenientExpandOpen());
+        client.admin().indices().refresh(refreshRequest, new ActionListener<RefreshResponse>() {
+            @Override
+            public void onResponse(RefreshResponse refreshResponse) {
+                listener.onResponse(response);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                // the items were executed, so report them even if they are not visible to searches yet
+                listener.onResponse(response);
+            }
+        });
+    }
+
+    private long buildTookInMillis() {
+        // protect ourselves against time going backwards
+        return Math.max(1, System.currentTimeMillis() - startTime);
+    }
+
+    private class BatchListener implements ActionListener<BulkResponse> {
+        private final BulkRequest batch;
+        private final int offset;
+
+        BatchListener(BulkRequest batch, int offset) {
+            this.batch = batch;
+            this.offset = offset;
+        }
+
+        @Override
+        public void onResponse(BulkResponse response) {
+            for (BulkItemResponse item : response) {
+                final int id = offset + item.getItemId();
+                if (item.isFailed()) {
+                    responses.set(id, new BulkItemResponse(id, item.getOpType(), item.getFailure()));
+                } else {
+                    responses.set(id, new BulkItemResponse(id, item.getOpType(), item.getResponse()));
+                }
+            }
+            onBatchDone();
+        }
+
+        @Override
+        public void onFailure(Throwable e) {
+            // create failures for all items of this batch, as TransportBulkAction does for a failed shard request
+            List<ActionRequest> requests = batch.requests();
+            for (int i = 0; i < requests.size(); i++) {
+                ActionRequest request = requests.get(i);
+                final int id = offset + i;
+                if (request instanceof DocumentRequest) {
+                    DocumentRequest<?> documentRequest = (DocumentRequest<?>) request;
+                    responses.set(id, new BulkItemResponse(id, opType(request),
+                            new BulkItemResponse.Failure(documentRequest.index(), documentRequest.type(), documentRequest.id(), e)));
+                }
+            }
+            onBatchDone();
+        }
+
+        private void onBatchDone() {
+            synchronized (mutex) {
+                inFlight--;
+            }
+            dispatch();
+        }
+    }
+
+    private static String opType(ActionRequest request) {
+        if (request instanceof IndexRequest) {
+            return ((IndexRequest) request).opType().lowercase();
+        } else if (request instanceof DeleteRequest) {
+            return "delete";
+        } else if (request instanceof UpdateRequest) {
+            return "update";
+        }
+        return "unknown";
+    }
+}
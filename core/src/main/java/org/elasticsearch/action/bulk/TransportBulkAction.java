@@ -43,9 +43,12 @@ import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
 import org.elasticsearch.cluster.metadata.MappingMetaData;
 import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.cluster.routing.GroupShardsIterator;
+import org.elasticsearch.cluster.routing.OperationRouting;
 import org.elasticsearch.cluster.routing.ShardIterator;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.concurrent.AtomicArray;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.IndexNotFoundException;
@@ -211,6 +214,7 @@ public class TransportBulkAction extends HandledTransportAction<BulkRequest, Bul
         clusterState.blocks().globalBlockedRaiseException(ClusterBlockLevel.WRITE);
 
         final ConcreteIndices concreteIndices = new ConcreteIndices(clusterState, indexNameExpressionResolver);
+        final BulkRouting bulkRouting = new BulkRouting(clusterState);
         MetaData metaData = clusterState.metaData();
         for (int i = 0; i < bulkRequest.requests.size(); i++) {
             ActionRequest request = bulkRequest.requests.get(i);
@@ -224,10 +228,7 @@ public class TransportBulkAction extends HandledTransportAction<BulkRequest, Bul
                 String concreteIndex = concreteIndices.resolveIfAbsent(req);
                 if (request instanceof IndexRequest) {
                     IndexRequest indexRequest = (IndexRequest) request;
-                    MappingMetaData mappingMd = null;
-                    if (metaData.hasIndex(concreteIndex)) {
-                        mappingMd = metaData.index(concreteIndex).mappingOrDefault(indexRequest.type());
-                    }
+                    MappingMetaData mappingMd = bulkRouting.mappingOrDefault(concreteIndex, indexRequest.type());
                     try {
                         indexRequest.process(metaData, mappingMd, allowIdGeneration, concreteIndex);
                     } catch (ElasticsearchParseException | RoutingMissingException e) {
@@ -252,7 +253,7 @@ public class TransportBulkAction extends HandledTransportAction<BulkRequest, Bul
             if (request instanceof IndexRequest) {
                 IndexRequest indexRequest = (IndexRequest) request;
                 String concreteIndex = concreteIndices.getConcreteIndex(indexRequest.index());
-                ShardId shardId = clusterService.operationRouting().indexShards(clusterState, concreteIndex, indexRequest.type(), indexRequest.id(), indexRequest.routing()).shardId();
+                ShardId shardId = bulkRouting.shardId(concreteIndex, indexRequest.id(), indexRequest.routing());
                 List<BulkItemRequest> list = requestsByShard.get(shardId);
                 if (list == null) {
                     list = new ArrayList<>();
@@ -262,7 +263,7 @@ public class TransportBulkAction extends HandledTransportAction<BulkRequest, Bul
             } else if (request instanceof DeleteRequest) {
                 DeleteRequest deleteRequest = (DeleteRequest) request;
                 String concreteIndex = concreteIndices.getConcreteIndex(deleteRequest.index());
-                MappingMetaData mappingMd = clusterState.metaData().index(concreteIndex).mappingOrDefault(deleteRequest.type());
+                MappingMetaData mappingMd = bulkRouting.mappingOrDefault(concreteIndex, deleteRequest.type());
                 if (mappingMd != null && mappingMd.routing().required() && deleteRequest.routing() == null) {
                     // if routing is required, and no routing on the delete request, we need to broadcast it....
                     GroupShardsIterator groupShards = clusterService.operationRouting().broadcastDeleteShards(clusterState, concreteIndex);
@@ -275,7 +276,7 @@ public class TransportBulkAction extends HandledTransportAction<BulkRequest, Bul
                         list.add(new BulkItemRequest(i, new DeleteRequest(deleteRequest)));
                     }
                 } else {
-                    ShardId shardId = clusterService.operationRouting().indexShards(clusterState, concreteIndex, deleteRequest.type(), deleteRequest.id(), deleteRequest.routing()).shardId();
+                    ShardId shardId = bulkRouting.shardId(concreteIndex, deleteRequest.id(), deleteRequest.routing());
                     List<BulkItemRequest> list = requestsByShard.get(shardId);
                     if (list == null) {
                         list = new ArrayList<>();
@@ -286,14 +287,14 @@ public class TransportBulkAction extends HandledTransportAction<BulkRequest, Bul
             } else if (request instanceof UpdateRequest) {
                 UpdateRequest updateRequest = (UpdateRequest) request;
                 String concreteIndex = concreteIndices.getConcreteIndex(updateRequest.index());
-                MappingMetaData mappingMd = clusterState.metaData().index(concreteIndex).mappingOrDefault(updateRequest.type());
+                MappingMetaData mappingMd = bulkRouting.mappingOrDefault(concreteIndex, updateRequest.type());
                 if (mappingMd != null && mappingMd.routing().required() && updateRequest.routing() == null) {
                     BulkItemResponse.Failure failure = new BulkItemResponse.Failure(updateRequest.index(), updateRequest.type(),
                             updateRequest.id(), new IllegalArgumentException("routing is required for this item"));
                     responses.set(i, new BulkItemResponse(i, updateRequest.type(), failure));
                     continue;
                 }
-                ShardId shardId = clusterService.operationRouting().indexShards(clusterState, concreteIndex, updateRequest.type(), updateRequest.id(), updateRequest.routing()).shardId();
+                ShardId shardId = bulkRouting.shardId(concreteIndex, updateRequest.id(), updateRequest.routing());
                 List<BulkItemRequest> list = requestsByShard.get(shardId);
                 if (list == null) {
                     list = new ArrayList<>();
@@ -303,6 +304,11 @@ public class TransportBulkAction extends HandledTransportAction<BulkRequest, Bul
             }
         }
 
+        if (logger.isTraceEnabled()) {
+            logger.trace("routed [{}] bulk items to [{}] shards in [{}] on the coordinating node", bulkRequest.requests.size(), requestsByShard.size(),
+                    TimeValue.timeValueMillis(System.currentTimeMillis() - startTime));
+        }
+
         if (requestsByShard.isEmpty()) {
             listener.onResponse(new BulkResponse(responses.toArray(new BulkItemResponse[responses.length()]), buildTookInMillis(startTime)));
             return;
@@ -401,6 +407,88 @@ public class TransportBulkAction extends HandledTransportAction<BulkRequest, Bul
     }
 
 
+    /**
+     * Caches the per-index lookups needed to route the items of one bulk request against a single cluster state. Bulks usually
+     * hold many small documents for a handful of indices (and often a handful of routing values), so each index's metadata,
+     * mappings and shard ids, and the shard of each routing value, are resolved once and reused for all items that share them.
+     */
+    private static class BulkRouting {
+        private final ClusterState state;
+        private final Map<String, IndexShards> indices = new HashMap<>();
+
+        BulkRouting(ClusterState state) {
+            this.state = state;
+        }
+
+        @Nullable
+        MappingMetaData mappingOrDefault(String concreteIndex, String type) {
+            if (state.metaData().hasIndex(concreteIndex) == false) {
+                return null;
+            }
+            return indexShards(concreteIndex).mappingOrDefault(type);
+        }
+
+        ShardId shardId(String concreteIndex, String id, @Nullable String routing) {
+            IndexShards indexShards = indexShards(concreteIndex);
+            if (indexShards.routed == false) {
+                throw new IndexNotFoundException(concreteIndex);
+            }
+            return indexShards.shardId(id, routing);
+        }
+
+        private IndexShards indexShards(String concreteIndex) {
+            IndexShards indexShards = indices.get(concreteIndex);
+            if (indexShards == null) {
+                IndexMetaData indexMetaData = state.metaData().index(concreteIndex);
+                if (indexMetaData == null) {
+                    throw new IndexNotFoundException(concreteIndex);
+                }
+                indexShards = new IndexShards(indexMetaData, state.routingTable().hasIndex(concreteIndex));
+                indices.put(concreteIndex, indexShards);
+            }
+            return indexShards;
+        }
+    }
+
+    private static class IndexShards {
+        private final IndexMetaData indexMetaData;
+        private final boolean routed;
+        private final ShardId[] shardIds;
+        private final Map<String, MappingMetaData> mappings = new HashMap<>();
+        private final Map<String, ShardId> shardIdsByRouting = new HashMap<>();
+
+        IndexShards(IndexMetaData indexMetaData, boolean routed) {
+            this.indexMetaData = indexMetaData;
+            this.routed = routed;
+            this.shardIds = new ShardId[indexMetaData.getNumberOfShards()];
+            for (int i = 0; i < shardIds.length; i++) {
+                shardIds[i] = new ShardId(indexMetaData.getIndex(), i);
+            }
+        }
+
+        @Nullable
+        MappingMetaData mappingOrDefault(String type) {
+            if (mappings.containsKey(type)) {
+                return mappings.get(type);
+            }
+            MappingMetaData mappingMd = indexMetaData.mappingOrDefault(type);
+            mappings.put(type, mappingMd);
+            return mappingMd;
+        }
+
+        ShardId shardId(String id, @Nullable String routing) {
+            if (routing == null) {
+                return shardIds[OperationRouting.generateShardId(indexMetaData, id, null)];
+            }
+            ShardId shardId = shardIdsByRouting.get(routing);
+            if (shardId == null) {
+                shardId = shardIds[OperationRouting.generateShardId(indexMetaData, id, routing)];
+                shardIdsByRouting.put(routing, shardId);
+            }
+            return shardId;
+        }
+    }
+
     private static class ConcreteIndices  {
         private final ClusterState state;
         private final IndexNameExpressionResolver indexNameExpressionResolver;
@@ -28,6 +28,7 @@ import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.lucene.uid.Versions;
 import org.elasticsearch.index.VersionType;
+import org.elasticsearch.index.seqno.LocalCheckpointTracker;
 
 import java.io.IOException;
 
@@ -53,6 +54,7 @@ public class DeleteRequest extends ReplicationRequest<DeleteRequest> implements
     private boolean refresh;
     private long version = Versions.MATCH_ANY;
     private VersionType versionType = VersionType.INTERNAL;
+    private long seqNo = LocalCheckpointTracker.UNASSIGNED_SEQ_NO;
 
     public DeleteRequest() {
     }
@@ -97,6 +99,7 @@ public class DeleteRequest extends ReplicationRequest<DeleteRequest> implements
         this.refresh = request.refresh();
         this.version = request.version();
         this.versionType = request.versionType();
+        this.seqNo = request.seqNo();
     }
 
     /**
@@ -224,6 +227,22 @@ public class DeleteRequest extends ReplicationRequest<DeleteRequest> implements
         return this.versionType;
     }
 
+    /**
+     * Sets the sequence number the primary issued for this operation, so that the replicas can record it.
+     */
+    public DeleteRequest seqNo(long seqNo) {
+        this.seqNo = seqNo;
+        return this;
+    }
+
+    /**
+     * Returns the sequence number the primary issued for this operation, {@link LocalCheckpointTracker#UNASSIGNED_SEQ_NO}
+     * if it was not executed on the primary yet.
+     */
+    public long seqNo() {
+        return this.seqNo;
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
         super.readFrom(in);
@@ -233,6 +252,7 @@ public class DeleteRequest extends ReplicationRequest<DeleteRequest> implements
         refresh = in.readBoolean();
         version = in.readLong();
         versionType = VersionType.fromValue(in.readByte());
+        seqNo = in.readLong();
     }
 
     @Override
@@ -244,6 +264,7 @@ public class DeleteRequest extends ReplicationRequest<DeleteRequest> implements
         out.writeBoolean(refresh);
         out.writeLong(version);
         out.writeByte(versionType.getValue());
+        out.writeLong(seqNo);
     }
 
     @Override
@@ -137,6 +137,7 @@ public class TransportDeleteAction extends TransportReplicationAction<DeleteRequ
         // update the request with the version so it will go to the replicas
         request.versionType(delete.versionType().versionTypeForReplicationAndRecovery());
         request.version(delete.version());
+        request.seqNo(delete.seqNo());
 
         assert request.versionType().validateVersionForWrites(request.version());
         return new WriteResult<>(
@@ -146,6 +147,7 @@ public class TransportDeleteAction extends TransportReplicationAction<DeleteRequ
 
     public static Engine.Delete executeDeleteRequestOnReplica(DeleteRequest request, IndexShard indexShard) {
         Engine.Delete delete = indexShard.prepareDeleteOnReplica(request.type(), request.id(), request.version(), request.versionType());
+        delete.updateSeqNo(request.seqNo());
         indexShard.delete(delete);
         return delete;
     }
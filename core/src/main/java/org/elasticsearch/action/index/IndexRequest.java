@@ -39,6 +39,7 @@ import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.*;
 import org.elasticsearch.index.IndexNotFoundException;
 import org.elasticsearch.index.VersionType;
+import org.elasticsearch.index.seqno.LocalCheckpointTracker;
 import org.elasticsearch.index.mapper.MapperParsingException;
 import org.elasticsearch.index.mapper.internal.TimestampFieldMapper;
 
@@ -150,6 +151,17 @@ public class IndexRequest extends ReplicationRequest<IndexRequest> implements Do
 
     private XContentType contentType = Requests.INDEX_CONTENT_TYPE;
 
+    /**
+     * Value of {@link #getAutoGeneratedTimestamp()} for requests whose id was not generated by {@link #process}.
+     */
+    public static final long UNSET_AUTO_GENERATED_TIMESTAMP = -1L;
+
+    private long autoGeneratedTimestamp = UNSET_AUTO_GENERATED_TIMESTAMP;
+
+    private boolean isRetry = false;
+
+    private long seqNo = LocalCheckpointTracker.UNASSIGNED_SEQ_NO;
+
     public IndexRequest() {
     }
 
@@ -178,6 +190,9 @@ public class IndexRequest extends ReplicationRequest<IndexRequest> implements Do
         this.refresh = indexRequest.refresh;
         this.version = indexRequest.version;
         this.versionType = indexRequest.versionType;
+        this.autoGeneratedTimestamp = indexRequest.autoGeneratedTimestamp;
+        this.isRetry = indexRequest.isRetry;
+        this.seqNo = indexRequest.seqNo;
         this.contentType = indexRequest.contentType;
     }
 
@@ -582,6 +597,22 @@ public class IndexRequest extends ReplicationRequest<IndexRequest> implements Do
         return this.versionType;
     }
 
+    /**
+     * Sets the sequence number the primary issued for this operation, so that the replicas can record it.
+     */
+    public IndexRequest seqNo(long seqNo) {
+        this.seqNo = seqNo;
+        return this;
+    }
+
+    /**
+     * Returns the sequence number the primary issued for this operation, {@link LocalCheckpointTracker#UNASSIGNED_SEQ_NO}
+     * if it was not executed on the primary yet.
+     */
+    public long seqNo() {
+        return this.seqNo;
+    }
+
     private Version getVersion(MetaData metaData, String concreteIndex) {
         // this can go away in 3.0 but is here now for easy backporting - since in 2.x we need the version on the timestamp stuff
         final IndexMetaData indexMetaData = metaData.getIndices().get(concreteIndex);
@@ -653,6 +684,8 @@ public class IndexRequest extends ReplicationRequest<IndexRequest> implements Do
         // generate id if not already provided and id generation is allowed
         if (allowIdGeneration) {
             if (id == null) {
+                assert autoGeneratedTimestamp == UNSET_AUTO_GENERATED_TIMESTAMP : "timestamp has already been generated!";
+                autoGeneratedTimestamp = Math.max(0, System.currentTimeMillis()); // extra paranoia
                 id(Strings.base64UUID());
             }
         }
@@ -691,6 +724,9 @@ public class IndexRequest extends ReplicationRequest<IndexRequest> implements Do
         refresh = in.readBoolean();
         version = in.readLong();
         versionType = VersionType.fromValue(in.readByte());
+        autoGeneratedTimestamp = in.readLong();
+        isRetry = in.readBoolean();
+        seqNo = in.readLong();
     }
 
     @Override
@@ -712,6 +748,29 @@ public class IndexRequest extends ReplicationRequest<IndexRequest> implements Do
         out.writeBoolean(refresh);
         out.writeLong(version);
         out.writeByte(versionType.getValue());
+        out.writeLong(autoGeneratedTimestamp);
+        out.writeBoolean(isRetry);
+        out.writeLong(seqNo);
+    }
+
+    /**
+     * Returns the time (in millis since epoch) at which {@link #process} generated this request's id, or
+     * {@link #UNSET_AUTO_GENERATED_TIMESTAMP} if the id was provided by the user.
+     */
+    public long getAutoGeneratedTimestamp() {
+        return autoGeneratedTimestamp;
+    }
+
+    /**
+     * Returns <code>true</code> if this request has been sent to a shard copy more than once.
+     */
+    public boolean isRetry() {
+        return isRetry;
+    }
+
+    @Override
+    public void onRetry() {
+        isRetry = true;
     }
 
     @Override
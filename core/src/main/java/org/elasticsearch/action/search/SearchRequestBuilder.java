@@ -343,6 +343,14 @@ public class SearchRequestBuilder extends ActionRequestBuilder<SearchRequest, Se
         return this;
     }
 
+    /**
+     * Only returns the hits that sort after the given sort values, usually those of the last hit of the previous page.
+     */
+    public SearchRequestBuilder searchAfter(Object... values) {
+        sourceBuilder().searchAfter(values);
+        return this;
+    }
+
     /**
      * Applies when sorting, and controls if scores will be tracked as well. Defaults to
      * <tt>false</tt>.
@@ -31,10 +31,20 @@ import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.cluster.node.DiscoveryNodes;
 import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.CooperativeTasks;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.*;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Supplier;
@@ -50,6 +60,10 @@ public abstract class TransportNodesAction<NodesRequest extends BaseNodesRequest
 
     final String transportNodeAction;
 
+    final String transportNodeBatchAction;
+
+    private String nodeBatchExecutor;
+
     protected TransportNodesAction(Settings settings, String actionName, ClusterName clusterName, ThreadPool threadPool,
                                    ClusterService clusterService, TransportService transportService, ActionFilters actionFilters,
                                    IndexNameExpressionResolver indexNameExpressionResolver, Supplier<NodesRequest> request, Supplier<NodeRequest> nodeRequest,
@@ -60,6 +74,7 @@ public abstract class TransportNodesAction<NodesRequest extends BaseNodesRequest
         this.transportService = transportService;
 
         this.transportNodeAction = actionName + "[n]";
+        this.transportNodeBatchAction = actionName + "[n][batch]";
 
         transportService.registerRequestHandler(transportNodeAction, nodeRequest, nodeExecutor, new NodeTransportHandler());
     }
@@ -73,6 +88,107 @@ public abstract class TransportNodesAction<NodesRequest extends BaseNodesRequest
         return false;
     }
 
+    /**
+     * Registers the node level handler that {@link #executeBatch(List, List)} sends to. Actions that are executed in batches
+     * call this from their constructor.
+     */
+    protected void registerBatchRequestHandler(Supplier<NodeRequest> nodeRequest, String nodeExecutor) {
+        this.nodeBatchExecutor = nodeExecutor;
+        transportService.registerRequestHandler(transportNodeBatchAction, () -> new NodeBatchRequest(nodeRequest), nodeExecutor,
+                new NodeBatchTransportHandler());
+    }
+
+    /**
+     * Executes the given requests together, sending one message to every node that carries the node requests of all the
+     * requests that target the node. The node executes them in parallel. Every listener is notified once all the nodes of its
+     * request responded, just like with {@link #execute}. Batches are meant for internal actions and bypass the action filters.
+     */
+    protected void executeBatch(List<NodesRequest> requests, List<ActionListener<NodesResponse>> listeners) {
+        assert nodeBatchExecutor != null : "batch request handler of [" + actionName + "] is not registered";
+        assert requests.size() == listeners.size();
+        if (requests.isEmpty()) {
+            return;
+        }
+        final Map<String, List<Tuple<AsyncAction, Integer>>> actionsPerNode = new HashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            AsyncAction action = new AsyncAction(requests.get(i), listeners.get(i));
+            if (action.nodesIds.length == 0) {
+                // notifies the listener
+                action.start();
+                continue;
+            }
+            for (int idx = 0; idx < action.nodesIds.length; idx++) {
+                actionsPerNode.computeIfAbsent(action.nodesIds[idx], k -> new ArrayList<>()).add(new Tuple<>(action, idx));
+            }
+        }
+        TransportRequestOptions.Builder builder = TransportRequestOptions.builder();
+        if (requests.get(0).timeout() != null) {
+            builder.withTimeout(requests.get(0).timeout());
+        }
+        builder.withCompress(transportCompress());
+        final TransportRequestOptions options = builder.build();
+        for (Map.Entry<String, List<Tuple<AsyncAction, Integer>>> entry : actionsPerNode.entrySet()) {
+            final String nodeId = entry.getKey();
+            final List<Tuple<AsyncAction, Integer>> actions = entry.getValue();
+            // all requests resolved the node against the same cluster state
+            final AsyncAction first = actions.get(0).v1();
+            final DiscoveryNode node = first.nodes[actions.get(0).v2()];
+            try {
+                if (node == null) {
+                    onBatchFailure(actions, nodeId, new NoSuchNodeException(nodeId));
+                } else if (!clusterService.localNode().shouldConnectTo(node) && !clusterService.localNode().equals(node)) {
+                    onBatchFailure(actions, nodeId, new NodeShouldNotConnectException(clusterService.localNode(), node));
+                } else {
+                    List<NodeRequest> nodeRequests = new ArrayList<>(actions.size());
+                    for (Tuple<AsyncAction, Integer> action : actions) {
+                        nodeRequests.add(newNodeRequest(nodeId, action.v1().request));
+                    }
+                    transportService.sendRequest(node, transportNodeBatchAction, new NodeBatchRequest(nodeRequests), options,
+                            new BaseTransportResponseHandler<NodeBatchResponse>() {
+                        @Override
+                        public NodeBatchResponse newInstance() {
+                            return new NodeBatchResponse();
+                        }
+
+                        @Override
+                        public void handleResponse(NodeBatchResponse response) {
+                            assert response.responses.size() == actions.size();
+                            for (int i = 0; i < actions.size(); i++) {
+                                Tuple<AsyncAction, Integer> action = actions.get(i);
+                                Object nodeResponse = response.responses.get(i);
+                                if (nodeResponse instanceof Throwable) {
+                                    action.v1().onFailure(action.v2(), nodeId, (Throwable) nodeResponse);
+                                } else {
+                                    @SuppressWarnings("unchecked")
+                                    NodeResponse typedResponse = (NodeResponse) nodeResponse;
+                                    action.v1().onOperation(action.v2(), typedResponse);
+                                }
+                            }
+                        }
+
+                        @Override
+                        public void handleException(TransportException exp) {
+                            onBatchFailure(actions, nodeId, exp);
+                        }
+
+                        @Override
+                        public String executor() {
+                            return ThreadPool.Names.SAME;
+                        }
+                    });
+                }
+            } catch (Throwable t) {
+                onBatchFailure(actions, nodeId, t);
+            }
+        }
+    }
+
+    private void onBatchFailure(List<Tuple<AsyncAction, Integer>> actions, String nodeId, Throwable t) {
+        for (Tuple<AsyncAction, Integer> action : actions) {
+            action.v1().onFailure(action.v2(), nodeId, t);
+        }
+    }
+
     protected abstract NodesResponse newResponse(NodesRequest request, AtomicReferenceArray nodesResponses);
 
     protected abstract NodeRequest newNodeRequest(String nodeId, NodesRequest request);
@@ -212,4 +328,115 @@ public abstract class TransportNodesAction<NodesRequest extends BaseNodesRequest
             channel.sendResponse(nodeOperation(request));
         }
     }
+
+    class NodeBatchTransportHandler implements TransportRequestHandler<NodeBatchRequest> {
+
+        @Override
+        public void messageReceived(final NodeBatchRequest request, final TransportChannel channel) throws Exception {
+            final Object[] responses = new Object[request.requests.size()];
+            final List<CooperativeTasks.Task> tasks = new ArrayList<>(responses.length);
+            for (int i = 0; i < responses.length; i++) {
+                final int idx = i;
+                tasks.add(() -> {
+                    Object response;
+                    try {
+                        response = nodeOperation(request.requests.get(idx));
+                    } catch (Throwable t) {
+                        // reported per request, the others may still succeed
+                        response = t;
+                    }
+                    responses[idx] = response;
+                });
+            }
+            CooperativeTasks.run(tasks, threadPool.executor(nodeBatchExecutor));
+            channel.sendResponse(new NodeBatchResponse(Arrays.asList(responses)));
+        }
+    }
+
+    /**
+     * The node requests of several nodes requests that target the same node
+     */
+    class NodeBatchRequest extends TransportRequest {
+
+        private final Supplier<NodeRequest> nodeRequest;
+
+        private List<NodeRequest> requests;
+
+        NodeBatchRequest(Supplier<NodeRequest> nodeRequest) {
+            this.nodeRequest = nodeRequest;
+        }
+
+        NodeBatchRequest(List<NodeRequest> requests) {
+            this.nodeRequest = null;
+            this.requests = requests;
+        }
+
+        @Override
+        public void readFrom(StreamInput in) throws IOException {
+            super.readFrom(in);
+            int size = in.readVInt();
+            requests = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                NodeRequest request = nodeRequest.get();
+                request.readFrom(in);
+                requests.add(request);
+            }
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeVInt(requests.size());
+            for (NodeRequest request : requests) {
+                request.writeTo(out);
+            }
+        }
+    }
+
+    /**
+     * The responses to a {@link NodeBatchRequest}, in the same order, holding the failure in place of the response of
+     * requests that failed
+     */
+    class NodeBatchResponse extends TransportResponse {
+
+        private List<Object> responses;
+
+        NodeBatchResponse() {
+        }
+
+        NodeBatchResponse(List<Object> responses) {
+            this.responses = responses;
+        }
+
+        @Override
+        public void readFrom(StreamInput in) throws IOException {
+            super.readFrom(in);
+            int size = in.readVInt();
+            responses = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                if (in.readBoolean()) {
+                    NodeResponse response = newNodeResponse();
+                    response.readFrom(in);
+                    responses.add(response);
+                } else {
+                    responses.add(in.readThrowable());
+                }
+            }
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeVInt(responses.size());
+            for (Object response : responses) {
+                if (response instanceof Throwable) {
+                    out.writeBoolean(false);
+                    out.writeThrowable((Throwable) response);
+                } else {
+                    out.writeBoolean(true);
+                    ((NodeResponse) response).writeTo(out);
+                }
+            }
+        }
+    }
 }
@@ -191,6 +191,14 @@ public class ReplicationRequest<T extends ReplicationRequest> extends ActionRequ
         out.writeString(index);
     }
 
+    /**
+     * Called when this request is about to be sent again because a previous attempt may or may not have been
+     * executed, so that sub-classes can disable optimizations that are only safe for the first attempt.
+     */
+    public void onRetry() {
+        // nothing by default
+    }
+
     /**
      * Sets the target shard id for the request. The shard id is set when a
      * index/delete request is resolved by the transport action
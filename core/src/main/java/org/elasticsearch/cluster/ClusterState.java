@@ -41,6 +41,7 @@ import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.CooperativeTasks;
 import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
@@ -52,6 +53,7 @@ import org.elasticsearch.discovery.zen.publish.PublishClusterStateAction;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Executor;
 
 /**
  * Represents the current state of the cluster.
@@ -697,6 +699,14 @@ public class ClusterState implements ToXContent, Diffable<ClusterState> {
         return new ClusterStateDiff(previousState, this);
     }
 
+    /**
+     * Computes the same diff as {@link #diff(ClusterState)}, but diffs the routing table, the nodes, the metadata, the
+     * blocks and the customs concurrently with the help of the given executor.
+     */
+    public Diff<ClusterState> diff(ClusterState previousState, Executor executor) {
+        return new ClusterStateDiff(previousState, this, executor);
+    }
+
     @Override
     public Diff<ClusterState> readDiffFrom(StreamInput in) throws IOException {
         return new ClusterStateDiff(in, this);
@@ -773,6 +783,31 @@ public class ClusterState implements ToXContent, Diffable<ClusterState> {
             customs = DiffableUtils.diff(before.customs, after.customs, DiffableUtils.getStringKeySerializer());
         }
 
+        @SuppressWarnings("unchecked")
+        public ClusterStateDiff(ClusterState before, ClusterState after, Executor executor) {
+            fromUuid = before.stateUUID;
+            toUuid = after.stateUUID;
+            toVersion = after.version;
+            clusterName = after.clusterName;
+            final Diff<?>[] diffs = new Diff<?>[5];
+            final List<CooperativeTasks.Task> tasks = Arrays.asList(
+                    () -> diffs[0] = after.routingTable.diff(before.routingTable),
+                    () -> diffs[1] = after.nodes.diff(before.nodes),
+                    () -> diffs[2] = after.metaData.diff(before.metaData),
+                    () -> diffs[3] = after.blocks.diff(before.blocks),
+                    () -> diffs[4] = DiffableUtils.diff(before.customs, after.customs, DiffableUtils.getStringKeySerializer()));
+            try {
+                CooperativeTasks.run(tasks, executor);
+            } catch (IOException e) {
+                throw new IllegalStateException("diffing cluster states doesn't do any I/O", e);
+            }
+            routingTable = (Diff<RoutingTable>) diffs[0];
+            nodes = (Diff<DiscoveryNodes>) diffs[1];
+            metaData = (Diff<MetaData>) diffs[2];
+            blocks = (Diff<ClusterBlocks>) diffs[3];
+            customs = (Diff<ImmutableOpenMap<String, Custom>>) diffs[4];
+        }
+
         public ClusterStateDiff(StreamInput in, ClusterState proto) throws IOException {
             clusterName = ClusterName.readClusterName(in);
             fromUuid = in.readString();
@@ -0,0 +1,30 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.cluster;
+
+/**
+ * A {@link ClusterStateListener} that neither depends on the listeners registered before it nor is depended upon by
+ * the listeners registered after it. If <tt>cluster.service.pipeline_apply</tt> is enabled, such listeners are notified
+ * on the generic thread pool, concurrently with the other listeners of the same group, so they must not assert that
+ * they run on the cluster state update thread and must be safe to run concurrently with the other listeners. Otherwise
+ * they are notified in registration order like any other listener.
+ */
+public interface OrderIndependentClusterStateListener extends ClusterStateListener {
+}
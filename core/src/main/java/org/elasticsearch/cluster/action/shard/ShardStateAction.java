@@ -158,17 +158,46 @@ public class ShardStateAction extends AbstractComponent {
         }
     }
 
-    class ShardFailedClusterStateHandler implements ClusterStateTaskExecutor<ShardRoutingEntry> {
+    /**
+     * A started or failed shard to be applied on the master. Both kinds are batched by the same executor so that all
+     * shard state changes that queued up while the previous cluster state was processed are followed by a single reroute.
+     */
+    static final class ShardStateChange {
+        final ShardRoutingEntry entry;
+        final boolean started;
+
+        ShardStateChange(ShardRoutingEntry entry, boolean started) {
+            this.entry = entry;
+            this.started = started;
+        }
+
         @Override
-        public BatchResult<ShardRoutingEntry> execute(ClusterState currentState, List<ShardRoutingEntry> tasks) throws Exception {
-            BatchResult.Builder<ShardRoutingEntry> batchResultBuilder = BatchResult.builder();
-            List<FailedRerouteAllocation.FailedShard> failedShards = new ArrayList<>(tasks.size());
-            for (ShardRoutingEntry task : tasks) {
-                failedShards.add(new FailedRerouteAllocation.FailedShard(task.shardRouting, task.message, task.failure));
+        public String toString() {
+            return (started ? "started " : "failed ") + entry;
+        }
+    }
+
+    class ShardStateClusterStateHandler implements ClusterStateTaskExecutor<ShardStateChange> {
+
+        /** whether the last executed batch failed shards, only accessed on the cluster state update thread */
+        private boolean failedShardsInLastBatch;
+
+        @Override
+        public BatchResult<ShardStateChange> execute(ClusterState currentState, List<ShardStateChange> tasks) throws Exception {
+            BatchResult.Builder<ShardStateChange> batchResultBuilder = BatchResult.builder();
+            List<ShardRouting> startedShards = new ArrayList<>();
+            List<FailedRerouteAllocation.FailedShard> failedShards = new ArrayList<>();
+            for (ShardStateChange task : tasks) {
+                if (task.started) {
+                    startedShards.add(task.entry.shardRouting);
+                } else {
+                    failedShards.add(new FailedRerouteAllocation.FailedShard(task.entry.shardRouting, task.entry.message, task.entry.failure));
+                }
             }
+            failedShardsInLastBatch = failedShards.isEmpty() == false;
             ClusterState maybeUpdatedState = currentState;
             try {
-                RoutingAllocation.Result result = allocationService.applyFailedShards(currentState, failedShards);
+                RoutingAllocation.Result result = allocationService.applyStartedAndFailedShards(currentState, startedShards, failedShards);
                 if (result.changed()) {
                     maybeUpdatedState = ClusterState.builder(currentState).routingResult(result).build();
                 }
@@ -181,6 +210,9 @@ public class ShardStateAction extends AbstractComponent {
 
         @Override
         public void clusterStatePublished(ClusterState newClusterState) {
+            if (failedShardsInLastBatch == false) {
+                return;
+            }
             int numberOfUnassignedShards = newClusterState.getRoutingNodes().unassigned().size();
             if (numberOfUnassignedShards > 0) {
                 String reason = String.format(Locale.ROOT, "[%d] unassigned shards after failing shards", numberOfUnassignedShards);
@@ -192,15 +224,15 @@ public class ShardStateAction extends AbstractComponent {
         }
     }
 
-    private final ShardFailedClusterStateHandler shardFailedClusterStateHandler = new ShardFailedClusterStateHandler();
+    private final ShardStateClusterStateHandler shardStateClusterStateHandler = new ShardStateClusterStateHandler();
 
     private void handleShardFailureOnMaster(final ShardRoutingEntry shardRoutingEntry, ClusterStateTaskListener listener) {
         logger.warn("{} received shard failed for {}", shardRoutingEntry.failure, shardRoutingEntry.shardRouting.shardId(), shardRoutingEntry);
         clusterService.submitStateUpdateTask(
             "shard-failed (" + shardRoutingEntry.shardRouting + "), message [" + shardRoutingEntry.message + "]",
-            shardRoutingEntry,
+            new ShardStateChange(shardRoutingEntry, false),
             ClusterStateTaskConfig.build(Priority.HIGH),
-            shardFailedClusterStateHandler,
+            shardStateClusterStateHandler,
             listener);
     }
 
@@ -233,46 +265,22 @@ public class ShardStateAction extends AbstractComponent {
         }
     }
 
-    class ShardStartedClusterStateHandler implements ClusterStateTaskExecutor<ShardRoutingEntry>, ClusterStateTaskListener {
-        @Override
-        public BatchResult<ShardRoutingEntry> execute(ClusterState currentState, List<ShardRoutingEntry> tasks) throws Exception {
-            BatchResult.Builder<ShardRoutingEntry> builder = BatchResult.builder();
-            List<ShardRouting> shardRoutingsToBeApplied = new ArrayList<>(tasks.size());
-            for (ShardRoutingEntry task : tasks) {
-                shardRoutingsToBeApplied.add(task.shardRouting);
-            }
-            ClusterState maybeUpdatedState = currentState;
-            try {
-                RoutingAllocation.Result result =
-                    allocationService.applyStartedShards(currentState, shardRoutingsToBeApplied, true);
-                if (result.changed()) {
-                    maybeUpdatedState = ClusterState.builder(currentState).routingResult(result).build();
-                }
-                builder.successes(tasks);
-            } catch (Throwable t) {
-                builder.failures(tasks, t);
-            }
-
-            return builder.build(maybeUpdatedState);
-        }
-
+    private final ClusterStateTaskListener shardStartedListener = new ClusterStateTaskListener() {
         @Override
         public void onFailure(String source, Throwable t) {
             logger.error("unexpected failure during [{}]", t, source);
         }
-    }
-
-    private final ShardStartedClusterStateHandler shardStartedClusterStateHandler = new ShardStartedClusterStateHandler();
+    };
 
     private void handleShardStartedOnMaster(final ShardRoutingEntry shardRoutingEntry) {
         logger.debug("received shard started for {}", shardRoutingEntry);
 
         clusterService.submitStateUpdateTask(
             "shard-started (" + shardRoutingEntry.shardRouting + "), reason [" + shardRoutingEntry.message + "]",
-            shardRoutingEntry,
+            new ShardStateChange(shardRoutingEntry, true),
             ClusterStateTaskConfig.build(Priority.URGENT),
-            shardStartedClusterStateHandler,
-            shardStartedClusterStateHandler);
+            shardStateClusterStateHandler,
+            shardStartedListener);
     }
 
     public static class ShardRoutingEntry extends TransportRequest {
@@ -19,9 +19,12 @@
 
 package org.elasticsearch.cluster.metadata;
 
+import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.Version;
 import org.elasticsearch.action.TimestampParsingException;
 import org.elasticsearch.cluster.AbstractDiffable;
+import org.elasticsearch.cluster.Diff;
+import org.elasticsearch.cluster.IncompatibleClusterStateVersionException;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.compress.CompressedXContent;
@@ -555,6 +558,13 @@ public class MappingMetaData extends AbstractDiffable<MappingMetaData> {
     public void writeTo(StreamOutput out) throws IOException {
         out.writeString(type());
         source().writeTo(out);
+        writeAttributes(out);
+    }
+
+    /**
+     * Writes everything but the type and the source
+     */
+    private void writeAttributes(StreamOutput out) throws IOException {
         // id
         if (id().hasPath()) {
             out.writeBoolean(true);
@@ -608,6 +618,10 @@ public class MappingMetaData extends AbstractDiffable<MappingMetaData> {
     public MappingMetaData readFrom(StreamInput in) throws IOException {
         String type = in.readString();
         CompressedXContent source = CompressedXContent.readCompressedString(in);
+        return readAttributes(in, type, source);
+    }
+
+    private static MappingMetaData readAttributes(StreamInput in, String type, CompressedXContent source) throws IOException {
         // id
         Id id = new Id(in.readBoolean() ? in.readString() : null);
         // routing
@@ -627,6 +641,161 @@ public class MappingMetaData extends AbstractDiffable<MappingMetaData> {
         return new MappingMetaData(type, source, id, routing, timestamp, hasParentField);
     }
 
+    /**
+     * Mappings are only ever extended, so a changed mapping usually shares most of its source with the previous one.
+     * Instead of the whole compressed source the diff only holds the bytes that differ between the common prefix and
+     * the common suffix of the uncompressed sources.
+     */
+    @Override
+    public Diff<MappingMetaData> diff(MappingMetaData previousState) {
+        if (equals(previousState)) {
+            return new MappingMetaDataDiff();
+        }
+        if (type.equals(previousState.type) == false) {
+            return new MappingMetaDataDiff(this);
+        }
+        final byte[] before = previousState.source.uncompressed();
+        final byte[] after = source.uncompressed();
+        final int maxCommon = Math.min(before.length, after.length);
+        int prefix = 0;
+        while (prefix < maxCommon && before[prefix] == after[prefix]) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < maxCommon - prefix && before[before.length - 1 - suffix] == after[after.length - 1 - suffix]) {
+            suffix++;
+        }
+        final byte[] changed = Arrays.copyOfRange(after, prefix, after.length - suffix);
+        if (changed.length >= source.compressed().length) {
+            // not worth it, the delta is larger than the compressed source
+            return new MappingMetaDataDiff(this);
+        }
+        return new MappingMetaDataDiff(this, prefix, suffix, changed);
+    }
+
+    @Override
+    public Diff<MappingMetaData> readDiffFrom(StreamInput in) throws IOException {
+        return new MappingMetaDataDiff(in);
+    }
+
+    private static class MappingMetaDataDiff implements Diff<MappingMetaData> {
+
+        private static final byte UNCHANGED = 0;
+        private static final byte FULL = 1;
+        private static final byte SOURCE_DELTA = 2;
+
+        private final byte kind;
+        // set for full diffs, the attributes of source deltas on the sending side
+        private final MappingMetaData mapping;
+        // source deltas
+        private final int prefix;
+        private final int suffix;
+        private final byte[] changed;
+        private final int crc32;
+        // the attributes of source deltas on the receiving side, with an empty source
+        private final MappingMetaData attributes;
+
+        MappingMetaDataDiff() {
+            this(UNCHANGED, null, 0, 0, null, 0, null);
+        }
+
+        MappingMetaDataDiff(MappingMetaData mapping) {
+            this(FULL, mapping, 0, 0, null, 0, null);
+        }
+
+        MappingMetaDataDiff(MappingMetaData mapping, int prefix, int suffix, byte[] changed) {
+            this(SOURCE_DELTA, mapping, prefix, suffix, changed, mapping.source.hashCode(), null);
+        }
+
+        private MappingMetaDataDiff(byte kind, MappingMetaData mapping, int prefix, int suffix, byte[] changed, int crc32,
+                                    MappingMetaData attributes) {
+            this.kind = kind;
+            this.mapping = mapping;
+            this.prefix = prefix;
+            this.suffix = suffix;
+            this.changed = changed;
+            this.crc32 = crc32;
+            this.attributes = attributes;
+        }
+
+        MappingMetaDataDiff(StreamInput in) throws IOException {
+            kind = in.readByte();
+            switch (kind) {
+                case UNCHANGED:
+                    mapping = null;
+                    attributes = null;
+                    prefix = suffix = crc32 = 0;
+                    changed = null;
+                    break;
+                case FULL:
+                    mapping = PROTO.readFrom(in);
+                    attributes = null;
+                    prefix = suffix = crc32 = 0;
+                    changed = null;
+                    break;
+                case SOURCE_DELTA:
+                    mapping = null;
+                    prefix = in.readVInt();
+                    suffix = in.readVInt();
+                    changed = in.readByteArray();
+                    crc32 = in.readInt();
+                    final String type = in.readString();
+                    attributes = readAttributes(in, type, null);
+                    break;
+                default:
+                    throw new IllegalStateException("unknown mapping diff [" + kind + "]");
+            }
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeByte(kind);
+            switch (kind) {
+                case FULL:
+                    mapping.writeTo(out);
+                    break;
+                case SOURCE_DELTA:
+                    out.writeVInt(prefix);
+                    out.writeVInt(suffix);
+                    out.writeByteArray(changed);
+                    out.writeInt(crc32);
+                    out.writeString(mapping.type());
+                    mapping.writeAttributes(out);
+                    break;
+            }
+        }
+
+        @Override
+        public MappingMetaData apply(MappingMetaData part) {
+            switch (kind) {
+                case UNCHANGED:
+                    return part;
+                case FULL:
+                    return mapping;
+                default:
+                    final byte[] before = part.source().uncompressed();
+                    if (prefix + suffix > before.length) {
+                        throw new IncompatibleClusterStateVersionException("mapping [" + part.type() + "] is shorter than expected");
+                    }
+                    final byte[] after = new byte[prefix + changed.length + suffix];
+                    System.arraycopy(before, 0, after, 0, prefix);
+                    System.arraycopy(changed, 0, after, prefix, changed.length);
+                    System.arraycopy(before, before.length - suffix, after, prefix + changed.length, suffix);
+                    final CompressedXContent source;
+                    try {
+                        source = new CompressedXContent(after);
+                    } catch (IOException e) {
+                        throw new ElasticsearchException("failed to compress mapping [{}]", e, part.type());
+                    }
+                    if (source.hashCode() != crc32) {
+                        throw new IncompatibleClusterStateVersionException("mapping [" + part.type() + "] diff doesn't match the local mapping");
+                    }
+                    return new MappingMetaData(attributes.type, source, attributes.id, attributes.routing, attributes.timestamp,
+                            attributes.hasParentField);
+            }
+        }
+    }
+
     public static class ParseContext {
         final boolean shouldParseId;
         final boolean shouldParseRouting;
@@ -47,7 +47,7 @@ import static org.elasticsearch.common.settings.Settings.settingsBuilder;
 /**
  * Service responsible for submitting update index settings requests
  */
-public class MetaDataUpdateSettingsService extends AbstractComponent implements ClusterStateListener {
+public class MetaDataUpdateSettingsService extends AbstractComponent implements OrderIndependentClusterStateListener {
 
     // the value we recognize in the "max" position to mean all the nodes
     private static final String ALL_NODES_VALUE = "all";
@@ -218,6 +218,14 @@ public class OperationRouting extends AbstractComponent {
         if (indexMetaData == null) {
             throw new IndexNotFoundException(index);
         }
+        return generateShardId(indexMetaData, id, routing);
+    }
+
+    /**
+     * Returns the shard number the given id (or routing value, if set) hashes to, for callers that route
+     * many documents of the same index and have already looked up its {@link IndexMetaData}.
+     */
+    public static int generateShardId(IndexMetaData indexMetaData, String id, @Nullable String routing) {
         final int hash;
         if (routing == null) {
             hash = Murmur3HashFunction.hash(id);
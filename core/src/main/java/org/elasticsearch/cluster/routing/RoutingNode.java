@@ -36,6 +36,8 @@ public class RoutingNode implements Iterable<ShardRouting> {
 
     private final List<ShardRouting> shards;
 
+    private long modificationCount = 0;
+
     public RoutingNode(String nodeId, DiscoveryNode node) {
         this(nodeId, node, new ArrayList<ShardRouting>());
     }
@@ -76,6 +78,18 @@ public class RoutingNode implements Iterable<ShardRouting> {
         return shards.size();
     }
 
+    /**
+     * Returns a counter that increases whenever shards are added to or removed from this node or shards on this node
+     * change their state. Used to find out whether values computed from the shards of this node are still up to date.
+     */
+    public long getModificationCount() {
+        return modificationCount;
+    }
+
+    void markModified() {
+        modificationCount++;
+    }
+
     /**
      * Add a new shard to this node
      * @param shard Shard to crate on this Node
@@ -88,6 +102,7 @@ public class RoutingNode implements Iterable<ShardRouting> {
             }
         }
         shards.add(shard);
+        markModified();
     }
 
     /**
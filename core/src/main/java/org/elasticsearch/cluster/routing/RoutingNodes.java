@@ -26,6 +26,7 @@ import org.elasticsearch.cluster.ClusterState;
 import org.elasticsearch.cluster.block.ClusterBlocks;
 import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.Randomness;
 import org.elasticsearch.common.collect.ImmutableOpenMap;
 import org.elasticsearch.index.shard.ShardId;
@@ -68,6 +69,8 @@ public class RoutingNodes implements Iterable<RoutingNode> {
 
     private int relocatingShards = 0;
 
+    private long modificationCount = 0;
+
     private final Map<String, ObjectIntHashMap<String>> nodesPerAttributeNames = new HashMap<>();
 
     public RoutingNodes(ClusterState clusterState) {
@@ -363,6 +366,7 @@ public class RoutingNodes implements Iterable<RoutingNode> {
     public ShardRouting relocate(ShardRouting shard, String nodeId, long expectedShardSize) {
         ensureMutable();
         relocatingShards++;
+        nodeModified(shard.currentNodeId());
         shard.relocate(nodeId, expectedShardSize);
         ShardRouting target = shard.buildTargetRelocatingShard();
         node(target.currentNodeId()).add(target);
@@ -383,6 +387,7 @@ public class RoutingNodes implements Iterable<RoutingNode> {
                 inactivePrimaryCount--;
             }
         }
+        nodeModified(shard.currentNodeId());
         shard.moveToStarted();
     }
 
@@ -392,6 +397,7 @@ public class RoutingNodes implements Iterable<RoutingNode> {
     public void cancelRelocation(ShardRouting shard) {
         ensureMutable();
         relocatingShards--;
+        nodeModified(shard.currentNodeId());
         shard.cancelRelocation();
     }
 
@@ -403,6 +409,7 @@ public class RoutingNodes implements Iterable<RoutingNode> {
     public void swapPrimaryFlag(ShardRouting... shards) {
         ensureMutable();
         for (ShardRouting shard : shards) {
+            nodeModified(shard.currentNodeId());
             if (shard.primary()) {
                 shard.moveFromPrimary();
                 if (shard.unassigned()) {
@@ -430,6 +437,7 @@ public class RoutingNodes implements Iterable<RoutingNode> {
      */
     private void remove(ShardRouting shard) {
         ensureMutable();
+        nodeModified(shard.currentNodeId());
         if (!shard.active() && shard.relocatingNodeId() == null) {
             inactiveShardCount--;
             assert inactiveShardCount >= 0;
@@ -502,6 +510,7 @@ public class RoutingNodes implements Iterable<RoutingNode> {
         if (candidate.relocating()) {
             cancelRelocation(candidate);
         }
+        nodeModified(candidate.currentNodeId());
         candidate.reinitializeShard();
         inactivePrimaryCount++;
         inactiveShardCount++;
@@ -851,9 +860,28 @@ public class RoutingNodes implements Iterable<RoutingNode> {
         }
     }
 
+    /**
+     * Returns a counter that increases with every modification of the assigned shards. Allocators use it to find out
+     * whether a model they built from these routing nodes is still up to date.
+     */
+    public long getModificationCount() {
+        return modificationCount;
+    }
+
+    private void nodeModified(@Nullable String nodeId) {
+        if (nodeId != null) {
+            RoutingNode node = nodesToShards.get(nodeId);
+            if (node != null) {
+                node.markModified();
+            }
+        }
+    }
+
     private void ensureMutable() {
         if (readOnly) {
             throw new IllegalStateException("can't modify RoutingNodes - readonly");
         }
+        // all modifications go through here
+        modificationCount++;
     }
 }
@@ -0,0 +1,137 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.cluster.routing.allocation;
+
+import org.elasticsearch.cluster.routing.allocation.decider.AllocationDecider;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentBuilderString;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The number of decisions each {@link AllocationDecider} took during an allocation and the time it spent on them.
+ * Decisions are only timed while they are explained, see {@link RoutingAllocation#debugDecision()}.
+ */
+public class AllocationDeciderTimings implements ToXContent {
+
+    /**
+     * The decisions of a single decider
+     */
+    public static class Timing {
+
+        private long count;
+
+        private long nanos;
+
+        Timing(long count, long nanos) {
+            this.count = count;
+            this.nanos = nanos;
+        }
+
+        /**
+         * The number of decisions taken
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * The total time spent on the decisions
+         */
+        public TimeValue getTime() {
+            return TimeValue.timeValueNanos(nanos);
+        }
+    }
+
+    private final Map<String, Timing> timings = new TreeMap<>();
+
+    /**
+     * Records a decision of the given decider that took the given number of nanoseconds
+     */
+    public void add(AllocationDecider decider, long nanos) {
+        add(decider.getClass().getSimpleName(), 1, nanos);
+    }
+
+    private void add(String decider, long count, long nanos) {
+        Timing timing = timings.get(decider);
+        if (timing == null) {
+            timings.put(decider, new Timing(count, nanos));
+        } else {
+            timing.count += count;
+            timing.nanos += nanos;
+        }
+    }
+
+    /**
+     * Returns the timings keyed by the simple class name of the decider
+     */
+    public Map<String, Timing> timings() {
+        return Collections.unmodifiableMap(timings);
+    }
+
+    public boolean isEmpty() {
+        return timings.isEmpty();
+    }
+
+    public static AllocationDeciderTimings readFrom(StreamInput in) throws IOException {
+        AllocationDeciderTimings timings = new AllocationDeciderTimings();
+        int size = in.readVInt();
+        for (int i = 0; i < size; i++) {
+            timings.add(in.readString(), in.readVLong(), in.readVLong());
+        }
+        return timings;
+    }
+
+    public static void writeTo(AllocationDeciderTimings timings, StreamOutput out) throws IOException {
+        out.writeVInt(timings.timings.size());
+        for (Map.Entry<String, Timing> entry : timings.timings.entrySet()) {
+            out.writeString(entry.getKey());
+            out.writeVLong(entry.getValue().count);
+            out.writeVLong(entry.getValue().nanos);
+        }
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject(Fields.DECIDER_TIMINGS);
+        for (Map.Entry<String, Timing> entry : timings.entrySet()) {
+            builder.startObject(entry.getKey());
+            builder.field(Fields.DECISIONS, entry.getValue().count);
+            builder.timeValueField(Fields.TIME_IN_MILLIS, Fields.TIME, entry.getValue().getTime());
+            builder.endObject();
+        }
+        builder.endObject();
+        return builder;
+    }
+
+    static final class Fields {
+        static final XContentBuilderString DECIDER_TIMINGS = new XContentBuilderString("decider_timings");
+        static final XContentBuilderString DECISIONS = new XContentBuilderString("decisions");
+        static final XContentBuilderString TIME = new XContentBuilderString("time");
+        static final XContentBuilderString TIME_IN_MILLIS = new XContentBuilderString("time_in_millis");
+    }
+}
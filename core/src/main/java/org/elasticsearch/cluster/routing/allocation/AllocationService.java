@@ -20,6 +20,7 @@
 package org.elasticsearch.cluster.routing.allocation;
 
 import com.carrotsearch.hppc.cursors.ObjectCursor;
+import org.elasticsearch.cluster.ClusterInfo;
 import org.elasticsearch.cluster.ClusterInfoService;
 import org.elasticsearch.cluster.ClusterState;
 import org.elasticsearch.cluster.health.ClusterHealthStatus;
@@ -196,6 +197,57 @@ public class AllocationService extends AbstractComponent {
         return result;
     }
 
+    /**
+     * Applies the started and the failed shards of a batch on the same routing nodes, such that the batch is followed
+     * by a single reroute. The started shards are applied first, like they would be if they were applied separately.
+     * <p>
+     * If the same instance of the routing table is returned, then no change has been made.</p>
+     */
+    public RoutingAllocation.Result applyStartedAndFailedShards(ClusterState clusterState, List<? extends ShardRouting> startedShards,
+                                                                List<FailedRerouteAllocation.FailedShard> failedShards) {
+        RoutingNodes routingNodes = getMutableRoutingNodes(clusterState);
+        // shuffle the unassigned nodes, just so we won't have things like poison failed shards
+        routingNodes.unassigned().shuffle();
+        final ClusterInfo clusterInfo = clusterInfoService.getClusterInfo();
+        boolean changed = false;
+        RoutingAllocation allocation = null;
+        if (startedShards.isEmpty() == false) {
+            StartedRerouteAllocation startedAllocation = new StartedRerouteAllocation(allocationDeciders, routingNodes, clusterState.nodes(), startedShards, clusterInfo);
+            if (applyStartedShards(routingNodes, startedShards)) {
+                shardsAllocators.applyStartedShards(startedAllocation);
+                changed = true;
+            }
+            allocation = startedAllocation;
+        }
+        if (failedShards.isEmpty() == false) {
+            FailedRerouteAllocation failedAllocation = new FailedRerouteAllocation(allocationDeciders, routingNodes, clusterState.nodes(), failedShards, clusterInfo);
+            boolean failedChanged = false;
+            for (FailedRerouteAllocation.FailedShard failedShard : failedShards) {
+                failedChanged |= applyFailedShard(failedAllocation, failedShard.shard, true, new UnassignedInfo(UnassignedInfo.Reason.ALLOCATION_FAILED, failedShard.message, failedShard.failure,
+                        System.nanoTime(), System.currentTimeMillis()));
+            }
+            if (failedChanged) {
+                shardsAllocators.applyFailedShards(failedAllocation);
+                changed = true;
+            }
+            // reroute with the failed allocation as it holds the nodes the failed shards must not be allocated to again
+            allocation = failedAllocation;
+        }
+        if (!changed) {
+            return new RoutingAllocation.Result(false, clusterState.routingTable(), clusterState.metaData());
+        }
+        reroute(allocation);
+        final RoutingAllocation.Result result = buildChangedResult(clusterState.metaData(), routingNodes);
+        String startedShardsAsString = firstListElementsToCommaDelimitedString(startedShards, s -> s.shardId().toString());
+        String failedShardsAsString = firstListElementsToCommaDelimitedString(failedShards, s -> s.shard.shardId().toString());
+        logClusterHealthStateChange(
+                new ClusterStateHealth(clusterState),
+                new ClusterStateHealth(clusterState.getMetaData(), result.routingTable()),
+                "shards started [" + startedShardsAsString + "] and failed [" + failedShardsAsString + "] ..."
+        );
+        return result;
+    }
+
     /**
      * Internal helper to cap the number of elements in a potentially long list for logging.
      *
@@ -233,6 +285,9 @@ public class AllocationService extends AbstractComponent {
         // the assumption is that commands will move / act on shards (or fail through exceptions)
         // so, there will always be shard "movements", so no need to check on reroute
         reroute(allocation);
+        if (explain) {
+            explanations.deciderTimings(allocation.deciderTimings());
+        }
         RoutingAllocation.Result result = buildChangedResult(clusterState.metaData(), routingNodes, explanations);
         logClusterHealthStateChange(
                 new ClusterStateHealth(clusterState),
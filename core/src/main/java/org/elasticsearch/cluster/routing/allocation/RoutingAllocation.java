@@ -22,8 +22,10 @@ package org.elasticsearch.cluster.routing.allocation;
 import org.elasticsearch.cluster.ClusterInfo;
 import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.routing.RoutingNode;
 import org.elasticsearch.cluster.routing.RoutingNodes;
 import org.elasticsearch.cluster.routing.RoutingTable;
+import org.elasticsearch.cluster.routing.allocation.decider.AllocationDecider;
 import org.elasticsearch.cluster.routing.allocation.decider.AllocationDeciders;
 import org.elasticsearch.cluster.routing.allocation.decider.Decision;
 import org.elasticsearch.index.shard.ShardId;
@@ -32,6 +34,8 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static java.util.Collections.emptySet;
 import static java.util.Collections.unmodifiableSet;
@@ -134,6 +138,11 @@ public class RoutingAllocation {
 
     private final long currentNanoTime;
 
+    private final Map<Object, Map<String, CachedValue>> nodeCaches = new HashMap<>();
+
+    private final Map<Object, CachedValue> routingCaches = new HashMap<>();
+
+    private final AllocationDeciderTimings deciderTimings = new AllocationDeciderTimings();
 
     /**
      * Creates a new {@link RoutingAllocation}
@@ -285,4 +294,76 @@ public class RoutingAllocation {
     public void setHasPendingAsyncFetch() {
         this.hasPendingAsyncFetch = true;
     }
+
+    /**
+     * Returns the value that the given computation derives from the shards of the given node. The value is cached for
+     * the lifetime of this allocation and computed again once shards were added to, removed from or changed on the node.
+     * This allows deciders to compute node level aggregates once per node rather than once per decision.
+     *
+     * @param key identifies the computation, typically a constant of the decider
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T nodeCache(Object key, RoutingNode node, Function<RoutingNode, T> computation) {
+        Map<String, CachedValue> values = nodeCaches.get(key);
+        if (values == null) {
+            values = new HashMap<>();
+            nodeCaches.put(key, values);
+        }
+        CachedValue cached = values.get(node.nodeId());
+        if (cached == null || cached.isUpToDate(node, node.getModificationCount()) == false) {
+            cached = new CachedValue(node, node.getModificationCount(), computation.apply(node));
+            values.put(node.nodeId(), cached);
+        }
+        return (T) cached.value;
+    }
+
+    /**
+     * Returns the value of the given computation, which may depend on the shards of any node. The value is cached for the
+     * lifetime of this allocation and computed again once any shard was assigned, moved or changed.
+     *
+     * @param key identifies the computation, for instance the index or shard that it computes a value for
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T routingCache(Object key, Supplier<T> computation) {
+        CachedValue cached = routingCaches.get(key);
+        if (cached == null || cached.isUpToDate(routingNodes, routingNodes.getModificationCount()) == false) {
+            cached = new CachedValue(routingNodes, routingNodes.getModificationCount(), computation.get());
+            routingCaches.put(key, cached);
+        }
+        return (T) cached.value;
+    }
+
+    /**
+     * Records the time a decider spent on a single decision. Decisions are only timed while they are debugged.
+     */
+    public void addDeciderTime(AllocationDecider decider, long nanos) {
+        deciderTimings.add(decider, nanos);
+    }
+
+    /**
+     * Returns the time the deciders spent on the decisions of this allocation
+     */
+    public AllocationDeciderTimings deciderTimings() {
+        return deciderTimings;
+    }
+
+    private static final class CachedValue {
+
+        private final Object source;
+
+        private final long modificationCount;
+
+        private final Object value;
+
+        CachedValue(Object source, long modificationCount, Object value) {
+            this.source = source;
+            this.modificationCount = modificationCount;
+            this.value = value;
+        }
+
+        boolean isUpToDate(Object source, long modificationCount) {
+            // the identity check guards against routing nodes being replaced, their counters start over
+            return this.source == source && this.modificationCount == modificationCount;
+        }
+    }
 }
@@ -34,6 +34,7 @@ import java.util.List;
  */
 public class RoutingExplanations implements ToXContent {
     private final List<RerouteExplanation> explanations;
+    private AllocationDeciderTimings deciderTimings = new AllocationDeciderTimings();
 
     public RoutingExplanations() {
         this.explanations = new ArrayList<>();
@@ -48,6 +49,18 @@ public class RoutingExplanations implements ToXContent {
         return this.explanations;
     }
 
+    public RoutingExplanations deciderTimings(AllocationDeciderTimings deciderTimings) {
+        this.deciderTimings = deciderTimings;
+        return this;
+    }
+
+    /**
+     * Returns the time the deciders spent on the decisions of the explained reroute
+     */
+    public AllocationDeciderTimings deciderTimings() {
+        return this.deciderTimings;
+    }
+
     /**
      * Read in a RoutingExplanations object
      */
@@ -58,6 +71,7 @@ public class RoutingExplanations implements ToXContent {
             RerouteExplanation explanation = RerouteExplanation.readFrom(in);
             exp.add(explanation);
         }
+        exp.deciderTimings(AllocationDeciderTimings.readFrom(in));
         return exp;
     }
 
@@ -69,6 +83,7 @@ public class RoutingExplanations implements ToXContent {
         for (RerouteExplanation explanation : explanations.explanations) {
             RerouteExplanation.writeTo(explanation, out);
         }
+        AllocationDeciderTimings.writeTo(explanations.deciderTimings, out);
     }
 
     @Override
@@ -78,6 +93,9 @@ public class RoutingExplanations implements ToXContent {
             explanation.toXContent(builder, params);
         }
         builder.endArray();
+        if (deciderTimings.isEmpty() == false) {
+            deciderTimings.toXContent(builder, params);
+        }
         return builder;
     }
 }
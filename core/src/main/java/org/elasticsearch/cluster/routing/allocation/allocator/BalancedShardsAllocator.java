@@ -97,6 +97,13 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
 
     private volatile float threshold = 1.0f;
 
+    /**
+     * The balancer of the last {@link #move} call. A reroute moves every shard that can no longer remain on its node
+     * one after the other, and rebuilding the model of the whole cluster for each of them is quadratic in the number
+     * of shards. The balancer keeps its model in sync with the moves it makes, so it is reused as long as nothing
+     * else modified the routing nodes in between.
+     */
+    private volatile Balancer moveBalancer;
 
     public BalancedShardsAllocator(Settings settings) {
         this(settings, new NodeSettingsService(settings));
@@ -118,20 +125,28 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
 
     @Override
     public boolean allocateUnassigned(RoutingAllocation allocation) {
+        moveBalancer = null;
         final Balancer balancer = new Balancer(logger, allocation, weightFunction, threshold);
         return balancer.allocateUnassigned();
     }
 
     @Override
     public boolean rebalance(RoutingAllocation allocation) {
+        moveBalancer = null;
         final Balancer balancer = new Balancer(logger, allocation, weightFunction, threshold);
         return balancer.balance();
     }
 
     @Override
     public boolean move(ShardRouting shardRouting, RoutingNode node, RoutingAllocation allocation) {
-        final Balancer balancer = new Balancer(logger, allocation, weightFunction, threshold);
-        return balancer.move(shardRouting, node);
+        Balancer balancer = moveBalancer;
+        if (balancer == null || balancer.isUpToDate(allocation, weightFunction, threshold) == false) {
+            balancer = new Balancer(logger, allocation, weightFunction, threshold);
+        }
+        final boolean moved = balancer.move(shardRouting, node);
+        balancer.markUpToDate();
+        moveBalancer = balancer;
+        return moved;
     }
 
     /**
@@ -240,6 +255,12 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
 
         private final Predicate<ShardRouting> assignedFilter = shard -> shard.assignedToNode();
 
+        private boolean modelBuilt = false;
+        /* false once the model holds allocations that were only simulated, like throttled ones */
+        private boolean modelReusable = true;
+        /* the modification count of the routing nodes the model reflects */
+        private long modelModificationCount = -1;
+
         public Balancer(ESLogger logger, RoutingAllocation allocation, WeightFunction weight, float threshold) {
             this.logger = logger;
             this.allocation = allocation;
@@ -291,14 +312,39 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
             return new NodeSorter(nodesArray(), weight, this);
         }
 
+        /**
+         * Returns <code>true</code> iff the model of this balancer still reflects the given allocation, see {@link #markUpToDate()}
+         */
+        boolean isUpToDate(RoutingAllocation allocation, WeightFunction weight, float threshold) {
+            return this.allocation == allocation && this.weight == weight && this.threshold == threshold
+                && modelModificationCount == routingNodes.getModificationCount();
+        }
+
+        /**
+         * Records that the model reflects the current state of the routing nodes. Must only be called after operations
+         * that apply every change of the model to the routing nodes, which is not the case for throttled allocations.
+         */
+        void markUpToDate() {
+            if (modelBuilt && modelReusable) {
+                modelModificationCount = routingNodes.getModificationCount();
+            }
+        }
+
         private boolean initialize(RoutingNodes routing, RoutingNodes.UnassignedShards unassigned) {
-            if (logger.isTraceEnabled()) {
-                logger.trace("Start distributing Shards");
+            if (modelBuilt == false) {
+                if (logger.isTraceEnabled()) {
+                    logger.trace("Start distributing Shards");
+                }
+                for (ObjectCursor<String> index : allocation.routingTable().indicesRouting().keys()) {
+                    indices.add(index.value);
+                }
+                buildModelFromAssigned(routing.shards(assignedFilter));
+                modelBuilt = true;
             }
-            for (ObjectCursor<String> index : allocation.routingTable().indicesRouting().keys()) {
-                indices.add(index.value);
+            if (unassigned.isEmpty() == false) {
+                // unassigned shards may be throttled which only allocates them on the model
+                modelReusable = false;
             }
-            buildModelFromAssigned(routing.shards(assignedFilter));
             return allocateUnassigned(unassigned);
         }
 
@@ -400,13 +446,16 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
                                  * a relocation must bring us closer to the balance if we only achieve the same delta the relocation is useless */
                                 if (tryRelocateShard(Operation.BALANCE, minNode, maxNode, index, delta)) {
                                     /*
-                                     * TODO we could be a bit smarter here, we don't need to fully sort necessarily
-                                     * we could just find the place to insert linearly but the win might be minor
-                                     * compared to the added complexity
+                                     * only the weights of the two nodes changed, the other nodes are still sorted so we
+                                     * move the two nodes to their new positions instead of sorting all nodes again
                                      */
-                                    weights[lowIdx] = sorter.weight(Operation.BALANCE, modelNodes[lowIdx]);
-                                    weights[highIdx] = sorter.weight(Operation.BALANCE, modelNodes[highIdx]);
-                                    sorter.sort(0, weights.length);
+                                    final float lowWeight = sorter.weight(Operation.BALANCE, minNode);
+                                    final float highWeight = sorter.weight(Operation.BALANCE, maxNode);
+                                    final int newHighIdx = sorter.reposition(highIdx, highWeight);
+                                    if (newHighIdx <= lowIdx && lowIdx < highIdx) {
+                                        lowIdx++; // the nodes in between shifted up by one
+                                    }
+                                    sorter.reposition(lowIdx, lowWeight);
                                     lowIdx = 0;
                                     highIdx = weights.length - 1;
                                     changed = true;
@@ -453,8 +502,7 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
             final String[] indices = this.indices.toArray(new String[this.indices.size()]);
             final float[] deltas = new float[indices.length];
             for (int i = 0; i < deltas.length; i++) {
-                sorter.reset(operation, indices[i]);
-                deltas[i] = sorter.delta();
+                deltas[i] = sorter.delta(operation, indices[i]);
             }
             new IntroSorter() {
 
@@ -832,8 +880,8 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
     static class ModelNode implements Iterable<ModelIndex> {
         private final String id;
         private final Map<String, ModelIndex> indices = new HashMap<>();
-        /* cached stats - invalidated on add/remove and lazily calculated */
-        private int numShards = -1;
+        /* maintained on add/remove as the weight function asks for it for every node and index */
+        private int numShards = 0;
 
         public ModelNode(String id) {
             this.id = id;
@@ -848,13 +896,6 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
         }
 
         public int numShards() {
-            if (numShards == -1) {
-                int sum = 0;
-                for (ModelIndex index : indices.values()) {
-                    sum += index.numShards();
-                }
-                numShards = sum;
-            }
             return numShards;
         }
 
@@ -880,7 +921,7 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
         }
 
         public void addShard(ShardRouting shard, Decision decision) {
-            numShards = -1;
+            numShards++;
             ModelIndex index = indices.get(shard.index());
             if (index == null) {
                 index = new ModelIndex(shard.index());
@@ -890,13 +931,15 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
         }
 
         public Decision removeShard(ShardRouting shard) {
-            numShards = -1;
             ModelIndex index = indices.get(shard.index());
             Decision removed = null;
             if (index != null) {
                 removed = index.removeShard(shard);
-                if (removed != null && index.numShards() == 0) {
-                    indices.remove(shard.index());
+                if (removed != null) {
+                    numShards--;
+                    if (index.numShards() == 0) {
+                        indices.remove(shard.index());
+                    }
                 }
             }
             return removed;
@@ -1051,5 +1094,62 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
         public float delta() {
             return weights[weights.length - 1] - weights[0];
         }
+
+        /**
+         * Returns the delta between the maximal and the minimal node weight for the given index, like {@link #delta()}
+         * would after {@link #reset(Operation, String)}, but without sorting the nodes. The sorter must be reset before
+         * its weights are used again.
+         */
+        public float delta(Operation operation, String index) {
+            this.index = index;
+            float min = Float.POSITIVE_INFINITY;
+            float max = Float.NEGATIVE_INFINITY;
+            for (ModelNode node : modelNodes) {
+                final float weight = weight(operation, node);
+                min = Math.min(min, weight);
+                max = Math.max(max, weight);
+            }
+            return max - min;
+        }
+
+        /**
+         * Moves the node at the given position to its sorted position for its new weight. All other nodes must be
+         * sorted. Returns the new position of the node.
+         */
+        public int reposition(int from, float weight) {
+            final ModelNode node = modelNodes[from];
+            final int to;
+            if (from > 0 && weight < weights[from - 1]) {
+                to = insertionPoint(0, from, weight);
+                System.arraycopy(modelNodes, to, modelNodes, to + 1, from - to);
+                System.arraycopy(weights, to, weights, to + 1, from - to);
+            } else if (from < weights.length - 1 && weight > weights[from + 1]) {
+                to = insertionPoint(from + 1, weights.length, weight) - 1;
+                System.arraycopy(modelNodes, from + 1, modelNodes, from, to - from);
+                System.arraycopy(weights, from + 1, weights, from, to - from);
+            } else {
+                to = from;
+            }
+            modelNodes[to] = node;
+            weights[to] = weight;
+            return to;
+        }
+
+        /**
+         * Returns the first position in <code>[from, to)</code> with a weight greater than the given weight
+         */
+        private int insertionPoint(int from, int to, float weight) {
+            int low = from;
+            int high = to;
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                if (weights[mid] > weight) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
     }
 }
@@ -30,6 +30,8 @@ import java.util.Set;
 /**
  * A composite {@link AllocationDecider} combining the "decision" of multiple
  * {@link AllocationDecider} implementations into a single allocation decision.
+ * While decisions are debugged the time spent in each decider is recorded on
+ * the {@link RoutingAllocation}.
  */
 public class AllocationDeciders extends AllocationDecider {
 
@@ -49,7 +51,11 @@ public class AllocationDeciders extends AllocationDecider {
     public Decision canRebalance(ShardRouting shardRouting, RoutingAllocation allocation) {
         Decision.Multi ret = new Decision.Multi();
         for (AllocationDecider allocationDecider : allocations) {
+            final long startTime = allocation.debugDecision() ? System.nanoTime() : 0;
             Decision decision = allocationDecider.canRebalance(shardRouting, allocation);
+            if (allocation.debugDecision()) {
+                allocation.addDeciderTime(allocationDecider, System.nanoTime() - startTime);
+            }
             // short track if a NO is returned.
             if (decision == Decision.NO) {
                 if (!allocation.debugDecision()) {
@@ -71,7 +77,11 @@ public class AllocationDeciders extends AllocationDecider {
         }
         Decision.Multi ret = new Decision.Multi();
         for (AllocationDecider allocationDecider : allocations) {
+            final long startTime = allocation.debugDecision() ? System.nanoTime() : 0;
             Decision decision = allocationDecider.canAllocate(shardRouting, node, allocation);
+            if (allocation.debugDecision()) {
+                allocation.addDeciderTime(allocationDecider, System.nanoTime() - startTime);
+            }
             // short track if a NO is returned.
             if (decision == Decision.NO) {
                 if (logger.isTraceEnabled()) {
@@ -102,7 +112,11 @@ public class AllocationDeciders extends AllocationDecider {
         }
         Decision.Multi ret = new Decision.Multi();
         for (AllocationDecider allocationDecider : allocations) {
+            final long startTime = allocation.debugDecision() ? System.nanoTime() : 0;
             Decision decision = allocationDecider.canRemain(shardRouting, node, allocation);
+            if (allocation.debugDecision()) {
+                allocation.addDeciderTime(allocationDecider, System.nanoTime() - startTime);
+            }
             // short track if a NO is returned.
             if (decision == Decision.NO) {
                 if (logger.isTraceEnabled()) {
@@ -124,7 +138,11 @@ public class AllocationDeciders extends AllocationDecider {
     public Decision canAllocate(ShardRouting shardRouting, RoutingAllocation allocation) {
         Decision.Multi ret = new Decision.Multi();
         for (AllocationDecider allocationDecider : allocations) {
+            final long startTime = allocation.debugDecision() ? System.nanoTime() : 0;
             Decision decision = allocationDecider.canAllocate(shardRouting, allocation);
+            if (allocation.debugDecision()) {
+                allocation.addDeciderTime(allocationDecider, System.nanoTime() - startTime);
+            }
             // short track if a NO is returned.
             if (decision == Decision.NO) {
                 if (!allocation.debugDecision()) {
@@ -143,7 +161,11 @@ public class AllocationDeciders extends AllocationDecider {
     public Decision canAllocate(RoutingNode node, RoutingAllocation allocation) {
         Decision.Multi ret = new Decision.Multi();
         for (AllocationDecider allocationDecider : allocations) {
+            final long startTime = allocation.debugDecision() ? System.nanoTime() : 0;
             Decision decision = allocationDecider.canAllocate(node, allocation);
+            if (allocation.debugDecision()) {
+                allocation.addDeciderTime(allocationDecider, System.nanoTime() - startTime);
+            }
             // short track if a NO is returned.
             if (decision == Decision.NO) {
                 if (!allocation.debugDecision()) {
@@ -162,7 +184,11 @@ public class AllocationDeciders extends AllocationDecider {
     public Decision canRebalance(RoutingAllocation allocation) {
         Decision.Multi ret = new Decision.Multi();
         for (AllocationDecider allocationDecider : allocations) {
+            final long startTime = allocation.debugDecision() ? System.nanoTime() : 0;
             Decision decision = allocationDecider.canRebalance(allocation);
+            if (allocation.debugDecision()) {
+                allocation.addDeciderTime(allocationDecider, System.nanoTime() - startTime);
+            }
             // short track if a NO is returned.
             if (decision == Decision.NO) {
                 if (!allocation.debugDecision()) {
@@ -25,6 +25,7 @@ import org.elasticsearch.cluster.routing.RoutingNode;
 import org.elasticsearch.cluster.routing.ShardRouting;
 import org.elasticsearch.cluster.routing.allocation.RoutingAllocation;
 import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.node.settings.NodeSettingsService;
@@ -176,18 +177,13 @@ public class AwarenessAllocationDecider extends AllocationDecider {
             // build attr_value -> nodes map
             ObjectIntHashMap<String> nodesPerAttribute = allocation.routingNodes().nodesPerAttributesCounts(awarenessAttribute);
 
-            // build the count of shards per attribute value
-            ObjectIntHashMap<String> shardPerAttribute = new ObjectIntHashMap<>();
-            for (ShardRouting assignedShard : allocation.routingNodes().assignedShards(shardRouting)) {
-                if (assignedShard.started() || assignedShard.initializing()) {
-                    // Note: this also counts relocation targets as that will be the new location of the shard.
-                    // Relocation sources should not be counted as the shard is moving away
-                    RoutingNode routingNode = allocation.routingNodes().node(assignedShard.currentNodeId());
-                    shardPerAttribute.addTo(routingNode.node().attributes().get(awarenessAttribute), 1);
-                }
-            }
+            // build the count of shards per attribute value, shared by all nodes the shard is checked against
+            ObjectIntHashMap<String> shardPerAttribute = allocation.routingCache(new Tuple<>(shardRouting.shardId(), awarenessAttribute),
+                    () -> shardsPerAttribute(shardRouting, awarenessAttribute, allocation));
 
             if (moveToNode) {
+                // the cached counts are shared, adjust a copy
+                shardPerAttribute = shardPerAttribute.clone();
                 if (shardRouting.assignedToNode()) {
                     String nodeId = shardRouting.relocating() ? shardRouting.relocatingNodeId() : shardRouting.currentNodeId();
                     if (!node.nodeId().equals(nodeId)) {
@@ -238,4 +234,17 @@ public class AwarenessAllocationDecider extends AllocationDecider {
 
         return allocation.decision(Decision.YES, NAME, "node meets awareness requirements");
     }
+
+    private static ObjectIntHashMap<String> shardsPerAttribute(ShardRouting shardRouting, String awarenessAttribute, RoutingAllocation allocation) {
+        ObjectIntHashMap<String> shardPerAttribute = new ObjectIntHashMap<>();
+        for (ShardRouting assignedShard : allocation.routingNodes().assignedShards(shardRouting)) {
+            if (assignedShard.started() || assignedShard.initializing()) {
+                // Note: this also counts relocation targets as that will be the new location of the shard.
+                // Relocation sources should not be counted as the shard is moving away
+                RoutingNode routingNode = allocation.routingNodes().node(assignedShard.currentNodeId());
+                shardPerAttribute.addTo(routingNode.node().attributes().get(awarenessAttribute), 1);
+            }
+        }
+        return shardPerAttribute;
+    }
 }
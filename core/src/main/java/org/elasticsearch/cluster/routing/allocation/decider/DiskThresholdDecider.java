@@ -72,6 +72,9 @@ public class DiskThresholdDecider extends AllocationDecider {
 
     public static final String NAME = "disk_threshold";
 
+    private static final String MOST_AVAILABLE_USAGE_CACHE_KEY = NAME + "_most_available_usage";
+    private static final String LEAST_AVAILABLE_USAGE_CACHE_KEY = NAME + "_least_available_usage";
+
     private volatile Double freeDiskThresholdLow;
     private volatile Double freeDiskThresholdHigh;
     private volatile ByteSizeValue freeBytesThresholdLow;
@@ -349,7 +352,7 @@ public class DiskThresholdDecider extends AllocationDecider {
         final double usedDiskThresholdLow = 100.0 - DiskThresholdDecider.this.freeDiskThresholdLow;
         final double usedDiskThresholdHigh = 100.0 - DiskThresholdDecider.this.freeDiskThresholdHigh;
 
-        DiskUsage usage = getDiskUsage(node, allocation, usages);
+        DiskUsage usage = getDiskUsage(node, allocation, usages, MOST_AVAILABLE_USAGE_CACHE_KEY);
         // First, check that the node currently over the low watermark
         double freeDiskPercentage = usage.getFreeDiskAsPercentage();
         // Cache the used disk percentage for displaying disk percentages consistent with documentation
@@ -462,7 +465,7 @@ public class DiskThresholdDecider extends AllocationDecider {
             return decision;
         }
 
-        final DiskUsage usage = getDiskUsage(node, allocation, usages);
+        final DiskUsage usage = getDiskUsage(node, allocation, usages, LEAST_AVAILABLE_USAGE_CACHE_KEY);
         final String dataPath = clusterInfo.getDataPath(shardRouting);
         // If this node is already above the high threshold, the shard cannot remain (get it off!)
         final double freeDiskPercentage = usage.getFreeDiskAsPercentage();
@@ -493,7 +496,16 @@ public class DiskThresholdDecider extends AllocationDecider {
         return allocation.decision(Decision.YES, NAME, "enough disk for shard to remain on node, free: [%s]", new ByteSizeValue(freeBytes));
     }
 
-    private DiskUsage getDiskUsage(RoutingNode node, RoutingAllocation allocation, ImmutableOpenMap<String, DiskUsage> usages) {
+    /**
+     * Returns the disk usage of the node, cached per node and usage map for the duration of the allocation since
+     * accounting for relocations requires to look at all shards of the node.
+     */
+    private DiskUsage getDiskUsage(RoutingNode node, RoutingAllocation allocation, ImmutableOpenMap<String, DiskUsage> usages,
+                                   Object cacheKey) {
+        return allocation.nodeCache(cacheKey, node, n -> computeDiskUsage(n, allocation, usages));
+    }
+
+    private DiskUsage computeDiskUsage(RoutingNode node, RoutingAllocation allocation, ImmutableOpenMap<String, DiskUsage> usages) {
         ClusterInfo clusterInfo = allocation.clusterInfo();
         DiskUsage usage = usages.get(node.nodeId());
         if (usage == null) {
@@ -19,6 +19,7 @@
 
 package org.elasticsearch.cluster.routing.allocation.decider;
 
+import com.carrotsearch.hppc.ObjectIntHashMap;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.cluster.routing.RoutingNode;
 import org.elasticsearch.cluster.routing.ShardRouting;
@@ -99,18 +100,9 @@ public class ShardsLimitAllocationDecider extends AllocationDecider {
                     indexShardLimit, clusterShardLimit);
         }
 
-        int indexShardCount = 0;
-        int nodeShardCount = 0;
-        for (ShardRouting nodeShard : node) {
-            // don't count relocating shards...
-            if (nodeShard.relocating()) {
-                continue;
-            }
-            nodeShardCount++;
-            if (nodeShard.index().equals(shardRouting.index())) {
-                indexShardCount++;
-            }
-        }
+        final ShardCounts shardCounts = shardCounts(node, allocation);
+        int indexShardCount = shardCounts.perIndex.get(shardRouting.index());
+        int nodeShardCount = shardCounts.total;
         if (clusterShardLimit > 0 && nodeShardCount >= clusterShardLimit) {
             return allocation.decision(Decision.NO, NAME, "too many shards for this node [%d], limit: [%d]",
                     nodeShardCount, clusterShardLimit);
@@ -136,18 +128,9 @@ public class ShardsLimitAllocationDecider extends AllocationDecider {
                     indexShardLimit, clusterShardLimit);
         }
 
-        int indexShardCount = 0;
-        int nodeShardCount = 0;
-        for (ShardRouting nodeShard : node) {
-            // don't count relocating shards...
-            if (nodeShard.relocating()) {
-                continue;
-            }
-            nodeShardCount++;
-            if (nodeShard.index().equals(shardRouting.index())) {
-                indexShardCount++;
-            }
-        }
+        final ShardCounts shardCounts = shardCounts(node, allocation);
+        int indexShardCount = shardCounts.perIndex.get(shardRouting.index());
+        int nodeShardCount = shardCounts.total;
         // Subtle difference between the `canAllocate` and `canRemain` is that
         // this checks > while canAllocate checks >=
         if (clusterShardLimit > 0 && nodeShardCount > clusterShardLimit) {
@@ -174,14 +157,7 @@ public class ShardsLimitAllocationDecider extends AllocationDecider {
                     clusterShardLimit);
         }
 
-        int nodeShardCount = 0;
-        for (ShardRouting nodeShard : node) {
-            // don't count relocating shards...
-            if (nodeShard.relocating()) {
-                continue;
-            }
-            nodeShardCount++;
-        }
+        int nodeShardCount = shardCounts(node, allocation).total;
         if (clusterShardLimit >= 0 && nodeShardCount >= clusterShardLimit) {
             return allocation.decision(Decision.NO, NAME, "too many shards for this node [%d], limit: [%d]",
                     nodeShardCount, clusterShardLimit);
@@ -189,4 +165,29 @@ public class ShardsLimitAllocationDecider extends AllocationDecider {
         return allocation.decision(Decision.YES, NAME, "shard count under node limit [%d] of total shards per node",
                 clusterShardLimit);
     }
+
+    private static ShardCounts shardCounts(RoutingNode node, RoutingAllocation allocation) {
+        return allocation.nodeCache(ShardCounts.class, node, ShardCounts::new);
+    }
+
+    /**
+     * The number of shards on a node in total and per index, cached per node for the duration of an allocation
+     */
+    private static final class ShardCounts {
+
+        private int total;
+
+        private final ObjectIntHashMap<String> perIndex = new ObjectIntHashMap<>();
+
+        ShardCounts(RoutingNode node) {
+            for (ShardRouting nodeShard : node) {
+                // don't count relocating shards...
+                if (nodeShard.relocating()) {
+                    continue;
+                }
+                total++;
+                perIndex.addTo(nodeShard.index(), 1);
+            }
+        }
+    }
 }
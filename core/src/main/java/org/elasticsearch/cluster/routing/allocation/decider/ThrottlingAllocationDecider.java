@@ -77,14 +77,7 @@ public class ThrottlingAllocationDecider extends AllocationDecider {
             if (shardRouting.unassigned()) {
                 // primary is unassigned, means we are going to do recovery from gateway
                 // count *just the primary* currently doing recovery on the node and check against concurrent_recoveries
-                int primariesInRecovery = 0;
-                for (ShardRouting shard : node) {
-                    // when a primary shard is INITIALIZING, it can be because of *initial recovery* or *relocation from another node*
-                    // we only count initial recoveries here, so we need to make sure that relocating node is null
-                    if (shard.initializing() && shard.primary() && shard.relocatingNodeId() == null) {
-                        primariesInRecovery++;
-                    }
-                }
+                int primariesInRecovery = recoveries(node, allocation).primariesInRecovery;
                 if (primariesInRecovery >= primariesInitialRecoveries) {
                     return allocation.decision(Decision.THROTTLE, NAME, "too many primaries currently recovering [%d], limit: [%d]",
                             primariesInRecovery, primariesInitialRecoveries);
@@ -102,12 +95,7 @@ public class ThrottlingAllocationDecider extends AllocationDecider {
 
     @Override
     public Decision canAllocate(RoutingNode node, RoutingAllocation allocation) {
-        int currentRecoveries = 0;
-        for (ShardRouting shard : node) {
-            if (shard.initializing()) {
-                currentRecoveries++;
-            }
-        }
+        int currentRecoveries = recoveries(node, allocation).currentRecoveries;
         if (currentRecoveries >= concurrentRecoveries) {
             return allocation.decision(Decision.THROTTLE, NAME, "too many shards currently recovering [%d], limit: [%d]",
                     currentRecoveries, concurrentRecoveries);
@@ -116,6 +104,33 @@ public class ThrottlingAllocationDecider extends AllocationDecider {
         }
     }
 
+    private static Recoveries recoveries(RoutingNode node, RoutingAllocation allocation) {
+        return allocation.nodeCache(Recoveries.class, node, Recoveries::new);
+    }
+
+    /**
+     * The recoveries on a node, cached per node for the duration of an allocation
+     */
+    private static final class Recoveries {
+
+        private int currentRecoveries;
+
+        private int primariesInRecovery;
+
+        Recoveries(RoutingNode node) {
+            for (ShardRouting shard : node) {
+                if (shard.initializing()) {
+                    currentRecoveries++;
+                    // when a primary shard is INITIALIZING, it can be because of *initial recovery* or *relocation from another node*
+                    // we only count initial recoveries here, so we need to make sure that relocating node is null
+                    if (shard.primary() && shard.relocatingNodeId() == null) {
+                        primariesInRecovery++;
+                    }
+                }
+            }
+        }
+    }
+
     class ApplySettings implements NodeSettingsService.Listener {
         @Override
         public void onRefreshSettings(Settings settings) {
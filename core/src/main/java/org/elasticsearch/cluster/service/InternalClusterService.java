@@ -32,6 +32,7 @@ import org.elasticsearch.cluster.ClusterStateTaskExecutor;
 import org.elasticsearch.cluster.ClusterStateTaskListener;
 import org.elasticsearch.cluster.ClusterStateUpdateTask;
 import org.elasticsearch.cluster.LocalNodeMasterListener;
+import org.elasticsearch.cluster.OrderIndependentClusterStateListener;
 import org.elasticsearch.cluster.TimeoutClusterStateListener;
 import org.elasticsearch.cluster.block.ClusterBlock;
 import org.elasticsearch.cluster.block.ClusterBlocks;
@@ -57,10 +58,10 @@ import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.common.util.concurrent.CountDown;
 import org.elasticsearch.common.util.concurrent.EsExecutors;
 import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.common.util.concurrent.EsThreadPoolExecutor;
 import org.elasticsearch.common.util.concurrent.FutureUtils;
 import org.elasticsearch.common.util.concurrent.PrioritizedEsThreadPoolExecutor;
 import org.elasticsearch.common.util.concurrent.PrioritizedRunnable;
-import org.elasticsearch.common.util.iterable.Iterables;
 import org.elasticsearch.discovery.Discovery;
 import org.elasticsearch.discovery.DiscoveryService;
 import org.elasticsearch.node.settings.NodeSettingsService;
@@ -77,6 +78,8 @@ import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledFuture;
@@ -93,8 +96,11 @@ public class InternalClusterService extends AbstractLifecycleComponent<ClusterSe
 
     public static final String SETTING_CLUSTER_SERVICE_SLOW_TASK_LOGGING_THRESHOLD = "cluster.service.slow_task_logging_threshold";
     public static final String SETTING_CLUSTER_SERVICE_RECONNECT_INTERVAL = "cluster.service.reconnect_interval";
+    public static final String SETTING_CLUSTER_SERVICE_PIPELINE_APPLY = "cluster.service.pipeline_apply";
 
     public static final String UPDATE_THREAD_NAME = "clusterService#updateTask";
+    /** the applier thread name contains {@link #UPDATE_THREAD_NAME} as it takes over the notification of the listeners */
+    public static final String APPLY_THREAD_NAME = UPDATE_THREAD_NAME + "#apply";
     private final ThreadPool threadPool;
 
     private final DiscoveryService discoveryService;
@@ -111,8 +117,18 @@ public class InternalClusterService extends AbstractLifecycleComponent<ClusterSe
 
     private TimeValue slowTaskLoggingThreshold;
 
+    private final boolean pipelineApply;
+
     private volatile PrioritizedEsThreadPoolExecutor updateTasksExecutor;
 
+    private volatile EsThreadPoolExecutor applyExecutor;
+
+    /**
+     * The application of the last published cluster state that still runs on the applier thread, only accessed on the
+     * update thread
+     */
+    private Future<?> pendingApplication;
+
     /**
      * Those 3 state listeners are changing infrequently - CopyOnWriteArrayList is just fine
      */
@@ -122,7 +138,6 @@ public class InternalClusterService extends AbstractLifecycleComponent<ClusterSe
     private final Map<ClusterStateTaskExecutor, List<UpdateTask>> updateTasksPerExecutor = new HashMap<>();
     // TODO this is rather frequently changing I guess a Synced Set would be better here and a dedicated remove API
     private final Collection<ClusterStateListener> postAppliedListeners = new CopyOnWriteArrayList<>();
-    private final Iterable<ClusterStateListener> preAppliedListeners = Iterables.concat(priorityClusterStateListeners, clusterStateListeners, lastClusterStateListeners);
 
     private final LocalNodeMasterListeners localNodeMasterListeners;
 
@@ -156,6 +171,8 @@ public class InternalClusterService extends AbstractLifecycleComponent<ClusterSe
 
         this.slowTaskLoggingThreshold = this.settings.getAsTime(SETTING_CLUSTER_SERVICE_SLOW_TASK_LOGGING_THRESHOLD, TimeValue.timeValueSeconds(30));
 
+        this.pipelineApply = this.settings.getAsBoolean(SETTING_CLUSTER_SERVICE_PIPELINE_APPLY, false);
+
         localNodeMasterListeners = new LocalNodeMasterListeners(threadPool);
 
         initialBlocks = ClusterBlocks.builder().addGlobalBlock(discoveryService.getNoMasterBlock());
@@ -186,6 +203,9 @@ public class InternalClusterService extends AbstractLifecycleComponent<ClusterSe
         add(localNodeMasterListeners);
         this.clusterState = ClusterState.builder(clusterState).blocks(initialBlocks).build();
         this.updateTasksExecutor = EsExecutors.newSinglePrioritizing(UPDATE_THREAD_NAME, daemonThreadFactory(settings, UPDATE_THREAD_NAME));
+        if (pipelineApply) {
+            this.applyExecutor = EsExecutors.newFixed(APPLY_THREAD_NAME, 1, -1, daemonThreadFactory(settings, APPLY_THREAD_NAME));
+        }
         this.reconnectToNodes = threadPool.schedule(reconnectInterval, ThreadPool.Names.GENERIC, new ReconnectToNodes());
         Map<String, String> nodeAttributes = discoveryNodeService.buildAttributes();
         // note, we rely on the fact that its a new id each time we start, see FD and "kill -9" handling
@@ -205,6 +225,9 @@ public class InternalClusterService extends AbstractLifecycleComponent<ClusterSe
             onGoingTimeout.listener.onClose();
         }
         ThreadPool.terminate(updateTasksExecutor, 10, TimeUnit.SECONDS);
+        if (applyExecutor != null) {
+            ThreadPool.terminate(applyExecutor, 10, TimeUnit.SECONDS);
+        }
         remove(localNodeMasterListeners);
     }
 
@@ -278,6 +301,8 @@ public class InternalClusterService extends AbstractLifecycleComponent<ClusterSe
             updateTasksExecutor.execute(new SourcePrioritizedRunnable(Priority.HIGH, "_add_listener_") {
                 @Override
                 public void run() {
+                    // the listener must observe every state that follows the current one
+                    waitForPendingApplication();
                     if (timeout != null) {
                         NotifyTimeout notifyTimeout = new NotifyTimeout(listener, timeout);
                         notifyTimeout.future = threadPool.schedule(timeout, ThreadPool.Names.GENERIC, notifyTimeout);
@@ -441,6 +466,9 @@ public class InternalClusterService extends AbstractLifecycleComponent<ClusterSe
             warnAboutSlowTaskIfNeeded(executionTime, source);
             batchResult = ClusterStateTaskExecutor.BatchResult.<T>builder().failures(toExecute.stream().map(updateTask -> updateTask.task)::iterator, e).build(previousClusterState);
         }
+        // only the execution of the batch overlaps with the application of the previous state, anything that the
+        // tasks or the other nodes can observe happens once the previous state is fully applied
+        waitForPendingApplication();
 
         assert batchResult.executionResults != null;
         assert batchResult.executionResults.size() == toExecute.size()
@@ -483,6 +511,8 @@ public class InternalClusterService extends AbstractLifecycleComponent<ClusterSe
             return;
         }
 
+        final Discovery.AckListener ackListener;
+        final ClusterChangedEvent clusterChangedEvent;
         try {
             ArrayList<Discovery.AckListener> ackListeners = new ArrayList<>();
             if (newClusterState.nodes().localNodeMaster()) {
@@ -514,7 +544,7 @@ public class InternalClusterService extends AbstractLifecycleComponent<ClusterSe
                     }
                 }
             }
-            final Discovery.AckListener ackListener = new DelegetingAckListener(ackListeners);
+            ackListener = new DelegetingAckListener(ackListeners);
 
             newClusterState.status(ClusterState.ClusterStateStatus.BEING_APPLIED);
 
@@ -526,7 +556,7 @@ public class InternalClusterService extends AbstractLifecycleComponent<ClusterSe
                 logger.debug("cluster state updated, version [{}], source [{}]", newClusterState.version(), source);
             }
 
-            ClusterChangedEvent clusterChangedEvent = new ClusterChangedEvent(source, newClusterState, previousClusterState);
+            clusterChangedEvent = new ClusterChangedEvent(source, newClusterState, previousClusterState);
             // new cluster state, notify all listeners
             final DiscoveryNodes.Delta nodesDelta = clusterChangedEvent.nodesDelta();
             if (nodesDelta.hasChanges() && logger.isInfoEnabled()) {
@@ -566,15 +596,38 @@ public class InternalClusterService extends AbstractLifecycleComponent<ClusterSe
             // update the current cluster state
             clusterState = newClusterState;
             logger.debug("set local cluster state to version {}", newClusterState.version());
-            for (ClusterStateListener listener : preAppliedListeners) {
-                try {
-                    listener.clusterChanged(clusterChangedEvent);
-                } catch (Exception ex) {
-                    logger.warn("failed to notify ClusterStateListener", ex);
-                }
+
+            if (pipelineApply) {
+                // the state is applied on the applier thread, this keeps the executor ordered with its next batch
+                executor.clusterStatePublished(newClusterState);
             }
+        } catch (Throwable t) {
+            logFailedApplication(startTimeNS, newClusterState, source, t);
+            return;
+        }
+
+        final ClusterState appliedClusterState = newClusterState;
+        if (applyExecutor != null) {
+            try {
+                pendingApplication = applyExecutor.submit(() -> applyClusterState(source, startTimeNS, previousClusterState, appliedClusterState,
+                    clusterChangedEvent, ackListener, executor, proccessedListeners));
+                return;
+            } catch (EsRejectedExecutionException e) {
+                logger.debug("applier is shutting down, applying cluster state version [{}] on the update thread", newClusterState.version());
+            }
+        }
+        applyClusterState(source, startTimeNS, previousClusterState, appliedClusterState, clusterChangedEvent, ackListener, executor, proccessedListeners);
+    }
+
+    private <T> void applyClusterState(String source, long startTimeNS, ClusterState previousClusterState, ClusterState newClusterState,
+                                       ClusterChangedEvent clusterChangedEvent, Discovery.AckListener ackListener,
+                                       ClusterStateTaskExecutor<T> executor, List<UpdateTask<T>> proccessedListeners) {
+        try {
+            notifyClusterStateListeners(priorityClusterStateListeners, clusterChangedEvent);
+            notifyClusterStateListeners(clusterStateListeners, clusterChangedEvent);
+            notifyClusterStateListeners(lastClusterStateListeners, clusterChangedEvent);
 
-            for (DiscoveryNode node : nodesDelta.removedNodes()) {
+            for (DiscoveryNode node : clusterChangedEvent.nodesDelta().removedNodes()) {
                 try {
                     transportService.disconnectFromNode(node);
                 } catch (Throwable e) {
@@ -605,21 +658,100 @@ public class InternalClusterService extends AbstractLifecycleComponent<ClusterSe
                 task.listener.clusterStateProcessed(task.source, previousClusterState, newClusterState);
             }
 
-            executor.clusterStatePublished(newClusterState);
+            if (pipelineApply == false) {
+                executor.clusterStatePublished(newClusterState);
+            }
 
             TimeValue executionTime = TimeValue.timeValueMillis(Math.max(0, TimeValue.nsecToMSec(System.nanoTime() - startTimeNS)));
             logger.debug("processing [{}]: took {} done applying updated cluster_state (version: {}, uuid: {})", source, executionTime, newClusterState.version(), newClusterState.stateUUID());
             warnAboutSlowTaskIfNeeded(executionTime, source);
         } catch (Throwable t) {
-            TimeValue executionTime = TimeValue.timeValueMillis(Math.max(0, TimeValue.nsecToMSec(System.nanoTime() - startTimeNS)));
-            StringBuilder sb = new StringBuilder("failed to apply updated cluster state in ").append(executionTime).append(":\nversion [").append(newClusterState.version()).append("], uuid [").append(newClusterState.stateUUID()).append("], source [").append(source).append("]\n");
-            sb.append(newClusterState.nodes().prettyPrint());
-            sb.append(newClusterState.routingTable().prettyPrint());
-            sb.append(newClusterState.getRoutingNodes().prettyPrint());
-            logger.warn(sb.toString(), t);
-            // TODO: do we want to call updateTask.onFailure here?
+            logFailedApplication(startTimeNS, newClusterState, source, t);
         }
+    }
 
+    private void logFailedApplication(long startTimeNS, ClusterState newClusterState, String source, Throwable t) {
+        TimeValue executionTime = TimeValue.timeValueMillis(Math.max(0, TimeValue.nsecToMSec(System.nanoTime() - startTimeNS)));
+        StringBuilder sb = new StringBuilder("failed to apply updated cluster state in ").append(executionTime).append(":\nversion [").append(newClusterState.version()).append("], uuid [").append(newClusterState.stateUUID()).append("], source [").append(source).append("]\n");
+        sb.append(newClusterState.nodes().prettyPrint());
+        sb.append(newClusterState.routingTable().prettyPrint());
+        sb.append(newClusterState.getRoutingNodes().prettyPrint());
+        logger.warn(sb.toString(), t);
+        // TODO: do we want to call updateTask.onFailure here?
+    }
+
+    /**
+     * Notifies a group of listeners in registration order on the current thread. If the application is pipelined, the
+     * {@link OrderIndependentClusterStateListener}s of the group are notified on the generic thread pool instead. Returns
+     * once all listeners of the group were notified so that the next group observes their effects.
+     */
+    private void notifyClusterStateListeners(Collection<ClusterStateListener> listeners, ClusterChangedEvent event) {
+        if (pipelineApply == false) {
+            for (ClusterStateListener listener : listeners) {
+                notifyClusterStateListener(listener, event);
+            }
+            return;
+        }
+        final List<ClusterStateListener> orderIndependent = new ArrayList<>();
+        for (ClusterStateListener listener : listeners) {
+            if (listener instanceof OrderIndependentClusterStateListener) {
+                orderIndependent.add(listener);
+            }
+        }
+        final CountDownLatch notified = new CountDownLatch(orderIndependent.size());
+        for (ClusterStateListener listener : orderIndependent) {
+            try {
+                threadPool.generic().execute(() -> {
+                    try {
+                        notifyClusterStateListener(listener, event);
+                    } finally {
+                        notified.countDown();
+                    }
+                });
+            } catch (EsRejectedExecutionException e) {
+                notifyClusterStateListener(listener, event);
+                notified.countDown();
+            }
+        }
+        for (ClusterStateListener listener : listeners) {
+            if (listener instanceof OrderIndependentClusterStateListener == false) {
+                notifyClusterStateListener(listener, event);
+            }
+        }
+        try {
+            notified.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("interrupted while waiting for listeners of cluster state version [{}]", event.state().version());
+        }
+    }
+
+    private void notifyClusterStateListener(ClusterStateListener listener, ClusterChangedEvent event) {
+        try {
+            listener.clusterChanged(event);
+        } catch (Exception ex) {
+            logger.warn("failed to notify ClusterStateListener", ex);
+        }
+    }
+
+    /**
+     * Waits for the applier thread to finish applying the last published cluster state, see
+     * {@link #SETTING_CLUSTER_SERVICE_PIPELINE_APPLY}.
+     */
+    private void waitForPendingApplication() {
+        final Future<?> pending = pendingApplication;
+        if (pending == null) {
+            return;
+        }
+        pendingApplication = null;
+        try {
+            pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("interrupted while waiting for the application of the previous cluster state");
+        } catch (ExecutionException e) {
+            logger.warn("failed to apply the previous cluster state", e.getCause());
+        }
     }
 
     class UpdateTask<T> extends SourcePrioritizedRunnable {
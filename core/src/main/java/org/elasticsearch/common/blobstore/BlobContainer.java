@@ -24,7 +24,9 @@ import org.elasticsearch.common.bytes.BytesReference;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  *
@@ -40,6 +42,11 @@ public interface BlobContainer {
      */
     InputStream readBlob(String blobName) throws IOException;
 
+    /**
+     * Creates a new InputStream over {@code length} bytes of the given blob, starting at {@code position}
+     */
+    InputStream readBlob(String blobName, long position, long length) throws IOException;
+
     /**
      * Reads blob content from the input stream and writes it to the blob store
      */
@@ -50,6 +57,14 @@ public interface BlobContainer {
      */
     void writeBlob(String blobName, BytesReference bytes) throws IOException;
 
+    /**
+     * Writes a blob whose content is the concatenation of the given parts. Implementations that support multipart
+     * uploads may write the parts concurrently, using the given executor in addition to the calling thread; the
+     * executor may reject tasks, in which case the calling thread does the work. Parts are not written in any
+     * particular order and every part stream is closed once it was read.
+     */
+    void writeBlob(String blobName, List<? extends BlobPart> parts, Executor executor) throws IOException;
+
     /**
      * Deletes a blob with giving name.
      *
@@ -0,0 +1,41 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.blobstore;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A consecutive range of the content of a blob that is written with
+ * {@link BlobContainer#writeBlob(String, java.util.List, java.util.concurrent.Executor)}
+ */
+public interface BlobPart {
+
+    /**
+     * The number of bytes in this part
+     */
+    long length();
+
+    /**
+     * Opens a new stream over the content of this part. This may be called again after a failed attempt to write the
+     * part, in which case the returned stream starts from the beginning of the part again.
+     */
+    InputStream openStream() throws IOException;
+}
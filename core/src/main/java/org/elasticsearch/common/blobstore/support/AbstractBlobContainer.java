@@ -21,11 +21,18 @@ package org.elasticsearch.common.blobstore.support;
 
 import org.elasticsearch.common.blobstore.BlobContainer;
 import org.elasticsearch.common.blobstore.BlobMetaData;
+import org.elasticsearch.common.blobstore.BlobPart;
 import org.elasticsearch.common.blobstore.BlobPath;
+import org.elasticsearch.index.snapshots.blobstore.SlicedInputStream;
 
+import java.io.EOFException;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  *
@@ -43,6 +50,35 @@ public abstract class AbstractBlobContainer implements BlobContainer {
         return this.path;
     }
 
+    /**
+     * Skips to the requested position of a stream over the whole blob. Blob stores that support ranged reads should
+     * override this to only fetch the requested bytes.
+     */
+    @Override
+    public InputStream readBlob(String blobName, long position, long length) throws IOException {
+        final InputStream stream = readBlob(blobName);
+        boolean success = false;
+        try {
+            long skipped = 0;
+            while (skipped < position) {
+                long n = stream.skip(position - skipped);
+                if (n <= 0) {
+                    if (stream.read() == -1) {
+                        throw new EOFException("blob [" + blobName + "] ends before position [" + position + "]");
+                    }
+                    n = 1;
+                }
+                skipped += n;
+            }
+            success = true;
+            return new LimitedInputStream(stream, length);
+        } finally {
+            if (success == false) {
+                stream.close();
+            }
+        }
+    }
+
     @Override
     public void deleteBlobsByPrefix(final String blobNamePrefix) throws IOException {
         Map<String, BlobMetaData> blobs = listBlobsByPrefix(blobNamePrefix);
@@ -57,4 +93,75 @@ public abstract class AbstractBlobContainer implements BlobContainer {
             deleteBlob(blob);
         }
     }
+
+    /**
+     * Writes the parts one after the other as a single stream. Blob stores that support multipart uploads should
+     * override this to write parts concurrently.
+     */
+    @Override
+    public void writeBlob(String blobName, List<? extends BlobPart> parts, Executor executor) throws IOException {
+        long blobSize = 0;
+        for (BlobPart part : parts) {
+            blobSize += part.length();
+        }
+        try (InputStream stream = new SlicedInputStream(parts.size()) {
+            @Override
+            protected InputStream openSlice(long slice) throws IOException {
+                return parts.get((int) slice).openStream();
+            }
+        }) {
+            writeBlob(blobName, stream, blobSize);
+        }
+    }
+
+    private static final class LimitedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            final int b = in.read();
+            if (b != -1) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            final int read = in.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            final long skipped = in.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
 }
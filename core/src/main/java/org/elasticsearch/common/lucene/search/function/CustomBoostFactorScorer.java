@@ -26,17 +26,23 @@ import java.io.IOException;
 
 abstract class CustomBoostFactorScorer extends Scorer {
 
+    /** the number of documents that are read ahead and scored at once when scoring blocks */
+    static final int BLOCK_SIZE = 128;
+
     final Scorer scorer;
     final float maxBoost;
     final CombineFunction scoreCombiner;
+    final boolean needsScores;
 
     Float minScore;
     NextDoc nextDoc;
 
-    CustomBoostFactorScorer(Weight w, Scorer scorer, float maxBoost, CombineFunction scoreCombiner, Float minScore)
-            throws IOException {
+    CustomBoostFactorScorer(Weight w, Scorer scorer, float maxBoost, CombineFunction scoreCombiner, Float minScore,
+                            boolean needsScores, boolean scoreBlocks) throws IOException {
         super(w);
-        if (minScore == null) {
+        if (scoreBlocks) {
+            nextDoc = new BlockNextDoc();
+        } else if (minScore == null) {
             nextDoc = new AnyNextDoc();
         } else {
             nextDoc = new MinScoreNextDoc();
@@ -45,11 +51,12 @@ abstract class CustomBoostFactorScorer extends Scorer {
         this.maxBoost = maxBoost;
         this.scoreCombiner = scoreCombiner;
         this.minScore = minScore;
+        this.needsScores = needsScores;
     }
 
     @Override
     public int docID() {
-        return scorer.docID();
+        return nextDoc.docID();
     }
 
     @Override
@@ -64,6 +71,14 @@ abstract class CustomBoostFactorScorer extends Scorer {
 
     public abstract float innerScore() throws IOException;
 
+    /**
+     * Computes the scores of the first {@code count} documents of {@code docs}, whose sub query scores are in
+     * {@code subQueryScores}, into {@code scores}. Only called if the scorer was created to score blocks.
+     */
+    void innerScores(int[] docs, float[] subQueryScores, int count, float[] scores) throws IOException {
+        throw new UnsupportedOperationException("scorer doesn't score blocks of documents");
+    }
+
     @Override
     public float score() throws IOException {
         return nextDoc.score();
@@ -71,6 +86,10 @@ abstract class CustomBoostFactorScorer extends Scorer {
 
     @Override
     public int freq() throws IOException {
+        if (nextDoc instanceof BlockNextDoc) {
+            // the wrapped scorer is positioned ahead of this one
+            throw new UnsupportedOperationException("freq is not available when scoring blocks of documents");
+        }
         return scorer.freq();
     }
 
@@ -80,6 +99,8 @@ abstract class CustomBoostFactorScorer extends Scorer {
     }
 
     public interface NextDoc {
+        public int docID();
+
         public int advance(int target) throws IOException;
 
         public int nextDoc() throws IOException;
@@ -90,6 +111,11 @@ abstract class CustomBoostFactorScorer extends Scorer {
     public class MinScoreNextDoc implements NextDoc {
         float currentScore = Float.MAX_VALUE * -1.0f;
 
+        @Override
+        public int docID() {
+            return scorer.docID();
+        }
+
         @Override
         public int nextDoc() throws IOException {
             int doc;
@@ -116,7 +142,8 @@ abstract class CustomBoostFactorScorer extends Scorer {
             }
             currentScore = innerScore();
             if (currentScore < minScore) {
-                return scorer.nextDoc();
+                // the next documents need to be scored and checked against the min score too
+                return nextDoc();
             }
             return doc;
         }
@@ -124,6 +151,11 @@ abstract class CustomBoostFactorScorer extends Scorer {
 
     public class AnyNextDoc implements NextDoc {
 
+        @Override
+        public int docID() {
+            return scorer.docID();
+        }
+
         @Override
         public int nextDoc() throws IOException {
             return scorer.nextDoc();
@@ -139,4 +171,87 @@ abstract class CustomBoostFactorScorer extends Scorer {
             return scorer.advance(target);
         }
     }
+
+    /**
+     * Reads up to {@link #BLOCK_SIZE} documents of the wrapped scorer ahead together with their sub query scores, and
+     * scores all of them at once with {@link #innerScores}. Documents found with {@link #advance} are scored on their own,
+     * so documents that would be skipped aren't read.
+     */
+    public class BlockNextDoc implements NextDoc {
+        final int[] docs = new int[BLOCK_SIZE];
+        final float[] subQueryScores = new float[BLOCK_SIZE];
+        final float[] scores = new float[BLOCK_SIZE];
+        int count;
+        int upto;
+        int doc = -1;
+
+        @Override
+        public int docID() {
+            return doc;
+        }
+
+        @Override
+        public int nextDoc() throws IOException {
+            do {
+                if (++upto >= count && fill(scorer.docID() == NO_MORE_DOCS ? NO_MORE_DOCS : scorer.nextDoc(), BLOCK_SIZE) == false) {
+                    return doc = NO_MORE_DOCS;
+                }
+            } while (minScore != null && scores[upto] < minScore);
+            return doc = docs[upto];
+        }
+
+        @Override
+        public int advance(int target) throws IOException {
+            while (++upto < count) {
+                if (docs[upto] >= target && (minScore == null || scores[upto] >= minScore)) {
+                    return doc = docs[upto];
+                }
+            }
+            int next;
+            if (scorer.docID() == NO_MORE_DOCS) {
+                next = NO_MORE_DOCS;
+            } else if (scorer.docID() >= target) {
+                // the buffered documents up to the target didn't match the min score
+                next = scorer.nextDoc();
+            } else {
+                next = scorer.advance(target);
+            }
+            if (fill(next, 1) == false) {
+                return doc = NO_MORE_DOCS;
+            }
+            if (minScore != null && scores[upto] < minScore) {
+                return nextDoc();
+            }
+            return doc = docs[upto];
+        }
+
+        @Override
+        public float score() throws IOException {
+            return scores[upto];
+        }
+
+        /**
+         * Buffers and scores up to {@code size} documents of the wrapped scorer, starting with {@code first} where it is
+         * positioned. Returns <code>false</code> if there are no documents left.
+         */
+        private boolean fill(int first, int size) throws IOException {
+            count = 0;
+            upto = 0;
+            for (int next = first; next != NO_MORE_DOCS; next = scorer.nextDoc()) {
+                docs[count] = next;
+                // Even if the weight is created with needsScores=false, it might
+                // be costly to call score(), so we explicitly check if scores
+                // are needed
+                subQueryScores[count] = needsScores ? scorer.score() : 0f;
+                if (++count == size) {
+                    break;
+                }
+            }
+            if (count == 0) {
+                return false;
+            }
+            innerScores(docs, subQueryScores, count, scores);
+            return true;
+        }
+    }
 }
@@ -242,16 +242,33 @@ public class FiltersFunctionScoreQuery extends Query {
         private final ScoreMode scoreMode;
         private final LeafScoreFunction[] functions;
         private final Bits[] docSets;
-        private final boolean needsScores;
+        // per function, whether the documents being scored match its filter and the factors of those that do
+        private final boolean[][] matches;
+        private final double[][] factors;
+        // the documents of the current block that match the filter of a function, their sub query scores and factors
+        private int[] functionDocs;
+        private float[] functionSubQueryScores;
+        private double[] functionFactors;
 
         private FiltersFunctionFactorScorer(CustomBoostFactorWeight w, Scorer scorer, ScoreMode scoreMode, FilterFunction[] filterFunctions,
                                             float maxBoost, LeafScoreFunction[] functions, Bits[] docSets, CombineFunction scoreCombiner, Float minScore, boolean needsScores) throws IOException {
-            super(w, scorer, maxBoost, scoreCombiner, minScore);
+            super(w, scorer, maxBoost, scoreCombiner, minScore, needsScores, scoresBlocks(functions));
             this.scoreMode = scoreMode;
             this.filterFunctions = filterFunctions;
             this.functions = functions;
             this.docSets = docSets;
-            this.needsScores = needsScores;
+            final int size = nextDoc instanceof BlockNextDoc ? BLOCK_SIZE : 1;
+            this.matches = new boolean[functions.length][size];
+            this.factors = new double[functions.length][size];
+        }
+
+        private static boolean scoresBlocks(LeafScoreFunction[] functions) {
+            for (LeafScoreFunction function : functions) {
+                if (function.scoresBlocks()) {
+                    return true;
+                }
+            }
+            return false;
         }
 
         @Override
@@ -265,13 +282,69 @@ public class FiltersFunctionScoreQuery extends Query {
             return scoreCombiner.combine(subQueryScore, factor, maxBoost);
         }
 
+        @Override
+        void innerScores(int[] docs, float[] subQueryScores, int count, float[] scores) throws IOException {
+            if (functionDocs == null) {
+                functionDocs = new int[BLOCK_SIZE];
+                functionSubQueryScores = new float[BLOCK_SIZE];
+                functionFactors = new double[BLOCK_SIZE];
+            }
+            for (int i = 0; i < filterFunctions.length; i++) {
+                int functionCount = 0;
+                for (int j = 0; j < count; j++) {
+                    // only the first matching function scores a document in first mode
+                    matches[i][j] = (scoreMode != ScoreMode.FIRST || matchedBefore(i, j) == false) && docSets[i].get(docs[j]);
+                    if (matches[i][j]) {
+                        functionDocs[functionCount] = docs[j];
+                        functionSubQueryScores[functionCount] = subQueryScores[j];
+                        functionCount++;
+                    }
+                }
+                functions[i].score(functionDocs, functionSubQueryScores, functionCount, functionFactors);
+                for (int j = 0, k = 0; j < count; j++) {
+                    if (matches[i][j]) {
+                        factors[i][j] = functionFactors[k++];
+                    }
+                }
+            }
+            for (int j = 0; j < count; j++) {
+                scores[j] = scoreCombiner.combine(subQueryScores[j], combineFactors(j), maxBoost);
+            }
+        }
+
+        private boolean matchedBefore(int function, int doc) {
+            for (int i = 0; i < function; i++) {
+                if (matches[i][doc]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
         protected double computeScore(int docId, float subQueryScore) {
+            boolean matched = false;
+            for (int i = 0; i < filterFunctions.length; i++) {
+                // only the first matching function scores a document in first mode
+                matches[i][0] = (scoreMode != ScoreMode.FIRST || matched == false) && docSets[i].get(docId);
+                if (matches[i][0]) {
+                    factors[i][0] = functions[i].score(docId, subQueryScore);
+                    matched = true;
+                }
+            }
+            return combineFactors(0);
+        }
+
+        /**
+         * Combines the factors of the functions whose filters match the document at the given position of the documents
+         * being scored.
+         */
+        private double combineFactors(int doc) {
             double factor = 1d;
             switch(scoreMode) {
                 case FIRST:
                     for (int i = 0; i < filterFunctions.length; i++) {
-                        if (docSets[i].get(docId)) {
-                            factor = functions[i].score(docId, subQueryScore);
+                        if (matches[i][doc]) {
+                            factor = factors[i][doc];
                             break;
                         }
                     }
@@ -279,8 +352,8 @@ public class FiltersFunctionScoreQuery extends Query {
                 case MAX:
                     double maxFactor = Double.NEGATIVE_INFINITY;
                     for (int i = 0; i < filterFunctions.length; i++) {
-                        if (docSets[i].get(docId)) {
-                            maxFactor = Math.max(functions[i].score(docId, subQueryScore), maxFactor);
+                        if (matches[i][doc]) {
+                            maxFactor = Math.max(factors[i][doc], maxFactor);
                         }
                     }
                     if (maxFactor != Float.NEGATIVE_INFINITY) {
@@ -290,8 +363,8 @@ public class FiltersFunctionScoreQuery extends Query {
                 case MIN:
                     double minFactor = Double.POSITIVE_INFINITY;
                     for (int i = 0; i < filterFunctions.length; i++) {
-                        if (docSets[i].get(docId)) {
-                            minFactor = Math.min(functions[i].score(docId, subQueryScore), minFactor);
+                        if (matches[i][doc]) {
+                            minFactor = Math.min(factors[i][doc], minFactor);
                         }
                     }
                     if (minFactor != Float.POSITIVE_INFINITY) {
@@ -300,8 +373,8 @@ public class FiltersFunctionScoreQuery extends Query {
                     break;
                 case MULTIPLY:
                     for (int i = 0; i < filterFunctions.length; i++) {
-                        if (docSets[i].get(docId)) {
-                            factor *= functions[i].score(docId, subQueryScore);
+                        if (matches[i][doc]) {
+                            factor *= factors[i][doc];
                         }
                     }
                     break;
@@ -309,8 +382,8 @@ public class FiltersFunctionScoreQuery extends Query {
                     double totalFactor = 0.0f;
                     double weightSum = 0;
                     for (int i = 0; i < filterFunctions.length; i++) {
-                        if (docSets[i].get(docId)) {
-                            totalFactor += functions[i].score(docId, subQueryScore);
+                        if (matches[i][doc]) {
+                            totalFactor += factors[i][doc];
                             if (filterFunctions[i].function instanceof WeightFactorFunction) {
                                 weightSum += ((WeightFactorFunction) filterFunctions[i].function).getWeight();
                             } else {
@@ -155,13 +155,12 @@ public class FunctionScoreQuery extends Query {
     static class FunctionFactorScorer extends CustomBoostFactorScorer {
 
         private final LeafScoreFunction function;
-        private final boolean needsScores;
+        private double[] factors;
 
         private FunctionFactorScorer(CustomBoostFactorWeight w, Scorer scorer, LeafScoreFunction function, float maxBoost, CombineFunction scoreCombiner, Float minScore, boolean needsScores)
                 throws IOException {
-            super(w, scorer, maxBoost, scoreCombiner, minScore);
+            super(w, scorer, maxBoost, scoreCombiner, minScore, needsScores, function != null && function.scoresBlocks());
             this.function = function;
-            this.needsScores = needsScores;
         }
 
         @Override
@@ -177,6 +176,17 @@ public class FunctionScoreQuery extends Query {
                         function.score(scorer.docID(), score), maxBoost);
             }
         }
+
+        @Override
+        void innerScores(int[] docs, float[] subQueryScores, int count, float[] scores) throws IOException {
+            if (factors == null) {
+                factors = new double[BLOCK_SIZE];
+            }
+            function.score(docs, subQueryScores, count, factors);
+            for (int i = 0; i < count; i++) {
+                scores[i] = scoreCombiner.combine(subQueryScores[i], factors[i], maxBoost);
+            }
+        }
     }
 
     @Override
@@ -28,6 +28,24 @@ public abstract class LeafScoreFunction {
 
     public abstract double score(int docId, float subQueryScore);
 
+    /**
+     * Returns <code>true</code> if the function scores many documents at once with
+     * {@link #score(int[], float[], int, double[])} more efficiently than one document at a time.
+     */
+    public boolean scoresBlocks() {
+        return false;
+    }
+
+    /**
+     * Scores the first {@code count} documents of {@code docIds}, which are in increasing order and whose sub query scores
+     * are in {@code subQueryScores}, and stores their scores in the first {@code count} slots of {@code scores}.
+     */
+    public void score(int[] docIds, float[] subQueryScores, int count, double[] scores) {
+        for (int i = 0; i < count; i++) {
+            scores[i] = score(docIds[i], subQueryScores[i]);
+        }
+    }
+
     public abstract Explanation explainScore(int docId, Explanation subQueryScore) throws IOException;
 
 }
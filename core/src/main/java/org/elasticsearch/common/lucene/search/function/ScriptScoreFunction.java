@@ -101,6 +101,25 @@ public class ScriptScoreFunction extends ScoreFunction {
                 return result;
             }
 
+            @Override
+            public boolean scoresBlocks() {
+                return leafScript.canRunBlocks();
+            }
+
+            @Override
+            public void score(int[] docIds, float[] subQueryScores, int count, double[] scores) {
+                if (leafScript.canRunBlocks() == false) {
+                    super.score(docIds, subQueryScores, count, scores);
+                    return;
+                }
+                leafScript.runAsDoubles(docIds, subQueryScores, count, scores);
+                for (int i = 0; i < count; i++) {
+                    if (Double.isNaN(scores[i])) {
+                        throw new ScriptException("script_score returned NaN");
+                    }
+                }
+            }
+
             @Override
             public Explanation explainScore(int docId, Explanation subQueryScore) throws IOException {
                 Explanation exp;
@@ -59,6 +59,19 @@ public class WeightFactorFunction extends ScoreFunction {
                 return leafFunction.score(docId, subQueryScore) * getWeight();
             }
 
+            @Override
+            public boolean scoresBlocks() {
+                return leafFunction.scoresBlocks();
+            }
+
+            @Override
+            public void score(int[] docIds, float[] subQueryScores, int count, double[] scores) {
+                leafFunction.score(docIds, subQueryScores, count, scores);
+                for (int i = 0; i < count; i++) {
+                    scores[i] *= getWeight();
+                }
+            }
+
             @Override
             public Explanation explainScore(int docId, Explanation subQueryScore) throws IOException {
                 Explanation functionExplanation = leafFunction.explainScore(docId, subQueryScore);
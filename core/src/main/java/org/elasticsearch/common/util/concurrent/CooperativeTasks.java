@@ -0,0 +1,100 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.util.concurrent;
+
+import org.elasticsearch.ExceptionsHelper;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs a list of tasks on the calling thread and on as many helper threads as the given executor accepts. The
+ * calling thread takes part in the work and only waits for the tasks that helpers already picked up, so all tasks
+ * complete even if the executor has no thread to spare, for instance because the caller itself runs on it. An
+ * executor that limits concurrency should reject tasks rather than queue them; a rejection stops forking further
+ * helpers.
+ */
+public final class CooperativeTasks {
+
+    /**
+     * A unit of work that may fail with an {@link IOException}
+     */
+    @FunctionalInterface
+    public interface Task {
+        void run() throws IOException;
+    }
+
+    private CooperativeTasks() {
+    }
+
+    /**
+     * Runs all tasks and returns once they are done. Once a task failed the tasks that did not start yet are skipped
+     * and the first failure is rethrown with later ones added as suppressed exceptions.
+     */
+    public static void run(List<? extends Task> tasks, Executor executor) throws IOException {
+        final AtomicInteger nextTask = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(tasks.size());
+        final Runnable worker = () -> {
+            int task;
+            while ((task = nextTask.getAndIncrement()) < tasks.size()) {
+                try {
+                    if (failure.get() == null) {
+                        tasks.get(task).run();
+                    }
+                } catch (Throwable t) {
+                    if (failure.compareAndSet(null, t) == false) {
+                        failure.get().addSuppressed(t);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }
+        };
+        for (int i = 1; i < tasks.size(); i++) {
+            try {
+                executor.execute(worker);
+            } catch (EsRejectedExecutionException | RejectedExecutionException e) {
+                break;
+            }
+        }
+        worker.run();
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for tasks to complete", e);
+        }
+        final Throwable t = failure.get();
+        if (t != null) {
+            if (t instanceof IOException) {
+                throw (IOException) t;
+            } else if (t instanceof Error) {
+                throw (Error) t;
+            }
+            throw ExceptionsHelper.convertToRuntime(t);
+        }
+    }
+}
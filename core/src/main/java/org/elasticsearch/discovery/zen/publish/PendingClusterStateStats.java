@@ -22,6 +22,7 @@ package org.elasticsearch.discovery.zen.publish;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Streamable;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentBuilderString;
@@ -29,22 +30,52 @@ import org.elasticsearch.common.xcontent.XContentBuilderString;
 import java.io.IOException;
 
 /**
- * Class encapsulating stats about the PendingClusterStatsQueue
+ * Class encapsulating stats about the PendingClusterStatsQueue and about the cluster states this node published as master
  */
 public class PendingClusterStateStats implements Streamable, ToXContent {
 
     private int total;
     private int pending;
     private int committed;
+    private long published;
+    private long fullStatesSent;
+    private long diffsSent;
+    private long diffTimeInMillis;
+    private long serializationTimeInMillis;
+    private long commitTimeInMillis;
+    private long completionTimeInMillis;
 
     public PendingClusterStateStats() {
 
     }
 
     public PendingClusterStateStats(int total, int pending, int committed) {
+        this(total, pending, committed, 0, 0, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * @param published                 number of cluster states published by this node
+     * @param fullStatesSent            number of full cluster states sent to other nodes
+     * @param diffsSent                 number of cluster state diffs sent to other nodes
+     * @param diffTimeInMillis          total time spent diffing published states against their previous states
+     * @param serializationTimeInMillis total time spent serializing published states and diffs
+     * @param commitTimeInMillis        total time from sending published states until they were committed
+     * @param completionTimeInMillis    total time from sending published states until all nodes processed them or the
+     *                                  publish timed out
+     */
+    public PendingClusterStateStats(int total, int pending, int committed, long published, long fullStatesSent, long diffsSent,
+                                    long diffTimeInMillis, long serializationTimeInMillis, long commitTimeInMillis,
+                                    long completionTimeInMillis) {
         this.total = total;
         this.pending = pending;
         this.committed = committed;
+        this.published = published;
+        this.fullStatesSent = fullStatesSent;
+        this.diffsSent = diffsSent;
+        this.diffTimeInMillis = diffTimeInMillis;
+        this.serializationTimeInMillis = serializationTimeInMillis;
+        this.commitTimeInMillis = commitTimeInMillis;
+        this.completionTimeInMillis = completionTimeInMillis;
     }
 
     public int getCommitted() {
@@ -59,6 +90,34 @@ public class PendingClusterStateStats implements Streamable, ToXContent {
         return total;
     }
 
+    public long getPublished() {
+        return published;
+    }
+
+    public long getFullStatesSent() {
+        return fullStatesSent;
+    }
+
+    public long getDiffsSent() {
+        return diffsSent;
+    }
+
+    public TimeValue getDiffTime() {
+        return new TimeValue(diffTimeInMillis);
+    }
+
+    public TimeValue getSerializationTime() {
+        return new TimeValue(serializationTimeInMillis);
+    }
+
+    public TimeValue getCommitTime() {
+        return new TimeValue(commitTimeInMillis);
+    }
+
+    public TimeValue getCompletionTime() {
+        return new TimeValue(completionTimeInMillis);
+    }
+
     @Override
     public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
         builder.startObject(Fields.QUEUE);
@@ -66,6 +125,15 @@ public class PendingClusterStateStats implements Streamable, ToXContent {
         builder.field(Fields.PENDING, pending);
         builder.field(Fields.COMMITTED, committed);
         builder.endObject();
+        builder.startObject(Fields.PUBLISH);
+        builder.field(Fields.PUBLISHED, published);
+        builder.field(Fields.FULL_STATES_SENT, fullStatesSent);
+        builder.field(Fields.DIFFS_SENT, diffsSent);
+        builder.timeValueField(Fields.DIFF_TIME_IN_MILLIS, Fields.DIFF_TIME, diffTimeInMillis);
+        builder.timeValueField(Fields.SERIALIZATION_TIME_IN_MILLIS, Fields.SERIALIZATION_TIME, serializationTimeInMillis);
+        builder.timeValueField(Fields.COMMIT_TIME_IN_MILLIS, Fields.COMMIT_TIME, commitTimeInMillis);
+        builder.timeValueField(Fields.COMPLETION_TIME_IN_MILLIS, Fields.COMPLETION_TIME, completionTimeInMillis);
+        builder.endObject();
         return builder;
     }
 
@@ -74,6 +142,13 @@ public class PendingClusterStateStats implements Streamable, ToXContent {
         total = in.readVInt();
         pending = in.readVInt();
         committed = in.readVInt();
+        published = in.readVLong();
+        fullStatesSent = in.readVLong();
+        diffsSent = in.readVLong();
+        diffTimeInMillis = in.readVLong();
+        serializationTimeInMillis = in.readVLong();
+        commitTimeInMillis = in.readVLong();
+        completionTimeInMillis = in.readVLong();
     }
 
     @Override
@@ -81,6 +156,13 @@ public class PendingClusterStateStats implements Streamable, ToXContent {
         out.writeVInt(total);
         out.writeVInt(pending);
         out.writeVInt(committed);
+        out.writeVLong(published);
+        out.writeVLong(fullStatesSent);
+        out.writeVLong(diffsSent);
+        out.writeVLong(diffTimeInMillis);
+        out.writeVLong(serializationTimeInMillis);
+        out.writeVLong(commitTimeInMillis);
+        out.writeVLong(completionTimeInMillis);
     }
 
     static final class Fields {
@@ -88,10 +170,23 @@ public class PendingClusterStateStats implements Streamable, ToXContent {
         static final XContentBuilderString TOTAL = new XContentBuilderString("total");
         static final XContentBuilderString PENDING = new XContentBuilderString("pending");
         static final XContentBuilderString COMMITTED = new XContentBuilderString("committed");
+        static final XContentBuilderString PUBLISH = new XContentBuilderString("cluster_state_publish");
+        static final XContentBuilderString PUBLISHED = new XContentBuilderString("published");
+        static final XContentBuilderString FULL_STATES_SENT = new XContentBuilderString("full_states_sent");
+        static final XContentBuilderString DIFFS_SENT = new XContentBuilderString("diffs_sent");
+        static final XContentBuilderString DIFF_TIME = new XContentBuilderString("diff_time");
+        static final XContentBuilderString DIFF_TIME_IN_MILLIS = new XContentBuilderString("diff_time_in_millis");
+        static final XContentBuilderString SERIALIZATION_TIME = new XContentBuilderString("serialization_time");
+        static final XContentBuilderString SERIALIZATION_TIME_IN_MILLIS = new XContentBuilderString("serialization_time_in_millis");
+        static final XContentBuilderString COMMIT_TIME = new XContentBuilderString("commit_time");
+        static final XContentBuilderString COMMIT_TIME_IN_MILLIS = new XContentBuilderString("commit_time_in_millis");
+        static final XContentBuilderString COMPLETION_TIME = new XContentBuilderString("completion_time");
+        static final XContentBuilderString COMPLETION_TIME_IN_MILLIS = new XContentBuilderString("completion_time_in_millis");
     }
 
     @Override
     public String toString() {
-        return "PendingClusterStateStats(total=" + total + ", pending=" + pending + ", committed=" + committed + ")";
+        return "PendingClusterStateStats(total=" + total + ", pending=" + pending + ", committed=" + committed + ", published="
+                + published + ", full_states_sent=" + fullStatesSent + ", diffs_sent=" + diffsSent + ")";
     }
 }
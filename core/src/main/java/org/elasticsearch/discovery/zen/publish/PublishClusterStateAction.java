@@ -31,8 +31,11 @@ import org.elasticsearch.common.compress.CompressorFactory;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.metrics.CounterMetric;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.common.util.concurrent.CooperativeTasks;
 import org.elasticsearch.discovery.AckClusterStatePublishResponseHandler;
 import org.elasticsearch.discovery.BlockingClusterStatePublishResponseHandler;
 import org.elasticsearch.discovery.Discovery;
@@ -45,6 +48,7 @@ import org.elasticsearch.transport.*;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -65,16 +69,27 @@ public class PublishClusterStateAction extends AbstractComponent {
     }
 
     private final TransportService transportService;
+    private final ThreadPool threadPool;
     private final DiscoveryNodesProvider nodesProvider;
     private final NewPendingClusterStateListener newPendingClusterStatelistener;
     private final DiscoverySettings discoverySettings;
     private final ClusterName clusterName;
     private final PendingClusterStatesQueue pendingStatesQueue;
 
-    public PublishClusterStateAction(Settings settings, TransportService transportService, DiscoveryNodesProvider nodesProvider,
-                                     NewPendingClusterStateListener listener, DiscoverySettings discoverySettings, ClusterName clusterName) {
+    private final CounterMetric published = new CounterMetric();
+    private final CounterMetric fullStatesSent = new CounterMetric();
+    private final CounterMetric diffsSent = new CounterMetric();
+    private final CounterMetric diffTimeInNanos = new CounterMetric();
+    private final CounterMetric serializationTimeInNanos = new CounterMetric();
+    private final CounterMetric commitTimeInNanos = new CounterMetric();
+    private final CounterMetric completionTimeInNanos = new CounterMetric();
+
+    public PublishClusterStateAction(Settings settings, TransportService transportService, ThreadPool threadPool,
+                                     DiscoveryNodesProvider nodesProvider, NewPendingClusterStateListener listener,
+                                     DiscoverySettings discoverySettings, ClusterName clusterName) {
         super(settings);
         this.transportService = transportService;
+        this.threadPool = threadPool;
         this.nodesProvider = nodesProvider;
         this.newPendingClusterStatelistener = listener;
         this.discoverySettings = discoverySettings;
@@ -93,6 +108,19 @@ public class PublishClusterStateAction extends AbstractComponent {
         return pendingStatesQueue;
     }
 
+    /**
+     * Returns the stats of the pending states queue together with the stats of the cluster states published by this node
+     */
+    public PendingClusterStateStats stats() {
+        final PendingClusterStateStats queueStats = pendingStatesQueue.stats();
+        return new PendingClusterStateStats(queueStats.getTotal(), queueStats.getPending(), queueStats.getCommitted(),
+                published.count(), fullStatesSent.count(), diffsSent.count(),
+                TimeUnit.NANOSECONDS.toMillis(diffTimeInNanos.count()),
+                TimeUnit.NANOSECONDS.toMillis(serializationTimeInNanos.count()),
+                TimeUnit.NANOSECONDS.toMillis(commitTimeInNanos.count()),
+                TimeUnit.NANOSECONDS.toMillis(completionTimeInNanos.count()));
+    }
+
     /**
      * publishes a cluster change event to other nodes. if at least minMasterNodes acknowledge the change it is committed and will
      * be processed by the master and the other nodes.
@@ -118,8 +146,10 @@ public class PublishClusterStateAction extends AbstractComponent {
                 }
             }
             sendFullVersion = !discoverySettings.getPublishDiff() || clusterChangedEvent.previousState() == null;
-            serializedStates = new HashMap<>();
-            serializedDiffs = new HashMap<>();
+            // serialized states are added concurrently when a node asks for the full state
+            serializedStates = ConcurrentCollections.newConcurrentMap();
+            serializedDiffs = ConcurrentCollections.newConcurrentMap();
+            published.inc();
 
             // we build these early as a best effort not to commit in the case of error.
             // sadly this is not water tight as it may that a failed diff based publishing to a node
@@ -160,8 +190,7 @@ public class PublishClusterStateAction extends AbstractComponent {
         final long publishingStartInNanos = System.nanoTime();
 
         for (final DiscoveryNode node : nodesToPublishTo) {
-            // try and serialize the cluster state once (or per version), so we don't serialize it
-            // per node when we send it over the wire, compress it while we are at it...
+            // the cluster state was serialized once per version, the same bytes are sent to all nodes of that version
             // we don't send full version if node didn't exist in the previous version of cluster state
             if (sendFullVersion || !previousState.nodes().nodeExists(node.id())) {
                 sendFullClusterState(clusterState, serializedStates, node, publishTimeout, sendingController);
@@ -170,7 +199,11 @@ public class PublishClusterStateAction extends AbstractComponent {
             }
         }
 
-        sendingController.waitForCommit(discoverySettings.getCommitTimeout());
+        try {
+            sendingController.waitForCommit(discoverySettings.getCommitTimeout());
+        } finally {
+            commitTimeInNanos.inc(System.nanoTime() - publishingStartInNanos);
+        }
 
         try {
             long timeLeftInNanos = Math.max(0, publishTimeout.nanos() - (System.nanoTime() - publishingStartInNanos));
@@ -186,32 +219,51 @@ public class PublishClusterStateAction extends AbstractComponent {
         } catch (InterruptedException e) {
             // ignore & restore interrupt
             Thread.currentThread().interrupt();
+        } finally {
+            completionTimeInNanos.inc(System.nanoTime() - publishingStartInNanos);
         }
     }
 
+    /**
+     * Serializes the full state for the versions of the nodes that are new or need a full state and the diff for the
+     * versions of the others. The diff and the serialized states are computed concurrently on the generic thread pool,
+     * with the publishing thread taking part.
+     */
     private void buildDiffAndSerializeStates(ClusterState clusterState, ClusterState previousState, Set<DiscoveryNode> nodesToPublishTo,
                                              boolean sendFullVersion, Map<Version, BytesReference> serializedStates, Map<Version, BytesReference> serializedDiffs) {
-        Diff<ClusterState> diff = null;
+        final Set<Version> fullStateVersions = new HashSet<>();
+        final Set<Version> diffVersions = new HashSet<>();
         for (final DiscoveryNode node : nodesToPublishTo) {
-            try {
-                if (sendFullVersion || !previousState.nodes().nodeExists(node.id())) {
-                    // will send a full reference
-                    if (serializedStates.containsKey(node.version()) == false) {
-                        serializedStates.put(node.version(), serializeFullClusterState(clusterState, node.version()));
-                    }
-                } else {
-                    // will send a diff
-                    if (diff == null) {
-                        diff = clusterState.diff(previousState);
-                    }
-                    if (serializedDiffs.containsKey(node.version()) == false) {
-                        serializedDiffs.put(node.version(), serializeDiffClusterState(diff, node.version()));
-                    }
-                }
-            } catch (IOException e) {
-                throw new ElasticsearchException("failed to serialize cluster_state for publishing to node {}", e, node);
+            if (sendFullVersion || !previousState.nodes().nodeExists(node.id())) {
+                fullStateVersions.add(node.version());
+            } else {
+                diffVersions.add(node.version());
             }
         }
+        final Executor executor = threadPool.generic();
+        final Diff<ClusterState> diff;
+        if (diffVersions.isEmpty()) {
+            diff = null;
+        } else {
+            final long diffStartInNanos = System.nanoTime();
+            diff = clusterState.diff(previousState, executor);
+            diffTimeInNanos.inc(System.nanoTime() - diffStartInNanos);
+        }
+        final List<CooperativeTasks.Task> tasks = new ArrayList<>(fullStateVersions.size() + diffVersions.size());
+        for (final Version version : fullStateVersions) {
+            tasks.add(() -> serializedStates.put(version, serializeFullClusterState(clusterState, version)));
+        }
+        for (final Version version : diffVersions) {
+            tasks.add(() -> serializedDiffs.put(version, serializeDiffClusterState(diff, version)));
+        }
+        final long serializationStartInNanos = System.nanoTime();
+        try {
+            CooperativeTasks.run(tasks, executor);
+        } catch (IOException e) {
+            throw new ElasticsearchException("failed to serialize cluster_state for publishing", e);
+        } finally {
+            serializationTimeInNanos.inc(System.nanoTime() - serializationStartInNanos);
+        }
     }
 
     private void sendFullClusterState(ClusterState clusterState, Map<Version, BytesReference> serializedStates,
@@ -219,7 +271,9 @@ public class PublishClusterStateAction extends AbstractComponent {
         BytesReference bytes = serializedStates.get(node.version());
         if (bytes == null) {
             try {
+                final long serializationStartInNanos = System.nanoTime();
                 bytes = serializeFullClusterState(clusterState, node.version());
+                serializationTimeInNanos.inc(System.nanoTime() - serializationStartInNanos);
                 serializedStates.put(node.version(), bytes);
             } catch (Throwable e) {
                 logger.warn("failed to serialize cluster_state before publishing it to node {}", e, node);
@@ -227,6 +281,7 @@ public class PublishClusterStateAction extends AbstractComponent {
                 return;
             }
         }
+        fullStatesSent.inc();
         sendClusterStateToNode(clusterState, bytes, node, publishTimeout, sendingController, false, serializedStates);
     }
 
@@ -235,6 +290,7 @@ public class PublishClusterStateAction extends AbstractComponent {
                                       DiscoveryNode node, TimeValue publishTimeout, SendingController sendingController) {
         BytesReference bytes = serializedDiffs.get(node.version());
         assert bytes != null : "failed to find serialized diff for node " + node + " of version [" + node.version() + "]";
+        diffsSent.inc();
         sendClusterStateToNode(clusterState, bytes, node, publishTimeout, sendingController, true, serializedStates);
     }
 
@@ -56,11 +56,17 @@ public class GatewayAllocator extends AbstractComponent {
     private final ConcurrentMap<ShardId, AsyncShardFetch<TransportNodesListGatewayStartedShards.NodeGatewayStartedShards>> asyncFetchStarted = ConcurrentCollections.newConcurrentMap();
     private final ConcurrentMap<ShardId, AsyncShardFetch<TransportNodesListShardStoreMetaData.NodeStoreFilesMetaData>> asyncFetchStore = ConcurrentCollections.newConcurrentMap();
 
+    // the fetches started while allocating are sent in a single message per node once the allocation round is done
+    private final ShardFetchBatch<TransportNodesListGatewayStartedShards.NodesGatewayStartedShards, TransportNodesListGatewayStartedShards.NodeGatewayStartedShards> startedBatch;
+    private final ShardFetchBatch<TransportNodesListShardStoreMetaData.NodesStoreFilesMetaData, TransportNodesListShardStoreMetaData.NodeStoreFilesMetaData> storeBatch;
+
     @Inject
     public GatewayAllocator(Settings settings, final TransportNodesListGatewayStartedShards startedAction, final TransportNodesListShardStoreMetaData storeAction) {
         super(settings);
-        this.primaryShardAllocator = new InternalPrimaryShardAllocator(settings, startedAction);
-        this.replicaShardAllocator = new InternalReplicaShardAllocator(settings, storeAction);
+        this.startedBatch = new ShardFetchBatch<>(startedAction);
+        this.storeBatch = new ShardFetchBatch<>(storeAction);
+        this.primaryShardAllocator = new InternalPrimaryShardAllocator(settings, startedBatch);
+        this.replicaShardAllocator = new InternalReplicaShardAllocator(settings, storeBatch);
     }
 
     public void setReallocation(final ClusterService clusterService, final RoutingService routingService) {
@@ -118,9 +124,17 @@ public class GatewayAllocator extends AbstractComponent {
         RoutingNodes.UnassignedShards unassigned = allocation.routingNodes().unassigned();
         unassigned.sort(PriorityComparator.getAllocationComparator(allocation)); // sort for priority ordering
 
-        changed |= primaryShardAllocator.allocateUnassigned(allocation);
-        changed |= replicaShardAllocator.processExistingRecoveries(allocation);
-        changed |= replicaShardAllocator.allocateUnassigned(allocation);
+        try {
+            changed |= primaryShardAllocator.allocateUnassigned(allocation);
+            changed |= replicaShardAllocator.processExistingRecoveries(allocation);
+            changed |= replicaShardAllocator.allocateUnassigned(allocation);
+        } finally {
+            if (logger.isTraceEnabled()) {
+                logger.trace("fetching shard started state of [{}] shards and shard stores of [{}] shards", startedBatch.size(), storeBatch.size());
+            }
+            startedBatch.flush();
+            storeBatch.flush();
+        }
         return changed;
     }
 
@@ -139,9 +153,9 @@ public class GatewayAllocator extends AbstractComponent {
 
     class InternalPrimaryShardAllocator extends PrimaryShardAllocator {
 
-        private final TransportNodesListGatewayStartedShards startedAction;
+        private final ShardFetchBatch<TransportNodesListGatewayStartedShards.NodesGatewayStartedShards, TransportNodesListGatewayStartedShards.NodeGatewayStartedShards> startedAction;
 
-        public InternalPrimaryShardAllocator(Settings settings, TransportNodesListGatewayStartedShards startedAction) {
+        public InternalPrimaryShardAllocator(Settings settings, ShardFetchBatch<TransportNodesListGatewayStartedShards.NodesGatewayStartedShards, TransportNodesListGatewayStartedShards.NodeGatewayStartedShards> startedAction) {
             super(settings);
             this.startedAction = startedAction;
         }
@@ -165,9 +179,9 @@ public class GatewayAllocator extends AbstractComponent {
 
     class InternalReplicaShardAllocator extends ReplicaShardAllocator {
 
-        private final TransportNodesListShardStoreMetaData storeAction;
+        private final ShardFetchBatch<TransportNodesListShardStoreMetaData.NodesStoreFilesMetaData, TransportNodesListShardStoreMetaData.NodeStoreFilesMetaData> storeAction;
 
-        public InternalReplicaShardAllocator(Settings settings, TransportNodesListShardStoreMetaData storeAction) {
+        public InternalReplicaShardAllocator(Settings settings, ShardFetchBatch<TransportNodesListShardStoreMetaData.NodesStoreFilesMetaData, TransportNodesListShardStoreMetaData.NodeStoreFilesMetaData> storeAction) {
             super(settings);
             this.storeAction = storeAction;
         }
@@ -0,0 +1,127 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.gateway;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.support.nodes.BaseNodeResponse;
+import org.elasticsearch.action.support.nodes.BaseNodesResponse;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.index.shard.ShardId;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the fetches that {@link AsyncShardFetch} instances start while unassigned shards are allocated and sends them
+ * together once the allocation round is done, see {@link #flush()}. The action sends a single message per node for all
+ * the shards of the batch, so a full cluster restart does not need a round trip per shard and node.
+ */
+public class ShardFetchBatch<NodesResponse extends BaseNodesResponse<NodeResponse>, NodeResponse extends BaseNodeResponse>
+        implements AsyncShardFetch.List<NodesResponse, NodeResponse> {
+
+    /**
+     * An action that lists the relevant shard data of many shards at once.
+     */
+    public interface BatchedList<NodesResponse extends BaseNodesResponse<NodeResponse>, NodeResponse extends BaseNodeResponse>
+            extends AsyncShardFetch.List<NodesResponse, NodeResponse> {
+
+        /**
+         * Lists the data of the given shards, notifying the listener at the same position once the data of a shard was
+         * fetched from all its nodes.
+         */
+        void list(List<ShardRequest> shards, List<ActionListener<NodesResponse>> listeners);
+    }
+
+    /**
+     * The data of a single shard to fetch as part of a batch
+     */
+    public static class ShardRequest {
+
+        private final ShardId shardId;
+        private final IndexMetaData indexMetaData;
+        private final String[] nodesIds;
+
+        public ShardRequest(ShardId shardId, IndexMetaData indexMetaData, String[] nodesIds) {
+            this.shardId = shardId;
+            this.indexMetaData = indexMetaData;
+            this.nodesIds = nodesIds;
+        }
+
+        public ShardId shardId() {
+            return shardId;
+        }
+
+        public IndexMetaData indexMetaData() {
+            return indexMetaData;
+        }
+
+        public String[] nodesIds() {
+            return nodesIds;
+        }
+    }
+
+    private final BatchedList<NodesResponse, NodeResponse> action;
+
+    private List<ShardRequest> shards = new ArrayList<>();
+
+    private List<ActionListener<NodesResponse>> listeners = new ArrayList<>();
+
+    public ShardFetchBatch(BatchedList<NodesResponse, NodeResponse> action) {
+        this.action = action;
+    }
+
+    @Override
+    public synchronized void list(ShardId shardId, IndexMetaData indexMetaData, String[] nodesIds, ActionListener<NodesResponse> listener) {
+        shards.add(new ShardRequest(shardId, indexMetaData, nodesIds));
+        listeners.add(listener);
+    }
+
+    /**
+     * Returns the number of shards that will be fetched on the next {@link #flush()}
+     */
+    public synchronized int size() {
+        return shards.size();
+    }
+
+    /**
+     * Sends the fetches that were collected since the last flush
+     */
+    public void flush() {
+        final List<ShardRequest> shards;
+        final List<ActionListener<NodesResponse>> listeners;
+        synchronized (this) {
+            if (this.shards.isEmpty()) {
+                return;
+            }
+            shards = this.shards;
+            listeners = this.listeners;
+            this.shards = new ArrayList<>();
+            this.listeners = new ArrayList<>();
+        }
+        try {
+            action.list(shards, listeners);
+        } catch (Throwable t) {
+            // the fetches would otherwise wait for a response forever
+            for (ActionListener<NodesResponse> listener : listeners) {
+                listener.onFailure(t);
+            }
+        }
+    }
+}
@@ -60,7 +60,7 @@ import java.util.concurrent.atomic.AtomicReferenceArray;
  * shards after node or cluster restarts.
  */
 public class TransportNodesListGatewayStartedShards extends TransportNodesAction<TransportNodesListGatewayStartedShards.Request, TransportNodesListGatewayStartedShards.NodesGatewayStartedShards, TransportNodesListGatewayStartedShards.NodeRequest, TransportNodesListGatewayStartedShards.NodeGatewayStartedShards>
-        implements AsyncShardFetch.List<TransportNodesListGatewayStartedShards.NodesGatewayStartedShards, TransportNodesListGatewayStartedShards.NodeGatewayStartedShards> {
+        implements ShardFetchBatch.BatchedList<TransportNodesListGatewayStartedShards.NodesGatewayStartedShards, TransportNodesListGatewayStartedShards.NodeGatewayStartedShards> {
 
     public static final String ACTION_NAME = "internal:gateway/local/started_shards";
     private final NodeEnvironment nodeEnv;
@@ -72,6 +72,7 @@ public class TransportNodesListGatewayStartedShards extends TransportNodesAction
         super(settings, ACTION_NAME, clusterName, threadPool, clusterService, transportService, actionFilters, indexNameExpressionResolver,
                 Request::new, NodeRequest::new, ThreadPool.Names.FETCH_SHARD_STARTED);
         this.nodeEnv = env;
+        registerBatchRequestHandler(NodeRequest::new, ThreadPool.Names.FETCH_SHARD_STARTED);
     }
 
     @Override
@@ -79,6 +80,15 @@ public class TransportNodesListGatewayStartedShards extends TransportNodesAction
         execute(new Request(shardId, indexMetaData.getIndexUUID(), nodesIds), listener);
     }
 
+    @Override
+    public void list(List<ShardFetchBatch.ShardRequest> shards, List<ActionListener<NodesGatewayStartedShards>> listeners) {
+        List<Request> requests = new ArrayList<>(shards.size());
+        for (ShardFetchBatch.ShardRequest shard : shards) {
+            requests.add(new Request(shard.shardId(), shard.indexMetaData().getIndexUUID(), shard.nodesIds()));
+        }
+        executeBatch(requests, listeners);
+    }
+
     @Override
     protected String[] resolveNodes(Request request, ClusterState clusterState) {
         // default implementation may filter out non existent nodes. it's important to keep exactly the ids
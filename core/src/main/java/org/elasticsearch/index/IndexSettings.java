@@ -18,6 +18,10 @@
  */
 package org.elasticsearch.index;
 
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.SortedNumericSelector;
+import org.apache.lucene.search.SortedNumericSortField;
 import org.elasticsearch.Version;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.common.ParseFieldMatcher;
@@ -48,6 +52,8 @@ public final class IndexSettings {
     public static final String QUERY_STRING_ANALYZE_WILDCARD = "indices.query.query_string.analyze_wildcard";
     public static final String QUERY_STRING_ALLOW_LEADING_WILDCARD = "indices.query.query_string.allowLeadingWildcard";
     public static final String ALLOW_UNMAPPED = "index.query.parse.allow_unmapped_fields";
+    public static final String INDEX_SORT_FIELD = "index.sort.field";
+    public static final String INDEX_SORT_ORDER = "index.sort.order";
     private final String uuid;
     private final List<Consumer<Settings>> updateListeners;
     private final Index index;
@@ -67,6 +73,7 @@ public final class IndexSettings {
     private final boolean queryStringAllowLeadingWildcard;
     private final boolean defaultAllowUnmappedFields;
     private final Predicate<String> indexNameMatcher;
+    private final Sort indexSort;
 
     /**
      * Returns the default search field for this index.
@@ -103,6 +110,14 @@ public final class IndexSettings {
         return defaultAllowUnmappedFields;
     }
 
+    /**
+     * Returns the order that the documents of merged segments are sorted in, or <code>null</code> if segments are not
+     * sorted. The sort is set at index creation time and can't be changed afterwards.
+     */
+    public Sort getIndexSort() {
+        return indexSort;
+    }
+
     /**
      * Creates a new {@link IndexSettings} instance. The given node settings will be merged with the settings in the metadata
      * while index level settings will overwrite node settings.
@@ -144,10 +159,37 @@ public final class IndexSettings {
         this.parseFieldMatcher = new ParseFieldMatcher(settings);
         this.defaultAllowUnmappedFields = settings.getAsBoolean(ALLOW_UNMAPPED, true);
         this.indexNameMatcher = indexNameMatcher;
+        this.indexSort = buildIndexSort(settings);
         assert indexNameMatcher.test(indexMetaData.getIndex());
     }
 
 
+    /**
+     * Builds the sort of the documents of merged segments from the {@link #INDEX_SORT_FIELD} and {@link #INDEX_SORT_ORDER}
+     * settings. The field must be a numeric or date field, the documents are sorted like a search sort on this field
+     * with the default options would sort them: on the min value of the field in ascending order, on the max value in
+     * descending order, with missing values last.
+     */
+    static Sort buildIndexSort(Settings settings) {
+        final String field = settings.get(INDEX_SORT_FIELD);
+        if (field == null) {
+            return null;
+        }
+        final String order = settings.get(INDEX_SORT_ORDER, "asc");
+        final boolean reverse;
+        if ("asc".equals(order)) {
+            reverse = false;
+        } else if ("desc".equals(order)) {
+            reverse = true;
+        } else {
+            throw new IllegalArgumentException("illegal value for [" + INDEX_SORT_ORDER + "], must be [asc] or [desc] but was [" + order + "]");
+        }
+        SortedNumericSortField sortField = new SortedNumericSortField(field, SortField.Type.LONG, reverse,
+                reverse ? SortedNumericSelector.Type.MAX : SortedNumericSelector.Type.MIN);
+        sortField.setMissingValue(reverse ? Long.MIN_VALUE : Long.MAX_VALUE);
+        return new Sort(sortField);
+    }
+
     /**
      * Creates a new {@link IndexSettings} instance adding the given listeners to the settings
      */
@@ -40,6 +40,8 @@ public class CodecService {
 
     public final static String DEFAULT_CODEC = "default";
     public final static String BEST_COMPRESSION_CODEC = "best_compression";
+    /** stores the _source of blocks of documents column by column, see {@link ColumnarStoredFieldsFormat} */
+    public final static String COLUMNAR_SOURCE_CODEC = "columnar_source";
     /** the raw unfiltered lucene default. useful for testing */
     public final static String LUCENE_DEFAULT_CODEC = "lucene_default";
 
@@ -48,11 +50,14 @@ public class CodecService {
         if (mapperService == null) {
             codecs.put(DEFAULT_CODEC, new Lucene54Codec());
             codecs.put(BEST_COMPRESSION_CODEC, new Lucene54Codec(Mode.BEST_COMPRESSION));
+            codecs.put(COLUMNAR_SOURCE_CODEC, new ColumnarSourceCodec());
         } else {
             codecs.put(DEFAULT_CODEC,
                     new PerFieldMappingPostingFormatCodec(Mode.BEST_SPEED, mapperService, logger));
             codecs.put(BEST_COMPRESSION_CODEC,
                     new PerFieldMappingPostingFormatCodec(Mode.BEST_COMPRESSION, mapperService, logger));
+            codecs.put(COLUMNAR_SOURCE_CODEC,
+                    new ColumnarSourceCodec(new PerFieldMappingPostingFormatCodec(Mode.BEST_SPEED, mapperService, logger)));
         }
         codecs.put(LUCENE_DEFAULT_CODEC, Codec.getDefault());
         for (String codec : Codec.availableCodecs()) {
@@ -0,0 +1,431 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IntsRef;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column oriented encoding of a block of JSON <tt>_source</tt> documents. Every document is split into its
+ * <em>shape</em>, the sequence of structural tokens and field names, and its leaf values. Shapes are deduplicated
+ * across the block, and leaf values are grouped into one column per field path and value kind: strings are
+ * dictionary encoded and integers are delta encoded against the previous value of the same column.
+ * <p>
+ * A document is only accepted by the {@link Encoder} if regenerating it from its shape and values yields exactly
+ * the original bytes, so decoding is always lossless. Documents that do not round-trip (pretty printed, escaped or
+ * non JSON sources) are rejected and stored as is by the caller.
+ */
+final class ColumnarSource {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private static final int START_OBJECT = 0;
+    private static final int END_OBJECT = 1;
+    private static final int START_ARRAY = 2;
+    private static final int END_ARRAY = 3;
+    private static final int FIELD_NAME = 4;
+    private static final int STRING = 5;
+    private static final int LONG = 6;
+    private static final int NUMBER = 7; // any other number, kept as its original text
+    private static final int TRUE = 8;
+    private static final int FALSE = 9;
+    private static final int NULL = 10;
+
+    private static final int OP_BITS = 4;
+    private static final int OP_MASK = (1 << OP_BITS) - 1;
+
+    private ColumnarSource() {
+    }
+
+    /** the values of a single field path and kind, in document order */
+    private static final class Column {
+        final int kind;
+        final Map<String, Integer> dictionary = new HashMap<>();
+        final List<String> terms = new ArrayList<>();
+        int[] ords = new int[8];
+        long[] longs = new long[8];
+        int size;
+
+        Column(int kind) {
+            this.kind = kind;
+        }
+
+        void add(Object value) {
+            if (kind == LONG) {
+                longs = ArrayUtil.grow(longs, size + 1);
+                longs[size++] = (Long) value;
+            } else {
+                Integer ord = dictionary.get(value);
+                if (ord == null) {
+                    ord = terms.size();
+                    dictionary.put((String) value, ord);
+                    terms.add((String) value);
+                }
+                ords = ArrayUtil.grow(ords, size + 1);
+                ords[size++] = ord;
+            }
+        }
+
+        void writeTo(DataOutput out) throws IOException {
+            out.writeByte((byte) kind);
+            out.writeVInt(size);
+            if (kind == LONG) {
+                long previous = 0;
+                for (int i = 0; i < size; i++) {
+                    writeZLong(out, longs[i] - previous);
+                    previous = longs[i];
+                }
+            } else {
+                out.writeVInt(terms.size());
+                for (String term : terms) {
+                    out.writeString(term);
+                }
+                // columns without repeated values (e.g. messages) don't need ordinals
+                if (terms.size() < size) {
+                    for (int i = 0; i < size; i++) {
+                        out.writeVInt(ords[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Accumulates the sources of a block of documents.
+     */
+    static final class Encoder {
+        private final Map<String, Integer> names = new HashMap<>();
+        private final List<String> nameList = new ArrayList<>();
+        private final Map<String, Integer> columnsByKey = new HashMap<>();
+        private final List<Column> columns = new ArrayList<>();
+        private final Map<IntsRef, Integer> shapes = new HashMap<>();
+        private final List<IntsRef> shapeList = new ArrayList<>();
+        private int[] docShapes = new int[8];
+        private int numDocs;
+
+        // scratch state for the document being added
+        private int[] ops = new int[16];
+        private Object[] args = new Object[16];
+        private final ByteArrayOutputStream regenerated = new ByteArrayOutputStream();
+
+        /** number of documents accepted so far, the ordinal of the next accepted document */
+        int numDocs() {
+            return numDocs;
+        }
+
+        /**
+         * Adds the given source to the block and returns <code>true</code>, or returns <code>false</code> and leaves
+         * the block untouched if the source cannot be restored byte for byte from its columnar form.
+         */
+        boolean add(BytesRef source) {
+            if (source.length == 0 || source.bytes[source.offset] != '{') {
+                return false;
+            }
+            final int numTokens;
+            try {
+                numTokens = tokenize(source);
+                regenerated.reset();
+                try (JsonGenerator generator = JSON.createGenerator(regenerated)) {
+                    for (int i = 0; i < numTokens; i++) {
+                        writeToken(generator, ops[i], args[i]);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // not valid JSON or not restorable, the caller stores it as is
+                return false;
+            }
+            if (sameBytes(regenerated.toByteArray(), source) == false) {
+                return false;
+            }
+            commit(numTokens);
+            return true;
+        }
+
+        private int tokenize(BytesRef source) throws IOException {
+            int numTokens = 0;
+            try (JsonParser parser = JSON.createParser(source.bytes, source.offset, source.length)) {
+                for (JsonToken token = parser.nextToken(); token != null; token = parser.nextToken()) {
+                    final int op;
+                    Object arg = null;
+                    switch (token) {
+                        case START_OBJECT: op = START_OBJECT; break;
+                        case END_OBJECT: op = END_OBJECT; break;
+                        case START_ARRAY: op = START_ARRAY; break;
+                        case END_ARRAY: op = END_ARRAY; break;
+                        case FIELD_NAME: op = FIELD_NAME; arg = parser.getCurrentName(); break;
+                        case VALUE_STRING: op = STRING; arg = parser.getText(); break;
+                        case VALUE_NUMBER_INT:
+                            if (parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER) {
+                                op = NUMBER;
+                                arg = parser.getText();
+                            } else {
+                                op = LONG;
+                                arg = parser.getLongValue();
+                            }
+                            break;
+                        case VALUE_NUMBER_FLOAT: op = NUMBER; arg = parser.getText(); break;
+                        case VALUE_TRUE: op = TRUE; break;
+                        case VALUE_FALSE: op = FALSE; break;
+                        case VALUE_NULL: op = NULL; break;
+                        default:
+                            throw new IllegalArgumentException("unsupported token [" + token + "]");
+                    }
+                    ops = ArrayUtil.grow(ops, numTokens + 1);
+                    if (args.length <= numTokens) {
+                        args = Arrays.copyOf(args, ArrayUtil.oversize(numTokens + 1, 8));
+                    }
+                    ops[numTokens] = op;
+                    args[numTokens] = arg;
+                    numTokens++;
+                }
+            }
+            return numTokens;
+        }
+
+        private void commit(int numTokens) {
+            final int[] shape = new int[numTokens];
+            // the path of every open container, and the field name pending in the innermost object
+            final List<String> paths = new ArrayList<>();
+            final List<Boolean> inObject = new ArrayList<>();
+            String fieldName = null;
+            for (int i = 0; i < numTokens; i++) {
+                final int op = ops[i];
+                switch (op) {
+                    case FIELD_NAME:
+                        fieldName = (String) args[i];
+                        shape[i] = (nameOrd(fieldName) << OP_BITS) | op;
+                        break;
+                    case START_OBJECT:
+                    case START_ARRAY:
+                        paths.add(valuePath(paths, inObject, fieldName));
+                        inObject.add(op == START_OBJECT);
+                        shape[i] = op;
+                        break;
+                    case END_OBJECT:
+                    case END_ARRAY:
+                        paths.remove(paths.size() - 1);
+                        inObject.remove(inObject.size() - 1);
+                        shape[i] = op;
+                        break;
+                    case STRING:
+                    case LONG:
+                    case NUMBER:
+                        final String key = op + "|" + valuePath(paths, inObject, fieldName);
+                        Integer columnOrd = columnsByKey.get(key);
+                        if (columnOrd == null) {
+                            columnOrd = columns.size();
+                            columnsByKey.put(key, columnOrd);
+                            columns.add(new Column(op));
+                        }
+                        columns.get(columnOrd).add(args[i]);
+                        shape[i] = (columnOrd << OP_BITS) | op;
+                        break;
+                    default:
+                        shape[i] = op;
+                }
+            }
+            final IntsRef shapeRef = new IntsRef(shape, 0, shape.length);
+            Integer shapeOrd = shapes.get(shapeRef);
+            if (shapeOrd == null) {
+                shapeOrd = shapeList.size();
+                shapes.put(shapeRef, shapeOrd);
+                shapeList.add(shapeRef);
+            }
+            docShapes = ArrayUtil.grow(docShapes, numDocs + 1);
+            docShapes[numDocs++] = shapeOrd;
+        }
+
+        private int nameOrd(String name) {
+            Integer ord = names.get(name);
+            if (ord == null) {
+                ord = nameList.size();
+                names.put(name, ord);
+                nameList.add(name);
+            }
+            return ord;
+        }
+
+        private static String valuePath(List<String> paths, List<Boolean> inObject, String fieldName) {
+            if (paths.isEmpty()) {
+                return "";
+            }
+            final String parent = paths.get(paths.size() - 1);
+            // array elements share the path of the array
+            return inObject.get(inObject.size() - 1) ? parent + "." + fieldName : parent;
+        }
+
+        void writeTo(DataOutput out) throws IOException {
+            out.writeVInt(nameList.size());
+            for (String name : nameList) {
+                out.writeString(name);
+            }
+            out.writeVInt(columns.size());
+            for (Column column : columns) {
+                column.writeTo(out);
+            }
+            out.writeVInt(shapeList.size());
+            for (IntsRef shape : shapeList) {
+                out.writeVInt(shape.length);
+                for (int i = 0; i < shape.length; i++) {
+                    out.writeVInt(shape.ints[shape.offset + i]);
+                }
+            }
+            out.writeVInt(numDocs);
+            for (int i = 0; i < numDocs; i++) {
+                out.writeVInt(docShapes[i]);
+            }
+        }
+
+        private static boolean sameBytes(byte[] bytes, BytesRef ref) {
+            if (bytes.length != ref.length) {
+                return false;
+            }
+            for (int i = 0; i < bytes.length; i++) {
+                if (bytes[i] != ref.bytes[ref.offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Restores all sources of a block written by {@link Encoder#writeTo(DataOutput)}, in the order they were added.
+     */
+    static byte[][] decode(DataInput in) throws IOException {
+        final String[] names = new String[in.readVInt()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = in.readString();
+        }
+        final int numColumns = in.readVInt();
+        final Object[][] columns = new Object[numColumns][];
+        for (int c = 0; c < numColumns; c++) {
+            final int kind = in.readByte();
+            final Object[] values = new Object[in.readVInt()];
+            if (kind == LONG) {
+                long previous = 0;
+                for (int i = 0; i < values.length; i++) {
+                    previous += readZLong(in);
+                    values[i] = previous;
+                }
+            } else {
+                final String[] terms = new String[in.readVInt()];
+                for (int i = 0; i < terms.length; i++) {
+                    terms[i] = in.readString();
+                }
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = terms.length < values.length ? terms[in.readVInt()] : terms[i];
+                }
+            }
+            columns[c] = values;
+        }
+        final int[][] shapes = new int[in.readVInt()][];
+        for (int s = 0; s < shapes.length; s++) {
+            final int[] shape = new int[in.readVInt()];
+            for (int i = 0; i < shape.length; i++) {
+                shape[i] = in.readVInt();
+            }
+            shapes[s] = shape;
+        }
+
+        final byte[][] sources = new byte[in.readVInt()][];
+        final int[] cursors = new int[numColumns];
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int doc = 0; doc < sources.length; doc++) {
+            final int[] shape = shapes[in.readVInt()];
+            out.reset();
+            try (JsonGenerator generator = JSON.createGenerator(out)) {
+                for (int token : shape) {
+                    final int op = token & OP_MASK;
+                    final int ord = token >>> OP_BITS;
+                    final Object arg;
+                    switch (op) {
+                        case FIELD_NAME:
+                            arg = names[ord];
+                            break;
+                        case STRING:
+                        case LONG:
+                        case NUMBER:
+                            arg = columns[ord][cursors[ord]++];
+                            break;
+                        default:
+                            arg = null;
+                    }
+                    writeToken(generator, op, arg);
+                }
+            }
+            sources[doc] = out.toByteArray();
+        }
+        return sources;
+    }
+
+    private static void writeToken(JsonGenerator generator, int op, Object arg) throws IOException {
+        switch (op) {
+            case START_OBJECT: generator.writeStartObject(); break;
+            case END_OBJECT: generator.writeEndObject(); break;
+            case START_ARRAY: generator.writeStartArray(); break;
+            case END_ARRAY: generator.writeEndArray(); break;
+            case FIELD_NAME: generator.writeFieldName((String) arg); break;
+            case STRING: generator.writeString((String) arg); break;
+            case LONG: generator.writeNumber((Long) arg); break;
+            case NUMBER: generator.writeNumber((String) arg); break;
+            case TRUE: generator.writeBoolean(true); break;
+            case FALSE: generator.writeBoolean(false); break;
+            case NULL: generator.writeNull(); break;
+            default:
+                throw new IllegalStateException("unknown token [" + op + "]");
+        }
+    }
+
+    /** zig-zag encodes the value so that small deltas of either sign take few bytes, then writes it as an unsigned vlong */
+    static void writeZLong(DataOutput out, long value) throws IOException {
+        long bits = (value >> 63) ^ (value << 1);
+        while ((bits & ~0x7FL) != 0L) {
+            out.writeByte((byte) ((bits & 0x7FL) | 0x80L));
+            bits >>>= 7;
+        }
+        out.writeByte((byte) bits);
+    }
+
+    static long readZLong(DataInput in) throws IOException {
+        byte b = in.readByte();
+        long bits = b & 0x7FL;
+        for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+            b = in.readByte();
+            bits |= (b & 0x7FL) << shift;
+        }
+        return (bits >>> 1) ^ -(bits & 1);
+    }
+}
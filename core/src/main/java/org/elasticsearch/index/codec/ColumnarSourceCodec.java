@@ -0,0 +1,52 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.codec;
+
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.FilterCodec;
+import org.apache.lucene.codecs.StoredFieldsFormat;
+import org.apache.lucene.codecs.lucene54.Lucene54Codec;
+
+/**
+ * A codec that stores fields with the {@link ColumnarStoredFieldsFormat} and delegates everything else. It is
+ * registered through SPI under its own name so that segments written with it can be read back; the per field
+ * postings and doc values formats of the delegate record their names in the segment themselves.
+ */
+// LUCENE UPGRADE: make sure to move to a new codec depending on the lucene version
+public final class ColumnarSourceCodec extends FilterCodec {
+
+    public static final String CODEC_NAME = "ColumnarSource54";
+
+    private final StoredFieldsFormat storedFieldsFormat = new ColumnarStoredFieldsFormat();
+
+    /** Used by SPI to read segments */
+    public ColumnarSourceCodec() {
+        this(new Lucene54Codec());
+    }
+
+    public ColumnarSourceCodec(Codec delegate) {
+        super(CODEC_NAME, delegate);
+    }
+
+    @Override
+    public StoredFieldsFormat storedFieldsFormat() {
+        return storedFieldsFormat;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.codec;
+
+import org.apache.lucene.codecs.StoredFieldsFormat;
+import org.apache.lucene.codecs.StoredFieldsReader;
+import org.apache.lucene.codecs.StoredFieldsWriter;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.SegmentInfo;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+
+import java.io.IOException;
+
+/**
+ * A {@link StoredFieldsFormat} that stores the <tt>_source</tt> of a block of documents column by column, see
+ * {@link ColumnarSource}, and compresses every block with DEFLATE. Other stored fields are kept row by row in the
+ * same block. Reading a single document decompresses its block, which is cached for the following reads.
+ * <p>
+ * Files:
+ * <ul>
+ * <li><tt>.csd</tt>: the compressed blocks</li>
+ * <li><tt>.csx</tt>: the first document and file pointer of every block</li>
+ * </ul>
+ */
+public final class ColumnarStoredFieldsFormat extends StoredFieldsFormat {
+
+    static final String DATA_EXTENSION = "csd";
+    static final String INDEX_EXTENSION = "csx";
+    static final String DATA_CODEC_NAME = "ColumnarStoredFieldsData";
+    static final String INDEX_CODEC_NAME = "ColumnarStoredFieldsIndex";
+    static final int VERSION_START = 0;
+    static final int VERSION_CURRENT = VERSION_START;
+
+    /** a block is flushed once it holds that many documents */
+    static final int MAX_DOCS_PER_BLOCK = 1024;
+    /** or once its uncompressed size reaches that many bytes */
+    static final int BLOCK_SIZE = 1 << 17;
+
+    @Override
+    public StoredFieldsReader fieldsReader(Directory directory, SegmentInfo si, FieldInfos fn, IOContext context) throws IOException {
+        return new ColumnarStoredFieldsReader(directory, si, fn, context);
+    }
+
+    @Override
+    public StoredFieldsWriter fieldsWriter(Directory directory, SegmentInfo si, IOContext context) throws IOException {
+        return new ColumnarStoredFieldsWriter(directory, si, context);
+    }
+}
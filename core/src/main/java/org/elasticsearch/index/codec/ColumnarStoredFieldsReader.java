@@ -0,0 +1,307 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.codec;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.StoredFieldsReader;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.SegmentInfo;
+import org.apache.lucene.index.StoredFieldVisitor;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.ChecksumIndexInput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.RamUsageEstimator;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.elasticsearch.index.codec.ColumnarStoredFieldsFormat.DATA_CODEC_NAME;
+import static org.elasticsearch.index.codec.ColumnarStoredFieldsFormat.DATA_EXTENSION;
+import static org.elasticsearch.index.codec.ColumnarStoredFieldsFormat.INDEX_CODEC_NAME;
+import static org.elasticsearch.index.codec.ColumnarStoredFieldsFormat.INDEX_EXTENSION;
+import static org.elasticsearch.index.codec.ColumnarStoredFieldsFormat.VERSION_CURRENT;
+import static org.elasticsearch.index.codec.ColumnarStoredFieldsFormat.VERSION_START;
+import static org.elasticsearch.index.codec.ColumnarStoredFieldsWriter.BYTES;
+import static org.elasticsearch.index.codec.ColumnarStoredFieldsWriter.COLUMNAR_SOURCE;
+import static org.elasticsearch.index.codec.ColumnarStoredFieldsWriter.DOUBLE;
+import static org.elasticsearch.index.codec.ColumnarStoredFieldsWriter.FLOAT;
+import static org.elasticsearch.index.codec.ColumnarStoredFieldsWriter.INT;
+import static org.elasticsearch.index.codec.ColumnarStoredFieldsWriter.LONG;
+import static org.elasticsearch.index.codec.ColumnarStoredFieldsWriter.STRING;
+import static org.elasticsearch.index.codec.ColumnarStoredFieldsWriter.TYPE_BITS;
+import static org.elasticsearch.index.codec.ColumnarStoredFieldsWriter.TYPE_MASK;
+
+/**
+ * Reads stored fields written by {@link ColumnarStoredFieldsWriter}. The last decompressed block, and the sources
+ * decoded from it, are kept so that reading documents in order only decompresses every block once.
+ */
+final class ColumnarStoredFieldsReader extends StoredFieldsReader {
+
+    private final FieldInfos fieldInfos;
+    private final int[] docBases;
+    private final long[] startPointers;
+    private final IndexInput data;
+    private boolean closed;
+
+    // the current block
+    private int block = -1;
+    private byte[] bytes = new byte[0];
+    private int[] rowStarts = new int[0];
+    private int sourcesStart;
+    private byte[][] sources;
+
+    ColumnarStoredFieldsReader(Directory directory, SegmentInfo si, FieldInfos fieldInfos, IOContext context) throws IOException {
+        this.fieldInfos = fieldInfos;
+        try (ChecksumIndexInput index = directory.openChecksumInput(IndexFileNames.segmentFileName(si.name, "", INDEX_EXTENSION), context)) {
+            int[] docBases = null;
+            long[] startPointers = null;
+            Throwable priorException = null;
+            try {
+                CodecUtil.checkIndexHeader(index, INDEX_CODEC_NAME, VERSION_START, VERSION_CURRENT, si.getId(), "");
+                final int numBlocks = index.readVInt();
+                docBases = new int[numBlocks];
+                startPointers = new long[numBlocks];
+                long pointer = 0;
+                for (int i = 0; i < numBlocks; i++) {
+                    docBases[i] = index.readVInt();
+                    pointer += index.readVLong();
+                    startPointers[i] = pointer;
+                }
+            } catch (Throwable t) {
+                priorException = t;
+            } finally {
+                CodecUtil.checkFooter(index, priorException);
+            }
+            this.docBases = docBases;
+            this.startPointers = startPointers;
+        }
+        final IndexInput data = directory.openInput(IndexFileNames.segmentFileName(si.name, "", DATA_EXTENSION), context);
+        boolean success = false;
+        try {
+            CodecUtil.checkIndexHeader(data, DATA_CODEC_NAME, VERSION_START, VERSION_CURRENT, si.getId(), "");
+            CodecUtil.retrieveChecksum(data);
+            success = true;
+        } finally {
+            if (success == false) {
+                IOUtils.closeWhileHandlingException(data);
+            }
+        }
+        this.data = data;
+    }
+
+    private ColumnarStoredFieldsReader(ColumnarStoredFieldsReader other) {
+        this.fieldInfos = other.fieldInfos;
+        this.docBases = other.docBases;
+        this.startPointers = other.startPointers;
+        this.data = other.data.clone();
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new AlreadyClosedException("this FieldsReader is closed");
+        }
+    }
+
+    @Override
+    public void visitDocument(int docID, StoredFieldVisitor visitor) throws IOException {
+        ensureOpen();
+        loadBlock(docID);
+        final int rowStart = rowStarts[docID - docBases[block]];
+        final ByteArrayDataInput row = new ByteArrayDataInput(bytes, rowStart, bytes.length - rowStart);
+        final int numFields = row.readVInt();
+        for (int i = 0; i < numFields; i++) {
+            final long infoAndBits = row.readVLong();
+            final FieldInfo fieldInfo = fieldInfos.fieldInfo((int) (infoAndBits >>> TYPE_BITS));
+            final int type = (int) (infoAndBits & TYPE_MASK);
+            switch (visitor.needsField(fieldInfo)) {
+                case YES:
+                    readField(row, fieldInfo, type, visitor);
+                    break;
+                case NO:
+                    skipField(row, type);
+                    break;
+                case STOP:
+                    return;
+            }
+        }
+    }
+
+    private void readField(ByteArrayDataInput row, FieldInfo fieldInfo, int type, StoredFieldVisitor visitor) throws IOException {
+        switch (type) {
+            case STRING:
+            case BYTES:
+                final byte[] value = new byte[row.readVInt()];
+                row.readBytes(value, 0, value.length);
+                if (type == STRING) {
+                    visitor.stringField(fieldInfo, value);
+                } else {
+                    visitor.binaryField(fieldInfo, value);
+                }
+                break;
+            case COLUMNAR_SOURCE:
+                visitor.binaryField(fieldInfo, source(row.readVInt()));
+                break;
+            case INT:
+                visitor.intField(fieldInfo, (int) ColumnarSource.readZLong(row));
+                break;
+            case LONG:
+                visitor.longField(fieldInfo, ColumnarSource.readZLong(row));
+                break;
+            case FLOAT:
+                visitor.floatField(fieldInfo, Float.intBitsToFloat(row.readInt()));
+                break;
+            case DOUBLE:
+                visitor.doubleField(fieldInfo, Double.longBitsToDouble(row.readLong()));
+                break;
+            default:
+                throw new CorruptIndexException("unknown stored field type [" + type + "]", data);
+        }
+    }
+
+    private void skipField(ByteArrayDataInput row, int type) throws IOException {
+        switch (type) {
+            case STRING:
+            case BYTES:
+                row.skipBytes(row.readVInt());
+                break;
+            case COLUMNAR_SOURCE:
+                row.readVInt();
+                break;
+            case INT:
+            case LONG:
+                ColumnarSource.readZLong(row);
+                break;
+            case FLOAT:
+                row.readInt();
+                break;
+            case DOUBLE:
+                row.readLong();
+                break;
+            default:
+                throw new CorruptIndexException("unknown stored field type [" + type + "]", data);
+        }
+    }
+
+    private void loadBlock(int docID) throws IOException {
+        int target = Arrays.binarySearch(docBases, docID);
+        if (target < 0) {
+            target = -2 - target;
+        }
+        if (target == block) {
+            return;
+        }
+        block = -1;
+        data.seek(startPointers[target]);
+        final int length = data.readVInt();
+        final byte[] compressed = new byte[data.readVInt()];
+        data.readBytes(compressed, 0, compressed.length);
+        bytes = ArrayUtil.grow(bytes, length);
+        final Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed);
+            int read = 0;
+            while (read < length && inflater.finished() == false) {
+                final int n = inflater.inflate(bytes, read, length - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != length) {
+                throw new CorruptIndexException("expected " + length + " decompressed bytes but got " + read, data);
+            }
+        } catch (DataFormatException e) {
+            throw new CorruptIndexException("failed to decompress block", data, e);
+        } finally {
+            inflater.end();
+        }
+
+        final ByteArrayDataInput in = new ByteArrayDataInput(bytes, 0, length);
+        final int numDocs = in.readVInt();
+        rowStarts = ArrayUtil.grow(rowStarts, numDocs);
+        final int[] rowLengths = new int[numDocs];
+        for (int i = 0; i < numDocs; i++) {
+            rowLengths[i] = in.readVInt();
+        }
+        int start = in.getPosition();
+        for (int i = 0; i < numDocs; i++) {
+            rowStarts[i] = start;
+            start += rowLengths[i];
+        }
+        sourcesStart = start;
+        sources = null;
+        block = target;
+    }
+
+    private byte[] source(int ord) throws IOException {
+        if (sources == null) {
+            // only decoded if a source is actually needed, e.g. not when only fetching the _uid
+            sources = ColumnarSource.decode(new ByteArrayDataInput(bytes, sourcesStart, bytes.length - sourcesStart));
+        }
+        return sources[ord];
+    }
+
+    @Override
+    public StoredFieldsReader clone() {
+        ensureOpen();
+        return new ColumnarStoredFieldsReader(this);
+    }
+
+    @Override
+    public void checkIntegrity() throws IOException {
+        CodecUtil.checksumEntireFile(data);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed == false) {
+            IOUtils.close(data);
+            closed = true;
+        }
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        return RamUsageEstimator.sizeOf(docBases) + RamUsageEstimator.sizeOf(startPointers);
+    }
+
+    @Override
+    public Collection<Accountable> getChildResources() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(blocks=" + docBases.length + ")";
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.codec;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.StoredFieldsWriter;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.SegmentInfo;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.RAMOutputStream;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+import org.elasticsearch.index.mapper.internal.SourceFieldMapper;
+
+import java.io.IOException;
+import java.util.zip.Deflater;
+
+import static org.elasticsearch.index.codec.ColumnarStoredFieldsFormat.BLOCK_SIZE;
+import static org.elasticsearch.index.codec.ColumnarStoredFieldsFormat.DATA_CODEC_NAME;
+import static org.elasticsearch.index.codec.ColumnarStoredFieldsFormat.DATA_EXTENSION;
+import static org.elasticsearch.index.codec.ColumnarStoredFieldsFormat.INDEX_CODEC_NAME;
+import static org.elasticsearch.index.codec.ColumnarStoredFieldsFormat.INDEX_EXTENSION;
+import static org.elasticsearch.index.codec.ColumnarStoredFieldsFormat.MAX_DOCS_PER_BLOCK;
+import static org.elasticsearch.index.codec.ColumnarStoredFieldsFormat.VERSION_CURRENT;
+
+/**
+ * Writes stored fields in the format described in {@link ColumnarStoredFieldsFormat}. A block is laid out, before
+ * compression, as the number of documents, the length of every row, the rows, and the columnar sources.
+ */
+final class ColumnarStoredFieldsWriter extends StoredFieldsWriter {
+
+    static final int STRING = 0;
+    static final int BYTES = 1;
+    static final int INT = 2;
+    static final int LONG = 3;
+    static final int FLOAT = 4;
+    static final int DOUBLE = 5;
+    /** a source stored in the columnar section of the block, the row only holds its ordinal */
+    static final int COLUMNAR_SOURCE = 6;
+
+    static final int TYPE_BITS = 3;
+    static final int TYPE_MASK = (1 << TYPE_BITS) - 1;
+
+    private final Directory directory;
+    private final SegmentInfo segmentInfo;
+    private final IOContext context;
+    private IndexOutput data;
+    private final Deflater deflater = new Deflater(6, true);
+
+    // current block
+    private final RAMOutputStream rows = new RAMOutputStream();
+    private final RAMOutputStream row = new RAMOutputStream();
+    private final RAMOutputStream block = new RAMOutputStream();
+    private ColumnarSource.Encoder sources = new ColumnarSource.Encoder();
+    private long sourceBytes;
+    private int[] rowLengths = new int[16];
+    private int numBufferedDocs;
+    private int numFieldsInDoc;
+
+    // block index
+    private int[] docBases = new int[16];
+    private long[] startPointers = new long[16];
+    private int numBlocks;
+    private int numDocs;
+
+    private byte[] uncompressed = BytesRef.EMPTY_BYTES;
+    private byte[] compressed = BytesRef.EMPTY_BYTES;
+
+    ColumnarStoredFieldsWriter(Directory directory, SegmentInfo si, IOContext context) throws IOException {
+        this.directory = directory;
+        this.segmentInfo = si;
+        this.context = context;
+        boolean success = false;
+        try {
+            data = directory.createOutput(IndexFileNames.segmentFileName(si.name, "", DATA_EXTENSION), context);
+            CodecUtil.writeIndexHeader(data, DATA_CODEC_NAME, VERSION_CURRENT, si.getId(), "");
+            success = true;
+        } finally {
+            if (success == false) {
+                IOUtils.closeWhileHandlingException(this);
+            }
+        }
+    }
+
+    @Override
+    public void startDocument() throws IOException {
+        row.reset();
+        numFieldsInDoc = 0;
+    }
+
+    @Override
+    public void finishDocument() throws IOException {
+        final long start = rows.getFilePointer();
+        rows.writeVInt(numFieldsInDoc);
+        row.writeTo(rows);
+        rowLengths = ArrayUtil.grow(rowLengths, numBufferedDocs + 1);
+        rowLengths[numBufferedDocs++] = (int) (rows.getFilePointer() - start);
+        numDocs++;
+        if (numBufferedDocs >= MAX_DOCS_PER_BLOCK || rows.getFilePointer() + sourceBytes >= BLOCK_SIZE) {
+            flush();
+        }
+    }
+
+    @Override
+    public void writeField(FieldInfo info, IndexableField field) throws IOException {
+        numFieldsInDoc++;
+        final long infoAndBits = ((long) info.number) << TYPE_BITS;
+        final Number number = field.numericValue();
+        if (number != null) {
+            if (number instanceof Byte || number instanceof Short || number instanceof Integer) {
+                row.writeVLong(infoAndBits | INT);
+                ColumnarSource.writeZLong(row, number.intValue());
+            } else if (number instanceof Long) {
+                row.writeVLong(infoAndBits | LONG);
+                ColumnarSource.writeZLong(row, number.longValue());
+            } else if (number instanceof Float) {
+                row.writeVLong(infoAndBits | FLOAT);
+                row.writeInt(Float.floatToIntBits(number.floatValue()));
+            } else if (number instanceof Double) {
+                row.writeVLong(infoAndBits | DOUBLE);
+                row.writeLong(Double.doubleToLongBits(number.doubleValue()));
+            } else {
+                throw new IllegalArgumentException("cannot store numeric type " + number.getClass());
+            }
+            return;
+        }
+        final BytesRef bytes = field.binaryValue();
+        if (bytes != null) {
+            final int ord = sources.numDocs();
+            if (SourceFieldMapper.NAME.equals(info.name) && sources.add(bytes)) {
+                row.writeVLong(infoAndBits | COLUMNAR_SOURCE);
+                row.writeVInt(ord);
+                sourceBytes += bytes.length;
+            } else {
+                row.writeVLong(infoAndBits | BYTES);
+                row.writeVInt(bytes.length);
+                row.writeBytes(bytes.bytes, bytes.offset, bytes.length);
+            }
+            return;
+        }
+        final String string = field.stringValue();
+        if (string == null) {
+            throw new IllegalArgumentException("field " + field.name() + " is stored but does not have binaryValue, stringValue nor numericValue");
+        }
+        row.writeVLong(infoAndBits | STRING);
+        row.writeString(string);
+    }
+
+    private void flush() throws IOException {
+        block.reset();
+        block.writeVInt(numBufferedDocs);
+        for (int i = 0; i < numBufferedDocs; i++) {
+            block.writeVInt(rowLengths[i]);
+        }
+        rows.writeTo(block);
+        sources.writeTo(block);
+
+        final int length = (int) block.getFilePointer();
+        uncompressed = ArrayUtil.grow(uncompressed, length);
+        block.writeTo(uncompressed, 0);
+        deflater.reset();
+        deflater.setInput(uncompressed, 0, length);
+        deflater.finish();
+        int compressedLength = 0;
+        while (deflater.finished() == false) {
+            if (compressedLength == compressed.length) {
+                compressed = ArrayUtil.grow(compressed, compressedLength + 1);
+            }
+            compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+        }
+
+        docBases = ArrayUtil.grow(docBases, numBlocks + 1);
+        startPointers = ArrayUtil.grow(startPointers, numBlocks + 1);
+        docBases[numBlocks] = numDocs - numBufferedDocs;
+        startPointers[numBlocks] = data.getFilePointer();
+        numBlocks++;
+        data.writeVInt(length);
+        data.writeVInt(compressedLength);
+        data.writeBytes(compressed, 0, compressedLength);
+
+        rows.reset();
+        sources = new ColumnarSource.Encoder();
+        sourceBytes = 0;
+        numBufferedDocs = 0;
+    }
+
+    @Override
+    public void finish(FieldInfos fis, int numDocs) throws IOException {
+        if (numDocs != this.numDocs) {
+            throw new RuntimeException("Wrote " + this.numDocs + " docs, finish called with numDocs=" + numDocs);
+        }
+        if (numBufferedDocs > 0) {
+            flush();
+        }
+        CodecUtil.writeFooter(data);
+        try (IndexOutput index = directory.createOutput(IndexFileNames.segmentFileName(segmentInfo.name, "", INDEX_EXTENSION), context)) {
+            CodecUtil.writeIndexHeader(index, INDEX_CODEC_NAME, VERSION_CURRENT, segmentInfo.getId(), "");
+            index.writeVInt(numBlocks);
+            long previousPointer = 0;
+            for (int i = 0; i < numBlocks; i++) {
+                index.writeVInt(docBases[i]);
+                index.writeVLong(startPointers[i] - previousPointer);
+                previousPointer = startPointers[i];
+            }
+            CodecUtil.writeFooter(index);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            IOUtils.close(data);
+        } finally {
+            data = null;
+            deflater.end();
+        }
+    }
+}
@@ -27,6 +27,7 @@ import org.apache.lucene.search.join.BitSetProducer;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Accountables;
 import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.common.Base64;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.bytes.BytesReference;
@@ -45,6 +46,7 @@ import org.elasticsearch.index.mapper.ParseContext.Document;
 import org.elasticsearch.index.mapper.ParsedDocument;
 import org.elasticsearch.index.mapper.Uid;
 import org.elasticsearch.index.merge.MergeStats;
+import org.elasticsearch.index.seqno.LocalCheckpointTracker;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.store.Store;
 import org.elasticsearch.index.translog.Translog;
@@ -66,6 +68,12 @@ import java.util.function.Function;
 public abstract class Engine implements Closeable {
 
     public static final String SYNC_COMMIT_ID = "sync_id";
+    /** the local checkpoint of the shard copy when the commit was made, see {@link LocalCheckpointTracker} */
+    public static final String LOCAL_CHECKPOINT_KEY = "local_checkpoint";
+    /** the highest sequence number the shard copy had seen when the commit was made */
+    public static final String MAX_SEQ_NO_KEY = "max_seq_no";
+    /** identifies the sequence of operations the sequence numbers of a commit belong to */
+    public static final String HISTORY_UUID_KEY = "history_uuid";
 
     protected final ShardId shardId;
     protected final ESLogger logger;
@@ -313,6 +321,27 @@ public abstract class Engine implements Closeable {
     /** returns the translog for this engine */
     public abstract Translog getTranslog();
 
+    /** returns the tracker of the sequence numbers processed by this engine */
+    public abstract LocalCheckpointTracker getLocalCheckpointTracker();
+
+    /**
+     * Returns the id of the history the sequence numbers of this engine belong to. Sequence numbers of two shard
+     * copies can only be compared if they share the same history.
+     */
+    public abstract String getHistoryUUID();
+
+    /**
+     * Starts a new history, e.g. because this shard copy became primary and will issue sequence numbers that other
+     * copies may have seen from the previous primary for different operations.
+     */
+    public abstract void startNewHistory();
+
+    /**
+     * Adopts the history of the primary this shard copy recovered from, and marks all operations up to and including
+     * the given local checkpoint of the primary as processed.
+     */
+    public abstract void adoptHistory(String historyUUID, long localCheckpoint);
+
     protected void ensureOpen() {
         if (isClosed.get()) {
             throw new EngineClosedException(shardId, failedEngine);
@@ -626,6 +655,7 @@ public abstract class Engine implements Closeable {
         private Translog.Location location;
         private final long startTime;
         private long endTime;
+        private long seqNo = LocalCheckpointTracker.UNASSIGNED_SEQ_NO;
 
         public Operation(Term uid, long version, VersionType versionType, Origin origin, long startTime) {
             this.uid = uid;
@@ -657,6 +687,17 @@ public abstract class Engine implements Closeable {
             this.version = version;
         }
 
+        /**
+         * Returns the sequence number of this operation, {@link LocalCheckpointTracker#UNASSIGNED_SEQ_NO} if it was not assigned one.
+         */
+        public long seqNo() {
+            return this.seqNo;
+        }
+
+        public void updateSeqNo(long seqNo) {
+            this.seqNo = seqNo;
+        }
+
         public void setTranslogLocation(Translog.Location location) {
             this.location = location;
         }
@@ -691,10 +732,19 @@ public abstract class Engine implements Closeable {
     public static class Index extends Operation {
 
         private final ParsedDocument doc;
+        private final long autoGeneratedIdTimestamp;
+        private final boolean isRetry;
 
-        public Index(Term uid, ParsedDocument doc, long version, VersionType versionType, Origin origin, long startTime) {
+        public Index(Term uid, ParsedDocument doc, long version, VersionType versionType, Origin origin, long startTime,
+                     long autoGeneratedIdTimestamp, boolean isRetry) {
             super(uid, version, versionType, origin, startTime);
             this.doc = doc;
+            this.autoGeneratedIdTimestamp = autoGeneratedIdTimestamp;
+            this.isRetry = isRetry;
+        }
+
+        public Index(Term uid, ParsedDocument doc, long version, VersionType versionType, Origin origin, long startTime) {
+            this(uid, doc, version, versionType, origin, startTime, IndexRequest.UNSET_AUTO_GENERATED_TIMESTAMP, false);
         }
 
         public Index(Term uid, ParsedDocument doc) {
@@ -746,6 +796,21 @@ public abstract class Engine implements Closeable {
         public BytesReference source() {
             return this.doc.source();
         }
+
+        /**
+         * Returns the time at which the document's id was generated by the coordinating node, or
+         * {@link IndexRequest#UNSET_AUTO_GENERATED_TIMESTAMP} if the id was provided by the user.
+         */
+        public long getAutoGeneratedIdTimestamp() {
+            return autoGeneratedIdTimestamp;
+        }
+
+        /**
+         * Returns <code>true</code> if this operation may already have been executed by an earlier attempt of the same request.
+         */
+        public boolean isRetry() {
+            return isRetry;
+        }
     }
 
     public static class Delete extends Operation {
@@ -766,6 +831,7 @@ public abstract class Engine implements Closeable {
 
         public Delete(Delete template, VersionType versionType) {
             this(template.type(), template.id(), template.uid(), template.version(), versionType, template.origin(), template.startTime(), template.found());
+            updateSeqNo(template.seqNo());
         }
 
         public String type() {
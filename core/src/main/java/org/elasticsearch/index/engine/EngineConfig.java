@@ -70,6 +70,7 @@ public final class EngineConfig {
     private final CodecService codecService;
     private final Engine.EventListener eventListener;
     private final boolean forceNewTranslog;
+    private final boolean optimizeAutoGeneratedId;
     private final QueryCache queryCache;
     private final QueryCachingPolicy queryCachingPolicy;
 
@@ -100,6 +101,14 @@ public final class EngineConfig {
     /** if set to true the engine will start even if the translog id in the commit point can not be found */
     public static final String INDEX_FORCE_NEW_TRANSLOG = "index.engine.force_new_translog";
 
+    /**
+     * Index setting to add documents with auto-generated ids straight to the {@link org.apache.lucene.index.IndexWriter}, without
+     * a version lookup or a version map entry, as long as they cannot have been indexed before. Meant for append-only indices,
+     * since such documents are not visible to realtime gets until the next refresh.
+     * This setting is <b>not</b> realtime updateable.
+     */
+    public static final String INDEX_OPTIMIZE_AUTO_GENERATED_ID_SETTING = "index.optimize_auto_generated_id";
+
 
     public static final TimeValue DEFAULT_REFRESH_INTERVAL = new TimeValue(1, TimeUnit.SECONDS);
     public static final TimeValue DEFAULT_GC_DELETES = TimeValue.timeValueSeconds(60);
@@ -141,6 +150,7 @@ public final class EngineConfig {
         updateVersionMapSize();
         this.translogRecoveryPerformer = translogRecoveryPerformer;
         this.forceNewTranslog = settings.getAsBoolean(INDEX_FORCE_NEW_TRANSLOG, false);
+        this.optimizeAutoGeneratedId = settings.getAsBoolean(INDEX_OPTIMIZE_AUTO_GENERATED_ID_SETTING, false);
         this.queryCache = queryCache;
         this.queryCachingPolicy = queryCachingPolicy;
         this.translogConfig = translogConfig;
@@ -235,6 +245,14 @@ public final class EngineConfig {
         return enableGcDeletes;
     }
 
+    /**
+     * Returns <code>true</code> iff documents with auto-generated ids may be appended to the index without a version lookup.
+     * See {@link #INDEX_OPTIMIZE_AUTO_GENERATED_ID_SETTING}.
+     */
+    public boolean isOptimizeAutoGeneratedId() {
+        return optimizeAutoGeneratedId;
+    }
+
     /**
      * Returns the {@link Codec} used in the engines {@link org.apache.lucene.index.IndexWriter}
      * <p>
@@ -24,6 +24,7 @@ import org.apache.lucene.index.IndexWriter.IndexReaderWarmer;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.SearcherFactory;
 import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.LockObtainFailedException;
@@ -32,8 +33,10 @@ import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.InfoStream;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.cluster.routing.Murmur3HashFunction;
 import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.lucene.LoggerInfoStream;
@@ -46,10 +49,12 @@ import org.elasticsearch.common.util.concurrent.AbstractRunnable;
 import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.common.util.concurrent.ReleasableLock;
 import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.VersionType;
 import org.elasticsearch.index.indexing.ShardIndexingService;
 import org.elasticsearch.index.mapper.Uid;
 import org.elasticsearch.index.merge.MergeStats;
 import org.elasticsearch.index.merge.OnGoingMerge;
+import org.elasticsearch.index.seqno.LocalCheckpointTracker;
 import org.elasticsearch.index.shard.ElasticsearchMergePolicy;
 import org.elasticsearch.index.shard.MergeSchedulerConfig;
 import org.elasticsearch.index.shard.ShardId;
@@ -64,6 +69,7 @@ import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
@@ -98,10 +104,17 @@ public class InternalEngine extends Engine {
 
     private final AtomicBoolean versionMapRefreshPending = new AtomicBoolean();
 
+    // the highest auto-generated id timestamp of any request that may have reached this engine more than once (a retry or a
+    // recovery replay); documents with auto-generated ids newer than this cannot be in the index yet and can be blindly appended
+    private final AtomicLong maxUnsafeAutoIdTimestamp = new AtomicLong(IndexRequest.UNSET_AUTO_GENERATED_TIMESTAMP);
+
     private volatile SegmentInfos lastCommittedSegmentInfos;
 
     private final IndexThrottle throttle;
 
+    private final LocalCheckpointTracker localCheckpointTracker;
+    private volatile String historyUUID;
+
     public InternalEngine(EngineConfig engineConfig, boolean skipInitialTranslogRecovery) throws EngineException {
         super(engineConfig);
         this.versionMap = new LiveVersionMap();
@@ -127,6 +140,9 @@ public class InternalEngine extends Engine {
                 final boolean create = engineConfig.isCreate();
                 writer = createWriter(create);
                 indexWriter = writer;
+                final Map<String, String> commitUserData = writer.getCommitData();
+                localCheckpointTracker = createLocalCheckpointTracker(commitUserData);
+                historyUUID = commitUserData.containsKey(HISTORY_UUID_KEY) ? commitUserData.get(HISTORY_UUID_KEY) : Strings.randomBase64UUID();
                 translog = openTranslog(engineConfig, writer, create || skipInitialTranslogRecovery || engineConfig.forceNewTranslog());
                 translogGeneration = translog.getGeneration();
                 assert translogGeneration != null;
@@ -203,12 +219,50 @@ public class InternalEngine extends Engine {
         return translog;
     }
 
+    private static LocalCheckpointTracker createLocalCheckpointTracker(Map<String, String> commitUserData) {
+        final long localCheckpoint;
+        final long maxSeqNo;
+        if (commitUserData.containsKey(LOCAL_CHECKPOINT_KEY)) {
+            localCheckpoint = Long.parseLong(commitUserData.get(LOCAL_CHECKPOINT_KEY));
+            maxSeqNo = Long.parseLong(commitUserData.get(MAX_SEQ_NO_KEY));
+        } else {
+            localCheckpoint = LocalCheckpointTracker.NO_OPS_PERFORMED;
+            maxSeqNo = LocalCheckpointTracker.NO_OPS_PERFORMED;
+        }
+        return new LocalCheckpointTracker(maxSeqNo, localCheckpoint);
+    }
+
     @Override
     public Translog getTranslog() {
         ensureOpen();
         return translog;
     }
 
+    @Override
+    public LocalCheckpointTracker getLocalCheckpointTracker() {
+        return localCheckpointTracker;
+    }
+
+    @Override
+    public String getHistoryUUID() {
+        return historyUUID;
+    }
+
+    @Override
+    public void startNewHistory() {
+        // whatever operations this copy misses can't be recovered from other copies anymore, so it closes its gaps
+        localCheckpointTracker.fastForward(localCheckpointTracker.getMaxSeqNo());
+        historyUUID = Strings.randomBase64UUID();
+        logger.debug("started new history [{}] at {}", historyUUID, localCheckpointTracker);
+    }
+
+    @Override
+    public void adoptHistory(String historyUUID, long localCheckpoint) {
+        localCheckpointTracker.fastForward(localCheckpoint);
+        this.historyUUID = historyUUID;
+        logger.debug("adopted history [{}] at {}", historyUUID, localCheckpointTracker);
+    }
+
     protected void recoverFromTranslog(EngineConfig engineConfig, Translog.TranslogGeneration translogGeneration) throws IOException {
         int opsRecovered = 0;
         final TranslogRecoveryPerformer handler = engineConfig.getTranslogRecoveryPerformer();
@@ -230,6 +284,9 @@ public class InternalEngine extends Engine {
         } catch (Throwable e) {
             throw new EngineException(shardId, "failed to recover from translog", e);
         }
+        // this copy is recovered from its own store and becomes the reference for all other copies: whatever operations it
+        // misses can't be recovered anymore, so it starts a new history that others have to file copy into
+        startNewHistory();
 
         // flush if we recovered something or if we have references to older translogs
         // note: if opsRecovered == 0 and we have older translogs it means they are corrupted or 0 length.
@@ -333,13 +390,17 @@ public class InternalEngine extends Engine {
         final boolean created;
         try (ReleasableLock lock = readLock.acquire()) {
             ensureOpen();
-            if (index.origin() == Operation.Origin.RECOVERY) {
-                // Don't throttle recovery operations
-                created = innerIndex(index);
-            } else {
-                try (Releasable r = throttle.acquireThrottle()) {
+            try {
+                if (index.origin() == Operation.Origin.RECOVERY) {
+                    // Don't throttle recovery operations
                     created = innerIndex(index);
+                } else {
+                    try (Releasable r = throttle.acquireThrottle()) {
+                        created = innerIndex(index);
+                    }
                 }
+            } finally {
+                markSeqNoAsCompleted(index);
             }
         } catch (OutOfMemoryError | IllegalStateException | IOException t) {
             maybeFailEngine("index", t);
@@ -352,6 +413,18 @@ public class InternalEngine extends Engine {
     private boolean innerIndex(Index index) throws IOException {
         synchronized (dirtyLock(index.uid())) {
             lastWriteNanos  = index.startTime();
+            if (index.isRetry() && index.getAutoGeneratedIdTimestamp() != IndexRequest.UNSET_AUTO_GENERATED_TIMESTAMP) {
+                // the original attempt of a retried operation, should it arrive later, must also take the safe path
+                updateMaxUnsafeAutoIdTimestamp(index.getAutoGeneratedIdTimestamp());
+            }
+            if (canOptimizeAddDocument(index) && mayHaveBeenIndexedBefore(index) == false) {
+                return appendDocument(index);
+            }
+            // appended documents are not added to the version map, so until the next refresh the version lookup can miss
+            // an earlier copy of a document with an auto-generated id. Replacing it by uid makes sure that the document
+            // isn't indexed twice.
+            final boolean replaceUnseenCopy = engineConfig.isOptimizeAutoGeneratedId()
+                    && index.getAutoGeneratedIdTimestamp() != IndexRequest.UNSET_AUTO_GENERATED_TIMESTAMP;
             final long currentVersion;
             final boolean deleted;
             VersionValue versionValue = versionMap.getUnderLock(index.uid().bytes());
@@ -381,7 +454,7 @@ public class InternalEngine extends Engine {
             final boolean created;
             index.updateVersion(updatedVersion);
 
-            if (currentVersion == Versions.NOT_FOUND) {
+            if (currentVersion == Versions.NOT_FOUND && replaceUnseenCopy == false) {
                 // document does not exists, we can optimize for create
                 created = true;
                 if (index.docs().size() > 1) {
@@ -390,7 +463,9 @@ public class InternalEngine extends Engine {
                     indexWriter.addDocument(index.docs().get(0));
                 }
             } else {
-                if (versionValue != null) {
+                if (currentVersion == Versions.NOT_FOUND) {
+                    created = true;
+                } else if (versionValue != null) {
                     created = versionValue.delete(); // we have a delete which is not GC'ed...
                 } else {
                     created = false;
@@ -401,7 +476,8 @@ public class InternalEngine extends Engine {
                     indexWriter.updateDocument(index.uid(), index.docs().get(0));
                 }
             }
-            Translog.Location translogLocation = translog.add(new Translog.Index(index));
+            assignSeqNo(index);
+            Translog.Location translogLocation = addToTranslog(index, new Translog.Index(index));
 
             versionMap.putUnderLock(index.uid().bytes(), new VersionValue(updatedVersion, translogLocation));
             index.setTranslogLocation(translogLocation);
@@ -411,6 +487,100 @@ public class InternalEngine extends Engine {
         }
     }
 
+    /**
+     * Returns <code>true</code> if the document has an auto-generated id and this engine is allowed to skip the version lookup for it.
+     */
+    private boolean canOptimizeAddDocument(Index index) {
+        if (engineConfig.isOptimizeAutoGeneratedId() && index.getAutoGeneratedIdTimestamp() != IndexRequest.UNSET_AUTO_GENERATED_TIMESTAMP) {
+            switch (index.origin()) {
+                case PRIMARY:
+                    return index.versionType() == VersionType.INTERNAL && index.version() == Versions.MATCH_ANY;
+                case REPLICA:
+                    return true;
+                case RECOVERY:
+                    // recovery replays can hit documents that are already in the index
+                    return false;
+                default:
+                    throw new IllegalArgumentException("unknown origin " + index.origin());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns <code>true</code> if a document with this auto-generated id may already be in the index, either because the
+     * operation is a retry or because a retry with the same or a later timestamp has been seen.
+     */
+    private boolean mayHaveBeenIndexedBefore(Index index) {
+        return index.isRetry() || index.getAutoGeneratedIdTimestamp() <= maxUnsafeAutoIdTimestamp.get();
+    }
+
+    /**
+     * Raises the timestamp up to which documents with auto-generated ids may already be in the index.
+     */
+    private void updateMaxUnsafeAutoIdTimestamp(long autoGeneratedIdTimestamp) {
+        long current;
+        do {
+            current = maxUnsafeAutoIdTimestamp.get();
+            if (current >= autoGeneratedIdTimestamp) {
+                return;
+            }
+        } while (maxUnsafeAutoIdTimestamp.compareAndSet(current, autoGeneratedIdTimestamp) == false);
+    }
+
+    /**
+     * Adds a document that cannot be in the index yet, without loading its current version or adding it to the version map.
+     */
+    private boolean appendDocument(Index index) throws IOException {
+        index.updateVersion(index.versionType().updateVersion(Versions.NOT_FOUND, index.version()));
+        if (index.docs().size() > 1) {
+            indexWriter.addDocuments(index.docs());
+        } else {
+            indexWriter.addDocument(index.docs().get(0));
+        }
+        assignSeqNo(index);
+        Translog.Location translogLocation = addToTranslog(index, new Translog.Index(index));
+        index.setTranslogLocation(translogLocation);
+        indexingService.postIndexUnderLock(index);
+        return true;
+    }
+
+    /**
+     * Issues a sequence number to an operation executed on the primary, once the index writer accepted it. Every issued
+     * sequence number must be replicated, an operation that fails on the primary after getting one would leave a gap on
+     * the replicas that they could never close. Operations replicated from the primary or replayed from a translog come
+     * with the sequence number they were issued with.
+     */
+    private void assignSeqNo(Operation operation) {
+        if (operation.origin() == Operation.Origin.PRIMARY) {
+            operation.updateSeqNo(localCheckpointTracker.generateSeqNo());
+        }
+    }
+
+    /**
+     * Adds an operation that has a sequence number to the translog. If this fails on the primary the operation is not
+     * replicated although its sequence number was issued, so the engine is failed and the copies recover from a new history.
+     */
+    private Translog.Location addToTranslog(Operation operation, Translog.Operation translogOperation) throws IOException {
+        try {
+            return translog.add(translogOperation);
+        } catch (Throwable t) {
+            if (operation.origin() == Operation.Origin.PRIMARY) {
+                failEngine("failed to add operation with seq no [" + operation.seqNo() + "] to the translog", t);
+            }
+            throw t;
+        }
+    }
+
+    /**
+     * Marks the sequence number of the operation as processed, whether it succeeded, conflicted or failed.
+     */
+    private void markSeqNoAsCompleted(Operation operation) {
+        if (operation.seqNo() >= 0) {
+            localCheckpointTracker.markSeqNoAsCompleted(operation.seqNo());
+        }
+    }
+
     /**
      * Forces a refresh if the versionMap is using too much RAM
      */
@@ -443,7 +613,11 @@ public class InternalEngine extends Engine {
         try (ReleasableLock lock = readLock.acquire()) {
             ensureOpen();
             // NOTE: we don't throttle this when merges fall behind because delete-by-id does not create new segments:
-            innerDelete(delete);
+            try {
+                innerDelete(delete);
+            } finally {
+                markSeqNoAsCompleted(delete);
+            }
         } catch (OutOfMemoryError | IllegalStateException | IOException t) {
             maybeFailEngine("delete", t);
             throw new DeleteFailedEngineException(shardId, delete, t);
@@ -504,7 +678,8 @@ public class InternalEngine extends Engine {
             }
 
             delete.updateVersion(updatedVersion, found);
-            Translog.Location translogLocation = translog.add(new Translog.Delete(delete));
+            assignSeqNo(delete);
+            Translog.Location translogLocation = addToTranslog(delete, new Translog.Delete(delete));
             versionMap.putUnderLock(delete.uid().bytes(), new DeleteVersionValue(updatedVersion, engineConfig.getThreadPool().estimatedTimeInMillis(), translogLocation));
             delete.setTranslogLocation(translogLocation);
             indexingService.postDeleteUnderLock(delete);
@@ -908,6 +1083,11 @@ public class InternalEngine extends Engine {
             iwc.setInfoStream(verbose ? InfoStream.getDefault() : new LoggerInfoStream(logger));
             iwc.setMergeScheduler(mergeScheduler);
             MergePolicy mergePolicy = config().getMergePolicy();
+            final Sort indexSort = engineConfig.getIndexSettings().getIndexSort();
+            if (indexSort != null) {
+                // sort the documents of merged segments so that searches sorted the same way can stop early on them
+                mergePolicy = new SortingMergePolicy(mergePolicy, indexSort);
+            }
             // Give us the opportunity to upgrade old segments while performing
             // background merges
             mergePolicy = new ElasticsearchMergePolicy(mergePolicy);
@@ -1132,9 +1312,14 @@ public class InternalEngine extends Engine {
         try {
             Translog.TranslogGeneration translogGeneration = translog.getGeneration();
             logger.trace("committing writer with translog id [{}]  and sync id [{}] ", translogGeneration.translogFileGeneration, syncId);
-            Map<String, String> commitData = new HashMap<>(2);
+            Map<String, String> commitData = new HashMap<>(6);
             commitData.put(Translog.TRANSLOG_GENERATION_KEY, Long.toString(translogGeneration.translogFileGeneration));
             commitData.put(Translog.TRANSLOG_UUID_KEY, translogGeneration.translogUUID);
+            // every operation up to the checkpoint is in the index writer and thus in this commit; operations with a higher
+            // sequence number than the max seq no are added to the translog generation that was rolled before this commit
+            commitData.put(Engine.LOCAL_CHECKPOINT_KEY, Long.toString(localCheckpointTracker.getCheckpoint()));
+            commitData.put(Engine.MAX_SEQ_NO_KEY, Long.toString(localCheckpointTracker.getMaxSeqNo()));
+            commitData.put(Engine.HISTORY_UUID_KEY, historyUUID);
             if (syncId != null) {
                 commitData.put(Engine.SYNC_COMMIT_ID, syncId);
             }
@@ -30,6 +30,7 @@ import org.elasticsearch.common.lucene.Lucene;
 import org.elasticsearch.common.lucene.index.ElasticsearchDirectoryReader;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.concurrent.ReleasableLock;
+import org.elasticsearch.index.seqno.LocalCheckpointTracker;
 import org.elasticsearch.index.translog.Translog;
 
 import java.io.IOException;
@@ -167,6 +168,26 @@ public class ShadowEngine extends Engine {
         throw new UnsupportedOperationException("shadow engines don't have translogs");
     }
 
+    @Override
+    public LocalCheckpointTracker getLocalCheckpointTracker() {
+        throw new UnsupportedOperationException("shadow engines don't track sequence numbers");
+    }
+
+    @Override
+    public String getHistoryUUID() {
+        throw new UnsupportedOperationException("shadow engines don't track sequence numbers");
+    }
+
+    @Override
+    public void startNewHistory() {
+        throw new UnsupportedOperationException("shadow engines don't track sequence numbers");
+    }
+
+    @Override
+    public void adoptHistory(String historyUUID, long localCheckpoint) {
+        throw new UnsupportedOperationException("shadow engines don't track sequence numbers");
+    }
+
     @Override
     public List<Segment> segments(boolean verbose) {
         try (ReleasableLock lock = readLock.acquire()) {
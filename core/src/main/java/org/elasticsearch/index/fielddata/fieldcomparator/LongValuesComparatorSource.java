@@ -55,6 +55,14 @@ public class LongValuesComparatorSource extends IndexFieldData.XFieldComparatorS
         return SortField.Type.LONG;
     }
 
+    /**
+     * Returns whether this source sorts on the field the way a sort on its sorted numeric doc values would, with the
+     * default sort mode for the given order, missing values last and no nested documents.
+     */
+    public boolean hasDefaultOptions(boolean reversed) {
+        return nested == null && sortMissingLast(missingValue) && sortMode == (reversed ? MultiValueMode.MAX : MultiValueMode.MIN);
+    }
+
     @Override
     public FieldComparator<?> newComparator(String fieldname, int numHits, int sortPos, boolean reversed) throws IOException {
         assert indexFieldData == null || fieldname.equals(indexFieldData.getFieldNames().indexName());
@@ -23,6 +23,7 @@ import com.carrotsearch.hppc.ObjectHashSet;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.DelegatingAnalyzerWrapper;
+import org.apache.lucene.document.FieldType.NumericType;
 import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queries.TermsQuery;
@@ -41,6 +42,7 @@ import org.elasticsearch.index.AbstractIndexComponent;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.analysis.AnalysisService;
 import org.elasticsearch.index.mapper.Mapper.BuilderContext;
+import org.elasticsearch.index.mapper.core.NumberFieldMapper;
 import org.elasticsearch.index.mapper.internal.TypeFieldMapper;
 import org.elasticsearch.index.mapper.object.ObjectMapper;
 import org.elasticsearch.index.similarity.SimilarityService;
@@ -328,6 +330,11 @@ public class MapperService extends AbstractIndexComponent implements Closeable {
         checkFieldUniqueness(type, objectMappers, fieldMappers);
 
         for (ObjectMapper newObjectMapper : objectMappers) {
+            if (newObjectMapper.nested().isNested() && indexSettings.getIndexSort() != null) {
+                // merges would move nested documents away from their parent documents
+                throw new IllegalArgumentException("Nested object [" + newObjectMapper.fullPath()
+                        + "] can't be used in an index that is sorted on [" + indexSettings.getSettings().get(IndexSettings.INDEX_SORT_FIELD) + "]");
+            }
             ObjectMapper existingObjectMapper = fullPathObjectMappers.get(newObjectMapper.fullPath());
             if (existingObjectMapper != null) {
                 // simulate a merge and ignore the result, we are just interested
@@ -336,15 +343,35 @@ public class MapperService extends AbstractIndexComponent implements Closeable {
             }
         }
 
+        final String indexSortField = indexSettings.getIndexSort() == null ? null : indexSettings.getSettings().get(IndexSettings.INDEX_SORT_FIELD);
         for (FieldMapper fieldMapper : fieldMappers) {
             if (fullPathObjectMappers.containsKey(fieldMapper.name())) {
                 throw new IllegalArgumentException("Field [" + fieldMapper.name() + "] is defined as a field in mapping [" + type + "] but this name is already used for an object in other types");
             }
+            if (indexSortField != null && indexSortField.equals(fieldMapper.fieldType().names().indexName())) {
+                checkIndexSortField(fieldMapper.fieldType());
+            }
         }
 
         fieldTypes.checkCompatibility(type, fieldMappers, updateAllTypes);
     }
 
+    /**
+     * Merges of sorted indices read the sort field through its sorted numeric doc values, so it must be an integral
+     * numeric or date field with doc values.
+     */
+    private static void checkIndexSortField(MappedFieldType fieldType) {
+        final String field = fieldType.names().indexName();
+        if (fieldType instanceof NumberFieldMapper.NumberFieldType == false
+                || (fieldType.numericType() != NumericType.INT && fieldType.numericType() != NumericType.LONG)) {
+            throw new IllegalArgumentException("Field [" + field + "] of type [" + fieldType.typeName()
+                    + "] can't be used to sort the index, only integer, long and date fields can");
+        }
+        if (fieldType.hasDocValues() == false) {
+            throw new IllegalArgumentException("Field [" + field + "] can't be used to sort the index without doc values");
+        }
+    }
+
     protected Tuple<Collection<ObjectMapper>, Collection<FieldMapper>> checkMappersCompatibility(
             String type, Mapping mapping, boolean updateAllTypes) {
         List<ObjectMapper> objectMappers = new ArrayList<>();
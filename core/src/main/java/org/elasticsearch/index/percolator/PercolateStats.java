@@ -39,6 +39,8 @@ public class PercolateStats implements Streamable, ToXContent {
     private long current;
     private long memorySizeInBytes = -1;
     private long numQueries;
+    private long candidateCount;
+    private long matchCount;
 
     /**
      * Noop constructor for serialazation purposes.
@@ -46,12 +48,15 @@ public class PercolateStats implements Streamable, ToXContent {
     public PercolateStats() {
     }
 
-    PercolateStats(long percolateCount, long percolateTimeInMillis, long current, long memorySizeInBytes, long numQueries) {
+    PercolateStats(long percolateCount, long percolateTimeInMillis, long current, long memorySizeInBytes, long numQueries,
+                   long candidateCount, long matchCount) {
         this.percolateCount = percolateCount;
         this.percolateTimeInMillis = percolateTimeInMillis;
         this.current = current;
         this.memorySizeInBytes = memorySizeInBytes;
         this.numQueries = numQueries;
+        this.candidateCount = candidateCount;
+        this.matchCount = matchCount;
     }
 
     /**
@@ -89,6 +94,20 @@ public class PercolateStats implements Streamable, ToXContent {
         return numQueries;
     }
 
+    /**
+     * @return The total number of queries that were selected as candidates for the percolated documents and executed.
+     */
+    public long getCandidateCount() {
+        return candidateCount;
+    }
+
+    /**
+     * @return The total number of queries that matched the percolated documents.
+     */
+    public long getMatchCount() {
+        return matchCount;
+    }
+
     /**
      * @return Temporarily returns <code>-1</code>, but this used to return the total size the loaded queries take in
      * memory, but this is disabled now because the size estimation was too expensive cpu wise. This will be enabled
@@ -114,6 +133,8 @@ public class PercolateStats implements Streamable, ToXContent {
         builder.field(Fields.MEMORY_SIZE_IN_BYTES, memorySizeInBytes);
         builder.field(Fields.MEMORY_SIZE, getMemorySize());
         builder.field(Fields.QUERIES, getNumQueries());
+        builder.field(Fields.CANDIDATES, getCandidateCount());
+        builder.field(Fields.MATCHES, getMatchCount());
         builder.endObject();
         return builder;
     }
@@ -127,6 +148,8 @@ public class PercolateStats implements Streamable, ToXContent {
         percolateTimeInMillis += percolate.getTimeInMillis();
         current += percolate.getCurrent();
         numQueries += percolate.getNumQueries();
+        candidateCount += percolate.getCandidateCount();
+        matchCount += percolate.getMatchCount();
     }
 
     static final class Fields {
@@ -138,6 +161,8 @@ public class PercolateStats implements Streamable, ToXContent {
         static final XContentBuilderString MEMORY_SIZE_IN_BYTES = new XContentBuilderString("memory_size_in_bytes");
         static final XContentBuilderString MEMORY_SIZE = new XContentBuilderString("memory_size");
         static final XContentBuilderString QUERIES = new XContentBuilderString("queries");
+        static final XContentBuilderString CANDIDATES = new XContentBuilderString("candidates");
+        static final XContentBuilderString MATCHES = new XContentBuilderString("matches");
     }
 
     public static PercolateStats readPercolateStats(StreamInput in) throws IOException {
@@ -152,6 +177,8 @@ public class PercolateStats implements Streamable, ToXContent {
         percolateTimeInMillis = in.readVLong();
         current = in.readVLong();
         numQueries = in.readVLong();
+        candidateCount = in.readVLong();
+        matchCount = in.readVLong();
     }
 
     @Override
@@ -160,5 +187,7 @@ public class PercolateStats implements Streamable, ToXContent {
         out.writeVLong(percolateTimeInMillis);
         out.writeVLong(current);
         out.writeVLong(numQueries);
+        out.writeVLong(candidateCount);
+        out.writeVLong(matchCount);
     }
 }
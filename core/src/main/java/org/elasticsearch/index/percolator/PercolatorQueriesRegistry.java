@@ -27,10 +27,16 @@ import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.common.ParsingException;
+import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+import org.elasticsearch.common.compress.CompressedXContent;
 import org.elasticsearch.common.metrics.CounterMetric;
 import org.elasticsearch.common.metrics.MeanMetric;
 import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.common.util.concurrent.CooperativeTasks;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.common.xcontent.XContentHelper;
@@ -51,10 +57,16 @@ import org.elasticsearch.percolator.PercolatorService;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Each shard will have a percolator registry even if there isn't a {@link PercolatorService#TYPE_NAME} document type in the index.
@@ -66,6 +78,15 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public final class PercolatorQueriesRegistry extends AbstractIndexShardComponent implements Closeable {
 
     public final String MAP_UNMAPPED_FIELDS_AS_STRING = "index.percolator.map_unmapped_fields_as_string";
+    /**
+     * If set, queries are kept compressed in their serialized form and only parsed when a percolation needs them. The
+     * most recently used parsed queries are cached, see {@link #PARSED_QUERIES_CACHE_SIZE}.
+     */
+    public static final String LAZY_QUERY_PARSING = "index.percolator.lazy_query_parsing";
+    /**
+     * The maximum number of parsed queries to keep in memory when {@link #LAZY_QUERY_PARSING} is set.
+     */
+    public static final String PARSED_QUERIES_CACHE_SIZE = "index.percolator.parsed_queries_cache_size";
 
     // This is a shard level service, but these below are index level service:
     private final MapperService mapperService;
@@ -73,7 +94,13 @@ public final class PercolatorQueriesRegistry extends AbstractIndexShardComponent
 
     private final ShardIndexingService indexingService;
 
+    private final boolean lazyQueryParsing;
+    // the parsed queries, unless queries are parsed lazily
     private final ConcurrentMap<BytesRef, Query> percolateQueries = ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency();
+    // the serialized queries and the most recently used of them parsed, if queries are parsed lazily
+    private final ConcurrentMap<BytesRef, CompressedXContent> querySources = ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency();
+    private final Cache<CompressedXContent, Query> parsedQueries;
+    private final QueryTermsIndex queryTermsIndex = new QueryTermsIndex();
     private final RealTimePercolatorOperationListener realTimePercolatorOperationListener = new RealTimePercolatorOperationListener();
     private final PercolateTypeListener percolateTypeListener = new PercolateTypeListener();
     private final AtomicBoolean realTimePercolatorEnabled = new AtomicBoolean(false);
@@ -82,6 +109,8 @@ public final class PercolatorQueriesRegistry extends AbstractIndexShardComponent
     private final MeanMetric percolateMetric = new MeanMetric();
     private final CounterMetric currentMetric = new CounterMetric();
     private final CounterMetric numberOfQueries = new CounterMetric();
+    private final CounterMetric candidateQueries = new CounterMetric();
+    private final CounterMetric matchedQueries = new CounterMetric();
 
     public PercolatorQueriesRegistry(ShardId shardId, IndexSettings indexSettings,
                                      ShardIndexingService indexingService, MapperService mapperService,
@@ -93,11 +122,49 @@ public final class PercolatorQueriesRegistry extends AbstractIndexShardComponent
         this.queryShardContext = queryShardContext;
         this.indexFieldDataService = indexFieldDataService;
         this.mapUnmappedFieldsAsString = this.indexSettings.getSettings().getAsBoolean(MAP_UNMAPPED_FIELDS_AS_STRING, false);
+        this.lazyQueryParsing = this.indexSettings.getSettings().getAsBoolean(LAZY_QUERY_PARSING, false);
+        int parsedQueriesCacheSize = this.indexSettings.getSettings().getAsInt(PARSED_QUERIES_CACHE_SIZE, 10000);
+        this.parsedQueries = CacheBuilder.<CompressedXContent, Query>builder().setMaximumWeight(parsedQueriesCacheSize).build();
         mapperService.addTypeListener(percolateTypeListener);
     }
 
-    public ConcurrentMap<BytesRef, Query> percolateQueries() {
-        return percolateQueries;
+    /**
+     * Returns the query registered with the given id or <code>null</code> if there is no such query. If queries are
+     * parsed lazily, the query is parsed unless it was used recently.
+     *
+     * @throws PercolatorException if the query is parsed lazily and no longer parses
+     */
+    public Query getPercolateQuery(BytesRef id) {
+        if (lazyQueryParsing == false) {
+            return percolateQueries.get(id);
+        }
+        final CompressedXContent source = querySources.get(id);
+        if (source == null) {
+            return null;
+        }
+        try {
+            return parsedQueries.computeIfAbsent(source,
+                    key -> parsePercolatorDocument(id.utf8ToString(), new BytesArray(key.uncompressed())));
+        } catch (ExecutionException e) {
+            // the query was valid when it was registered, but what it depends on, like the mappings or the scripts it
+            // references, changed since. Skipping it would silently stop it from matching, so the percolation fails.
+            throw new PercolatorException(shardId().index(), "failed to parse query [" + id.utf8ToString() + "]", e.getCause());
+        }
+    }
+
+    /**
+     * Returns whether no queries are registered
+     */
+    public boolean isEmpty() {
+        return lazyQueryParsing ? querySources.isEmpty() : percolateQueries.isEmpty();
+    }
+
+    /**
+     * Returns the ids of the registered queries that can match the document(s) of the given reader. The other queries
+     * can't match and don't need to be executed.
+     */
+    public Set<BytesRef> candidateQueries(IndexReader docReader) throws IOException {
+        return queryTermsIndex.candidates(docReader);
     }
 
     @Override
@@ -109,6 +176,9 @@ public final class PercolatorQueriesRegistry extends AbstractIndexShardComponent
 
     public void clear() {
         percolateQueries.clear();
+        querySources.clear();
+        parsedQueries.invalidateAll();
+        queryTermsIndex.clear();
     }
 
     public void enableRealTimePercolator() {
@@ -119,16 +189,42 @@ public final class PercolatorQueriesRegistry extends AbstractIndexShardComponent
 
     public void addPercolateQuery(String idAsString, BytesReference source) {
         Query newquery = parsePercolatorDocument(idAsString, source);
-        BytesRef id = new BytesRef(idAsString);
-        percolateQueries.put(id, newquery);
-        numberOfQueries.inc();
+        addPercolateQuery(new BytesRef(idAsString), source, newquery);
+    }
 
+    private void addPercolateQuery(BytesRef id, BytesReference source, Query query) {
+        // the query must be selectable as a candidate once it is visible
+        queryTermsIndex.add(id, query);
+        if (lazyQueryParsing) {
+            final CompressedXContent compressedSource;
+            try {
+                compressedSource = new CompressedXContent(source);
+            } catch (IOException e) {
+                throw new PercolatorException(shardId().index(), "failed to compress query [" + id.utf8ToString() + "]", e);
+            }
+            // the parsed query is likely to be used soon
+            parsedQueries.put(compressedSource, query);
+            querySources.put(id, compressedSource);
+        } else {
+            percolateQueries.put(id, query);
+        }
+        numberOfQueries.inc();
     }
 
     public void removePercolateQuery(String idAsString) {
         BytesRef id = new BytesRef(idAsString);
-        Query query = percolateQueries.remove(id);
-        if (query != null) {
+        final boolean removed;
+        if (lazyQueryParsing) {
+            CompressedXContent source = querySources.remove(id);
+            if (source != null) {
+                parsedQueries.invalidate(source);
+            }
+            removed = source != null;
+        } else {
+            removed = percolateQueries.remove(id) != null;
+        }
+        queryTermsIndex.remove(id);
+        if (removed) {
             numberOfQueries.dec();
         }
     }
@@ -217,25 +313,47 @@ public final class PercolatorQueriesRegistry extends AbstractIndexShardComponent
         }
     }
 
-    public void loadQueries(IndexReader reader) {
+    /**
+     * Loads the queries stored in the given reader. The stored queries are read sequentially, then parsed in parallel
+     * on the calling thread and on the threads the given executor provides.
+     */
+    public void loadQueries(IndexReader reader, Executor executor) {
         logger.trace("loading percolator queries...");
-        final int loadedQueries;
+        final AtomicInteger loadedQueries = new AtomicInteger();
         try {
             Query query = new TermQuery(new Term(TypeFieldMapper.NAME, PercolatorService.TYPE_NAME));
-            QueriesLoaderCollector queryCollector = new QueriesLoaderCollector(PercolatorQueriesRegistry.this, logger, mapperService, indexFieldDataService);
+            QueriesLoaderCollector queryCollector = new QueriesLoaderCollector(logger, mapperService, indexFieldDataService);
             IndexSearcher indexSearcher = new IndexSearcher(reader);
             indexSearcher.setQueryCache(null);
             indexSearcher.search(query, queryCollector);
-            Map<BytesRef, Query> queries = queryCollector.queries();
-            for (Map.Entry<BytesRef, Query> entry : queries.entrySet()) {
-                percolateQueries.put(entry.getKey(), entry.getValue());
-                numberOfQueries.inc();
+            final List<Map.Entry<BytesRef, BytesReference>> sources = new ArrayList<>(queryCollector.sources().entrySet());
+            final int numSlices = Math.min(sources.size(), EsExecutors.boundedNumberOfProcessors(indexSettings.getNodeSettings()));
+            List<CooperativeTasks.Task> tasks = new ArrayList<>(numSlices);
+            for (int slice = 0; slice < numSlices; slice++) {
+                final int from = (int) ((long) sources.size() * slice / numSlices);
+                final int to = (int) ((long) sources.size() * (slice + 1) / numSlices);
+                tasks.add(() -> {
+                    for (Map.Entry<BytesRef, BytesReference> source : sources.subList(from, to)) {
+                        try {
+                            // id is only used for logging, if we fail we log the id in the catch statement
+                            Query parsedQuery = parsePercolatorDocument(null, source.getValue());
+                            if (parsedQuery != null) {
+                                addPercolateQuery(source.getKey(), source.getValue(), parsedQuery);
+                                loadedQueries.incrementAndGet();
+                            } else {
+                                logger.warn("failed to add query [{}] - parser returned null", source.getKey().utf8ToString());
+                            }
+                        } catch (Exception e) {
+                            logger.warn("failed to add query [{}]", e, source.getKey().utf8ToString());
+                        }
+                    }
+                });
             }
-            loadedQueries = queries.size();
+            CooperativeTasks.run(tasks, executor);
         } catch (Exception e) {
             throw new PercolatorException(shardId.index(), "failed to load queries from percolator index", e);
         }
-        logger.debug("done loading [{}] percolator queries", loadedQueries);
+        logger.debug("done loading [{}] percolator queries", loadedQueries.get());
     }
 
     private class RealTimePercolatorOperationListener extends IndexingOperationListener {
@@ -270,16 +388,23 @@ public final class PercolatorQueriesRegistry extends AbstractIndexShardComponent
         currentMetric.inc();
     }
 
-    public void postPercolate(long tookInNanos) {
+    /**
+     * @param candidates the number of queries that were executed against the percolated document
+     * @param matches    the number of queries that matched the percolated document
+     */
+    public void postPercolate(long tookInNanos, long candidates, long matches) {
         currentMetric.dec();
         percolateMetric.inc(tookInNanos);
+        candidateQueries.inc(candidates);
+        matchedQueries.inc(matches);
     }
 
     /**
      * @return The current metrics
      */
     public PercolateStats stats() {
-        return new PercolateStats(percolateMetric.count(), TimeUnit.NANOSECONDS.toMillis(percolateMetric.sum()), currentMetric.count(), -1, numberOfQueries.count());
+        return new PercolateStats(percolateMetric.count(), TimeUnit.NANOSECONDS.toMillis(percolateMetric.sum()), currentMetric.count(), -1, numberOfQueries.count(),
+                candidateQueries.count(), matchedQueries.count());
     }
 
     // Enable when a more efficient manner is found for estimating the size of a Lucene query.
@@ -20,10 +20,10 @@ package org.elasticsearch.index.percolator;
 
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
-import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.SimpleCollector;
 import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.index.fielddata.IndexFieldData;
 import org.elasticsearch.index.fielddata.IndexFieldDataService;
@@ -39,27 +39,26 @@ import java.util.HashMap;
 import java.util.Map;
 
 /**
+ * Collects the sources of the percolator queries by id, the queries are parsed by the {@link PercolatorQueriesRegistry}.
  */
 final class QueriesLoaderCollector extends SimpleCollector {
 
-    private final Map<BytesRef, Query> queries = new HashMap<>();
+    private final Map<BytesRef, BytesReference> sources = new HashMap<>();
     private final FieldsVisitor fieldsVisitor = new FieldsVisitor(true);
-    private final PercolatorQueriesRegistry percolator;
     private final IndexFieldData<?> uidFieldData;
     private final ESLogger logger;
 
     private SortedBinaryDocValues uidValues;
     private LeafReader reader;
 
-    QueriesLoaderCollector(PercolatorQueriesRegistry percolator, ESLogger logger, MapperService mapperService, IndexFieldDataService indexFieldDataService) {
-        this.percolator = percolator;
+    QueriesLoaderCollector(ESLogger logger, MapperService mapperService, IndexFieldDataService indexFieldDataService) {
         this.logger = logger;
         final MappedFieldType uidMapper = mapperService.smartNameFieldType(UidFieldMapper.NAME);
         this.uidFieldData = indexFieldDataService.getForField(uidMapper);
     }
 
-    public Map<BytesRef, Query> queries() {
-        return this.queries;
+    public Map<BytesRef, BytesReference> sources() {
+        return this.sources;
     }
 
     @Override
@@ -73,18 +72,10 @@ final class QueriesLoaderCollector extends SimpleCollector {
             final BytesRef id = Uid.splitUidIntoTypeAndId(uid)[1];
             fieldsVisitor.reset();
             reader.document(doc, fieldsVisitor);
-
-            try {
-                // id is only used for logging, if we fail we log the id in the catch statement
-                final Query parseQuery = percolator.parsePercolatorDocument(null, fieldsVisitor.source());
-                if (parseQuery != null) {
-                    queries.put(BytesRef.deepCopyOf(id), parseQuery);
-                } else {
-                    logger.warn("failed to add query [{}] - parser returned null", id);
-                }
-
-            } catch (Exception e) {
-                logger.warn("failed to add query [{}]", e, id.utf8ToString());
+            if (fieldsVisitor.source() != null) {
+                sources.put(BytesRef.deepCopyOf(id), fieldsVisitor.source());
+            } else {
+                logger.warn("failed to add query [{}] - no source", id.utf8ToString());
             }
         }
     }
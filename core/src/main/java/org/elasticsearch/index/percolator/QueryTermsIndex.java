@@ -0,0 +1,370 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.percolator;
+
+import org.apache.lucene.index.Fields;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.DisjunctionMaxQuery;
+import org.apache.lucene.search.MultiPhraseQuery;
+import org.apache.lucene.search.MultiTermQuery;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.spans.SpanFirstQuery;
+import org.apache.lucene.search.spans.SpanNearQuery;
+import org.apache.lucene.search.spans.SpanNotQuery;
+import org.apache.lucene.search.spans.SpanOrQuery;
+import org.apache.lucene.search.spans.SpanQuery;
+import org.apache.lucene.search.spans.SpanTermQuery;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.lucene.search.function.FiltersFunctionScoreQuery;
+import org.elasticsearch.common.lucene.search.function.FunctionScoreQuery;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Selects the percolator queries that can possibly match a document, so that only those need to be executed against it.
+ * <p>
+ * When a query is registered the terms it requires are extracted from it: a document can only match the query if it
+ * contains at least one of these terms. Queries on ranges of terms, like range and prefix queries, require the document
+ * to have at least a term in the field they run on. The extracted terms are kept in an inverted index from terms to
+ * queries. Queries that no terms can be extracted from are candidates for every document.
+ */
+public final class QueryTermsIndex {
+
+    // field -> term -> ids of the queries requiring that term
+    private final ConcurrentMap<String, ConcurrentMap<BytesRef, Set<BytesRef>>> termIndex = ConcurrentCollections.newConcurrentMap();
+    // field -> ids of the queries requiring any term in that field
+    private final ConcurrentMap<String, Set<BytesRef>> fieldIndex = ConcurrentCollections.newConcurrentMap();
+    // ids of the queries that need to run against every document
+    private final Set<BytesRef> unsupportedQueries = ConcurrentCollections.newConcurrentSet();
+
+    private final Map<BytesRef, QueryTerms> registered = ConcurrentCollections.newConcurrentMap();
+
+    /**
+     * Registers the query with the given id, replacing a previously registered query with the same id.
+     */
+    public void add(BytesRef id, Query query) {
+        QueryTerms extracted = extractQueryTerms(query);
+        final QueryTerms queryTerms = extracted == null || extracted.isEmpty() ? QueryTerms.UNSUPPORTED : extracted;
+        synchronized (this) {
+            // index the new terms before the stale ones are removed, so that concurrent percolations don't miss the query
+            index(id, queryTerms);
+            QueryTerms previous = registered.put(id, queryTerms);
+            if (previous != null) {
+                unindex(id, previous, queryTerms);
+            }
+        }
+    }
+
+    /**
+     * Removes the query with the given id.
+     */
+    public synchronized void remove(BytesRef id) {
+        QueryTerms previous = registered.remove(id);
+        if (previous != null) {
+            unindex(id, previous, QueryTerms.EMPTY);
+        }
+    }
+
+    public synchronized void clear() {
+        termIndex.clear();
+        fieldIndex.clear();
+        unsupportedQueries.clear();
+        registered.clear();
+    }
+
+    /**
+     * Returns the ids of the queries that can match the documents of the given reader: the queries requiring any of the
+     * terms of the documents and the queries that terms could not be extracted from.
+     */
+    public Set<BytesRef> candidates(IndexReader reader) throws IOException {
+        Set<BytesRef> candidates = new HashSet<>(unsupportedQueries);
+        Fields fields = MultiFields.getFields(reader);
+        if (fields == null) {
+            return candidates;
+        }
+        for (String field : fields) {
+            Terms terms = fields.terms(field);
+            if (terms == null) {
+                continue;
+            }
+            Set<BytesRef> fieldQueries = fieldIndex.get(field);
+            if (fieldQueries != null) {
+                candidates.addAll(fieldQueries);
+            }
+            Map<BytesRef, Set<BytesRef>> termQueries = termIndex.get(field);
+            if (termQueries == null) {
+                continue;
+            }
+            TermsEnum termsEnum = terms.iterator();
+            long numTerms = terms.size();
+            if (numTerms != -1 && termQueries.size() < numTerms) {
+                // fewer registered terms than terms in the document, so look the registered terms up in the document
+                for (Map.Entry<BytesRef, Set<BytesRef>> entry : termQueries.entrySet()) {
+                    if (termsEnum.seekExact(entry.getKey())) {
+                        candidates.addAll(entry.getValue());
+                    }
+                }
+            } else {
+                for (BytesRef term = termsEnum.next(); term != null; term = termsEnum.next()) {
+                    Set<BytesRef> queries = termQueries.get(term);
+                    if (queries != null) {
+                        candidates.addAll(queries);
+                    }
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Returns the number of queries that are candidates for every document.
+     */
+    public int unsupportedQueries() {
+        return unsupportedQueries.size();
+    }
+
+    private void index(BytesRef id, QueryTerms queryTerms) {
+        if (queryTerms == QueryTerms.UNSUPPORTED) {
+            unsupportedQueries.add(id);
+            return;
+        }
+        for (Term term : queryTerms.terms) {
+            ConcurrentMap<BytesRef, Set<BytesRef>> termQueries = termIndex.get(term.field());
+            if (termQueries == null) {
+                termQueries = ConcurrentCollections.newConcurrentMap();
+                termIndex.put(term.field(), termQueries);
+            }
+            Set<BytesRef> queries = termQueries.get(term.bytes());
+            if (queries == null) {
+                queries = ConcurrentCollections.newConcurrentSet();
+                termQueries.put(term.bytes(), queries);
+            }
+            queries.add(id);
+        }
+        for (String field : queryTerms.fields) {
+            Set<BytesRef> queries = fieldIndex.get(field);
+            if (queries == null) {
+                queries = ConcurrentCollections.newConcurrentSet();
+                fieldIndex.put(field, queries);
+            }
+            queries.add(id);
+        }
+    }
+
+    private void unindex(BytesRef id, QueryTerms previous, QueryTerms current) {
+        if (previous == QueryTerms.UNSUPPORTED) {
+            if (current != QueryTerms.UNSUPPORTED) {
+                unsupportedQueries.remove(id);
+            }
+            return;
+        }
+        for (Term term : previous.terms) {
+            if (current.terms.contains(term)) {
+                continue;
+            }
+            ConcurrentMap<BytesRef, Set<BytesRef>> termQueries = termIndex.get(term.field());
+            Set<BytesRef> queries = termQueries.get(term.bytes());
+            queries.remove(id);
+            if (queries.isEmpty()) {
+                termQueries.remove(term.bytes());
+                if (termQueries.isEmpty()) {
+                    termIndex.remove(term.field());
+                }
+            }
+        }
+        for (String field : previous.fields) {
+            if (current.fields.contains(field)) {
+                continue;
+            }
+            Set<BytesRef> queries = fieldIndex.get(field);
+            queries.remove(id);
+            if (queries.isEmpty()) {
+                fieldIndex.remove(field);
+            }
+        }
+    }
+
+    /**
+     * Extracts the terms of which at least one must be present in a document for the given query to match it.
+     * Returns <code>null</code> if no such terms can be extracted from the query.
+     */
+    static QueryTerms extractQueryTerms(Query query) {
+        if (query instanceof TermQuery) {
+            return QueryTerms.of(((TermQuery) query).getTerm());
+        } else if (query instanceof SpanTermQuery) {
+            return QueryTerms.of(((SpanTermQuery) query).getTerm());
+        } else if (query instanceof PhraseQuery) {
+            Term[] terms = ((PhraseQuery) query).getTerms();
+            if (terms.length == 0) {
+                return null;
+            }
+            // all terms are required, the longest one is likely to be the least frequent
+            Term longest = terms[0];
+            for (Term term : terms) {
+                if (term.bytes().length > longest.bytes().length) {
+                    longest = term;
+                }
+            }
+            return QueryTerms.of(longest);
+        } else if (query instanceof MultiPhraseQuery) {
+            QueryTerms best = null;
+            for (Term[] position : ((MultiPhraseQuery) query).getTermArrays()) {
+                if (position.length > 0) {
+                    best = selectBest(best, new QueryTerms(new HashSet<>(Arrays.asList(position)), Collections.emptySet()));
+                }
+            }
+            return best;
+        } else if (query instanceof ConstantScoreQuery) {
+            return extractQueryTerms(((ConstantScoreQuery) query).getQuery());
+        } else if (query instanceof BoostQuery) {
+            return extractQueryTerms(((BoostQuery) query).getQuery());
+        } else if (query instanceof FunctionScoreQuery) {
+            return extractQueryTerms(((FunctionScoreQuery) query).getSubQuery());
+        } else if (query instanceof FiltersFunctionScoreQuery) {
+            return extractQueryTerms(((FiltersFunctionScoreQuery) query).getSubQuery());
+        } else if (query instanceof SpanFirstQuery) {
+            return extractQueryTerms(((SpanFirstQuery) query).getMatch());
+        } else if (query instanceof SpanNotQuery) {
+            return extractQueryTerms(((SpanNotQuery) query).getInclude());
+        } else if (query instanceof SpanNearQuery) {
+            QueryTerms best = null;
+            for (SpanQuery clause : ((SpanNearQuery) query).getClauses()) {
+                best = selectBest(best, extractQueryTerms(clause));
+            }
+            return best;
+        } else if (query instanceof SpanOrQuery) {
+            return union(Arrays.asList(((SpanOrQuery) query).getClauses()));
+        } else if (query instanceof DisjunctionMaxQuery) {
+            return union(((DisjunctionMaxQuery) query).getDisjuncts());
+        } else if (query instanceof BooleanQuery) {
+            List<Query> shouldClauses = new ArrayList<>();
+            boolean hasRequiredClauses = false;
+            QueryTerms best = null;
+            for (BooleanClause clause : ((BooleanQuery) query).clauses()) {
+                if (clause.getOccur() == BooleanClause.Occur.MUST || clause.getOccur() == BooleanClause.Occur.FILTER) {
+                    hasRequiredClauses = true;
+                    best = selectBest(best, extractQueryTerms(clause.getQuery()));
+                } else if (clause.getOccur() == BooleanClause.Occur.SHOULD) {
+                    shouldClauses.add(clause.getQuery());
+                }
+            }
+            if (hasRequiredClauses) {
+                // optional clauses don't need to match if there are required clauses
+                return best;
+            }
+            return shouldClauses.isEmpty() ? null : union(shouldClauses);
+        } else if (query instanceof MultiTermQuery) {
+            return QueryTerms.of(((MultiTermQuery) query).getField());
+        }
+        return null;
+    }
+
+    private static QueryTerms union(Iterable<? extends Query> queries) {
+        Set<Term> terms = new HashSet<>();
+        Set<String> fields = new HashSet<>();
+        for (Query query : queries) {
+            QueryTerms queryTerms = extractQueryTerms(query);
+            if (queryTerms == null) {
+                // any of the queries may match, so all of them need to be supported
+                return null;
+            }
+            terms.addAll(queryTerms.terms);
+            fields.addAll(queryTerms.fields);
+        }
+        return new QueryTerms(terms, fields);
+    }
+
+    /**
+     * Of two sets of required terms, returns the one that is likely to select the fewest documents
+     */
+    private static QueryTerms selectBest(QueryTerms current, QueryTerms candidate) {
+        if (candidate == null || candidate.isEmpty()) {
+            return current;
+        } else if (current == null) {
+            return candidate;
+        }
+        if (current.fields.isEmpty() != candidate.fields.isEmpty()) {
+            // requiring a field is less selective than requiring terms
+            return current.fields.isEmpty() ? current : candidate;
+        }
+        int currentSize = current.terms.size() + current.fields.size();
+        int candidateSize = candidate.terms.size() + candidate.fields.size();
+        if (currentSize != candidateSize) {
+            return currentSize < candidateSize ? current : candidate;
+        }
+        return minTermLength(current) >= minTermLength(candidate) ? current : candidate;
+    }
+
+    private static int minTermLength(QueryTerms queryTerms) {
+        int min = Integer.MAX_VALUE;
+        for (Term term : queryTerms.terms) {
+            min = Math.min(min, term.bytes().length);
+        }
+        return min;
+    }
+
+    /**
+     * Terms and fields of which a document must contain at least one to match a query
+     */
+    static final class QueryTerms {
+
+        static final QueryTerms EMPTY = new QueryTerms(Collections.emptySet(), Collections.emptySet());
+        static final QueryTerms UNSUPPORTED = new QueryTerms(Collections.emptySet(), Collections.emptySet());
+
+        final Set<Term> terms;
+        final Set<String> fields;
+
+        QueryTerms(Set<Term> terms, Set<String> fields) {
+            this.terms = terms;
+            this.fields = fields;
+        }
+
+        static QueryTerms of(Term term) {
+            return new QueryTerms(Collections.singleton(term), Collections.emptySet());
+        }
+
+        static QueryTerms of(String field) {
+            return new QueryTerms(Collections.emptySet(), Collections.singleton(field));
+        }
+
+        boolean isEmpty() {
+            return terms.isEmpty() && fields.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.seqno;
+
+import java.util.BitSet;
+
+/**
+ * Hands out sequence numbers to operations executed on a primary and keeps track of the <em>local checkpoint</em>,
+ * the highest sequence number below which every operation has been processed by this shard copy. Operations
+ * may complete out of order, the ones above the checkpoint are remembered until the gap below them is closed.
+ */
+public class LocalCheckpointTracker {
+
+    /** the sequence number of an operation that was not assigned one, e.g. read from an older translog */
+    public static final long UNASSIGNED_SEQ_NO = -2L;
+
+    /** the checkpoint and maximum sequence number of a shard copy that did not process any operation yet */
+    public static final long NO_OPS_PERFORMED = -1L;
+
+    private long nextSeqNo;
+    private long checkpoint;
+    // bit i is set if checkpoint + 1 + i has been processed
+    private BitSet processedAboveCheckpoint = new BitSet();
+
+    /**
+     * @param maxSeqNo        the highest sequence number seen so far, {@link #NO_OPS_PERFORMED} if none
+     * @param localCheckpoint the checkpoint to start from, {@link #NO_OPS_PERFORMED} if none
+     */
+    public LocalCheckpointTracker(long maxSeqNo, long localCheckpoint) {
+        if (localCheckpoint < NO_OPS_PERFORMED) {
+            throw new IllegalArgumentException("local checkpoint must be non-negative or [" + NO_OPS_PERFORMED + "] but was ["
+                    + localCheckpoint + "]");
+        }
+        if (maxSeqNo < localCheckpoint) {
+            throw new IllegalArgumentException("max seq no [" + maxSeqNo + "] must be greater or equal to the local checkpoint ["
+                    + localCheckpoint + "]");
+        }
+        this.nextSeqNo = maxSeqNo + 1;
+        this.checkpoint = localCheckpoint;
+    }
+
+    /**
+     * Issues the next sequence number. It must be marked as completed once the operation was processed, whether it
+     * succeeded or not.
+     */
+    public synchronized long generateSeqNo() {
+        return nextSeqNo++;
+    }
+
+    /**
+     * Marks the given sequence number as processed and advances the checkpoint as far as possible.
+     */
+    public synchronized void markSeqNoAsCompleted(long seqNo) {
+        if (seqNo < 0) {
+            throw new IllegalArgumentException("can't mark seq no [" + seqNo + "] as completed");
+        }
+        if (seqNo >= nextSeqNo) {
+            // a replica has to continue after the operations of its primary should it be promoted
+            nextSeqNo = seqNo + 1;
+        }
+        if (seqNo <= checkpoint) {
+            return;
+        }
+        processedAboveCheckpoint.set(offset(seqNo));
+        advance();
+    }
+
+    /**
+     * Marks every sequence number up to and including the given one as processed. This is used once a shard copy
+     * is known to hold all of these operations, even though it did not process them one by one.
+     */
+    public synchronized void fastForward(long seqNo) {
+        if (seqNo <= checkpoint) {
+            return;
+        }
+        if (seqNo >= nextSeqNo) {
+            nextSeqNo = seqNo + 1;
+        }
+        final int shift = offset(seqNo) + 1;
+        processedAboveCheckpoint = processedAboveCheckpoint.get(shift, Math.max(shift, processedAboveCheckpoint.length()));
+        checkpoint = seqNo;
+        advance();
+    }
+
+    /** the highest sequence number below which every operation has been processed */
+    public synchronized long getCheckpoint() {
+        return checkpoint;
+    }
+
+    /** the highest sequence number issued or processed so far */
+    public synchronized long getMaxSeqNo() {
+        return nextSeqNo - 1;
+    }
+
+    private int offset(long seqNo) {
+        final long offset = seqNo - checkpoint - 1;
+        if (offset > Integer.MAX_VALUE) {
+            throw new IllegalStateException("seq no [" + seqNo + "] is too far ahead of the local checkpoint [" + checkpoint + "]");
+        }
+        return (int) offset;
+    }
+
+    private void advance() {
+        final int processed = processedAboveCheckpoint.nextClearBit(0);
+        if (processed > 0) {
+            checkpoint += processed;
+            processedAboveCheckpoint = processedAboveCheckpoint.get(processed, Math.max(processed, processedAboveCheckpoint.length()));
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "LocalCheckpointTracker{checkpoint=" + checkpoint + ", maxSeqNo=" + getMaxSeqNo() + "}";
+    }
+}
@@ -34,6 +34,7 @@ import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.action.admin.indices.flush.FlushRequest;
 import org.elasticsearch.action.admin.indices.forcemerge.ForceMergeRequest;
 import org.elasticsearch.action.admin.indices.upgrade.post.UpgradeRequest;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.termvectors.TermVectorsRequest;
 import org.elasticsearch.action.termvectors.TermVectorsResponse;
 import org.elasticsearch.cluster.node.DiscoveryNode;
@@ -136,6 +137,7 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 
@@ -218,6 +220,8 @@ public class IndexShard extends AbstractIndexShardComponent {
      * IndexingMemoryController}).
      */
     private final AtomicBoolean active = new AtomicBoolean();
+    /** Source bytes indexed since {@link IndexingMemoryController} last sampled this shard's write rate. */
+    private final AtomicLong indexedBytesSinceLastCheck = new AtomicLong();
 
     public IndexShard(ShardId shardId, IndexSettings indexSettings, ShardPath path, Store store, IndexCache indexCache,
                       MapperService mapperService, SimilarityService similarityService, IndexFieldDataService indexFieldDataService,
@@ -369,6 +373,14 @@ public class IndexShard extends AbstractIndexShardComponent {
                 if (!newRouting.primary() && currentRouting.primary()) {
                     logger.warn("suspect illegal state: trying to move shard from primary mode to replica mode");
                 }
+                if (newRouting.primary() && currentRouting.primary() == false) {
+                    // a promoted replica might not have received every operation the old primary issued, start a
+                    // new history so that no other copy gets recovered from its operations on the assumption they match
+                    final Engine engine = getEngineOrNull();
+                    if (engine != null) {
+                        engine.startNewHistory();
+                    }
+                }
                 // if its the same routing except for some metadata info, return
                 if (currentRouting.equalsIgnoringMetaData(newRouting)) {
                     this.shardRouting = newRouting; // might have a new version
@@ -467,11 +479,17 @@ public class IndexShard extends AbstractIndexShardComponent {
     }
 
     public Engine.Index prepareIndexOnPrimary(SourceToParse source, long version, VersionType versionType) {
+        return prepareIndexOnPrimary(source, version, versionType, IndexRequest.UNSET_AUTO_GENERATED_TIMESTAMP, false);
+    }
+
+    public Engine.Index prepareIndexOnPrimary(SourceToParse source, long version, VersionType versionType, long autoGeneratedIdTimestamp,
+                                              boolean isRetry) {
         try {
             if (shardRouting.primary() == false) {
                 throw new IllegalIndexShardStateException(shardId, state, "shard is not a primary");
             }
-            return prepareIndex(docMapper(source.type()), source, version, versionType, Engine.Operation.Origin.PRIMARY);
+            return prepareIndex(docMapper(source.type()), source, version, versionType, Engine.Operation.Origin.PRIMARY,
+                autoGeneratedIdTimestamp, isRetry);
         } catch (Throwable t) {
             verifyNotClosed(t);
             throw t;
@@ -479,8 +497,14 @@ public class IndexShard extends AbstractIndexShardComponent {
     }
 
     public Engine.Index prepareIndexOnReplica(SourceToParse source, long version, VersionType versionType) {
+        return prepareIndexOnReplica(source, version, versionType, IndexRequest.UNSET_AUTO_GENERATED_TIMESTAMP, false);
+    }
+
+    public Engine.Index prepareIndexOnReplica(SourceToParse source, long version, VersionType versionType, long autoGeneratedIdTimestamp,
+                                              boolean isRetry) {
         try {
-            return prepareIndex(docMapper(source.type()), source, version, versionType, Engine.Operation.Origin.REPLICA);
+            return prepareIndex(docMapper(source.type()), source, version, versionType, Engine.Operation.Origin.REPLICA,
+                autoGeneratedIdTimestamp, isRetry);
         } catch (Throwable t) {
             verifyNotClosed(t);
             throw t;
@@ -488,12 +512,18 @@ public class IndexShard extends AbstractIndexShardComponent {
     }
 
     static Engine.Index prepareIndex(DocumentMapperForType docMapper, SourceToParse source, long version, VersionType versionType, Engine.Operation.Origin origin) {
+        return prepareIndex(docMapper, source, version, versionType, origin, IndexRequest.UNSET_AUTO_GENERATED_TIMESTAMP, false);
+    }
+
+    static Engine.Index prepareIndex(DocumentMapperForType docMapper, SourceToParse source, long version, VersionType versionType, Engine.Operation.Origin origin,
+                                     long autoGeneratedIdTimestamp, boolean isRetry) {
         long startTime = System.nanoTime();
         ParsedDocument doc = docMapper.getDocumentMapper().parse(source);
         if (docMapper.getMapping() != null) {
             doc.addDynamicMappingsUpdate(docMapper.getMapping());
         }
-        return new Engine.Index(docMapper.getDocumentMapper().uidMapper().term(doc.uid().stringValue()), doc, version, versionType, origin, startTime);
+        return new Engine.Index(docMapper.getDocumentMapper().uidMapper().term(doc.uid().stringValue()), doc, version, versionType, origin, startTime,
+            autoGeneratedIdTimestamp, isRetry);
     }
 
     /**
@@ -510,6 +540,7 @@ public class IndexShard extends AbstractIndexShardComponent {
                 logger.trace("index [{}][{}]{}", index.type(), index.id(), index.docs());
             }
             created = getEngine().index(index);
+            indexedBytesSinceLastCheck.addAndGet(index.source().length());
             index.endTime(System.nanoTime());
         } catch (Throwable ex) {
             indexingService.postIndex(index, ex);
@@ -809,7 +840,7 @@ public class IndexShard extends AbstractIndexShardComponent {
         if (mapperService.hasMapping(PercolatorService.TYPE_NAME)) {
             refresh("percolator_load_queries");
             try (Engine.Searcher searcher = getEngine().acquireSearcher("percolator_load_queries")) {
-                this.percolatorQueriesRegistry.loadQueries(searcher.reader());
+                this.percolatorQueriesRegistry.loadQueries(searcher.reader(), threadPool.executor(ThreadPool.Names.GENERIC));
             }
         }
         synchronized (mutex) {
@@ -921,6 +952,29 @@ public class IndexShard extends AbstractIndexShardComponent {
         return this.recoveryState;
     }
 
+    /**
+     * Returns the local checkpoint of this shard copy, every operation with a lower or equal sequence number has
+     * been processed.
+     */
+    public long getLocalCheckpoint() {
+        return getEngine().getLocalCheckpointTracker().getCheckpoint();
+    }
+
+    /**
+     * Returns the identifier of the history of operations this shard copy holds.
+     */
+    public String getHistoryUUID() {
+        return getEngine().getHistoryUUID();
+    }
+
+    /**
+     * Takes over the history of the primary this shard copy was recovered from, once it holds every operation of
+     * the primary up to the given checkpoint.
+     */
+    public void adoptHistory(String historyUUID, long localCheckpoint) {
+        getEngine().adoptHistory(historyUUID, localCheckpoint);
+    }
+
     /**
      * perform the last stages of recovery once all translog operations are done.
      * note that you should still call {@link #postRecovery(String)}.
@@ -1087,6 +1141,29 @@ public class IndexShard extends AbstractIndexShardComponent {
         return active.get() == false;
     }
 
+    /**
+     * Returns the number of source bytes indexed into this shard since the previous call, and resets the counter.
+     * {@link IndexingMemoryController} uses this to apportion the node's indexing buffer by write rate.
+     */
+    public long getAndResetIndexedBytes() {
+        return indexedBytesSinceLastCheck.getAndSet(0);
+    }
+
+    /**
+     * Returns how many bytes of heap the {@code IndexWriter} currently uses for buffered documents, or 0 if the engine is closed.
+     */
+    public long getIndexBufferRAMBytesUsed() {
+        Engine engine = getEngineOrNull();
+        if (engine == null) {
+            return 0;
+        }
+        try {
+            return engine.indexWriterRAMBytesUsed();
+        } catch (AlreadyClosedException ex) {
+            return 0;
+        }
+    }
+
     /**
      * Returns {@code true} if this shard is active (has seen indexing ops in the last {@link
      * IndexShard#INDEX_SHARD_INACTIVE_TIME_SETTING} (default 5 minutes), else {@code false}.
@@ -67,6 +67,11 @@ public final class ShadowIndexShard extends IndexShard {
         return new MergeStats();
     }
 
+    @Override
+    public void adoptHistory(String historyUUID, long localCheckpoint) {
+        // shadow engines don't track sequence numbers
+    }
+
     @Override
     public boolean canIndex() {
         return false;
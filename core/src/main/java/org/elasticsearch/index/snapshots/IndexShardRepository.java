@@ -22,9 +22,12 @@ package org.elasticsearch.index.snapshots;
 import org.apache.lucene.index.IndexCommit;
 import org.elasticsearch.Version;
 import org.elasticsearch.cluster.metadata.SnapshotId;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.indices.recovery.RecoveryState;
 
+import java.util.Map;
+
 /**
  * Shard-level snapshot repository
  * <p>
@@ -62,6 +65,18 @@ public interface IndexShardRepository {
      */
     void restore(SnapshotId snapshotId, Version version, ShardId shardId, ShardId snapshotShardId, RecoveryState recoveryState);
 
+    /**
+     * Resumes the restore of files that were restored on demand from a snapshot of the shard but were not fully fetched
+     * before the node restarted, see {@link org.elasticsearch.index.store.OnDemandDirectory#detachedFiles()}.
+     * <p>
+     * The sources of the files restored on demand start with the {@link SnapshotId} they are restored from.
+     *
+     * @param snapshotId    snapshot id
+     * @param shardId       shard id
+     * @param detachedFiles the sources of the files to resume by file name
+     */
+    void resumeRestore(SnapshotId snapshotId, ShardId shardId, Map<String, BytesReference> detachedFiles);
+
     /**
      * Retrieve shard snapshot status for the stored snapshot
      *
@@ -24,6 +24,7 @@ import org.apache.lucene.index.IndexCommit;
 import org.apache.lucene.index.IndexFormatTooNewException;
 import org.apache.lucene.index.IndexFormatTooOldException;
 import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.IOContext;
 import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.store.IndexOutput;
@@ -39,17 +40,25 @@ import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.ParseFieldMatcher;
 import org.elasticsearch.common.blobstore.BlobContainer;
 import org.elasticsearch.common.blobstore.BlobMetaData;
+import org.elasticsearch.common.blobstore.BlobPart;
 import org.elasticsearch.common.blobstore.BlobPath;
 import org.elasticsearch.common.blobstore.BlobStore;
 import org.elasticsearch.common.bytes.BytesArray;
-import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.component.AbstractComponent;
 import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.lucene.Lucene;
 import org.elasticsearch.common.lucene.store.InputStreamIndexInput;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.util.concurrent.AbstractRunnable;
+import org.elasticsearch.common.util.concurrent.CooperativeTasks;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.common.util.iterable.Iterables;
+import org.elasticsearch.gateway.CorruptStateException;
 import org.elasticsearch.index.IndexService;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.snapshots.IndexShardRepository;
@@ -58,6 +67,8 @@ import org.elasticsearch.index.snapshots.IndexShardSnapshotException;
 import org.elasticsearch.index.snapshots.IndexShardSnapshotFailedException;
 import org.elasticsearch.index.snapshots.IndexShardSnapshotStatus;
 import org.elasticsearch.index.snapshots.blobstore.BlobStoreIndexShardSnapshot.FileInfo;
+import org.elasticsearch.index.store.DirectoryUtils;
+import org.elasticsearch.index.store.OnDemandDirectory;
 import org.elasticsearch.index.store.Store;
 import org.elasticsearch.index.store.StoreFileMetaData;
 import org.elasticsearch.indices.IndicesService;
@@ -68,17 +79,25 @@ import org.elasticsearch.repositories.blobstore.BlobStoreFormat;
 import org.elasticsearch.repositories.blobstore.BlobStoreRepository;
 import org.elasticsearch.repositories.blobstore.ChecksumBlobStoreFormat;
 import org.elasticsearch.repositories.blobstore.LegacyBlobStoreFormat;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
 
+import static java.util.Collections.emptyList;
 import static java.util.Collections.emptyMap;
 import static java.util.Collections.unmodifiableMap;
 import static org.elasticsearch.repositories.blobstore.BlobStoreRepository.testBlobPrefix;
@@ -89,6 +108,13 @@ import static org.elasticsearch.repositories.blobstore.BlobStoreRepository.testB
 public class BlobStoreIndexShardRepository extends AbstractComponent implements IndexShardRepository {
 
     private static final int BUFFER_SIZE = 4096;
+
+    /**
+     * Blobs larger than this are written in several parts which blob stores that support multipart uploads write
+     * concurrently
+     */
+    private static final long UPLOAD_PART_SIZE = new ByteSizeValue(32, ByteSizeUnit.MB).bytes();
+
     private BlobStore blobStore;
 
     private BlobPath basePath;
@@ -101,6 +127,8 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
 
     private final ClusterService clusterService;
 
+    private final ThreadPool threadPool;
+
     private RateLimiter snapshotRateLimiter;
 
     private RateLimiter restoreRateLimiter;
@@ -113,6 +141,12 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
 
     private boolean compress;
 
+    private int maxConcurrentUploads;
+
+    private Semaphore uploadPermits;
+
+    private final Executor uploadExecutor = this::executeUpload;
+
     private final ParseFieldMatcher parseFieldMatcher;
 
     protected static final String LEGACY_SNAPSHOT_PREFIX = "snapshot-";
@@ -131,6 +165,13 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
 
     protected static final String SNAPSHOT_INDEX_CODEC = "snapshots";
 
+    protected static final String INCREMENTAL_SNAPSHOT_INDEX_SUFFIX = ".bin";
+
+    /**
+     * The maximum number of generations of the snapshot index that only record changes before a full generation is written
+     */
+    protected static final int MAX_INDEX_DIFF_GENERATIONS = 16;
+
     protected static final String DATA_BLOB_PREFIX = "__";
 
     private ChecksumBlobStoreFormat<BlobStoreIndexShardSnapshot> indexShardSnapshotFormat;
@@ -140,12 +181,14 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
     private ChecksumBlobStoreFormat<BlobStoreIndexShardSnapshots> indexShardSnapshotsFormat;
 
     @Inject
-    public BlobStoreIndexShardRepository(Settings settings, RepositoryName repositoryName, IndicesService indicesService, ClusterService clusterService) {
+    public BlobStoreIndexShardRepository(Settings settings, RepositoryName repositoryName, IndicesService indicesService, ClusterService clusterService,
+                                         ThreadPool threadPool) {
         super(settings);
         this.parseFieldMatcher = new ParseFieldMatcher(settings);
         this.repositoryName = repositoryName.name();
         this.indicesService = indicesService;
         this.clusterService = clusterService;
+        this.threadPool = threadPool;
     }
 
     /**
@@ -154,10 +197,11 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
      * @param blobStore blob store
      * @param basePath  base path to blob store
      * @param chunkSize chunk size
+     * @param maxConcurrentUploads maximum number of snapshot threads that help uploading the files of shard snapshots
      */
     public void initialize(BlobStore blobStore, BlobPath basePath, ByteSizeValue chunkSize,
                            RateLimiter snapshotRateLimiter, RateLimiter restoreRateLimiter,
-                           final RateLimiterListener rateLimiterListener, boolean compress) {
+                           final RateLimiterListener rateLimiterListener, boolean compress, int maxConcurrentUploads) {
         this.blobStore = blobStore;
         this.basePath = basePath;
         this.chunkSize = chunkSize;
@@ -167,11 +211,38 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
         this.snapshotThrottleListener = nanos -> rateLimiterListener.onSnapshotPause(nanos);
         this.restoreThrottleListener = nanos -> rateLimiterListener.onRestorePause(nanos);
         this.compress = compress;
+        this.maxConcurrentUploads = maxConcurrentUploads;
+        this.uploadPermits = new Semaphore(maxConcurrentUploads);
         indexShardSnapshotFormat = new ChecksumBlobStoreFormat<>(SNAPSHOT_CODEC, SNAPSHOT_NAME_FORMAT, BlobStoreIndexShardSnapshot.PROTO, parseFieldMatcher, isCompress());
         indexShardSnapshotLegacyFormat = new LegacyBlobStoreFormat<>(LEGACY_SNAPSHOT_NAME_FORMAT, BlobStoreIndexShardSnapshot.PROTO, parseFieldMatcher);
         indexShardSnapshotsFormat = new ChecksumBlobStoreFormat<>(SNAPSHOT_INDEX_CODEC, SNAPSHOT_INDEX_NAME_FORMAT, BlobStoreIndexShardSnapshots.PROTO, parseFieldMatcher, isCompress());
     }
 
+    /**
+     * Runs an upload task on the snapshot thread pool unless {@code max_concurrent_uploads} tasks of this repository
+     * are running or queued already, in which case the task is rejected and the snapshotting thread uploads itself.
+     */
+    private void executeUpload(Runnable runnable) {
+        if (uploadPermits.tryAcquire() == false) {
+            throw new EsRejectedExecutionException("[" + repositoryName + "] all [" + maxConcurrentUploads + "] upload threads are busy");
+        }
+        boolean success = false;
+        try {
+            threadPool.executor(ThreadPool.Names.SNAPSHOT).execute(() -> {
+                try {
+                    runnable.run();
+                } finally {
+                    uploadPermits.release();
+                }
+            });
+            success = true;
+        } finally {
+            if (success == false) {
+                uploadPermits.release();
+            }
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -209,6 +280,35 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void resumeRestore(SnapshotId snapshotId, ShardId shardId, Map<String, BytesReference> detachedFiles) {
+        try {
+            final Map<String, String> blobNames = new HashMap<>();
+            Version version = null;
+            ShardId snapshotShardId = null;
+            for (Map.Entry<String, BytesReference> entry : detachedFiles.entrySet()) {
+                // see RestoreContext#onDemandSource
+                try (StreamInput in = StreamInput.wrap(entry.getValue())) {
+                    final SnapshotId fileSnapshotId = SnapshotId.readSnapshotId(in);
+                    if (fileSnapshotId.equals(snapshotId) == false) {
+                        throw new IllegalArgumentException("file [" + entry.getKey() + "] is restored from snapshot [" + fileSnapshotId + "]");
+                    }
+                    version = Version.readVersion(in);
+                    snapshotShardId = ShardId.readShardId(in);
+                    blobNames.put(entry.getKey(), in.readString());
+                }
+            }
+            if (snapshotShardId != null) {
+                new RestoreContext(snapshotId, version, shardId, snapshotShardId, null).resume(blobNames);
+            }
+        } catch (Throwable e) {
+            throw new IndexShardRestoreFailedException(shardId, "failed to resume restore of snapshot [" + snapshotId.getSnapshot() + "]", e);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -271,6 +371,13 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
         return compress;
     }
 
+    /**
+     * Returns the name of a generation of the incremental snapshot index
+     */
+    static String incrementalIndexBlobName(int generation) {
+        return SNAPSHOT_INDEX_PREFIX + generation + INCREMENTAL_SNAPSHOT_INDEX_SUFFIX;
+    }
+
     BlobStoreFormat<BlobStoreIndexShardSnapshot> indexShardSnapshotFormat(Version version) {
         if (BlobStoreRepository.legacyMetaData(version)) {
             return indexShardSnapshotLegacyFormat;
@@ -307,16 +414,7 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
          * Delete shard snapshot
          */
         public void delete() {
-            final Map<String, BlobMetaData> blobs;
-            try {
-                blobs = blobContainer.listBlobs();
-            } catch (IOException e) {
-                throw new IndexShardSnapshotException(shardId, "Failed to list content of gateway", e);
-            }
-
-            Tuple<BlobStoreIndexShardSnapshots, Integer> tuple = buildBlobStoreIndexShardSnapshots(blobs);
-            BlobStoreIndexShardSnapshots snapshots = tuple.v1();
-            int fileListGeneration = tuple.v2();
+            final ShardSnapshotsIndex index = loadShardSnapshots();
 
             try {
                 indexShardSnapshotFormat(version).delete(blobContainer, snapshotId.getSnapshot());
@@ -326,13 +424,13 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
 
             // Build a list of snapshots that should be preserved
             List<SnapshotFiles> newSnapshotsList = new ArrayList<>();
-            for (SnapshotFiles point : snapshots) {
+            for (SnapshotFiles point : index.snapshots) {
                 if (!point.snapshot().equals(snapshotId.getSnapshot())) {
                     newSnapshotsList.add(point);
                 }
             }
-            // finalize the snapshot and rewrite the snapshot index with the next sequential snapshot index
-            finalize(newSnapshotsList, fileListGeneration + 1, blobs);
+            // finalize the snapshot and write the next generation of the snapshot index
+            finalize(newSnapshotsList, index, index.dataGeneration);
         }
 
         /**
@@ -347,59 +445,103 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
         }
 
         /**
-         * Removes all unreferenced files from the repository and writes new index file
+         * Removes the files that are no longer referenced from the repository and writes the next generation of the
+         * snapshot index.
          *
-         * We need to be really careful in handling index files in case of failures to make sure we have index file that
-         * points to files that were deleted.
+         * The new generation is written before any file is deleted so that the index never points to deleted files. It
+         * records the blobs that are deleted afterwards, and the deletes that failed are retried when the generation after
+         * it is written. If the snapshot index was read without listing the container only the files of the snapshots that
+         * are removed are candidates for deletion. Every full generation lists the container though, and all unreferenced
+         * blobs of the container are deleted, so that blobs that leaked, e.g. because a node died while uploading them,
+         * are eventually reclaimed.
          *
-         *
-         * @param snapshots list of active snapshots in the container
-         * @param fileListGeneration the generation number of the snapshot index file
-         * @param blobs     list of blobs in the container
+         * @param snapshots      list of active snapshots in the container
+         * @param index          the snapshot index that was loaded before the change
+         * @param dataGeneration the highest data blob number issued so far
          */
-        protected void finalize(List<SnapshotFiles> snapshots, int fileListGeneration, Map<String, BlobMetaData> blobs) {
+        protected void finalize(List<SnapshotFiles> snapshots, ShardSnapshotsIndex index, long dataGeneration) {
             BlobStoreIndexShardSnapshots newSnapshots = new BlobStoreIndexShardSnapshots(snapshots);
-            List<String> blobsToDelete = new ArrayList<>();
-            // delete old index files first
-            for (String blobName : blobs.keySet()) {
-                // delete old file lists
-                if (indexShardSnapshotsFormat.isTempBlobName(blobName) || blobName.startsWith(SNAPSHOT_INDEX_PREFIX)) {
-                    blobsToDelete.add(blobName);
+            final int fileListGeneration = index.generation + 1;
+            final boolean full = index.chainLength < 0 || index.chainLength >= MAX_INDEX_DIFF_GENERATIONS;
+            List<String> obsoleteIndexBlobs = new ArrayList<>();
+            if (full || snapshots.isEmpty()) {
+                obsoleteIndexBlobs.addAll(index.indexBlobs);
+            }
+
+            Map<String, BlobMetaData> blobs = index.blobs;
+            if (blobs == null && full) {
+                try {
+                    blobs = blobContainer.listBlobs();
+                } catch (IOException e) {
+                    logger.debug("[{}] [{}] failed to list the container, skipping the cleanup of unreferenced blobs", e, snapshotId, shardId);
                 }
             }
 
-            try {
-                blobContainer.deleteBlobs(blobsToDelete);
-            } catch (IOException e) {
-                // We cannot delete index file - this is fatal, we cannot continue, otherwise we might end up
-                // with references to non-existing files
-                throw new IndexShardSnapshotFailedException(shardId, "error deleting index files during cleanup", e);
+            // none of the pending deletes is referenced anymore and new blobs never reuse their names
+            final List<String> pendingDeletes = new ArrayList<>();
+            for (String blobName : index.pendingDeletes) {
+                try {
+                    blobContainer.deleteBlob(blobName);
+                } catch (IOException e) {
+                    logger.debug("[{}] [{}] failed to delete unreferenced blob [{}] again", e, snapshotId, shardId, blobName);
+                    pendingDeletes.add(blobName);
+                }
             }
 
-            blobsToDelete = new ArrayList<>();
-            // now go over all the blobs, and if they don't exists in a snapshot, delete them
-            for (String blobName : blobs.keySet()) {
-                // delete unused files
-                if (blobName.startsWith(DATA_BLOB_PREFIX)) {
-                    if (newSnapshots.findNameFile(FileInfo.canonicalName(blobName)) == null) {
-                        blobsToDelete.add(blobName);
+            List<String> blobsToDelete = new ArrayList<>();
+            if (blobs != null) {
+                for (String blobName : blobs.keySet()) {
+                    if (indexShardSnapshotsFormat.isTempBlobName(blobName)) {
+                        // leftovers of legacy snapshot indices that failed to be written
+                        obsoleteIndexBlobs.add(blobName);
+                    } else if (blobName.startsWith(DATA_BLOB_PREFIX)) {
+                        if (newSnapshots.findNameFile(FileInfo.canonicalName(blobName)) == null) {
+                            blobsToDelete.add(blobName);
+                        }
+                    }
+                }
+            } else {
+                for (SnapshotFiles point : index.snapshots) {
+                    for (FileInfo fileInfo : point.indexFiles()) {
+                        if (newSnapshots.findNameFile(fileInfo.name()) == null) {
+                            for (int i = 0; i < fileInfo.numberOfParts(); i++) {
+                                blobsToDelete.add(fileInfo.partName(i));
+                            }
+                        }
                     }
                 }
             }
-            try {
-                blobContainer.deleteBlobs(blobsToDelete);
-            } catch (IOException e) {
-                logger.debug("[{}] [{}] error deleting some of the blobs [{}] during cleanup", e, snapshotId, shardId, blobsToDelete);
-            }
+            pendingDeletes.addAll(blobsToDelete);
 
             // If we deleted all snapshots - we don't need to create the index file
             if (snapshots.size() > 0) {
+                final List<SnapshotFiles> previousSnapshots = new ArrayList<>();
+                for (SnapshotFiles point : index.snapshots) {
+                    previousSnapshots.add(point);
+                }
+                final IncrementalShardSnapshotsFormat.Generation generation = full
+                        ? IncrementalShardSnapshotsFormat.Generation.full(snapshots, dataGeneration, pendingDeletes)
+                        : IncrementalShardSnapshotsFormat.Generation.diff(previousSnapshots, snapshots, dataGeneration, pendingDeletes);
                 try {
-                    indexShardSnapshotsFormat.writeAtomic(newSnapshots, blobContainer, Integer.toString(fileListGeneration));
+                    IncrementalShardSnapshotsFormat.write(generation, index.knownFiles.keySet(), blobContainer,
+                            incrementalIndexBlobName(fileListGeneration));
                 } catch (IOException e) {
                     throw new IndexShardSnapshotFailedException(shardId, "Failed to write file list", e);
                 }
             }
+
+            try {
+                blobContainer.deleteBlobs(blobsToDelete);
+            } catch (IOException e) {
+                logger.debug("[{}] [{}] error deleting some of the blobs [{}] during cleanup, retrying with the next change", e,
+                        snapshotId, shardId, blobsToDelete);
+            }
+
+            try {
+                blobContainer.deleteBlobs(obsoleteIndexBlobs);
+            } catch (IOException e) {
+                logger.debug("[{}] [{}] error deleting obsolete index files [{}] during cleanup", e, snapshotId, shardId, obsoleteIndexBlobs);
+            }
         }
 
         /**
@@ -438,28 +580,53 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
         }
 
         /**
-         * Loads all available snapshots in the repository
-         *
-         * @param blobs list of blobs in repository
-         * @return tuple of BlobStoreIndexShardSnapshots and the last snapshot index generation
+         * Loads all available snapshots in the repository. Only the generations of the snapshot index are listed and
+         * read unless the index is missing, unreadable or in the legacy format, in which case the whole container is
+         * listed.
          */
-        protected Tuple<BlobStoreIndexShardSnapshots, Integer> buildBlobStoreIndexShardSnapshots(Map<String, BlobMetaData> blobs) {
+        protected ShardSnapshotsIndex loadShardSnapshots() {
+            final Map<String, BlobMetaData> indexBlobs;
+            try {
+                indexBlobs = blobContainer.listBlobsByPrefix(SNAPSHOT_INDEX_PREFIX);
+            } catch (IOException e) {
+                throw new IndexShardSnapshotException(shardId, "Failed to list content of gateway", e);
+            }
             int latest = -1;
-            for (String name : blobs.keySet()) {
-                if (name.startsWith(SNAPSHOT_INDEX_PREFIX)) {
-                    try {
-                        int gen = Integer.parseInt(name.substring(SNAPSHOT_INDEX_PREFIX.length()));
-                        if (gen > latest) {
-                            latest = gen;
-                        }
-                    } catch (NumberFormatException ex) {
-                        logger.warn("failed to parse index file name [{}]", name);
+            boolean incremental = false;
+            for (String name : indexBlobs.keySet()) {
+                final boolean isIncremental = name.endsWith(INCREMENTAL_SNAPSHOT_INDEX_SUFFIX);
+                final String gen = name.substring(SNAPSHOT_INDEX_PREFIX.length(),
+                        isIncremental ? name.length() - INCREMENTAL_SNAPSHOT_INDEX_SUFFIX.length() : name.length());
+                try {
+                    int generation = Integer.parseInt(gen);
+                    if (generation > latest) {
+                        latest = generation;
+                        incremental = isIncremental;
                     }
+                } catch (NumberFormatException ex) {
+                    logger.warn("failed to parse index file name [{}]", name);
                 }
             }
-            if (latest >= 0) {
+            if (latest >= 0 && incremental) {
+                try {
+                    return readIncrementalShardSnapshots(latest, indexBlobs.keySet());
+                } catch (IOException e) {
+                    logger.warn("failed to read index file  [{}]", e, incrementalIndexBlobName(latest));
+                }
+            }
+
+            final Map<String, BlobMetaData> blobs;
+            try {
+                blobs = blobContainer.listBlobs();
+            } catch (IOException e) {
+                throw new IndexShardSnapshotException(shardId, "Failed to list content of gateway", e);
+            }
+            final long dataGeneration = findLatestFileNameGeneration(blobs);
+            if (latest >= 0 && incremental == false) {
                 try {
-                    return new Tuple<>(indexShardSnapshotsFormat.read(blobContainer, Integer.toString(latest)), latest);
+                    BlobStoreIndexShardSnapshots snapshots = indexShardSnapshotsFormat.read(blobContainer, Integer.toString(latest));
+                    return new ShardSnapshotsIndex(snapshots, latest, -1, dataGeneration, emptyMap(), indexBlobs.keySet(), blobs,
+                            emptyList());
                 } catch (IOException e) {
                     logger.warn("failed to read index file  [{}]", e, SNAPSHOT_INDEX_PREFIX + latest);
                 }
@@ -482,7 +649,81 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
                     logger.warn("failed to read commit point [{}]", e, name);
                 }
             }
-            return new Tuple<>(new BlobStoreIndexShardSnapshots(snapshots), -1);
+            return new ShardSnapshotsIndex(new BlobStoreIndexShardSnapshots(snapshots), latest, -1, dataGeneration, emptyMap(),
+                    indexBlobs.keySet(), blobs, emptyList());
+        }
+
+        /**
+         * Reads the generations of the snapshot index from the given one back to the last full generation, and applies
+         * them in order.
+         */
+        private ShardSnapshotsIndex readIncrementalShardSnapshots(int latest, Collection<String> indexBlobs) throws IOException {
+            final List<byte[]> chain = new ArrayList<>();
+            for (int generation = latest; ; generation--) {
+                if (generation < 0) {
+                    throw new CorruptStateException("no full generation of the snapshot index found before [" + latest + "]");
+                }
+                final byte[] bytes = IncrementalShardSnapshotsFormat.readBytes(blobContainer, incrementalIndexBlobName(generation));
+                chain.add(bytes);
+                if (IncrementalShardSnapshotsFormat.isFull(bytes, incrementalIndexBlobName(generation))) {
+                    break;
+                }
+            }
+            final Map<String, FileInfo> knownFiles = new HashMap<>();
+            List<SnapshotFiles> snapshots = Collections.emptyList();
+            long dataGeneration = -1;
+            List<String> pendingDeletes = Collections.emptyList();
+            for (int i = chain.size() - 1; i >= 0; i--) {
+                final IncrementalShardSnapshotsFormat.Generation generation =
+                        IncrementalShardSnapshotsFormat.read(chain.get(i), incrementalIndexBlobName(latest - i), knownFiles);
+                snapshots = generation.applyTo(snapshots);
+                dataGeneration = generation.dataGeneration();
+                pendingDeletes = generation.pendingDeletes();
+            }
+            return new ShardSnapshotsIndex(new BlobStoreIndexShardSnapshots(snapshots), latest, chain.size() - 1, dataGeneration,
+                    knownFiles, indexBlobs, null, pendingDeletes);
+        }
+    }
+
+    /**
+     * The snapshots of a shard together with what is needed to write the next generation of its snapshot index
+     */
+    private static class ShardSnapshotsIndex {
+
+        final BlobStoreIndexShardSnapshots snapshots;
+
+        // the latest generation of the snapshot index, -1 if there is none
+        final int generation;
+
+        // the number of diff generations on top of the last full generation, -1 if the index isn't incremental
+        final int chainLength;
+
+        // the highest data blob number issued so far
+        final long dataGeneration;
+
+        // the files described by the generations of the index by blob name
+        final Map<String, FileInfo> knownFiles;
+
+        // all blobs of the snapshot index
+        final Collection<String> indexBlobs;
+
+        // all blobs of the container if they had to be listed, null otherwise
+        final Map<String, BlobMetaData> blobs;
+
+        // the unreferenced blobs that the latest generation of the index recorded for deletion
+        final Collection<String> pendingDeletes;
+
+        ShardSnapshotsIndex(BlobStoreIndexShardSnapshots snapshots, int generation, int chainLength, long dataGeneration,
+                            Map<String, FileInfo> knownFiles, Collection<String> indexBlobs, Map<String, BlobMetaData> blobs,
+                            Collection<String> pendingDeletes) {
+            this.snapshots = snapshots;
+            this.generation = generation;
+            this.chainLength = chainLength;
+            this.dataGeneration = dataGeneration;
+            this.knownFiles = knownFiles;
+            this.indexBlobs = indexBlobs;
+            this.blobs = blobs;
+            this.pendingDeletes = pendingDeletes;
         }
     }
 
@@ -519,17 +760,10 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
             logger.debug("[{}] [{}] snapshot to [{}] ...", shardId, snapshotId, repositoryName);
             store.incRef();
             try {
-                final Map<String, BlobMetaData> blobs;
-                try {
-                    blobs = blobContainer.listBlobs();
-                } catch (IOException e) {
-                    throw new IndexShardSnapshotFailedException(shardId, "failed to list blobs", e);
-                }
-
-                long generation = findLatestFileNameGeneration(blobs);
-                Tuple<BlobStoreIndexShardSnapshots, Integer> tuple = buildBlobStoreIndexShardSnapshots(blobs);
-                BlobStoreIndexShardSnapshots snapshots = tuple.v1();
-                int fileListGeneration = tuple.v2();
+                final ShardSnapshotsIndex index = loadShardSnapshots();
+                final Map<String, BlobMetaData> blobs = index.blobs;
+                BlobStoreIndexShardSnapshots snapshots = index.snapshots;
+                long generation = index.dataGeneration;
 
                 final List<BlobStoreIndexShardSnapshot.FileInfo> indexCommitPointFiles = new ArrayList<>();
 
@@ -594,28 +828,42 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
 
                 snapshotStatus.updateStage(IndexShardSnapshotStatus.Stage.STARTED);
 
+                // the blobs of all files are uploaded concurrently, up to max_concurrent_uploads snapshot threads help this one
+                final List<CooperativeTasks.Task> uploads = new ArrayList<>();
                 for (FileInfo snapshotFileInfo : filesToSnapshot) {
+                    uploads.addAll(new FileUpload(snapshotFileInfo).tasks());
+                }
+                final BlobStoreIndexShardSnapshot snapshot;
+                boolean committed = false;
+                try {
                     try {
-                        snapshotFile(snapshotFileInfo);
+                        CooperativeTasks.run(uploads, uploadExecutor);
                     } catch (IOException e) {
                         throw new IndexShardSnapshotFailedException(shardId, "Failed to perform snapshot (index files)", e);
                     }
-                }
 
-                snapshotStatus.indexVersion(snapshotIndexCommit.getGeneration());
-                // now create and write the commit point
-                snapshotStatus.updateStage(IndexShardSnapshotStatus.Stage.FINALIZE);
+                    snapshotStatus.indexVersion(snapshotIndexCommit.getGeneration());
+                    // now create and write the commit point
+                    snapshotStatus.updateStage(IndexShardSnapshotStatus.Stage.FINALIZE);
 
-                BlobStoreIndexShardSnapshot snapshot = new BlobStoreIndexShardSnapshot(snapshotId.getSnapshot(),
-                        snapshotIndexCommit.getGeneration(), indexCommitPointFiles, snapshotStatus.startTime(),
-                        // snapshotStatus.startTime() is assigned on the same machine, so it's safe to use with VLong
-                        System.currentTimeMillis() - snapshotStatus.startTime(), indexNumberOfFiles, indexTotalFilesSize);
-                //TODO: The time stored in snapshot doesn't include cleanup time.
-                logger.trace("[{}] [{}] writing shard snapshot file", shardId, snapshotId);
-                try {
-                    indexShardSnapshotFormat.write(snapshot, blobContainer, snapshotId.getSnapshot());
-                } catch (IOException e) {
-                    throw new IndexShardSnapshotFailedException(shardId, "Failed to write commit point", e);
+                    snapshot = new BlobStoreIndexShardSnapshot(snapshotId.getSnapshot(),
+                            snapshotIndexCommit.getGeneration(), indexCommitPointFiles, snapshotStatus.startTime(),
+                            // snapshotStatus.startTime() is assigned on the same machine, so it's safe to use with VLong
+                            System.currentTimeMillis() - snapshotStatus.startTime(), indexNumberOfFiles, indexTotalFilesSize);
+                    //TODO: The time stored in snapshot doesn't include cleanup time.
+                    logger.trace("[{}] [{}] writing shard snapshot file", shardId, snapshotId);
+                    try {
+                        indexShardSnapshotFormat.write(snapshot, blobContainer, snapshotId.getSnapshot());
+                    } catch (IOException e) {
+                        throw new IndexShardSnapshotFailedException(shardId, "Failed to write commit point", e);
+                    }
+                    committed = true;
+                } finally {
+                    if (committed == false) {
+                        // no snapshot index references these blobs yet. Blobs that leak if the snapshot index fails to be
+                        // written later on are reclaimed by the cleanup of the next full generation.
+                        deleteUploadedFiles(filesToSnapshot);
+                    }
                 }
 
                 // delete all files that are not referenced by any commit point
@@ -625,8 +873,8 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
                 for (SnapshotFiles point : snapshots) {
                     newSnapshotsList.add(point);
                 }
-                // finalize the snapshot and rewrite the snapshot index with the next sequential snapshot index
-                finalize(newSnapshotsList, fileListGeneration + 1, blobs);
+                // finalize the snapshot and write the next generation of the snapshot index
+                finalize(newSnapshotsList, index, generation);
                 snapshotStatus.updateStage(IndexShardSnapshotStatus.Stage.DONE);
             } finally {
                 store.decRef();
@@ -634,30 +882,233 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
         }
 
         /**
-         * Snapshot individual file
-         * <p>
-         * This is asynchronous method. Upon completion of the operation latch is getting counted down and any failures are
-         * added to the {@code failures} list
-         *
-         * @param fileInfo file to be snapshotted
+         * Uploads the blobs of a single file. Every blob is written in parts of at most {@code UPLOAD_PART_SIZE} bytes,
+         * each of them computing the CRC32 of the bytes it reads, and the file checksum is verified by combining these
+         * once all blobs have been written.
          */
-        private void snapshotFile(final BlobStoreIndexShardSnapshot.FileInfo fileInfo) throws IOException {
-            final String file = fileInfo.physicalName();
-            try (IndexInput indexInput = store.openVerifyingInput(file, IOContext.READONCE, fileInfo.metadata())) {
-                for (int i = 0; i < fileInfo.numberOfParts(); i++) {
-                    final long partBytes = fileInfo.partBytes(i);
+        private class FileUpload {
+
+            private final FileInfo fileInfo;
+
+            private final UploadPart[][] blobParts;
 
-                    final InputStreamIndexInput inputStreamIndexInput = new InputStreamIndexInput(indexInput, partBytes);
-                    InputStream inputStream = snapshotRateLimiter == null ? inputStreamIndexInput : new RateLimitingInputStream(inputStreamIndexInput, snapshotRateLimiter, snapshotThrottleListener);
-                    inputStream = new AbortableInputStream(inputStream, fileInfo.physicalName());
-                    blobContainer.writeBlob(fileInfo.partName(i), inputStream, partBytes);
+            // the number of leading bytes of the file that its footer checksum covers: all but the checksum itself
+            private final long checksummedLength;
+
+            private final AtomicInteger pendingBlobs;
+
+            private final AtomicBoolean failed = new AtomicBoolean();
+
+            FileUpload(FileInfo fileInfo) {
+                this.fileInfo = fileInfo;
+                this.checksummedLength = Math.max(0, fileInfo.length() - 8);
+                this.blobParts = new UploadPart[(int) fileInfo.numberOfParts()][];
+                long offset = 0;
+                for (int i = 0; i < blobParts.length; i++) {
+                    final long blobBytes = fileInfo.partBytes(i);
+                    final int numberOfParts = (int) Math.max(1, (blobBytes + UPLOAD_PART_SIZE - 1) / UPLOAD_PART_SIZE);
+                    blobParts[i] = new UploadPart[numberOfParts];
+                    for (int j = 0; j < numberOfParts; j++) {
+                        final long partBytes = Math.min(UPLOAD_PART_SIZE, blobBytes - j * UPLOAD_PART_SIZE);
+                        blobParts[i][j] = new UploadPart(this, offset, partBytes);
+                        offset += partBytes;
+                    }
                 }
-                Store.verify(indexInput);
-                snapshotStatus.addProcessedFile(fileInfo.length());
+                this.pendingBlobs = new AtomicInteger(blobParts.length);
+            }
+
+            List<CooperativeTasks.Task> tasks() {
+                final List<CooperativeTasks.Task> tasks = new ArrayList<>(blobParts.length);
+                for (int i = 0; i < blobParts.length; i++) {
+                    final int blob = i;
+                    tasks.add(() -> uploadBlob(blob));
+                }
+                return tasks;
+            }
+
+            private void uploadBlob(int blob) throws IOException {
+                try {
+                    blobContainer.writeBlob(fileInfo.partName(blob), Arrays.asList(blobParts[blob]), uploadExecutor);
+                    if (pendingBlobs.decrementAndGet() == 0) {
+                        verifyChecksum();
+                        snapshotStatus.addProcessedFile(fileInfo.length());
+                    }
+                } catch (Throwable t) {
+                    failStoreIfCorrupted(t);
+                    if (failed.compareAndSet(false, true)) {
+                        snapshotStatus.addProcessedFile(0);
+                    }
+                    throw t;
+                }
+            }
+
+            private void verifyChecksum() throws IOException {
+                final StoreFileMetaData metadata = fileInfo.metadata();
+                if (metadata.hasLegacyChecksum() || metadata.checksum() == null) {
+                    // legacy files don't have a footer checksum, they are not verified as in Store#openVerifyingInput
+                    return;
+                }
+                long checksum = 0;
+                for (UploadPart[] parts : blobParts) {
+                    for (UploadPart part : parts) {
+                        if (part.checksum == -1) {
+                            throw new IOException("part of [" + fileInfo.physicalName() + "] at [" + part.offset + "] was not read entirely");
+                        }
+                        checksum = CRC32Combine.combine(checksum, part.checksum, part.checksummedLength());
+                    }
+                }
+                final String actualChecksum = Store.digestToString(checksum);
+                if (actualChecksum.equals(metadata.checksum()) == false) {
+                    throw new CorruptIndexException("checksum failed (hardware problem?) : expected=" + metadata.checksum() +
+                            " actual=" + actualChecksum + " (resource=" + metadata.toString() + ")", fileInfo.physicalName());
+                }
+            }
+        }
+
+        /**
+         * A part of a blob, read from the store file at the given offset
+         */
+        private class UploadPart implements BlobPart {
+
+            private final FileUpload file;
+
+            private final long offset;
+
+            private final long length;
+
+            // the CRC32 of the checksummed bytes of this part, published once the part has been read entirely
+            private volatile long checksum = -1;
+
+            UploadPart(FileUpload file, long offset, long length) {
+                this.file = file;
+                this.offset = offset;
+                this.length = length;
+            }
+
+            @Override
+            public long length() {
+                return length;
+            }
+
+            /**
+             * The number of bytes of this part that the footer checksum of the file covers
+             */
+            long checksummedLength() {
+                return Math.max(0, Math.min(length, file.checksummedLength - offset));
+            }
+
+            @Override
+            public InputStream openStream() throws IOException {
+                final IndexInput indexInput = store.directory().openInput(file.fileInfo.physicalName(), IOContext.READONCE);
+                boolean success = false;
+                try {
+                    indexInput.seek(offset);
+                    InputStream inputStream = new ChecksumPartInputStream(this, indexInput);
+                    inputStream = snapshotRateLimiter == null ? inputStream : new RateLimitingInputStream(inputStream, snapshotRateLimiter, snapshotThrottleListener);
+                    inputStream = new AbortableInputStream(inputStream, file.fileInfo.physicalName());
+                    success = true;
+                    return inputStream;
+                } finally {
+                    if (success == false) {
+                        IOUtils.closeWhileHandlingException(indexInput);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Reads an upload part and computes the CRC32 of its checksummed bytes
+         */
+        private class ChecksumPartInputStream extends FilterInputStream {
+
+            private final UploadPart part;
+
+            private final IndexInput indexInput;
+
+            private final long checksummedLength;
+
+            private final CRC32 crc = new CRC32();
+
+            private long position;
+
+            ChecksumPartInputStream(UploadPart part, IndexInput indexInput) {
+                super(new InputStreamIndexInput(indexInput, part.length()));
+                this.part = part;
+                this.indexInput = indexInput;
+                this.checksummedLength = part.checksummedLength();
+            }
+
+            @Override
+            public int read() throws IOException {
+                final int b = in.read();
+                if (b != -1) {
+                    if (position < checksummedLength) {
+                        crc.update(b);
+                    }
+                    position++;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                final int read = in.read(b, off, len);
+                if (read > 0) {
+                    final int checksummed = (int) Math.max(0, Math.min(read, checksummedLength - position));
+                    if (checksummed > 0) {
+                        crc.update(b, off, checksummed);
+                    }
+                    position += read;
+                }
+                return read;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                // skipped bytes still have to be checksummed
+                final byte[] buffer = new byte[(int) Math.max(0, Math.min(n, BUFFER_SIZE))];
+                long skipped = 0;
+                while (skipped < n) {
+                    final int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                    if (read <= 0) {
+                        break;
+                    }
+                    skipped += read;
+                }
+                return skipped;
+            }
+
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (position == part.length()) {
+                    part.checksum = crc.getValue();
+                }
+                indexInput.close();
+            }
+        }
+
+        private void deleteUploadedFiles(List<FileInfo> files) {
+            try {
+                // the commit point may have been written even if writing it failed
+                indexShardSnapshotFormat.delete(blobContainer, snapshotId.getSnapshot());
+            } catch (Throwable t) {
+                logger.debug("[{}] [{}] failed to delete the commit point of the failed snapshot", t, shardId, snapshotId);
+            }
+            final List<String> blobNames = new ArrayList<>();
+            for (FileInfo fileInfo : files) {
+                for (int i = 0; i < fileInfo.numberOfParts(); i++) {
+                    blobNames.add(fileInfo.partName(i));
+                }
+            }
+            try {
+                blobContainer.deleteBlobs(blobNames);
             } catch (Throwable t) {
-                failStoreIfCorrupted(t);
-                snapshotStatus.addProcessedFile(0);
-                throw t;
+                logger.debug("[{}] [{}] failed to delete the files of the failed snapshot", t, shardId, snapshotId);
             }
         }
 
@@ -675,10 +1126,18 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
          * Checks if snapshot file already exists in the list of blobs
          *
          * @param fileInfo file to check
-         * @param blobs    list of blobs
+         * @param blobs    list of blobs, null if the container was not listed, in which case the blobs of the file are listed
          * @return true if file exists in the list of blobs
          */
         private boolean snapshotFileExistsInBlobs(BlobStoreIndexShardSnapshot.FileInfo fileInfo, Map<String, BlobMetaData> blobs) {
+            if (blobs == null) {
+                try {
+                    blobs = blobContainer.listBlobsByPrefix(fileInfo.name());
+                } catch (IOException e) {
+                    logger.debug("[{}] [{}] failed to list the blobs of [{}], uploading it again", e, shardId, snapshotId, fileInfo.name());
+                    return false;
+                }
+            }
             BlobMetaData blobMetaData = blobs.get(fileInfo.name());
             if (blobMetaData != null) {
                 return blobMetaData.length() == fileInfo.length();
@@ -770,6 +1229,51 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
         }
     }
 
+    /**
+     * Reads ranges of a snapshotted file from the parts it is stored in
+     */
+    private static final class PartRangeRemoteFile implements OnDemandDirectory.RemoteFile {
+
+        private final BlobContainer container;
+        private final FileInfo info;
+        private final BytesReference source;
+
+        PartRangeRemoteFile(BlobContainer container, FileInfo info, BytesReference source) {
+            this.container = container;
+            this.info = info;
+            this.source = source;
+        }
+
+        @Override
+        public StoreFileMetaData metadata() {
+            return info.metadata();
+        }
+
+        @Override
+        public BytesReference source() {
+            return source;
+        }
+
+        @Override
+        public InputStream openStream(final long position, final long length) throws IOException {
+            // all parts but the last one have the size of the first part
+            final long partBytes = info.partBytes(0);
+            final long end = position + length;
+            final long firstPart = position / partBytes;
+            final long lastPart = length == 0 ? firstPart : (end - 1) / partBytes;
+            return new SlicedInputStream(lastPart - firstPart + 1) {
+                @Override
+                protected InputStream openSlice(long slice) throws IOException {
+                    final long part = firstPart + slice;
+                    final long partStart = part * partBytes;
+                    final long from = Math.max(position, partStart);
+                    final long to = Math.min(end, partStart + info.partBytes((int) part));
+                    return container.readBlob(info.partName(part), from - partStart, to - from);
+                }
+            };
+        }
+    }
+
     /**
      * Context for restore operations
      */
@@ -777,6 +1281,8 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
 
         private final Store store;
 
+        private final ShardId snapshotShardId;
+
         private final RecoveryState recoveryState;
 
         /**
@@ -785,14 +1291,58 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
          * @param snapshotId      snapshot id
          * @param shardId         shard to be restored
          * @param snapshotShardId shard in the snapshot that data should be restored from
-         * @param recoveryState   recovery state to report progress
+         * @param recoveryState   recovery state to report progress, <code>null</code> if a restore is resumed
          */
         public RestoreContext(SnapshotId snapshotId, Version version, ShardId shardId, ShardId snapshotShardId, RecoveryState recoveryState) {
             super(snapshotId, version, shardId, snapshotShardId);
             store = indicesService.indexServiceSafe(shardId.getIndex()).getShardOrNull(shardId.id()).store();
+            this.snapshotShardId = snapshotShardId;
             this.recoveryState = recoveryState;
         }
 
+        /**
+         * Attaches the files that were restored on demand but not fully fetched before the node restarted to the
+         * snapshot again and fetches them in the background
+         *
+         * @param blobNames the names of the blobs of the files to attach by physical name
+         */
+        public void resume(Map<String, String> blobNames) throws IOException {
+            store.incRef();
+            try {
+                final Map<String, FileInfo> fileInfos = new HashMap<>();
+                for (FileInfo fileInfo : loadSnapshot().indexFiles()) {
+                    fileInfos.put(fileInfo.name(), fileInfo);
+                }
+                final OnDemandDirectory onDemandDirectory = DirectoryUtils.getLeaf(store.directory(), OnDemandDirectory.class);
+                final List<FileInfo> remoteFiles = new ArrayList<>();
+                for (Map.Entry<String, String> entry : blobNames.entrySet()) {
+                    final FileInfo fileInfo = fileInfos.get(entry.getValue());
+                    if (fileInfo == null || fileInfo.physicalName().equals(entry.getKey()) == false) {
+                        throw new IndexShardRestoreFailedException(shardId, "file [" + entry.getKey() + "] is not part of the snapshot");
+                    }
+                    logger.trace("[{}] [{}] resuming restore of file [{}] on demand", shardId, snapshotId, fileInfo.name());
+                    onDemandDirectory.attachRemoteFile(fileInfo.physicalName(), new PartRangeRemoteFile(blobContainer, fileInfo, onDemandSource(fileInfo)));
+                    remoteFiles.add(fileInfo);
+                }
+                fetchRemoteFiles(onDemandDirectory, remoteFiles);
+            } finally {
+                store.decRef();
+            }
+        }
+
+        /**
+         * Describes where a file that is restored on demand comes from, so that its restore can be resumed after a restart
+         */
+        private BytesReference onDemandSource(FileInfo fileInfo) throws IOException {
+            // starts with the snapshot id, see IndexShardRepository#resumeRestore
+            BytesStreamOutput out = new BytesStreamOutput();
+            snapshotId.writeTo(out);
+            Version.writeVersion(version, out);
+            snapshotShardId.writeTo(out);
+            out.writeString(fileInfo.name());
+            return out.bytes();
+        }
+
         /**
          * Performs restore operation
          */
@@ -858,10 +1408,19 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
                     logger.trace("[{}] [{}] recovering_files [{}] with total_size [{}], reusing_files [{}] with reused_size [{}]", shardId, snapshotId,
                             index.totalRecoverFiles(), new ByteSizeValue(index.totalRecoverBytes()), index.reusedFileCount(), new ByteSizeValue(index.reusedFileCount()));
                 }
+                final OnDemandDirectory onDemandDirectory = DirectoryUtils.getLeaf(store.directory(), OnDemandDirectory.class);
+                final List<FileInfo> remoteFiles = new ArrayList<>();
                 try {
                     for (final FileInfo fileToRecover : filesToRecover) {
-                        logger.trace("[{}] [{}] restoring file [{}]", shardId, snapshotId, fileToRecover.name());
-                        restoreFile(fileToRecover);
+                        if (canRestoreOnDemand(onDemandDirectory, fileToRecover)) {
+                            logger.trace("[{}] [{}] restoring file [{}] on demand", shardId, snapshotId, fileToRecover.name());
+                            store.deleteQuiet(fileToRecover.physicalName());
+                            onDemandDirectory.addRemoteFile(fileToRecover.physicalName(), new PartRangeRemoteFile(blobContainer, fileToRecover, onDemandSource(fileToRecover)));
+                            remoteFiles.add(fileToRecover);
+                        } else {
+                            logger.trace("[{}] [{}] restoring file [{}]", shardId, snapshotId, fileToRecover.name());
+                            restoreFile(fileToRecover);
+                        }
                     }
                 } catch (IOException ex) {
                     throw new IndexShardRestoreFailedException(shardId, "Failed to recover index", ex);
@@ -896,11 +1455,80 @@ public class BlobStoreIndexShardRepository extends AbstractComponent implements
                 } catch (IOException e) {
                     logger.warn("[{}] failed to list directory - some of files might not be deleted", snapshotId);
                 }
+                if (remoteFiles.isEmpty() == false) {
+                    fetchRemoteFiles(onDemandDirectory, remoteFiles);
+                }
             } finally {
                 store.decRef();
             }
         }
 
+        /**
+         * Files that are larger than a block and have a lucene checksum are restored on demand if the index asks for it,
+         * smaller files such as segments_N and .si files are always copied right away.
+         */
+        private boolean canRestoreOnDemand(OnDemandDirectory directory, FileInfo fileInfo) {
+            return directory != null && directory.supportsRemoteFiles()
+                    && fileInfo.length() > OnDemandDirectory.BLOCK_SIZE
+                    && fileInfo.metadata().checksum() != null
+                    && fileInfo.metadata().hasLegacyChecksum() == false;
+        }
+
+        /**
+         * Fetches the content of files that were restored on demand in the background, rate limited like regular
+         * restores. Searches read the parts they need in the meantime.
+         */
+        private void fetchRemoteFiles(final OnDemandDirectory directory, final List<FileInfo> remoteFiles) {
+            threadPool.generic().execute(new AbstractRunnable() {
+                @Override
+                public void onFailure(Throwable t) {
+                    if (t instanceof AlreadyClosedException) {
+                        // the restore is resumed once the shard is opened again
+                        logger.debug("[{}] [{}] store closed, stop fetching files restored on demand", shardId, snapshotId);
+                    } else {
+                        logger.warn("[{}] [{}] failed to fetch files restored on demand", t, shardId, snapshotId);
+                    }
+                }
+
+                @Override
+                protected void doRun() throws Exception {
+                    for (FileInfo fileInfo : remoteFiles) {
+                        if (store.tryIncRef() == false) {
+                            logger.debug("[{}] [{}] store closed, stop fetching files restored on demand", shardId, snapshotId);
+                            return;
+                        }
+                        try {
+                            logger.trace("[{}] [{}] fetching file [{}] restored on demand", shardId, snapshotId, fileInfo.name());
+                            directory.hydrate(fileInfo.physicalName(), stream -> wrapFetchStream(stream));
+                        } catch (CorruptIndexException ex) {
+                            try {
+                                store.markStoreCorrupted(ex);
+                            } catch (IOException e) {
+                                logger.warn("store cannot be marked as corrupted", e);
+                            }
+                            throw ex;
+                        } finally {
+                            store.decRef();
+                        }
+                    }
+                    logger.debug("[{}] [{}] fetched [{}] files restored on demand", shardId, snapshotId, remoteFiles.size());
+                }
+            });
+        }
+
+        /**
+         * Wraps the streams that fetch the blocks of files restored on demand. They are rate limited like regular restores
+         * and are not opened anymore once the store is closing, so that shards can be closed before their files are fully
+         * fetched.
+         */
+        private InputStream wrapFetchStream(InputStream stream) {
+            if (store.isClosing()) {
+                IOUtils.closeWhileHandlingException(stream);
+                throw new AlreadyClosedException("store of shard " + shardId + " is closed");
+            }
+            return restoreRateLimiter == null ? stream : new RateLimitingInputStream(stream, restoreRateLimiter, restoreThrottleListener);
+        }
+
         /**
          * Restores a file
          * This is asynchronous method. Upon completion of the operation latch is getting counted down and any failures are
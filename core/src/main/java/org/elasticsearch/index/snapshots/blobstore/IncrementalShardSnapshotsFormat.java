@@ -0,0 +1,359 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.snapshots.blobstore;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.IndexFormatTooNewException;
+import org.apache.lucene.index.IndexFormatTooOldException;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.OutputStreamIndexOutput;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.Version;
+import org.elasticsearch.common.blobstore.BlobContainer;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.io.Streams;
+import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.common.lucene.store.ByteArrayIndexInput;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.gateway.CorruptStateException;
+import org.elasticsearch.index.snapshots.blobstore.BlobStoreIndexShardSnapshot.FileInfo;
+import org.elasticsearch.index.store.StoreFileMetaData;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Binary format of the generations of a shard's snapshot index. The snapshots of a shard are stored as a chain of
+ * generations: a full generation lists all snapshots, every following one only the snapshots that were added to or
+ * removed from its predecessor. A generation references files that earlier generations of the chain describe by their
+ * blob name only, so writing a generation costs in the order of the changes rather than the number of snapshots.
+ */
+final class IncrementalShardSnapshotsFormat {
+
+    static final String CODEC = "shard_snapshots_generation";
+
+    static final int VERSION_START = 0;
+
+    static final int VERSION_PENDING_DELETES = 1;
+
+    static final int VERSION_CURRENT = VERSION_PENDING_DELETES;
+
+    private static final int BUFFER_SIZE = 4096;
+
+    private static final byte FULL = 0;
+
+    private static final byte DIFF = 1;
+
+    private static final byte NEW_FILE = 0;
+
+    private static final byte KNOWN_FILE = 1;
+
+    private IncrementalShardSnapshotsFormat() {
+    }
+
+    /**
+     * A single generation of the chain
+     */
+    static final class Generation {
+
+        private final boolean full;
+
+        private final long dataGeneration;
+
+        private final List<String> removedSnapshots;
+
+        private final List<SnapshotFiles> addedSnapshots;
+
+        private final List<String> pendingDeletes;
+
+        private Generation(boolean full, long dataGeneration, List<String> removedSnapshots, List<SnapshotFiles> addedSnapshots,
+                           List<String> pendingDeletes) {
+            this.full = full;
+            this.dataGeneration = dataGeneration;
+            this.removedSnapshots = removedSnapshots;
+            this.addedSnapshots = addedSnapshots;
+            this.pendingDeletes = pendingDeletes;
+        }
+
+        /**
+         * A generation that lists all the given snapshots
+         *
+         * @param dataGeneration the highest data blob number issued so far
+         * @param pendingDeletes the blobs that no snapshot references anymore but that may not be deleted yet
+         */
+        static Generation full(List<SnapshotFiles> snapshots, long dataGeneration, List<String> pendingDeletes) {
+            return new Generation(true, dataGeneration, Collections.emptyList(), snapshots, pendingDeletes);
+        }
+
+        /**
+         * A generation that turns the previous list of snapshots into the current one
+         *
+         * @param dataGeneration the highest data blob number issued so far
+         * @param pendingDeletes the blobs that no snapshot references anymore but that may not be deleted yet
+         */
+        static Generation diff(List<SnapshotFiles> previous, List<SnapshotFiles> current, long dataGeneration,
+                               List<String> pendingDeletes) {
+            final Set<String> currentNames = new HashSet<>();
+            for (SnapshotFiles snapshot : current) {
+                currentNames.add(snapshot.snapshot());
+            }
+            final Set<String> previousNames = new HashSet<>();
+            final List<String> removed = new ArrayList<>();
+            for (SnapshotFiles snapshot : previous) {
+                previousNames.add(snapshot.snapshot());
+                if (currentNames.contains(snapshot.snapshot()) == false) {
+                    removed.add(snapshot.snapshot());
+                }
+            }
+            final List<SnapshotFiles> added = new ArrayList<>();
+            for (SnapshotFiles snapshot : current) {
+                if (previousNames.contains(snapshot.snapshot()) == false) {
+                    added.add(snapshot);
+                }
+            }
+            return new Generation(false, dataGeneration, removed, added, pendingDeletes);
+        }
+
+        boolean isFull() {
+            return full;
+        }
+
+        /**
+         * The highest data blob number issued when this generation was written
+         */
+        long dataGeneration() {
+            return dataGeneration;
+        }
+
+        /**
+         * The blobs that no snapshot references anymore when this generation was written, but that were not deleted yet
+         * or failed to be deleted. Deleting them is retried when the next generation is written.
+         */
+        List<String> pendingDeletes() {
+            return pendingDeletes;
+        }
+
+        /**
+         * Returns the snapshots after applying this generation to the snapshots of its predecessor. Added snapshots come
+         * first, like new snapshots are put in front of the existing ones.
+         */
+        List<SnapshotFiles> applyTo(List<SnapshotFiles> previous) {
+            final List<SnapshotFiles> snapshots = new ArrayList<>(addedSnapshots);
+            if (full == false) {
+                for (SnapshotFiles snapshot : previous) {
+                    if (removedSnapshots.contains(snapshot.snapshot()) == false) {
+                        snapshots.add(snapshot);
+                    }
+                }
+            }
+            return snapshots;
+        }
+    }
+
+    /**
+     * Writes a generation
+     *
+     * @param knownFiles blob names of the files that the chain describes up to the previous generation, the files of
+     *                   added snapshots that are among them are only referenced. Ignored for full generations.
+     */
+    static void write(Generation generation, Set<String> knownFiles, BlobContainer blobContainer, String blobName) throws IOException {
+        final Set<String> writtenFiles = new HashSet<>();
+        if (generation.full == false) {
+            writtenFiles.addAll(knownFiles);
+        }
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            final String resourceDesc = "IncrementalShardSnapshotsFormat.write(blob=\"" + blobName + "\")";
+            try (OutputStreamIndexOutput output = new OutputStreamIndexOutput(resourceDesc, out, BUFFER_SIZE)) {
+                CodecUtil.writeHeader(output, CODEC, VERSION_CURRENT);
+                output.writeByte(generation.full ? FULL : DIFF);
+                output.writeVLong(generation.dataGeneration + 1);
+                output.writeVInt(generation.removedSnapshots.size());
+                for (String snapshot : generation.removedSnapshots) {
+                    output.writeString(snapshot);
+                }
+                output.writeVInt(generation.addedSnapshots.size());
+                for (SnapshotFiles snapshot : generation.addedSnapshots) {
+                    output.writeString(snapshot.snapshot());
+                    output.writeVInt(snapshot.indexFiles().size());
+                    for (FileInfo file : snapshot.indexFiles()) {
+                        if (writtenFiles.add(file.name())) {
+                            output.writeByte(NEW_FILE);
+                            writeFileInfo(file, output);
+                        } else {
+                            output.writeByte(KNOWN_FILE);
+                            output.writeString(file.name());
+                        }
+                    }
+                }
+                output.writeVInt(generation.pendingDeletes.size());
+                for (String pendingDelete : generation.pendingDeletes) {
+                    output.writeString(pendingDelete);
+                }
+                CodecUtil.writeFooter(output);
+            }
+            blobContainer.writeBlob(blobName, new BytesArray(out.toByteArray()));
+        }
+    }
+
+    /**
+     * Reads the content of a generation
+     */
+    static byte[] readBytes(BlobContainer blobContainer, String blobName) throws IOException {
+        try (InputStream inputStream = blobContainer.readBlob(blobName)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Streams.copy(inputStream, out);
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Returns true if the given generation lists all snapshots, i.e. doesn't depend on its predecessors
+     */
+    static boolean isFull(byte[] bytes, String blobName) throws IOException {
+        final String resourceDesc = "IncrementalShardSnapshotsFormat.isFull(blob=\"" + blobName + "\")";
+        try (ByteArrayIndexInput input = new ByteArrayIndexInput(resourceDesc, bytes)) {
+            CodecUtil.checkHeader(input, CODEC, VERSION_START, VERSION_CURRENT);
+            return readType(input) == FULL;
+        } catch (CorruptIndexException | IndexFormatTooOldException | IndexFormatTooNewException ex) {
+            throw new CorruptStateException(ex);
+        }
+    }
+
+    /**
+     * Parses the content of a generation
+     *
+     * @param knownFiles the files that the chain describes up to the previous generation by blob name, the files that
+     *                   this generation describes are added to it
+     */
+    static Generation read(byte[] bytes, String blobName, Map<String, FileInfo> knownFiles) throws IOException {
+        final String resourceDesc = "IncrementalShardSnapshotsFormat.read(blob=\"" + blobName + "\")";
+        try (ByteArrayIndexInput input = new ByteArrayIndexInput(resourceDesc, bytes)) {
+            CodecUtil.checksumEntireFile(input);
+            final int version = CodecUtil.checkHeader(input, CODEC, VERSION_START, VERSION_CURRENT);
+            final byte type = readType(input);
+            final long dataGeneration = input.readVLong() - 1;
+            final int numRemoved = input.readVInt();
+            final List<String> removed = new ArrayList<>(numRemoved);
+            for (int i = 0; i < numRemoved; i++) {
+                removed.add(input.readString());
+            }
+            final int numAdded = input.readVInt();
+            final List<SnapshotFiles> added = new ArrayList<>(numAdded);
+            for (int i = 0; i < numAdded; i++) {
+                final String snapshot = input.readString();
+                final int numFiles = input.readVInt();
+                final List<FileInfo> files = new ArrayList<>(numFiles);
+                for (int j = 0; j < numFiles; j++) {
+                    final byte fileType = input.readByte();
+                    final FileInfo file;
+                    if (fileType == NEW_FILE) {
+                        file = readFileInfo(input);
+                        knownFiles.put(file.name(), file);
+                    } else if (fileType == KNOWN_FILE) {
+                        final String name = input.readString();
+                        file = knownFiles.get(name);
+                        if (file == null) {
+                            throw new CorruptIndexException("snapshot [" + snapshot + "] references unknown file [" + name + "]", input);
+                        }
+                    } else {
+                        throw new CorruptIndexException("unknown file type [" + fileType + "]", input);
+                    }
+                    files.add(file);
+                }
+                added.add(new SnapshotFiles(snapshot, files));
+            }
+            final List<String> pendingDeletes;
+            if (version >= VERSION_PENDING_DELETES) {
+                final int numPendingDeletes = input.readVInt();
+                pendingDeletes = new ArrayList<>(numPendingDeletes);
+                for (int i = 0; i < numPendingDeletes; i++) {
+                    pendingDeletes.add(input.readString());
+                }
+            } else {
+                pendingDeletes = Collections.emptyList();
+            }
+            return new Generation(type == FULL, dataGeneration, removed, added, pendingDeletes);
+        } catch (CorruptIndexException | IndexFormatTooOldException | IndexFormatTooNewException ex) {
+            // we trick this into a dedicated exception with the original stacktrace
+            throw new CorruptStateException(ex);
+        }
+    }
+
+    private static byte readType(IndexInput input) throws IOException {
+        final byte type = input.readByte();
+        if (type != FULL && type != DIFF) {
+            throw new CorruptIndexException("unknown generation type [" + type + "]", input);
+        }
+        return type;
+    }
+
+    private static void writeFileInfo(FileInfo file, IndexOutput output) throws IOException {
+        final StoreFileMetaData metadata = file.metadata();
+        output.writeString(file.name());
+        output.writeString(metadata.name());
+        output.writeVLong(metadata.length());
+        writeOptionalString(metadata.checksum(), output);
+        output.writeVLong(file.partSize() == null ? 0 : file.partSize().bytes() + 1);
+        writeOptionalString(metadata.writtenBy() == null ? null : metadata.writtenBy().toString(), output);
+        final BytesRef hash = metadata.hash();
+        if (hash == null) {
+            output.writeVInt(0);
+        } else {
+            output.writeVInt(hash.length);
+            output.writeBytes(hash.bytes, hash.offset, hash.length);
+        }
+    }
+
+    private static FileInfo readFileInfo(IndexInput input) throws IOException {
+        final String name = input.readString();
+        final String physicalName = input.readString();
+        final long length = input.readVLong();
+        final String checksum = readOptionalString(input);
+        final long partSize = input.readVLong();
+        final String writtenBy = readOptionalString(input);
+        final byte[] hash = new byte[input.readVInt()];
+        input.readBytes(hash, 0, hash.length);
+        final Version version = writtenBy == null ? null : Lucene.parseVersionLenient(writtenBy, null);
+        return new FileInfo(name, new StoreFileMetaData(physicalName, length, checksum, version, new BytesRef(hash)),
+                partSize == 0 ? null : new ByteSizeValue(partSize - 1));
+    }
+
+    private static void writeOptionalString(String value, IndexOutput output) throws IOException {
+        if (value == null) {
+            output.writeByte((byte) 0);
+        } else {
+            output.writeByte((byte) 1);
+            output.writeString(value);
+        }
+    }
+
+    private static String readOptionalString(IndexInput input) throws IOException {
+        return input.readByte() == 0 ? null : input.readString();
+    }
+}
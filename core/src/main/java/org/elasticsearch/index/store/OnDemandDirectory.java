@@ -0,0 +1,616 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.store;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.IndexFormatTooNewException;
+import org.apache.lucene.index.IndexFormatTooOldException;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.BufferedIndexInput;
+import org.apache.lucene.store.ChecksumIndexInput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.IOUtils;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.Streams;
+import org.elasticsearch.common.util.concurrent.AbstractRefCounted;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * A directory that can hold files whose content is not available locally yet but can be read from a remote source,
+ * for instance a snapshot repository. Such files are listed and opened like local ones. The blocks of their content
+ * are fetched the first time they are read and kept in a sparse cache file next to the index files, until
+ * {@link #hydrate(String, Function)} fetched the rest of the file, verified it and moved it in place.
+ * <p>
+ * The length and the {@link RemoteFile#source() source} of every remote file are persisted next to its cache file, so
+ * that remote files are registered again when the directory is opened after a restart. Such files are listed but can't
+ * be read until they were attached to their remote content again with {@link #attachRemoteFile(String, RemoteFile)},
+ * the blocks that were fetched before the restart are fetched again.
+ */
+public final class OnDemandDirectory extends FilterDirectory {
+
+    /**
+     * Enables on demand restores of the shards of an index from a snapshot. Shards start once the small files are
+     * restored and fetch the content of larger files while they are read.
+     */
+    public static final String INDEX_STORE_RESTORE_ON_DEMAND = "index.store.restore.on_demand";
+
+    /** the size of the blocks in which remote content is fetched and cached */
+    public static final int BLOCK_SIZE = 1 << 20;
+
+    static final String CACHE_FILE_SUFFIX = ".ondemand";
+
+    static final String SOURCE_FILE_SUFFIX = ".ondemand_source";
+
+    private static final String SOURCE_CODEC = "on_demand_source";
+
+    private static final int SOURCE_VERSION = 0;
+
+    private static final int CHECKSUM_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The content of a file in a remote location
+     */
+    public interface RemoteFile {
+
+        /** the metadata of the file, the length and checksum are used to read and verify its content */
+        StoreFileMetaData metadata();
+
+        /** Opens a stream over {@code length} bytes of the file starting at {@code position} */
+        InputStream openStream(long position, long length) throws IOException;
+
+        /** Describes where the content of the file comes from so that it can be attached again after a restart */
+        BytesReference source();
+    }
+
+    private final Path path;
+    private final ConcurrentMap<String, OnDemandFile> files = ConcurrentCollections.newConcurrentMap();
+    private volatile boolean closed = false;
+
+    public OnDemandDirectory(Directory in) throws IOException {
+        super(in);
+        final FSDirectory fsDirectory = DirectoryUtils.getLeaf(in, FSDirectory.class);
+        this.path = fsDirectory == null ? null : fsDirectory.getDirectory();
+        if (path != null) {
+            loadDetachedFiles();
+        }
+    }
+
+    /**
+     * Registers the remote files that were not fully available locally when the directory was closed again, and deletes
+     * the cache and source files that don't belong to one of them.
+     */
+    private void loadDetachedFiles() throws IOException {
+        final Set<String> localFiles = new HashSet<>(Arrays.asList(in.listAll()));
+        for (String file : localFiles) {
+            if (file.endsWith(SOURCE_FILE_SUFFIX) == false) {
+                continue;
+            }
+            final String name = file.substring(0, file.length() - SOURCE_FILE_SUFFIX.length());
+            if (localFiles.contains(name) == false) {
+                try (ChecksumIndexInput input = in.openChecksumInput(file, IOContext.READONCE)) {
+                    CodecUtil.checkHeader(input, SOURCE_CODEC, SOURCE_VERSION, SOURCE_VERSION);
+                    final long length = input.readVLong();
+                    final byte[] source = new byte[input.readVInt()];
+                    input.readBytes(source, 0, source.length);
+                    CodecUtil.checkFooter(input);
+                    files.put(name, new OnDemandFile(name, length, null, new BytesArray(source), path.resolve(name + CACHE_FILE_SUFFIX)));
+                    continue;
+                } catch (CorruptIndexException | EOFException | IndexFormatTooOldException | IndexFormatTooNewException e) {
+                    // the node stopped while the file was added, it was never registered
+                }
+            }
+            // the file was moved in place before its source was deleted, or the source was not fully written
+            in.deleteFile(file);
+        }
+        for (String file : localFiles) {
+            if (file.endsWith(CACHE_FILE_SUFFIX) && files.containsKey(file.substring(0, file.length() - CACHE_FILE_SUFFIX.length())) == false) {
+                in.deleteFile(file);
+            }
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if remote files can be added to this directory, which requires the wrapped directory
+     * to be file system based.
+     */
+    public boolean supportsRemoteFiles() {
+        return path != null;
+    }
+
+    /**
+     * Adds a file whose content is read from the given remote file until it is fully available locally. A local file
+     * with the same name must have been deleted before.
+     */
+    public void addRemoteFile(String name, RemoteFile remoteFile) throws IOException {
+        ensureOpen();
+        if (supportsRemoteFiles() == false) {
+            throw new IllegalStateException("remote files are not supported by directory [" + in + "]");
+        }
+        if (slowFileExists(in, name)) {
+            throw new FileAlreadyExistsException("file [" + name + "] already exists locally");
+        }
+        final long length = remoteFile.metadata().length();
+        final BytesReference source = remoteFile.source();
+        writeSource(name, length, source);
+        final OnDemandFile file = new OnDemandFile(name, length, remoteFile, source, path.resolve(name + CACHE_FILE_SUFFIX));
+        final OnDemandFile previous = files.put(name, file);
+        if (previous != null) {
+            previous.decRef();
+        }
+    }
+
+    private void writeSource(String name, long length, BytesReference source) throws IOException {
+        final String sourceFile = name + SOURCE_FILE_SUFFIX;
+        Files.deleteIfExists(path.resolve(sourceFile));
+        try (IndexOutput output = in.createOutput(sourceFile, IOContext.DEFAULT)) {
+            CodecUtil.writeHeader(output, SOURCE_CODEC, SOURCE_VERSION);
+            output.writeVLong(length);
+            final BytesRef bytes = source.toBytesRef();
+            output.writeVInt(bytes.length);
+            output.writeBytes(bytes.bytes, bytes.offset, bytes.length);
+            CodecUtil.writeFooter(output);
+        }
+        in.sync(Collections.singleton(sourceFile));
+        IOUtils.fsync(path, true);
+    }
+
+    /**
+     * Returns the sources of the remote files that were registered again when the directory was opened, by file name.
+     * They can't be read until they are attached to their remote content with {@link #attachRemoteFile(String, RemoteFile)}.
+     */
+    public Map<String, BytesReference> detachedFiles() {
+        final Map<String, BytesReference> detachedFiles = new HashMap<>();
+        for (OnDemandFile file : files.values()) {
+            if (file.remoteFile == null) {
+                detachedFiles.put(file.name, file.source);
+            }
+        }
+        return detachedFiles;
+    }
+
+    /**
+     * Attaches a remote file that was registered again after a restart to its remote content, see {@link #detachedFiles()}.
+     */
+    public void attachRemoteFile(String name, RemoteFile remoteFile) throws IOException {
+        ensureOpen();
+        final OnDemandFile file = files.get(name);
+        if (file == null) {
+            throw new IllegalStateException("file [" + name + "] is not a remote file");
+        }
+        if (remoteFile.metadata().length() != file.length) {
+            throw new CorruptIndexException("remote file [" + name + "] has length [" + remoteFile.metadata().length()
+                    + "] but [" + file.length + "] was expected", name);
+        }
+        synchronized (file) {
+            if (file.remoteFile != null) {
+                throw new IllegalStateException("file [" + name + "] is attached already");
+            }
+            file.remoteFile = remoteFile;
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the given file is not fully available locally yet.
+     */
+    public boolean isRemote(String name) {
+        return files.containsKey(name);
+    }
+
+    /**
+     * Returns the names of the files that are not fully available locally yet.
+     */
+    public Set<String> remoteFiles() {
+        return new HashSet<>(files.keySet());
+    }
+
+    /**
+     * Fetches all blocks of the given file that were not read yet, verifies the checksum of the file and moves it
+     * in place. This is a noop if the file is available locally or was deleted in the meantime.
+     *
+     * @param streamWrapper wraps the streams over the remote content, e.g. to rate limit them
+     */
+    public void hydrate(String name, Function<InputStream, InputStream> streamWrapper) throws IOException {
+        final OnDemandFile file = files.get(name);
+        if (file == null || file.tryIncRef() == false) {
+            return;
+        }
+        try {
+            for (int block = 0; block < file.numBlocks; block++) {
+                ensureOpen();
+                if (file.deleted) {
+                    return;
+                }
+                file.fetchBlock(block, streamWrapper);
+            }
+            file.verify();
+            synchronized (file) {
+                if (file.deleted) {
+                    return;
+                }
+                file.channel.force(true);
+                Files.move(file.cachePath, path.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+                IOUtils.fsync(path, true);
+                // inputs that are already open keep reading from the channel, new ones open the local file
+                if (files.remove(name, file)) {
+                    file.decRef();
+                }
+                Files.deleteIfExists(path.resolve(name + SOURCE_FILE_SUFFIX));
+            }
+        } finally {
+            file.decRef();
+        }
+    }
+
+    @Override
+    public String[] listAll() throws IOException {
+        ensureOpen();
+        // remote files are listed first: hydrate moves a file in place before it removes it from the remote files
+        final Set<String> names = new HashSet<>(files.keySet());
+        for (String name : in.listAll()) {
+            if (name.endsWith(CACHE_FILE_SUFFIX) == false && name.endsWith(SOURCE_FILE_SUFFIX) == false) {
+                names.add(name);
+            }
+        }
+        final String[] result = names.toArray(new String[names.size()]);
+        Arrays.sort(result);
+        return result;
+    }
+
+    @Override
+    public long fileLength(String name) throws IOException {
+        ensureOpen();
+        final OnDemandFile file = files.get(name);
+        if (file != null) {
+            return file.length;
+        }
+        return in.fileLength(name);
+    }
+
+    @Override
+    public IndexInput openInput(String name, IOContext context) throws IOException {
+        ensureOpen();
+        final OnDemandFile file = files.get(name);
+        if (file != null && file.tryIncRef()) {
+            // the input holds a reference to the file until it is closed
+            return new OnDemandIndexInput(file, context);
+        }
+        // the file was hydrated or deleted in the meantime
+        return in.openInput(name, context);
+    }
+
+    @Override
+    public IndexOutput createOutput(String name, IOContext context) throws IOException {
+        ensureOpen();
+        if (files.containsKey(name)) {
+            throw new FileAlreadyExistsException("file [" + name + "] already exists");
+        }
+        return in.createOutput(name, context);
+    }
+
+    @Override
+    public void deleteFile(String name) throws IOException {
+        ensureOpen();
+        final OnDemandFile file = files.get(name);
+        if (file != null) {
+            synchronized (file) {
+                if (files.remove(name, file)) {
+                    // the channel stays open until the inputs that are still open are closed
+                    file.deleted = true;
+                    Files.deleteIfExists(file.cachePath);
+                    Files.deleteIfExists(path.resolve(name + SOURCE_FILE_SUFFIX));
+                    file.decRef();
+                    return;
+                }
+            }
+        }
+        in.deleteFile(name);
+    }
+
+    @Override
+    public void renameFile(String source, String dest) throws IOException {
+        ensureOpen();
+        if (files.containsKey(source) || files.containsKey(dest)) {
+            throw new IOException("can't rename [" + source + "] to [" + dest + "], file is not available locally");
+        }
+        in.renameFile(source, dest);
+    }
+
+    @Override
+    public void sync(Collection<String> names) throws IOException {
+        ensureOpen();
+        final List<String> localNames = new ArrayList<>(names.size());
+        for (String name : names) {
+            // remote files are synced when they are moved in place
+            if (files.containsKey(name) == false) {
+                localNames.add(name);
+            }
+        }
+        in.sync(localNames);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed == false) {
+            closed = true;
+            try {
+                for (Map.Entry<String, OnDemandFile> entry : files.entrySet()) {
+                    // files that are hydrated or deleted concurrently release their reference themselves
+                    if (files.remove(entry.getKey(), entry.getValue())) {
+                        entry.getValue().decRef();
+                    }
+                }
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    @Override
+    protected void ensureOpen() {
+        if (closed) {
+            throw new AlreadyClosedException("this directory is closed");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "on_demand(" + in + ")";
+    }
+
+    private static boolean slowFileExists(Directory directory, String name) throws IOException {
+        return Arrays.asList(directory.listAll()).contains(name);
+    }
+
+    /**
+     * A remote file and its cache file. The directory holds a reference to it while it is registered, and every input
+     * opened on it holds one until it is closed. The cache file channel is closed once all references are released.
+     * Files that were registered again after a restart have no remote file until they are attached.
+     */
+    private static final class OnDemandFile extends AbstractRefCounted {
+
+        private final String name;
+        private final BytesReference source;
+        private final long length;
+        private final int numBlocks;
+        private final Path cachePath;
+        private final FileChannel channel;
+        // guarded by itself, the blocks that were written to the cache file
+        private final FixedBitSet availableBlocks;
+        // the locks of the blocks that are being fetched, so that concurrent readers don't fetch the same block twice
+        private final ConcurrentMap<Integer, Object> fetchLocks = ConcurrentCollections.newConcurrentMap();
+        // set under the monitor of the file once it was deleted
+        private volatile boolean deleted = false;
+        // set under the monitor of the file once it was attached
+        private volatile RemoteFile remoteFile;
+
+        OnDemandFile(String name, long length, RemoteFile remoteFile, BytesReference source, Path cachePath) throws IOException {
+            super("on_demand_file(" + name + ")");
+            this.name = name;
+            this.length = length;
+            this.remoteFile = remoteFile;
+            this.source = source;
+            final long blocks = (length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            if (blocks > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("file [" + name + "] is too large with [" + length + "] bytes");
+            }
+            this.numBlocks = (int) blocks;
+            this.availableBlocks = new FixedBitSet(Math.max(1, numBlocks));
+            this.cachePath = cachePath;
+            this.channel = FileChannel.open(cachePath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        private boolean isAvailable(int block) {
+            synchronized (availableBlocks) {
+                return availableBlocks.get(block);
+            }
+        }
+
+        void ensureAvailable(long position, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            final int last = (int) ((position + len - 1) / BLOCK_SIZE);
+            for (int block = (int) (position / BLOCK_SIZE); block <= last; block++) {
+                if (isAvailable(block) == false) {
+                    fetchBlock(block, Function.identity());
+                }
+            }
+        }
+
+        void fetchBlock(int block, Function<InputStream, InputStream> streamWrapper) throws IOException {
+            // only the readers of the same block wait for its fetch, reads of other blocks go on
+            final Object fetchLock = fetchLocks.computeIfAbsent(block, b -> new Object());
+            try {
+                synchronized (fetchLock) {
+                    if (isAvailable(block) == false) {
+                        doFetchBlock(block, streamWrapper);
+                    }
+                }
+            } finally {
+                fetchLocks.remove(block, fetchLock);
+            }
+        }
+
+        private void doFetchBlock(int block, Function<InputStream, InputStream> streamWrapper) throws IOException {
+            final RemoteFile remoteFile = this.remoteFile;
+            if (remoteFile == null) {
+                throw new IOException("remote file [" + name + "] is not attached to its remote content");
+            }
+            final long start = (long) block * BLOCK_SIZE;
+            final int blockLength = (int) Math.min(BLOCK_SIZE, length - start);
+            final byte[] buffer = new byte[blockLength];
+            try (InputStream stream = streamWrapper.apply(remoteFile.openStream(start, blockLength))) {
+                if (Streams.readFully(stream, buffer) != blockLength) {
+                    throw new EOFException("remote content of [" + name + "] ended before [" + (start + blockLength) + "]");
+                }
+            }
+            final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+            while (byteBuffer.hasRemaining()) {
+                channel.write(byteBuffer, start + byteBuffer.position());
+            }
+            synchronized (availableBlocks) {
+                availableBlocks.set(block);
+            }
+        }
+
+        void read(long position, byte[] b, int offset, int len) throws IOException {
+            ensureAvailable(position, len);
+            final ByteBuffer byteBuffer = ByteBuffer.wrap(b, offset, len);
+            while (byteBuffer.hasRemaining()) {
+                final int read = channel.read(byteBuffer, position + byteBuffer.position() - offset);
+                if (read < 0) {
+                    throw new EOFException("read past EOF: " + name);
+                }
+            }
+        }
+
+        /**
+         * Verifies the checksum of the fully fetched file against its metadata, files without a lucene footer can't be
+         * verified
+         */
+        void verify() throws IOException {
+            final StoreFileMetaData metadata = remoteFile.metadata();
+            if (metadata.checksum() == null || metadata.hasLegacyChecksum() || length < Long.BYTES) {
+                return;
+            }
+            final CRC32 crc32 = new CRC32();
+            final byte[] buffer = new byte[CHECKSUM_BUFFER_SIZE];
+            final long checksummed = length - Long.BYTES;
+            long position = 0;
+            while (position < checksummed) {
+                final int len = (int) Math.min(buffer.length, checksummed - position);
+                read(position, buffer, 0, len);
+                crc32.update(buffer, 0, len);
+                position += len;
+            }
+            final String actual = Store.digestToString(crc32.getValue());
+            if (actual.equals(metadata.checksum()) == false) {
+                throw new CorruptIndexException("checksum failed for on demand file [" + name + "] (expected="
+                        + metadata.checksum() + " actual=" + actual + ")", name);
+            }
+        }
+
+        @Override
+        protected void closeInternal() {
+            IOUtils.closeWhileHandlingException(channel);
+        }
+    }
+
+    private static final class OnDemandIndexInput extends BufferedIndexInput {
+
+        private final OnDemandFile file;
+        private final long offset;
+        private final long length;
+        // clones and slices share the reference of the input they were created from
+        private boolean isClone = false;
+        private boolean closed = false;
+
+        OnDemandIndexInput(OnDemandFile file, IOContext context) {
+            this("OnDemandIndexInput(name=" + file.name + ")", file, 0, file.length, bufferSize(context));
+        }
+
+        private OnDemandIndexInput(String resourceDescription, OnDemandFile file, long offset, long length, int bufferSize) {
+            super(resourceDescription, bufferSize);
+            this.file = file;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        protected void readInternal(byte[] b, int off, int len) throws IOException {
+            final long position = getFilePointer();
+            if (position + len > length) {
+                throw new EOFException("read past EOF: " + this);
+            }
+            file.read(offset + position, b, off, len);
+        }
+
+        @Override
+        protected void seekInternal(long pos) throws IOException {
+            if (pos > length) {
+                throw new EOFException("seek past EOF: " + this);
+            }
+        }
+
+        @Override
+        public IndexInput slice(String sliceDescription, long offset, long length) throws IOException {
+            if (offset < 0 || length < 0 || offset + length > this.length) {
+                throw new IllegalArgumentException("slice() " + sliceDescription + " out of bounds: " + this);
+            }
+            final OnDemandIndexInput slice = new OnDemandIndexInput(toString() + " [slice=" + sliceDescription + "]", file,
+                    this.offset + offset, length, getBufferSize());
+            slice.isClone = true;
+            return slice;
+        }
+
+        @Override
+        public OnDemandIndexInput clone() {
+            final OnDemandIndexInput clone = (OnDemandIndexInput) super.clone();
+            clone.isClone = true;
+            return clone;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (isClone == false && closed == false) {
+                closed = true;
+                file.decRef();
+            }
+        }
+    }
+}
@@ -118,7 +118,11 @@ public class Store extends AbstractIndexShardComponent implements Closeable, Ref
     public Store(ShardId shardId, IndexSettings indexSettings, DirectoryService directoryService, ShardLock shardLock, OnClose onClose) throws IOException {
         super(shardId, indexSettings);
         final Settings settings = indexSettings.getSettings();
-        this.directory = new StoreDirectory(directoryService.newDirectory(), Loggers.getLogger("index.store.deletes", settings, shardId));
+        Directory directory = directoryService.newDirectory();
+        if (settings.getAsBoolean(OnDemandDirectory.INDEX_STORE_RESTORE_ON_DEMAND, false)) {
+            directory = new OnDemandDirectory(directory);
+        }
+        this.directory = new StoreDirectory(directory, Loggers.getLogger("index.store.deletes", settings, shardId));
         this.shardLock = shardLock;
         this.onClose = onClose;
         final TimeValue refreshInterval = settings.getAsTime(INDEX_STORE_STATS_REFRESH_INTERVAL, TimeValue.timeValueSeconds(10));
@@ -353,6 +357,14 @@ public class Store extends AbstractIndexShardComponent implements Closeable, Ref
         }
     }
 
+    /**
+     * Returns <code>true</code> once {@link #close()} was called. The store is only closed once all outstanding
+     * references are released though.
+     */
+    public boolean isClosing() {
+        return isClosed.get();
+    }
+
     private void closeInternal() {
         try {
             try {
@@ -385,6 +397,33 @@ public class Store extends AbstractIndexShardComponent implements Closeable, Ref
         return MetadataSnapshot.EMPTY;
     }
 
+    /**
+     * Returns an identifier of the last commit in the given location that changes whenever a new commit is written, or
+     * <code>null</code> if there is no commit, the index is marked as corrupted or the commit has no checksum. Unlike
+     * {@link #readMetadataSnapshot(Path, ESLogger)} this only reads the footer of the segments file.
+     */
+    public static String readLastCommitId(Path indexLocation) throws IOException {
+        try (Directory dir = new SimpleFSDirectory(indexLocation)) {
+            final String[] files = dir.listAll();
+            for (String file : files) {
+                if (file.startsWith(CORRUPTED)) {
+                    return null;
+                }
+            }
+            final String segmentsFile = SegmentInfos.getLastCommitSegmentsFileName(files);
+            if (segmentsFile == null) {
+                return null;
+            }
+            try (IndexInput input = dir.openInput(segmentsFile, IOContext.READONCE)) {
+                // the checksum covers the unique id that every commit is written with
+                return segmentsFile + "/" + input.length() + "/" + digestToString(CodecUtil.retrieveChecksum(input));
+            } catch (CorruptIndexException ex) {
+                // written before lucene checksummed its files
+                return null;
+            }
+        }
+    }
+
     /**
      * Returns <code>true</code> iff the given location contains an index an the index
      * can be successfully opened. This includes reading the segment infos and possible
@@ -26,6 +26,7 @@ import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.RamUsageEstimator;
 import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
@@ -45,6 +46,7 @@ import org.elasticsearch.common.util.concurrent.FutureUtils;
 import org.elasticsearch.common.util.concurrent.ReleasableLock;
 import org.elasticsearch.index.VersionType;
 import org.elasticsearch.index.engine.Engine;
+import org.elasticsearch.index.seqno.LocalCheckpointTracker;
 import org.elasticsearch.index.shard.AbstractIndexShardComponent;
 import org.elasticsearch.index.shard.IndexShardComponent;
 import org.elasticsearch.threadpool.ThreadPool;
@@ -864,6 +866,12 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
 
         Source getSource();
 
+        /**
+         * Returns the sequence number of the operation, {@link LocalCheckpointTracker#UNASSIGNED_SEQ_NO} if it was written
+         * without one.
+         */
+        long seqNo();
+
     }
 
     public static class Source {
@@ -883,7 +891,7 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
     }
 
     public static class Index implements Operation {
-        public static final int SERIALIZATION_FORMAT = 6;
+        public static final int SERIALIZATION_FORMAT = 8;
 
         private String id;
         private String type;
@@ -894,6 +902,8 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
         private String parent;
         private long timestamp;
         private long ttl;
+        private long autoGeneratedIdTimestamp = IndexRequest.UNSET_AUTO_GENERATED_TIMESTAMP;
+        private long seqNo = LocalCheckpointTracker.UNASSIGNED_SEQ_NO;
 
         public Index() {
         }
@@ -908,6 +918,8 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
             this.timestamp = index.timestamp();
             this.ttl = index.ttl();
             this.versionType = index.versionType();
+            this.autoGeneratedIdTimestamp = index.getAutoGeneratedIdTimestamp();
+            this.seqNo = index.seqNo();
         }
 
         public Index(String type, String id, byte[] source) {
@@ -962,6 +974,15 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
             return versionType;
         }
 
+        public long getAutoGeneratedIdTimestamp() {
+            return autoGeneratedIdTimestamp;
+        }
+
+        @Override
+        public long seqNo() {
+            return seqNo;
+        }
+
         @Override
         public Source getSource() {
             return new Source(source, routing, parent, timestamp, ttl);
@@ -996,6 +1017,12 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
                 if (version >= 6) {
                     this.versionType = VersionType.fromValue(in.readByte());
                 }
+                if (version >= 7) {
+                    this.autoGeneratedIdTimestamp = in.readLong();
+                }
+                if (version >= 8) {
+                    this.seqNo = in.readLong();
+                }
             } catch (Exception e) {
                 throw new ElasticsearchException("failed to read [" + type + "][" + id + "]", e);
             }
@@ -1025,6 +1052,8 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
             out.writeLong(timestamp);
             out.writeLong(ttl);
             out.writeByte(versionType.getValue());
+            out.writeLong(autoGeneratedIdTimestamp);
+            out.writeLong(seqNo);
         }
 
         @Override
@@ -1044,6 +1073,8 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
                     id.equals(index.id) == false ||
                     type.equals(index.type) == false ||
                     versionType != index.versionType ||
+                    autoGeneratedIdTimestamp != index.autoGeneratedIdTimestamp ||
+                    seqNo != index.seqNo ||
                     source.equals(index.source) == false) {
                 return false;
             }
@@ -1065,6 +1096,8 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
             result = 31 * result + (parent != null ? parent.hashCode() : 0);
             result = 31 * result + Long.hashCode(timestamp);
             result = 31 * result + Long.hashCode(ttl);
+            result = 31 * result + Long.hashCode(autoGeneratedIdTimestamp);
+            result = 31 * result + Long.hashCode(seqNo);
             return result;
         }
 
@@ -1078,11 +1111,12 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
     }
 
     public static class Delete implements Operation {
-        public static final int SERIALIZATION_FORMAT = 2;
+        public static final int SERIALIZATION_FORMAT = 3;
 
         private Term uid;
         private long version = Versions.MATCH_ANY;
         private VersionType versionType = VersionType.INTERNAL;
+        private long seqNo = LocalCheckpointTracker.UNASSIGNED_SEQ_NO;
 
         public Delete() {
         }
@@ -1091,6 +1125,7 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
             this(delete.uid());
             this.version = delete.version();
             this.versionType = delete.versionType();
+            this.seqNo = delete.seqNo();
         }
 
         public Delete(Term uid) {
@@ -1125,6 +1160,11 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
             return this.versionType;
         }
 
+        @Override
+        public long seqNo() {
+            return seqNo;
+        }
+
         @Override
         public Source getSource() {
             throw new IllegalStateException("trying to read doc source from delete operation");
@@ -1140,6 +1180,9 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
             if (version >= 2) {
                 this.versionType = VersionType.fromValue(in.readByte());
             }
+            if (version >= 3) {
+                this.seqNo = in.readLong();
+            }
             assert versionType.validateVersionForWrites(version);
 
         }
@@ -1151,6 +1194,7 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
             out.writeString(uid.text());
             out.writeLong(version);
             out.writeByte(versionType.getValue());
+            out.writeLong(seqNo);
         }
 
         @Override
@@ -1165,6 +1209,7 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
             Delete delete = (Delete) o;
 
             return version == delete.version &&
+                    seqNo == delete.seqNo &&
                     uid.equals(delete.uid) &&
                     versionType == delete.versionType;
         }
@@ -1174,6 +1219,7 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
             int result = uid.hashCode();
             result = 31 * result + Long.hashCode(version);
             result = 31 * result + versionType.hashCode();
+            result = 31 * result + Long.hashCode(seqNo);
             return result;
         }
 
@@ -31,14 +31,17 @@ import org.elasticsearch.cluster.action.shard.NoOpShardStateActionListener;
 import org.elasticsearch.cluster.action.shard.ShardStateAction;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.cluster.metadata.MappingMetaData;
+import org.elasticsearch.cluster.metadata.SnapshotId;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.cluster.node.DiscoveryNodes;
 import org.elasticsearch.cluster.routing.*;
 import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.component.AbstractLifecycleComponent;
 import org.elasticsearch.common.compress.CompressedXContent;
 import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.lucene.Lucene;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
@@ -52,6 +55,8 @@ import org.elasticsearch.index.mapper.DocumentMapper;
 import org.elasticsearch.index.mapper.MapperService;
 import org.elasticsearch.index.shard.*;
 import org.elasticsearch.index.snapshots.IndexShardRepository;
+import org.elasticsearch.index.store.DirectoryUtils;
+import org.elasticsearch.index.store.OnDemandDirectory;
 import org.elasticsearch.indices.IndicesService;
 import org.elasticsearch.indices.flush.SyncedFlushService;
 import org.elasticsearch.indices.memory.IndexingMemoryController;
@@ -64,6 +69,7 @@ import org.elasticsearch.search.SearchService;
 import org.elasticsearch.snapshots.RestoreService;
 import org.elasticsearch.threadpool.ThreadPool;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentMap;
 
@@ -634,6 +640,7 @@ public class IndicesClusterStateService extends AbstractLifecycleComponent<Indic
             indexShard.markAsRecovering("from store", recoveryState); // mark the shard as recovering on the cluster state thread
             threadPool.generic().execute(() -> {
                 try {
+                    resumeOnDemandRestores(indexShard);
                     if (indexShard.recoverFromStore(nodes.localNode())) {
                         shardStateAction.shardStarted(shardRouting, indexMetaData.getIndexUUID(), "after recovery from store");
                     }
@@ -670,6 +677,27 @@ public class IndicesClusterStateService extends AbstractLifecycleComponent<Indic
         }
     }
 
+    /**
+     * Attaches the files of the shard that were restored on demand but not fully fetched before the node restarted to
+     * the snapshots they are restored from again, so that the shard can be opened
+     */
+    private void resumeOnDemandRestores(IndexShard indexShard) throws IOException {
+        final OnDemandDirectory directory = DirectoryUtils.getLeaf(indexShard.store().directory(), OnDemandDirectory.class);
+        if (directory == null) {
+            return;
+        }
+        final Map<SnapshotId, Map<String, BytesReference>> detachedFilesBySnapshot = new HashMap<>();
+        for (Map.Entry<String, BytesReference> entry : directory.detachedFiles().entrySet()) {
+            final SnapshotId snapshotId = SnapshotId.readSnapshotId(StreamInput.wrap(entry.getValue()));
+            detachedFilesBySnapshot.computeIfAbsent(snapshotId, s -> new HashMap<>()).put(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<SnapshotId, Map<String, BytesReference>> entry : detachedFilesBySnapshot.entrySet()) {
+            logger.debug("{} resuming restore of [{}] files from snapshot [{}]", indexShard.shardId(), entry.getValue().size(), entry.getKey());
+            final IndexShardRepository indexShardRepository = repositoriesService.indexShardRepository(entry.getKey().getRepository());
+            indexShardRepository.resumeRestore(entry.getKey(), indexShard.shardId(), entry.getValue());
+        }
+    }
+
     /**
      * Finds the routing source node for peer recovery, return null if its not found. Note, this method expects the shard
      * routing to *require* peer recovery, use {@link #isPeerRecovery(org.elasticsearch.cluster.routing.ShardRouting)} to
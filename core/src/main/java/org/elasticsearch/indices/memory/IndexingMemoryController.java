@@ -19,12 +19,14 @@
 
 package org.elasticsearch.indices.memory;
 
+import org.apache.lucene.util.CollectionUtil;
 import org.elasticsearch.common.component.AbstractLifecycleComponent;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.AbstractRunnable;
 import org.elasticsearch.common.util.concurrent.FutureUtils;
 import org.elasticsearch.index.IndexService;
 import org.elasticsearch.index.engine.EngineClosedException;
@@ -233,6 +235,53 @@ public class IndexingMemoryController extends AbstractLifecycleComponent<Indexin
         statusChecker.run();
     }
 
+    /** returns how many source bytes were indexed into this shard since the last check, resetting the shard's counter */
+    protected long getAndResetIndexedBytes(IndexShard shard) {
+        return shard.getAndResetIndexedBytes();
+    }
+
+    /** returns how many bytes of heap this shard's {@code IndexWriter} is currently using for buffered documents */
+    protected long getIndexBufferRAMBytesUsed(IndexShard shard) {
+        return shard.getIndexBufferRAMBytesUsed();
+    }
+
+    /** asks this shard to move its buffered documents to a new segment, on the refresh thread pool, to free up heap */
+    protected void writeIndexingBufferAsync(IndexShard shard) {
+        threadPool.executor(ThreadPool.Names.REFRESH).execute(new AbstractRunnable() {
+            @Override
+            public void onFailure(Throwable t) {
+                logger.warn("failed to write indexing buffer for shard {}", t, shard.shardId());
+            }
+
+            @Override
+            protected void doRun() {
+                try {
+                    shard.refresh("write indexing buffer");
+                } catch (EngineClosedException | FlushNotAllowedEngineException e) {
+                    // ignore
+                }
+            }
+        });
+    }
+
+    /** returns the part of {@code budget} proportional to {@code weight / totalWeight}, clamped to {@code [min, max]} */
+    static ByteSizeValue shareOf(ByteSizeValue budget, long weight, long totalWeight, int shardCount, ByteSizeValue min, ByteSizeValue max) {
+        long bytes;
+        if (totalWeight == 0) {
+            // no writes sampled yet (e.g. a shard just became active), fall back to an even split
+            bytes = budget.bytes() / shardCount;
+        } else {
+            bytes = (long) (budget.bytes() * ((double) weight / totalWeight));
+        }
+        if (bytes < min.bytes()) {
+            return min;
+        }
+        if (bytes > max.bytes()) {
+            return max;
+        }
+        return new ByteSizeValue(bytes);
+    }
+
     class ShardsIndicesStatusChecker implements Runnable {
         @Override
         public synchronized void run() {
@@ -245,37 +294,87 @@ public class IndexingMemoryController extends AbstractLifecycleComponent<Indexin
             }
             int activeShardCount = activeShards.size();
 
-            // TODO: we could be smarter here by taking into account how RAM the IndexWriter on each shard
-            // is actually using (using IW.ramBytesUsed), so that small indices (e.g. Marvel) would not
-            // get the same indexing buffer as large indices.  But it quickly gets tricky...
             if (activeShardCount == 0) {
                 return;
             }
 
-            ByteSizeValue shardIndexingBufferSize = new ByteSizeValue(indexingBuffer.bytes() / activeShardCount);
-            if (shardIndexingBufferSize.bytes() < minShardIndexBufferSize.bytes()) {
-                shardIndexingBufferSize = minShardIndexBufferSize;
+            // apportion the indexing and translog budgets by how many bytes each active shard indexed since the last check,
+            // so a few hot shards get large buffers (and flush large segments) while warm shards make do with small ones
+            long[] indexedBytes = new long[activeShardCount];
+            long totalIndexedBytes = 0;
+            for (int i = 0; i < activeShardCount; i++) {
+                indexedBytes[i] = getAndResetIndexedBytes(activeShards.get(i));
+                totalIndexedBytes += indexedBytes[i];
             }
-            if (shardIndexingBufferSize.bytes() > maxShardIndexBufferSize.bytes()) {
-                shardIndexingBufferSize = maxShardIndexBufferSize;
+
+            logger.debug("recalculating shard indexing buffer, total is [{}] with [{}] active shards that indexed [{}] since last check",
+                indexingBuffer, activeShardCount, new ByteSizeValue(totalIndexedBytes));
+
+            for (int i = 0; i < activeShardCount; i++) {
+                IndexShard shard = activeShards.get(i);
+                ByteSizeValue shardIndexingBufferSize = shareOf(indexingBuffer, indexedBytes[i], totalIndexedBytes, activeShardCount,
+                    minShardIndexBufferSize, maxShardIndexBufferSize);
+                ByteSizeValue shardTranslogBufferSize = shareOf(translogBuffer, indexedBytes[i], totalIndexedBytes, activeShardCount,
+                    minShardTranslogBufferSize, maxShardTranslogBufferSize);
+                logger.trace("shard {} indexed [{}], setting indexing=[{}], translog=[{}]",
+                    shard.shardId(), new ByteSizeValue(indexedBytes[i]), shardIndexingBufferSize, shardTranslogBufferSize);
+                updateShardBuffers(shard, shardIndexingBufferSize, shardTranslogBufferSize);
             }
 
-            ByteSizeValue shardTranslogBufferSize = new ByteSizeValue(translogBuffer.bytes() / activeShardCount);
-            if (shardTranslogBufferSize.bytes() < minShardTranslogBufferSize.bytes()) {
-                shardTranslogBufferSize = minShardTranslogBufferSize;
+            writeLargestIndexingBuffers(availableShards);
+        }
+
+        /**
+         * The per-shard floors mean the buffers handed out can add up to more than the node's budget, so if the
+         * {@code IndexWriter}s are using more heap than we allow in total, write the largest buffers first until we are back under.
+         */
+        private void writeLargestIndexingBuffers(List<IndexShard> availableShards) {
+            List<ShardAndBytesUsed> shards = new ArrayList<>(availableShards.size());
+            long totalBytesUsed = 0;
+            for (IndexShard shard : availableShards) {
+                long bytesUsed = getIndexBufferRAMBytesUsed(shard);
+                if (bytesUsed > 0) {
+                    shards.add(new ShardAndBytesUsed(bytesUsed, shard));
+                    totalBytesUsed += bytesUsed;
+                }
             }
-            if (shardTranslogBufferSize.bytes() > maxShardTranslogBufferSize.bytes()) {
-                shardTranslogBufferSize = maxShardTranslogBufferSize;
+
+            if (totalBytesUsed <= indexingBuffer.bytes()) {
+                return;
             }
 
-            logger.debug("recalculating shard indexing buffer, total is [{}] with [{}] active shards, each shard set to indexing=[{}], translog=[{}]", indexingBuffer, activeShardCount, shardIndexingBufferSize, shardTranslogBufferSize);
+            logger.debug("total indexing heap bytes used [{}] exceeds the budget [{}]; writing largest indexing buffers first",
+                new ByteSizeValue(totalBytesUsed), indexingBuffer);
 
-            for (IndexShard shard : activeShards) {
-                updateShardBuffers(shard, shardIndexingBufferSize, shardTranslogBufferSize);
+            CollectionUtil.timSort(shards);
+            for (ShardAndBytesUsed shardAndBytesUsed : shards) {
+                if (totalBytesUsed <= indexingBuffer.bytes()) {
+                    break;
+                }
+                logger.debug("write indexing buffer to disk for shard {} to free up its [{}] indexing buffer",
+                    shardAndBytesUsed.shard.shardId(), new ByteSizeValue(shardAndBytesUsed.bytesUsed));
+                writeIndexingBufferAsync(shardAndBytesUsed.shard);
+                totalBytesUsed -= shardAndBytesUsed.bytesUsed;
             }
         }
     }
 
+    private static final class ShardAndBytesUsed implements Comparable<ShardAndBytesUsed> {
+        final long bytesUsed;
+        final IndexShard shard;
+
+        ShardAndBytesUsed(long bytesUsed, IndexShard shard) {
+            this.bytesUsed = bytesUsed;
+            this.shard = shard;
+        }
+
+        @Override
+        public int compareTo(ShardAndBytesUsed other) {
+            // largest first
+            return Long.compare(other.bytesUsed, bytesUsed);
+        }
+    }
+
     protected long currentTimeInNanos() {
         return System.nanoTime();
     }
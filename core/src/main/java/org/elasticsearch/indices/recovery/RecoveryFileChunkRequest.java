@@ -42,6 +42,7 @@ public final class RecoveryFileChunkRequest extends TransportRequest {
     private BytesReference content;
     private StoreFileMetaData metaData;
     private long sourceThrottleTimeInNanos;
+    private long sourceStallTimeInNanos;
 
     private int totalTranslogOps;
 
@@ -49,7 +50,7 @@ public final class RecoveryFileChunkRequest extends TransportRequest {
     }
 
     public RecoveryFileChunkRequest(long recoveryId, ShardId shardId, StoreFileMetaData metaData, long position, BytesReference content,
-                                    boolean lastChunk, int totalTranslogOps, long sourceThrottleTimeInNanos) {
+                                    boolean lastChunk, int totalTranslogOps, long sourceThrottleTimeInNanos, long sourceStallTimeInNanos) {
         this.recoveryId = recoveryId;
         this.shardId = shardId;
         this.metaData = metaData;
@@ -58,6 +59,7 @@ public final class RecoveryFileChunkRequest extends TransportRequest {
         this.lastChunk = lastChunk;
         this.totalTranslogOps = totalTranslogOps;
         this.sourceThrottleTimeInNanos = sourceThrottleTimeInNanos;
+        this.sourceStallTimeInNanos = sourceStallTimeInNanos;
     }
 
     public long recoveryId() {
@@ -97,6 +99,14 @@ public final class RecoveryFileChunkRequest extends TransportRequest {
         return sourceThrottleTimeInNanos;
     }
 
+    /**
+     * The time the source waited for a chunk in flight to be acknowledged before it could send this one, <tt>0</tt> if
+     * it didn't have to wait.
+     */
+    public long sourceStallTimeInNanos() {
+        return sourceStallTimeInNanos;
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
         super.readFrom(in);
@@ -114,6 +124,7 @@ public final class RecoveryFileChunkRequest extends TransportRequest {
         lastChunk = in.readBoolean();
         totalTranslogOps = in.readVInt();
         sourceThrottleTimeInNanos = in.readLong();
+        sourceStallTimeInNanos = in.readLong();
     }
 
     @Override
@@ -130,6 +141,7 @@ public final class RecoveryFileChunkRequest extends TransportRequest {
         out.writeBoolean(lastChunk);
         out.writeVInt(totalTranslogOps);
         out.writeLong(sourceThrottleTimeInNanos);
+        out.writeLong(sourceStallTimeInNanos);
     }
 
     @Override
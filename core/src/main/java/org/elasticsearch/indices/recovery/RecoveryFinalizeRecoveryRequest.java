@@ -19,8 +19,10 @@
 
 package org.elasticsearch.indices.recovery;
 
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.index.seqno.LocalCheckpointTracker;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.transport.TransportRequest;
 
@@ -35,12 +37,18 @@ public class RecoveryFinalizeRecoveryRequest extends TransportRequest {
 
     private ShardId shardId;
 
+    private String historyUUID;
+
+    private long localCheckpoint = LocalCheckpointTracker.UNASSIGNED_SEQ_NO;
+
     public RecoveryFinalizeRecoveryRequest() {
     }
 
-    RecoveryFinalizeRecoveryRequest(long recoveryId, ShardId shardId) {
+    RecoveryFinalizeRecoveryRequest(long recoveryId, ShardId shardId, @Nullable String historyUUID, long localCheckpoint) {
         this.recoveryId = recoveryId;
         this.shardId = shardId;
+        this.historyUUID = historyUUID;
+        this.localCheckpoint = localCheckpoint;
     }
 
     public long recoveryId() {
@@ -51,11 +59,28 @@ public class RecoveryFinalizeRecoveryRequest extends TransportRequest {
         return shardId;
     }
 
+    /**
+     * The history of the recovery source, <tt>null</tt> if it does not track sequence numbers.
+     */
+    @Nullable
+    public String historyUUID() {
+        return historyUUID;
+    }
+
+    /**
+     * The local checkpoint of the recovery source when the recovery started.
+     */
+    public long localCheckpoint() {
+        return localCheckpoint;
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
         super.readFrom(in);
         recoveryId = in.readLong();
         shardId = ShardId.readShardId(in);
+        historyUUID = in.readOptionalString();
+        localCheckpoint = in.readLong();
     }
 
     @Override
@@ -63,5 +88,7 @@ public class RecoveryFinalizeRecoveryRequest extends TransportRequest {
         super.writeTo(out);
         out.writeLong(recoveryId);
         shardId.writeTo(out);
+        out.writeOptionalString(historyUUID);
+        out.writeLong(localCheckpoint);
     }
 }
@@ -43,6 +43,8 @@ public class RecoverySettings extends AbstractComponent implements Closeable {
     public static final String INDICES_RECOVERY_CONCURRENT_STREAMS = "indices.recovery.concurrent_streams";
     public static final String INDICES_RECOVERY_CONCURRENT_SMALL_FILE_STREAMS = "indices.recovery.concurrent_small_file_streams";
     public static final String INDICES_RECOVERY_MAX_BYTES_PER_SEC = "indices.recovery.max_bytes_per_sec";
+    /** how many chunks of a single file may be sent to the recovery target before the first of them is acknowledged */
+    public static final String INDICES_RECOVERY_MAX_CONCURRENT_FILE_CHUNKS = "indices.recovery.max_concurrent_file_chunks";
 
     /**
      * how long to wait before retrying after issues cause by cluster state syncing between nodes
@@ -75,6 +77,7 @@ public class RecoverySettings extends AbstractComponent implements Closeable {
 
     private volatile int concurrentStreams;
     private volatile int concurrentSmallFileStreams;
+    private volatile int maxConcurrentFileChunks;
     private final ThreadPoolExecutor concurrentStreamPool;
     private final ThreadPoolExecutor concurrentSmallFileStreamPool;
 
@@ -113,6 +116,8 @@ public class RecoverySettings extends AbstractComponent implements Closeable {
         this.concurrentSmallFileStreamPool = EsExecutors.newScaling("small_file_recovery_stream", 0, concurrentSmallFileStreams, 60,
                 TimeUnit.SECONDS, EsExecutors.daemonThreadFactory(settings, "[small_file_recovery_stream]"));
 
+        this.maxConcurrentFileChunks = settings.getAsInt(INDICES_RECOVERY_MAX_CONCURRENT_FILE_CHUNKS, 4);
+
         this.maxBytesPerSec = settings.getAsBytesSize(INDICES_RECOVERY_MAX_BYTES_PER_SEC, new ByteSizeValue(40, ByteSizeUnit.MB));
         if (maxBytesPerSec.bytes() <= 0) {
             rateLimiter = null;
@@ -120,8 +125,8 @@ public class RecoverySettings extends AbstractComponent implements Closeable {
             rateLimiter = new SimpleRateLimiter(maxBytesPerSec.mbFrac());
         }
 
-        logger.debug("using max_bytes_per_sec[{}], concurrent_streams [{}]",
-                maxBytesPerSec, concurrentStreams);
+        logger.debug("using max_bytes_per_sec[{}], concurrent_streams [{}], max_concurrent_file_chunks [{}]",
+                maxBytesPerSec, concurrentStreams, maxConcurrentFileChunks);
 
         nodeSettingsService.addListener(new ApplySettings());
     }
@@ -140,6 +145,10 @@ public class RecoverySettings extends AbstractComponent implements Closeable {
         return concurrentSmallFileStreamPool;
     }
 
+    public int maxConcurrentFileChunks() {
+        return maxConcurrentFileChunks;
+    }
+
     public RateLimiter rateLimiter() {
         return rateLimiter;
     }
@@ -204,6 +213,12 @@ public class RecoverySettings extends AbstractComponent implements Closeable {
                 RecoverySettings.this.concurrentSmallFileStreamPool.setMaximumPoolSize(concurrentSmallFileStreams);
             }
 
+            int maxConcurrentFileChunks = settings.getAsInt(INDICES_RECOVERY_MAX_CONCURRENT_FILE_CHUNKS, RecoverySettings.this.maxConcurrentFileChunks);
+            if (maxConcurrentFileChunks != RecoverySettings.this.maxConcurrentFileChunks) {
+                logger.info("updating [{}] from [{}] to [{}]", INDICES_RECOVERY_MAX_CONCURRENT_FILE_CHUNKS, RecoverySettings.this.maxConcurrentFileChunks, maxConcurrentFileChunks);
+                RecoverySettings.this.maxConcurrentFileChunks = maxConcurrentFileChunks;
+            }
+
             RecoverySettings.this.retryDelayNetwork = maybeUpdate(RecoverySettings.this.retryDelayNetwork, settings, INDICES_RECOVERY_RETRY_DELAY_NETWORK);
             RecoverySettings.this.retryDelayStateSync = maybeUpdate(RecoverySettings.this.retryDelayStateSync, settings, INDICES_RECOVERY_RETRY_DELAY_STATE_SYNC);
             RecoverySettings.this.activityTimeout = maybeUpdate(RecoverySettings.this.activityTimeout, settings, INDICES_RECOVERY_ACTIVITY_TIMEOUT);
@@ -41,27 +41,36 @@ import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.CancellableThreads;
 import org.elasticsearch.common.util.CancellableThreads.Interruptable;
+import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.engine.RecoveryEngineException;
+import org.elasticsearch.index.seqno.LocalCheckpointTracker;
 import org.elasticsearch.index.shard.*;
 import org.elasticsearch.index.store.Store;
 import org.elasticsearch.index.store.StoreFileMetaData;
 import org.elasticsearch.index.translog.Translog;
 import org.elasticsearch.transport.EmptyTransportResponseHandler;
+import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.RemoteTransportException;
+import org.elasticsearch.transport.TransportException;
 import org.elasticsearch.transport.TransportRequestOptions;
+import org.elasticsearch.transport.TransportResponse;
 import org.elasticsearch.transport.TransportService;
 
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.stream.StreamSupport;
 
@@ -85,6 +94,13 @@ public class RecoverySourceHandler {
 
     protected final RecoveryResponse response;
 
+    // the history and local checkpoint of the primary at the start of the recovery, handed over to the target once it
+    // holds all of these operations
+    private String primaryHistoryUUID;
+    private long primaryLocalCheckpoint = LocalCheckpointTracker.UNASSIGNED_SEQ_NO;
+    // set if the target already holds all operations up to this sequence number, only newer ones are sent in phase2
+    private long targetLocalCheckpoint = LocalCheckpointTracker.UNASSIGNED_SEQ_NO;
+
     private final CancellableThreads cancellableThreads = new CancellableThreads() {
         @Override
         protected void onCancel(String reason, @Nullable Throwable suppressedException) {
@@ -118,6 +134,10 @@ public class RecoverySourceHandler {
      * performs the recovery from the local engine to the target
      */
     public RecoveryResponse recoverToTarget() {
+        // read before the translog view is acquired, so that every operation up to the checkpoint is either in the
+        // commit phase1 is based on or in the view
+        primaryHistoryUUID = shard.getHistoryUUID();
+        primaryLocalCheckpoint = shard.getLocalCheckpoint();
         try (Translog.View translogView = shard.acquireTranslogView()) {
             logger.trace("captured translog id [{}] for recovery", translogView.minTranslogGeneration());
             final IndexCommit phase1Snapshot;
@@ -193,7 +213,14 @@ public class RecoverySourceHandler {
             String recoveryTargetSyncId = request.metadataSnapshot().getSyncId();
             final boolean recoverWithSyncId = recoverySourceSyncId != null &&
                     recoverySourceSyncId.equals(recoveryTargetSyncId);
-            if (recoverWithSyncId) {
+            final long targetCheckpoint = targetLocalCheckpointIfOperationsSuffice(snapshot);
+            if (recoverWithSyncId == false && targetCheckpoint != LocalCheckpointTracker.UNASSIGNED_SEQ_NO) {
+                // the target holds every operation up to its checkpoint and the translog view holds every operation above the
+                // operations of our commit, which are all below the checkpoint. There is nothing to copy, phase2 replays the rest
+                targetLocalCheckpoint = targetCheckpoint;
+                logger.trace("[{}][{}] skipping [phase1] to {} - target has all operations up to [{}] of history [{}]", indexName, shardId,
+                        request.targetNode(), targetCheckpoint, primaryHistoryUUID);
+            } else if (recoverWithSyncId) {
                 final long numDocsTarget = request.metadataSnapshot().getNumDocs();
                 final long numDocsSource = recoverySourceMetadata.getNumDocs();
                 if (numDocsTarget != numDocsSource) {
@@ -318,6 +345,26 @@ public class RecoverySourceHandler {
 
 
 
+    /**
+     * Returns the local checkpoint of the target if it shares our history and already holds every operation of the
+     * given commit, or {@link LocalCheckpointTracker#UNASSIGNED_SEQ_NO} if its files have to be copied.
+     */
+    private long targetLocalCheckpointIfOperationsSuffice(IndexCommit snapshot) throws IOException {
+        final Map<String, String> targetUserData = request.metadataSnapshot().getCommitUserData();
+        final String targetHistoryUUID = targetUserData.get(Engine.HISTORY_UUID_KEY);
+        final String targetCheckpoint = targetUserData.get(Engine.LOCAL_CHECKPOINT_KEY);
+        final String sourceMaxSeqNo = snapshot.getUserData().get(Engine.MAX_SEQ_NO_KEY);
+        if (targetHistoryUUID == null || targetCheckpoint == null || sourceMaxSeqNo == null
+                || targetHistoryUUID.equals(primaryHistoryUUID) == false) {
+            return LocalCheckpointTracker.UNASSIGNED_SEQ_NO;
+        }
+        final long checkpoint = Long.parseLong(targetCheckpoint);
+        if (checkpoint < 0 || Long.parseLong(sourceMaxSeqNo) > checkpoint) {
+            return LocalCheckpointTracker.UNASSIGNED_SEQ_NO;
+        }
+        return checkpoint;
+    }
+
     protected void prepareTargetForTranslog(final Translog.View translogView) {
         StopWatch stopWatch = new StopWatch().start();
         logger.trace("{} recovery [phase1] to {}: prepare remote engine for translog", request.shardId(), request.targetNode());
@@ -387,7 +434,7 @@ public class RecoverySourceHandler {
                 // tombstone files. The shard is also moved to the POST_RECOVERY phase
                 // during this time
                 transportService.submitRequest(request.targetNode(), RecoveryTarget.Actions.FINALIZE,
-                        new RecoveryFinalizeRecoveryRequest(request.recoveryId(), request.shardId()),
+                        new RecoveryFinalizeRecoveryRequest(request.recoveryId(), request.shardId(), primaryHistoryUUID, primaryLocalCheckpoint),
                         TransportRequestOptions.builder().withTimeout(recoverySettings.internalActionLongTimeout()).build(),
                         EmptyTransportResponseHandler.INSTANCE_SAME).txGet();
             }
@@ -444,6 +491,15 @@ public class RecoverySourceHandler {
                 throw new IndexShardClosedException(request.shardId());
             }
             cancellableThreads.checkForCancel();
+            if (operation.seqNo() >= 0 && operation.seqNo() <= targetLocalCheckpoint) {
+                // the target already has it
+                try {
+                    operation = snapshot.next(); // this ex should bubble up
+                } catch (IOException ex) {
+                    throw new ElasticsearchException("failed to get next operation from translog", ex);
+                }
+                continue;
+            }
             operations.add(operation);
             ops += 1;
             size += operation.estimateSize();
@@ -521,16 +577,26 @@ public class RecoverySourceHandler {
     }
 
 
+    /**
+     * Sends a file to the target chunk by chunk. Up to <tt>indices.recovery.max_concurrent_file_chunks</tt> chunks are in
+     * flight at a time so that the transfer isn't bound by the round trip to the target, the target writes chunks that
+     * arrive out of order once the chunks before them arrived.
+     */
     final class RecoveryOutputStream extends OutputStream {
         private final StoreFileMetaData md;
         private final AtomicLong bytesSinceLastPause;
         private final Translog.View translogView;
+        private final int maxInFlightChunks;
+        private final Semaphore inFlightChunks;
+        private final AtomicReference<TransportException> failure = new AtomicReference<>();
         private long position = 0;
 
         RecoveryOutputStream(StoreFileMetaData md, AtomicLong bytesSinceLastPause, Translog.View translogView) {
             this.md = md;
             this.bytesSinceLastPause = bytesSinceLastPause;
             this.translogView = translogView;
+            this.maxInFlightChunks = recoverySettings.maxConcurrentFileChunks();
+            this.inFlightChunks = new Semaphore(maxInFlightChunks);
         }
 
         @Override
@@ -540,9 +606,35 @@ public class RecoverySourceHandler {
 
         @Override
         public final void write(byte[] b, int offset, int length) throws IOException {
-            sendNextChunk(position, new BytesArray(b, offset, length), md.length() == position + length);
+            // the caller reuses its buffer while the chunk may still be in flight
+            final BytesArray content = new BytesArray(Arrays.copyOfRange(b, offset, offset + length));
+            final boolean lastChunk = md.length() == position + length;
+            sendNextChunk(position, content, lastChunk);
             position += length;
             assert md.length() >= position : "length: " + md.length() + " but positions was: " + position;
+            if (lastChunk) {
+                waitForInFlightChunks();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            waitForInFlightChunks();
+        }
+
+        private void waitForInFlightChunks() {
+            cancellableThreads.execute(() -> {
+                inFlightChunks.acquire(maxInFlightChunks);
+                inFlightChunks.release(maxInFlightChunks);
+            });
+            ensureNoFailure();
+        }
+
+        private void ensureNoFailure() {
+            final TransportException e = failure.get();
+            if (e != null) {
+                throw e;
+            }
         }
 
         private void sendNextChunk(long position, BytesArray content, boolean lastChunk) throws IOException {
@@ -572,16 +664,38 @@ public class RecoverySourceHandler {
                 } else {
                     throttleTimeInNanos = 0;
                 }
-                // Actually send the file chunk to the target node, waiting for it to complete
-                transportService.submitRequest(request.targetNode(), RecoveryTarget.Actions.FILE_CHUNK,
+                // wait for a free slot in the window, the time we wait is reported to the target as stall time
+                final long stallTimeInNanos;
+                if (inFlightChunks.tryAcquire()) {
+                    stallTimeInNanos = 0;
+                } else {
+                    final long stallStart = System.nanoTime();
+                    inFlightChunks.acquire();
+                    stallTimeInNanos = Math.max(1, System.nanoTime() - stallStart);
+                }
+                // Actually send the file chunk to the target node, the response releases the slot
+                transportService.sendRequest(request.targetNode(), RecoveryTarget.Actions.FILE_CHUNK,
                         new RecoveryFileChunkRequest(request.recoveryId(), request.shardId(), md, position, content, lastChunk,
                                 translogView.totalOperations(),
                                 /* we send totalOperations with every request since we collect stats on the target and that way we can
                                  * see how many translog ops we accumulate while copying files across the network. A future optimization
                                  * would be in to restart file copy again (new deltas) if we have too many translog ops are piling up.
                                  */
-                                throttleTimeInNanos), chunkSendOptions, EmptyTransportResponseHandler.INSTANCE_SAME).txGet();
+                                throttleTimeInNanos, stallTimeInNanos), chunkSendOptions,
+                        new EmptyTransportResponseHandler(ThreadPool.Names.SAME) {
+                            @Override
+                            public void handleResponse(TransportResponse.Empty response) {
+                                inFlightChunks.release();
+                            }
+
+                            @Override
+                            public void handleException(TransportException exp) {
+                                failure.compareAndSet(null, exp);
+                                inFlightChunks.release();
+                            }
+                        });
             });
+            ensureNoFailure();
             if (shard.state() == IndexShardState.CLOSED) { // check if the shard got closed on us
                 throw new IndexShardClosedException(request.shardId());
             }
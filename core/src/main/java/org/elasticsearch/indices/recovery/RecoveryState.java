@@ -386,6 +386,11 @@ public class RecoveryState implements ToXContent, Streamable {
         static final XContentBuilderString SOURCE_THROTTLE_TIME_IN_MILLIS = new XContentBuilderString("source_throttle_time_in_millis");
         static final XContentBuilderString TARGET_THROTTLE_TIME = new XContentBuilderString("target_throttle_time");
         static final XContentBuilderString TARGET_THROTTLE_TIME_IN_MILLIS = new XContentBuilderString("target_throttle_time_in_millis");
+        static final XContentBuilderString SOURCE_STALL_TIME = new XContentBuilderString("source_stall_time");
+        static final XContentBuilderString SOURCE_STALL_TIME_IN_MILLIS = new XContentBuilderString("source_stall_time_in_millis");
+        static final XContentBuilderString SOURCE_STALLS = new XContentBuilderString("source_stalls");
+        static final XContentBuilderString THROUGHPUT = new XContentBuilderString("throughput");
+        static final XContentBuilderString THROUGHPUT_IN_BYTES = new XContentBuilderString("throughput_in_bytes");
     }
 
     public static class Timer implements Streamable {
@@ -711,6 +716,8 @@ public class RecoveryState implements ToXContent, Streamable {
         private long version = UNKNOWN;
         private long sourceThrottlingInNanos = UNKNOWN;
         private long targetThrottleTimeInNanos = UNKNOWN;
+        private long sourceStallTimeInNanos = 0;
+        private long sourceStalls = 0;
 
         public synchronized List<File> fileDetails() {
             return Collections.unmodifiableList(new ArrayList<>(fileDetails.values()));
@@ -722,6 +729,8 @@ public class RecoveryState implements ToXContent, Streamable {
             fileDetails.clear();
             sourceThrottlingInNanos = UNKNOWN;
             targetThrottleTimeInNanos = UNKNOWN;
+            sourceStallTimeInNanos = 0;
+            sourceStalls = 0;
         }
 
         public synchronized void addFileDetail(String name, long length, boolean reused) {
@@ -755,6 +764,32 @@ public class RecoveryState implements ToXContent, Streamable {
             }
         }
 
+        /**
+         * Records that the source had to wait for the target to acknowledge a file chunk before it could send the next one.
+         */
+        public synchronized void addSourceStall(long timeInNanos) {
+            sourceStallTimeInNanos += timeInNanos;
+            sourceStalls++;
+        }
+
+        /** the total time the source waited for file chunks to be acknowledged */
+        public synchronized TimeValue sourceStallTime() {
+            return TimeValue.timeValueNanos(sourceStallTimeInNanos);
+        }
+
+        /** how many times the source had to wait for file chunks to be acknowledged */
+        public synchronized long sourceStalls() {
+            return sourceStalls;
+        }
+
+        /**
+         * the number of bytes recovered per second so far
+         */
+        public synchronized long throughputBytesPerSec() {
+            final long time = time();
+            return time <= 0 ? 0 : recoveredBytes() * 1000 / time;
+        }
+
         public synchronized TimeValue sourceThrottling() {
             return TimeValue.timeValueNanos(sourceThrottlingInNanos);
         }
@@ -924,6 +959,8 @@ public class RecoveryState implements ToXContent, Streamable {
             }
             sourceThrottlingInNanos = in.readLong();
             targetThrottleTimeInNanos = in.readLong();
+            sourceStallTimeInNanos = in.readLong();
+            sourceStalls = in.readVLong();
         }
 
         @Override
@@ -936,6 +973,8 @@ public class RecoveryState implements ToXContent, Streamable {
             }
             out.writeLong(sourceThrottlingInNanos);
             out.writeLong(targetThrottleTimeInNanos);
+            out.writeLong(sourceStallTimeInNanos);
+            out.writeVLong(sourceStalls);
         }
 
         @Override
@@ -964,6 +1003,10 @@ public class RecoveryState implements ToXContent, Streamable {
             builder.timeValueField(Fields.TOTAL_TIME_IN_MILLIS, Fields.TOTAL_TIME, time());
             builder.timeValueField(Fields.SOURCE_THROTTLE_TIME_IN_MILLIS, Fields.SOURCE_THROTTLE_TIME, sourceThrottling());
             builder.timeValueField(Fields.TARGET_THROTTLE_TIME_IN_MILLIS, Fields.TARGET_THROTTLE_TIME, targetThrottling());
+            builder.timeValueField(Fields.SOURCE_STALL_TIME_IN_MILLIS, Fields.SOURCE_STALL_TIME, sourceStallTime());
+            builder.field(Fields.SOURCE_STALLS, sourceStalls());
+            // per second
+            builder.byteSizeField(Fields.THROUGHPUT_IN_BYTES, Fields.THROUGHPUT, throughputBytesPerSec());
             return builder;
         }
 
@@ -24,6 +24,7 @@ import org.apache.lucene.store.IndexOutput;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.util.CancellableThreads;
@@ -35,6 +36,9 @@ import org.elasticsearch.index.store.Store;
 import org.elasticsearch.index.store.StoreFileMetaData;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -66,6 +70,7 @@ public class RecoveryStatus extends AbstractRefCounted {
     private final AtomicBoolean finished = new AtomicBoolean();
 
     private final ConcurrentMap<String, IndexOutput> openIndexOutputs = ConcurrentCollections.newConcurrentMap();
+    private final ConcurrentMap<String, FileChunks> fileChunks = ConcurrentCollections.newConcurrentMap();
     private final Store.LegacyChecksums legacyChecksums = new Store.LegacyChecksums();
 
     private final CancellableThreads cancellableThreads = new CancellableThreads();
@@ -237,6 +242,77 @@ public class RecoveryStatus extends AbstractRefCounted {
         return indexOutput;
     }
 
+    /**
+     * Writes a chunk of a file that is being recovered. The source sends several chunks of a file at a time, so they
+     * may arrive out of order: chunks that are ahead are kept until the chunks before them have been written. Once the
+     * last chunk is written the file is verified and synced.
+     */
+    public void writeFileChunk(StoreFileMetaData fileMetaData, long position, BytesReference content, boolean lastChunk) throws IOException {
+        ensureRefCount();
+        final FileChunks chunks = fileChunks.computeIfAbsent(fileMetaData.name(), name -> new FileChunks());
+        synchronized (chunks) {
+            if (position != chunks.nextPosition) {
+                assert position > chunks.nextPosition : "chunk at [" + position + "] of [" + fileMetaData.name() + "] was already written";
+                chunks.pending.put(position, new PendingChunk(content, lastChunk));
+                return;
+            }
+            innerWriteFileChunk(fileMetaData, position, content, lastChunk);
+            chunks.nextPosition += content.length();
+            PendingChunk next;
+            while ((next = chunks.pending.remove(chunks.nextPosition)) != null) {
+                innerWriteFileChunk(fileMetaData, chunks.nextPosition, next.content, next.lastChunk);
+                chunks.nextPosition += next.content.length();
+            }
+        }
+    }
+
+    private void innerWriteFileChunk(StoreFileMetaData fileMetaData, long position, BytesReference content, boolean lastChunk) throws IOException {
+        final String name = fileMetaData.name();
+        final IndexOutput indexOutput;
+        if (position == 0) {
+            indexOutput = openAndPutIndexOutput(name, fileMetaData, store);
+        } else {
+            indexOutput = getOpenIndexOutput(name);
+        }
+        if (content.hasArray() == false) {
+            content = content.toBytesArray();
+        }
+        indexOutput.writeBytes(content.array(), content.arrayOffset(), content.length());
+        state().getIndex().addRecoveredBytesToFile(name, content.length());
+        if (indexOutput.getFilePointer() >= fileMetaData.length() || lastChunk) {
+            try {
+                Store.verify(indexOutput);
+            } finally {
+                // we are done
+                indexOutput.close();
+            }
+            // write the checksum
+            legacyChecksums().add(fileMetaData);
+            final String temporaryFileName = getTempNameForFile(name);
+            assert Arrays.asList(store.directory().listAll()).contains(temporaryFileName);
+            store.directory().sync(Collections.singleton(temporaryFileName));
+            IndexOutput remove = removeOpenIndexOutputs(name);
+            assert remove == null || remove == indexOutput; // remove maybe null if we got finished
+            fileChunks.remove(name);
+        }
+    }
+
+    /** the chunks of a file that arrived ahead of the position it was written up to */
+    private static final class FileChunks {
+        long nextPosition = 0;
+        final Map<Long, PendingChunk> pending = new HashMap<>();
+    }
+
+    private static final class PendingChunk {
+        final BytesReference content;
+        final boolean lastChunk;
+
+        PendingChunk(BytesReference content, boolean lastChunk) {
+            this.content = content;
+            this.lastChunk = lastChunk;
+        }
+    }
+
     public void resetRecovery() throws IOException {
         cleanOpenFiles();
         indexShard().performRecoveryRestart();
@@ -266,6 +342,7 @@ public class RecoveryStatus extends AbstractRefCounted {
             }
             iterator.remove();
         }
+        fileChunks.clear();
         // trash temporary files
         for (String file : tempFileNames.keySet()) {
             logger.trace("cleaning temporary file [{}]", file);
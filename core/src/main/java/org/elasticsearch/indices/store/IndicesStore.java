@@ -53,7 +53,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 /**
  *
  */
-public class IndicesStore extends AbstractComponent implements ClusterStateListener, Closeable {
+public class IndicesStore extends AbstractComponent implements OrderIndependentClusterStateListener, Closeable {
 
     // TODO this class can be foled into either IndicesService and partially into IndicesClusterStateService there is no need for a seperate public service
     public static final String INDICES_STORE_DELETE_SHARD_TIMEOUT = "indices.store.delete.shard.timeout";
@@ -40,8 +40,9 @@ import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Streamable;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.env.NodeEnvironment;
-import org.elasticsearch.gateway.AsyncShardFetch;
+import org.elasticsearch.gateway.ShardFetchBatch;
 import org.elasticsearch.index.IndexModule;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.IndexService;
@@ -55,7 +56,9 @@ import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.TransportService;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 
@@ -63,7 +66,7 @@ import java.util.concurrent.atomic.AtomicReferenceArray;
  *
  */
 public class TransportNodesListShardStoreMetaData extends TransportNodesAction<TransportNodesListShardStoreMetaData.Request, TransportNodesListShardStoreMetaData.NodesStoreFilesMetaData, TransportNodesListShardStoreMetaData.NodeRequest, TransportNodesListShardStoreMetaData.NodeStoreFilesMetaData>
-        implements AsyncShardFetch.List<TransportNodesListShardStoreMetaData.NodesStoreFilesMetaData, TransportNodesListShardStoreMetaData.NodeStoreFilesMetaData> {
+        implements ShardFetchBatch.BatchedList<TransportNodesListShardStoreMetaData.NodesStoreFilesMetaData, TransportNodesListShardStoreMetaData.NodeStoreFilesMetaData> {
 
     public static final String ACTION_NAME = "internal:cluster/nodes/indices/shard/store";
 
@@ -71,6 +74,9 @@ public class TransportNodesListShardStoreMetaData extends TransportNodesAction<T
 
     private final NodeEnvironment nodeEnv;
 
+    // the metadata of shards that are not allocated on this node, asked for again on every round of allocations
+    private final ConcurrentMap<ShardId, CachedMetadataSnapshot> unallocatedStoreMetaData = ConcurrentCollections.newConcurrentMap();
+
     @Inject
     public TransportNodesListShardStoreMetaData(Settings settings, ClusterName clusterName, ThreadPool threadPool, ClusterService clusterService, TransportService transportService,
                                                 IndicesService indicesService, NodeEnvironment nodeEnv, ActionFilters actionFilters,
@@ -79,6 +85,7 @@ public class TransportNodesListShardStoreMetaData extends TransportNodesAction<T
                 Request::new, NodeRequest::new, ThreadPool.Names.FETCH_SHARD_STORE);
         this.indicesService = indicesService;
         this.nodeEnv = nodeEnv;
+        registerBatchRequestHandler(NodeRequest::new, ThreadPool.Names.FETCH_SHARD_STORE);
     }
 
     @Override
@@ -86,6 +93,15 @@ public class TransportNodesListShardStoreMetaData extends TransportNodesAction<T
         execute(new Request(shardId, false, nodesIds), listener);
     }
 
+    @Override
+    public void list(List<ShardFetchBatch.ShardRequest> shards, List<ActionListener<NodesStoreFilesMetaData>> listeners) {
+        List<Request> requests = new ArrayList<>(shards.size());
+        for (ShardFetchBatch.ShardRequest shard : shards) {
+            requests.add(new Request(shard.shardId(), false, shard.nodesIds()));
+        }
+        executeBatch(requests, listeners);
+    }
+
     @Override
     protected String[] resolveNodes(Request request, ClusterState clusterState) {
         // default implementation may filter out non existent nodes. it's important to keep exactly the ids
@@ -152,6 +168,7 @@ public class TransportNodesListShardStoreMetaData extends TransportNodesAction<T
             if (indexService != null) {
                 IndexShard indexShard = indexService.getShardOrNull(shardId.id());
                 if (indexShard != null) {
+                    unallocatedStoreMetaData.remove(shardId);
                     final Store store = indexShard.store();
                     store.incRef();
                     try {
@@ -165,6 +182,7 @@ public class TransportNodesListShardStoreMetaData extends TransportNodesAction<T
             // try and see if we an list unallocated
             IndexMetaData metaData = clusterService.state().metaData().index(shardId.index().name());
             if (metaData == null) {
+                unallocatedStoreMetaData.remove(shardId);
                 return new StoreFilesMetaData(false, shardId, Store.MetadataSnapshot.EMPTY);
             }
             String storeType = metaData.getSettings().get(IndexModule.STORE_TYPE, "fs");
@@ -174,9 +192,10 @@ public class TransportNodesListShardStoreMetaData extends TransportNodesAction<T
             final IndexSettings indexSettings = indexService != null ? indexService.getIndexSettings() : new IndexSettings(metaData, settings, Collections.emptyList());
             final ShardPath shardPath = ShardPath.loadShardPath(logger, nodeEnv, shardId, indexSettings);
             if (shardPath == null) {
+                unallocatedStoreMetaData.remove(shardId);
                 return new StoreFilesMetaData(false, shardId, Store.MetadataSnapshot.EMPTY);
             }
-            return new StoreFilesMetaData(false, shardId, Store.readMetadataSnapshot(shardPath.resolveIndex(), logger));
+            return new StoreFilesMetaData(false, shardId, readMetadataSnapshot(shardId, shardPath.resolveIndex()));
         } finally {
             TimeValue took = new TimeValue(System.nanoTime() - startTimeNS, TimeUnit.NANOSECONDS);
             if (exists) {
@@ -187,6 +206,45 @@ public class TransportNodesListShardStoreMetaData extends TransportNodesAction<T
         }
     }
 
+    /**
+     * Reads the metadata of the last commit of a shard that is not allocated on this node. This requires to read the footer
+     * of every file of the commit, so the metadata is cached until another commit is written to the location.
+     */
+    private Store.MetadataSnapshot readMetadataSnapshot(ShardId shardId, Path indexLocation) throws IOException {
+        String commitId;
+        try {
+            commitId = Store.readLastCommitId(indexLocation);
+        } catch (IOException e) {
+            logger.trace("{} failed to read the last commit in [{}]", e, shardId, indexLocation);
+            commitId = null;
+        }
+        final CachedMetadataSnapshot cached = unallocatedStoreMetaData.get(shardId);
+        if (commitId != null && cached != null && cached.indexLocation.equals(indexLocation) && cached.commitId.equals(commitId)) {
+            logger.trace("{} reusing store meta data of commit [{}]", shardId, commitId);
+            return cached.snapshot;
+        }
+        final Store.MetadataSnapshot snapshot = Store.readMetadataSnapshot(indexLocation, logger);
+        final StoreFileMetaData segmentsFile = snapshot.getSegmentsFile();
+        if (commitId != null && segmentsFile != null && commitId.startsWith(segmentsFile.name() + "/")) {
+            unallocatedStoreMetaData.put(shardId, new CachedMetadataSnapshot(indexLocation, commitId, snapshot));
+        } else {
+            unallocatedStoreMetaData.remove(shardId);
+        }
+        return snapshot;
+    }
+
+    private static final class CachedMetadataSnapshot {
+        private final Path indexLocation;
+        private final String commitId;
+        private final Store.MetadataSnapshot snapshot;
+
+        CachedMetadataSnapshot(Path indexLocation, String commitId, Store.MetadataSnapshot snapshot) {
+            this.indexLocation = indexLocation;
+            this.commitId = commitId;
+            this.snapshot = snapshot;
+        }
+    }
+
     @Override
     protected boolean accumulateExceptions() {
         return true;
@@ -24,6 +24,7 @@ import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Sort;
@@ -84,7 +85,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentMap;
 
 /**
  */
@@ -96,6 +96,10 @@ public class PercolateContext extends SearchContext {
     public boolean doSort;
     public byte percolatorTypeId;
     private boolean trackScores;
+    private Set<BytesRef> candidateQueries = Collections.emptySet();
+    // the number of candidate queries that were executed and that matched, for the stats
+    long executedQueries;
+    long matchedQueries;
 
     private final SearchShardTarget searchShardTarget;
     private final IndexService indexService;
@@ -179,8 +183,19 @@ public class PercolateContext extends SearchContext {
         return indexService;
     }
 
-    public ConcurrentMap<BytesRef, Query> percolateQueries() {
-        return percolateQueryRegistry.percolateQueries();
+    public PercolatorQueriesRegistry percolateQueryRegistry() {
+        return percolateQueryRegistry;
+    }
+
+    /**
+     * The ids of the registered queries that can match the percolated document, all other queries can be skipped.
+     */
+    public Set<BytesRef> candidateQueries() {
+        return candidateQueries;
+    }
+
+    public void candidateQueries(Set<BytesRef> candidateQueries) {
+        this.candidateQueries = candidateQueries;
     }
 
     public Query percolateQuery() {
@@ -500,6 +515,16 @@ public class PercolateContext extends SearchContext {
         return trackScores;
     }
 
+    @Override
+    public SearchContext searchAfter(FieldDoc searchAfter) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public FieldDoc searchAfter() {
+        return null;
+    }
+
     @Override
     public SearchContext parsedPostFilter(ParsedQuery postFilter) {
         throw new UnsupportedOperationException();
@@ -200,7 +200,7 @@ public class PercolatorService extends AbstractComponent {
         SearchContext.setCurrent(context);
         try {
             ParsedDocument parsedDocument = parseRequest(indexShard, request, context, request.shardId().getIndex());
-            if (context.percolateQueries().isEmpty()) {
+            if (context.percolateQueryRegistry().isEmpty()) {
                 return new PercolateShardResponse(context, request.shardId());
             }
 
@@ -251,11 +251,16 @@ public class PercolatorService extends AbstractComponent {
             context.percolatorTypeId = action.id();
 
             percolatorIndex.prepare(context, parsedDocument);
+            try {
+                context.candidateQueries(percolateQueryRegistry.candidateQueries(context.docSearcher().getIndexReader()));
+            } catch (IOException e) {
+                throw new PercolateException(request.shardId(), "failed to select candidate queries", e);
+            }
             return action.doPercolate(request, context, isNested);
         } finally {
             SearchContext.removeCurrent();
             context.close();
-            percolateQueryRegistry.postPercolate(System.nanoTime() - startTime);
+            percolateQueryRegistry.postPercolate(System.nanoTime() - startTime, context.executedQueries, context.matchedQueries);
         }
     }
 
@@ -460,9 +465,15 @@ public class PercolatorService extends AbstractComponent {
         @Override
         public PercolateShardResponse doPercolate(PercolateShardRequest request, PercolateContext context, boolean isNested) {
             long count = 0;
-            for (Map.Entry<BytesRef, Query> entry : context.percolateQueries().entrySet()) {
+            for (BytesRef id : context.candidateQueries()) {
+                Query query = context.percolateQueryRegistry().getPercolateQuery(id);
+                if (query == null) {
+                    // unregistered in the meantime
+                    continue;
+                }
+                context.executedQueries++;
                 try {
-                    Query existsQuery = entry.getValue();
+                    Query existsQuery = query;
                     if (isNested) {
                         existsQuery = new BooleanQuery.Builder()
                             .add(existsQuery, Occur.MUST)
@@ -471,9 +482,10 @@ public class PercolatorService extends AbstractComponent {
                     }
                     if (Lucene.exists(context.docSearcher(), existsQuery)) {
                         count ++;
+                        context.matchedQueries++;
                     }
                 } catch (Throwable e) {
-                    logger.debug("[" + entry.getKey() + "] failed to execute query", e);
+                    logger.debug("[" + id + "] failed to execute query", e);
                     throw new PercolateException(context.indexShard().shardId(), "failed to execute", e);
                 }
             }
@@ -556,13 +568,19 @@ public class PercolatorService extends AbstractComponent {
             List<BytesRef> matches = new ArrayList<>();
             List<Map<String, HighlightField>> hls = new ArrayList<>();
 
-            for (Map.Entry<BytesRef, Query> entry : context.percolateQueries().entrySet()) {
+            for (BytesRef id : context.candidateQueries()) {
+                Query query = context.percolateQueryRegistry().getPercolateQuery(id);
+                if (query == null) {
+                    // unregistered in the meantime
+                    continue;
+                }
+                context.executedQueries++;
                 if (context.highlight() != null) {
-                    context.parsedQuery(new ParsedQuery(entry.getValue()));
+                    context.parsedQuery(new ParsedQuery(query));
                     context.hitContext().cache().clear();
                 }
                 try {
-                    Query existsQuery = entry.getValue();
+                    Query existsQuery = query;
                     if (isNested) {
                         existsQuery = new BooleanQuery.Builder()
                             .add(existsQuery, Occur.MUST)
@@ -571,16 +589,17 @@ public class PercolatorService extends AbstractComponent {
                     }
                     if (Lucene.exists(context.docSearcher(), existsQuery)) {
                         if (!context.limit || count < context.size()) {
-                            matches.add(entry.getKey());
+                            matches.add(id);
                             if (context.highlight() != null) {
                                 highlightPhase.hitExecute(context, context.hitContext());
                                 hls.add(context.hitContext().hit().getHighlightFields());
                             }
                         }
                         count++;
+                        context.matchedQueries++;
                     }
                 } catch (Throwable e) {
-                    logger.debug("[" + entry.getKey() + "] failed to execute query", e);
+                    logger.debug("[" + id + "] failed to execute query", e);
                     throw new PercolateException(context.indexShard().shardId(), "failed to execute", e);
                 }
             }
@@ -777,7 +796,7 @@ public class PercolatorService extends AbstractComponent {
                     BytesRef bytes = Uid.splitUidIntoTypeAndId(values.valueAt(0))[1];
                     matches.add(BytesRef.deepCopyOf(bytes));
                     if (hls != null) {
-                        Query query = context.percolateQueries().get(bytes);
+                        Query query = context.percolateQueryRegistry().getPercolateQuery(bytes);
                         context.parsedQuery(new ParsedQuery(query));
                         context.hitContext().cache().clear();
                         highlightPhase.hitExecute(context, context.hitContext());
@@ -32,6 +32,7 @@ import org.elasticsearch.index.fielddata.SortedBinaryDocValues;
 import org.elasticsearch.index.mapper.MappedFieldType;
 import org.elasticsearch.index.mapper.Uid;
 import org.elasticsearch.index.mapper.internal.UidFieldMapper;
+import org.elasticsearch.index.percolator.PercolatorQueriesRegistry;
 import org.elasticsearch.index.query.ParsedQuery;
 import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.BucketCollector;
@@ -44,7 +45,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentMap;
+import java.util.Set;
 
 /**
  */
@@ -52,7 +53,9 @@ abstract class QueryCollector extends SimpleCollector {
 
     final IndexFieldData<?> uidFieldData;
     final IndexSearcher searcher;
-    final ConcurrentMap<BytesRef, Query> queries;
+    final PercolatorQueriesRegistry queries;
+    final Set<BytesRef> candidateQueries;
+    final PercolateContext context;
     final ESLogger logger;
     boolean isNestedDoc = false;
 
@@ -65,7 +68,9 @@ abstract class QueryCollector extends SimpleCollector {
 
     QueryCollector(ESLogger logger, PercolateContext context, boolean isNestedDoc) throws IOException {
         this.logger = logger;
-        this.queries = context.percolateQueries();
+        this.queries = context.percolateQueryRegistry();
+        this.candidateQueries = context.candidateQueries();
+        this.context = context;
         this.searcher = context.docSearcher();
         final MappedFieldType uidMapper = context.mapperService().smartNameFieldType(UidFieldMapper.NAME);
         this.uidFieldData = context.fieldData().getForField(uidMapper);
@@ -91,6 +96,7 @@ abstract class QueryCollector extends SimpleCollector {
     }
 
     public void postMatch(int doc) throws IOException {
+        context.matchedQueries++;
         aggregatorLeafCollector.collect(doc);
     }
 
@@ -136,14 +142,21 @@ abstract class QueryCollector extends SimpleCollector {
         }
         assert numValues == 1;
         current = Uid.splitUidIntoTypeAndId(values.valueAt(0))[1];
-        return queries.get(current);
+        if (candidateQueries.contains(current) == false) {
+            // the document doesn't contain any of the terms the query requires
+            return null;
+        }
+        final Query query = queries.getPercolateQuery(current);
+        if (query != null) {
+            context.executedQueries++;
+        }
+        return query;
     }
 
 
 
     final static class Match extends QueryCollector {
 
-        final PercolateContext context;
         final HighlightPhase highlightPhase;
 
         final List<BytesRef> matches = new ArrayList<>();
@@ -156,7 +169,6 @@ abstract class QueryCollector extends SimpleCollector {
             super(logger, context, isNestedDoc);
             this.limit = context.limit;
             this.size = context.size();
-            this.context = context;
             this.highlightPhase = highlightPhase;
         }
 
@@ -270,7 +282,6 @@ abstract class QueryCollector extends SimpleCollector {
 
     final static class MatchAndScore extends QueryCollector {
 
-        final PercolateContext context;
         final HighlightPhase highlightPhase;
 
         final List<BytesRef> matches = new ArrayList<>();
@@ -287,7 +298,6 @@ abstract class QueryCollector extends SimpleCollector {
             super(logger, context, isNestedDoc);
             this.limit = context.limit;
             this.size = context.size();
-            this.context = context;
             this.highlightPhase = highlightPhase;
         }
 
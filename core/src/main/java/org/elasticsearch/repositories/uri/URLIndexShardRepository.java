@@ -25,14 +25,16 @@ import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.index.snapshots.blobstore.BlobStoreIndexShardRepository;
 import org.elasticsearch.indices.IndicesService;
 import org.elasticsearch.repositories.RepositoryName;
+import org.elasticsearch.threadpool.ThreadPool;
 
 /**
  */
 public class URLIndexShardRepository extends BlobStoreIndexShardRepository {
 
     @Inject
-    public URLIndexShardRepository(Settings settings, RepositoryName repositoryName, IndicesService indicesService, ClusterService clusterService) {
-        super(settings, repositoryName, indicesService, clusterService);
+    public URLIndexShardRepository(Settings settings, RepositoryName repositoryName, IndicesService indicesService, ClusterService clusterService,
+                                   ThreadPool threadPool) {
+        super(settings, repositoryName, indicesService, clusterService, threadPool);
     }
 
 
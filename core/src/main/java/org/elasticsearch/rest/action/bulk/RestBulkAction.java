@@ -20,6 +20,7 @@
 package org.elasticsearch.rest.action.bulk;
 
 import org.elasticsearch.action.WriteConsistencyLevel;
+import org.elasticsearch.action.bulk.ConcurrencyLimitedBulkExecutor;
 import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
@@ -29,6 +30,7 @@ import org.elasticsearch.client.Requests;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentBuilderString;
 import org.elasticsearch.rest.*;
@@ -49,7 +51,19 @@ import static org.elasticsearch.rest.RestStatus.OK;
  */
 public class RestBulkAction extends BaseRestHandler {
 
+    /**
+     * If set, bulk requests larger than this are executed as a sequence of smaller bulk requests of about this size, only
+     * a limited number of which execute at the same time (default: not set). Can be overridden per request with the
+     * <code>batch_size</code> parameter.
+     */
+    public static final String BATCH_SIZE_SETTING = "rest.action.bulk.batch_size";
+
+    /** How many batches of one bulk request may be executing at the same time (default: 4). */
+    public static final String MAX_CONCURRENT_BATCHES_SETTING = "rest.action.bulk.max_concurrent_batches";
+
     private final boolean allowExplicitIndex;
+    private final ByteSizeValue batchSize;
+    private final int maxConcurrentBatches;
 
     @Inject
     public RestBulkAction(Settings settings, RestController controller, Client client) {
@@ -63,6 +77,8 @@ public class RestBulkAction extends BaseRestHandler {
         controller.registerHandler(PUT, "/{index}/{type}/_bulk", this);
 
         this.allowExplicitIndex = settings.getAsBoolean("rest.action.multi.allow_explicit_index", true);
+        this.batchSize = settings.getAsBytesSize(BATCH_SIZE_SETTING, null);
+        this.maxConcurrentBatches = settings.getAsInt(MAX_CONCURRENT_BATCHES_SETTING, 4);
     }
 
     @Override
@@ -81,8 +97,9 @@ public class RestBulkAction extends BaseRestHandler {
         bulkRequest.timeout(request.paramAsTime("timeout", BulkShardRequest.DEFAULT_TIMEOUT));
         bulkRequest.refresh(request.paramAsBoolean("refresh", bulkRequest.refresh()));
         bulkRequest.add(request.content(), defaultIndex, defaultType, defaultRouting, defaultFields, null, allowExplicitIndex);
+        ByteSizeValue batchSize = request.paramAsSize("batch_size", this.batchSize);
 
-        client.bulk(bulkRequest, new RestBuilderListener<BulkResponse>(channel) {
+        RestBuilderListener<BulkResponse> listener = new RestBuilderListener<BulkResponse>(channel) {
             @Override
             public RestResponse buildResponse(BulkResponse response, XContentBuilder builder) throws Exception {
                 builder.startObject();
@@ -99,7 +116,12 @@ public class RestBulkAction extends BaseRestHandler {
                 builder.endObject();
                 return new BytesRestResponse(OK, builder);
             }
-        });
+        };
+        if (batchSize != null && batchSize.bytes() > 0) {
+            new ConcurrencyLimitedBulkExecutor(client, bulkRequest, batchSize.bytes(), maxConcurrentBatches, listener).execute();
+        } else {
+            client.bulk(bulkRequest, listener);
+        }
     }
 
     static final class Fields {
@@ -38,4 +38,22 @@ public interface LeafSearchScript extends ScorerAware, ExecutableScript {
 
     double runAsDouble();
 
+    /**
+     * Returns <code>true</code> if the script can run on many documents at once with
+     * {@link #runAsDoubles(int[], float[], int, double[])}, which is more efficient than running it one document at a time.
+     */
+    default boolean canRunBlocks() {
+        return false;
+    }
+
+    /**
+     * Runs the script on the first {@code count} documents of {@code docs}, which are in increasing order, and stores
+     * their results in the first {@code count} slots of {@code results}. {@code scores} holds the scores of the documents,
+     * and may be <code>null</code> if the script doesn't need scores. Only supported if {@link #canRunBlocks()} returns
+     * <code>true</code>.
+     */
+    default void runAsDoubles(int[] docs, float[] scores, int count, double[] results) {
+        throw new UnsupportedOperationException("script can't run on blocks of documents");
+    }
+
 }
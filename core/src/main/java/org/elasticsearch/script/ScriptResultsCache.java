@@ -0,0 +1,392 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.script;
+
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.FrequencyTrackingRingBuffer;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+import org.elasticsearch.common.cache.RemovalNotification;
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.metrics.CounterMetric;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.index.shard.ShardUtils;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
+import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Caches the per document results of {@link SearchScript#isDeterministic() deterministic} search scripts per segment
+ * core, so that scripts that run over and over on the same segments are evaluated only once per document. Only scripts
+ * that ran with the same parameters several times recently are cached. Their results are computed for all the documents
+ * of a segment the first time they run on it, are charged to the field data circuit breaker, and are released when the
+ * segment is closed or when the cache is full. The cache is disabled unless {@value #SCRIPT_RESULTS_CACHE_SIZE_SETTING}
+ * is set.
+ */
+public class ScriptResultsCache extends AbstractComponent implements LeafReader.CoreClosedListener, Closeable {
+
+    public static final String SCRIPT_RESULTS_CACHE_SIZE_SETTING = "script.results_cache.size";
+
+    /** the number of recent script executions that are tracked to decide whether a script is worth caching */
+    private static final int HISTORY_SIZE = 256;
+
+    /** how many of the recent script executions need to share a script and parameters for them to be cached */
+    private static final int MIN_FREQUENCY = 2;
+
+    /** the number of documents the results of which are computed at once, for scripts that can run on blocks */
+    private static final int BLOCK_SIZE = 1024;
+
+    private static final String BREAKER_LABEL = "script_results";
+
+    @Nullable
+    private final Cache<Key, Values> cache;
+    // guarded by itself
+    private final FrequencyTrackingRingBuffer recentScripts = new FrequencyTrackingRingBuffer(HISTORY_SIZE, Integer.MIN_VALUE);
+    private final CounterMetric memorySize = new CounterMetric();
+    private final CounterMetric evictions = new CounterMetric();
+    private volatile CircuitBreakerService circuitBreakerService = new NoneCircuitBreakerService();
+
+    public ScriptResultsCache(Settings settings) {
+        super(settings);
+        final long sizeInBytes = settings.getAsMemory(SCRIPT_RESULTS_CACHE_SIZE_SETTING, "0").bytes();
+        logger.debug("using size [{}]", new ByteSizeValue(sizeInBytes));
+        if (sizeInBytes > 0) {
+            cache = CacheBuilder.<Key, Values>builder().setMaximumWeight(sizeInBytes)
+                    .weigher((key, values) -> values.ramBytesUsed()).removalListener(this::onRemoval).build();
+        } else {
+            cache = null;
+        }
+    }
+
+    /**
+     * Sets the circuit breaker service the memory of the cached results is charged to.
+     */
+    public void setCircuitBreakerService(CircuitBreakerService circuitBreakerService) {
+        this.circuitBreakerService = circuitBreakerService;
+    }
+
+    /**
+     * Returns a search script that reads the results of the given script from the cache if it is deterministic and
+     * recently ran with the same parameters, or the script itself otherwise.
+     */
+    public SearchScript wrap(CompiledScript compiledScript, @Nullable Map<String, Object> params, SearchScript script) {
+        if (cache == null || script.isDeterministic() == false) {
+            return script;
+        }
+        final ScriptKey scriptKey = new ScriptKey(compiledScript, params);
+        final int frequency;
+        synchronized (recentScripts) {
+            recentScripts.add(scriptKey.hashCode());
+            frequency = recentScripts.frequency(scriptKey.hashCode());
+        }
+        if (frequency < MIN_FREQUENCY) {
+            // computing the results of all documents only pays off for scripts that run again
+            return script;
+        }
+        return new CachingSearchScript(scriptKey, script);
+    }
+
+    /**
+     * Returns the number of cached segment results
+     */
+    public int count() {
+        return cache == null ? 0 : cache.count();
+    }
+
+    /**
+     * Returns the memory used by the cached results, in bytes
+     */
+    public long memorySizeInBytes() {
+        return memorySize.count();
+    }
+
+    /**
+     * Returns the number of cached results that were evicted because the cache was full
+     */
+    public long evictions() {
+        return evictions.count();
+    }
+
+    private void onRemoval(RemovalNotification<Key, Values> notification) {
+        final long bytes = notification.getValue().ramBytesUsed();
+        memorySize.dec(bytes);
+        circuitBreakerService.getBreaker(CircuitBreaker.FIELDDATA).addWithoutBreaking(-bytes);
+        if (notification.getRemovalReason() == RemovalNotification.RemovalReason.EVICTED) {
+            evictions.inc();
+        }
+    }
+
+    @Override
+    public void onClose(Object ownerCoreCacheKey) {
+        for (Key key : cache.keys()) {
+            if (key.coreCacheKey.equals(ownerCoreCacheKey)) {
+                cache.invalidate(key);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    private class CachingSearchScript implements SearchScript {
+
+        private final ScriptKey scriptKey;
+        private final SearchScript script;
+
+        CachingSearchScript(ScriptKey scriptKey, SearchScript script) {
+            this.scriptKey = scriptKey;
+            this.script = script;
+        }
+
+        @Override
+        public LeafSearchScript getLeafSearchScript(LeafReaderContext context) throws IOException {
+            if (ShardUtils.extractShardId(context.reader()) == null) {
+                // only the segments of shards are searched again by later requests
+                return script.getLeafSearchScript(context);
+            }
+            final Values values;
+            try {
+                values = cache.computeIfAbsent(new Key(context.reader().getCoreCacheKey(), scriptKey), key -> {
+                    final Values loaded = load(context);
+                    context.reader().addCoreClosedListener(ScriptResultsCache.this);
+                    return loaded;
+                });
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof CircuitBreakingException) {
+                    // the results don't fit in memory, evaluate the script for the requested documents only
+                    return script.getLeafSearchScript(context);
+                }
+                throw ExceptionsHelper.convertToElastic(e);
+            }
+            return new CachedLeafSearchScript(values.values);
+        }
+
+        private Values load(LeafReaderContext context) throws IOException {
+            final int maxDoc = context.reader().maxDoc();
+            final long bytes = RamUsageEstimator.sizeOf(new double[0]) + (long) maxDoc * RamUsageEstimator.NUM_BYTES_DOUBLE;
+            final CircuitBreaker breaker = circuitBreakerService.getBreaker(CircuitBreaker.FIELDDATA);
+            breaker.addEstimateBytesAndMaybeBreak(bytes, BREAKER_LABEL);
+            boolean success = false;
+            try {
+                final Values values = new Values(compute(context));
+                breaker.addWithoutBreaking(values.ramBytesUsed() - bytes);
+                memorySize.inc(values.ramBytesUsed());
+                success = true;
+                return values;
+            } finally {
+                if (success == false) {
+                    breaker.addWithoutBreaking(-bytes);
+                }
+            }
+        }
+
+        private double[] compute(LeafReaderContext context) throws IOException {
+            final LeafSearchScript leafScript = script.getLeafSearchScript(context);
+            final double[] values = new double[context.reader().maxDoc()];
+            if (leafScript.canRunBlocks() == false) {
+                for (int doc = 0; doc < values.length; doc++) {
+                    leafScript.setDocument(doc);
+                    values[doc] = leafScript.runAsDouble();
+                }
+                return values;
+            }
+            final int[] docs = new int[Math.min(BLOCK_SIZE, values.length)];
+            final double[] results = new double[docs.length];
+            for (int start = 0; start < values.length; start += docs.length) {
+                final int count = Math.min(docs.length, values.length - start);
+                for (int i = 0; i < count; i++) {
+                    docs[i] = start + i;
+                }
+                leafScript.runAsDoubles(docs, null, count, results);
+                System.arraycopy(results, 0, values, start, count);
+            }
+            return values;
+        }
+
+        @Override
+        public boolean needsScores() {
+            return false;
+        }
+
+        @Override
+        public boolean isDeterministic() {
+            return true;
+        }
+    }
+
+    private static class CachedLeafSearchScript implements LeafSearchScript {
+
+        private final double[] values;
+        private int doc;
+
+        CachedLeafSearchScript(double[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public void setDocument(int doc) {
+            this.doc = doc;
+        }
+
+        @Override
+        public Object run() {
+            return values[doc];
+        }
+
+        @Override
+        public float runAsFloat() {
+            return (float) values[doc];
+        }
+
+        @Override
+        public long runAsLong() {
+            return (long) values[doc];
+        }
+
+        @Override
+        public double runAsDouble() {
+            return values[doc];
+        }
+
+        @Override
+        public boolean canRunBlocks() {
+            return true;
+        }
+
+        @Override
+        public void runAsDoubles(int[] docs, float[] scores, int count, double[] results) {
+            for (int i = 0; i < count; i++) {
+                results[i] = values[docs[i]];
+            }
+        }
+
+        @Override
+        public Object unwrap(Object value) {
+            return value;
+        }
+
+        @Override
+        public void setScorer(Scorer scorer) {
+            // the results do not depend on scores
+        }
+
+        @Override
+        public void setSource(Map<String, Object> source) {
+            // the results do not depend on the source
+        }
+
+        @Override
+        public void setNextVar(String name, Object value) {
+            // the results do not depend on variables
+        }
+    }
+
+    private static class Values implements Accountable {
+
+        final double[] values;
+
+        Values(double[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public long ramBytesUsed() {
+            return RamUsageEstimator.sizeOf(values);
+        }
+
+        @Override
+        public Collection<Accountable> getChildResources() {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Identifies a script with its parameters. Compiled scripts are compared by identity: the script service reuses
+     * them as long as the script does not change.
+     */
+    private static class ScriptKey {
+
+        final CompiledScript compiledScript;
+        @Nullable
+        final Map<String, Object> params;
+
+        ScriptKey(CompiledScript compiledScript, @Nullable Map<String, Object> params) {
+            this.compiledScript = compiledScript;
+            this.params = params;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            ScriptKey that = (ScriptKey) o;
+            return compiledScript == that.compiledScript && Objects.equals(params, that.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(compiledScript) + Objects.hashCode(params);
+        }
+    }
+
+    private static class Key {
+
+        final Object coreCacheKey;
+        final ScriptKey scriptKey;
+
+        Key(Object coreCacheKey, ScriptKey scriptKey) {
+            this.coreCacheKey = coreCacheKey;
+            this.scriptKey = scriptKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return coreCacheKey.equals(key.coreCacheKey) && scriptKey.equals(key.scriptKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * coreCacheKey.hashCode() + scriptKey.hashCode();
+        }
+    }
+}
@@ -55,6 +55,7 @@ import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.env.Environment;
 import org.elasticsearch.index.query.TemplateQueryParser;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
 import org.elasticsearch.search.internal.SearchContext;
 import org.elasticsearch.search.lookup.SearchLookup;
 import org.elasticsearch.watcher.FileChangesListener;
@@ -111,6 +112,8 @@ public class ScriptService extends AbstractComponent implements Closeable {
 
     private final ScriptMetrics scriptMetrics = new ScriptMetrics();
 
+    private final ScriptResultsCache scriptResultsCache;
+
     /**
      * @deprecated Use {@link org.elasticsearch.script.Script.ScriptField} instead. This should be removed in
      *             2.0
@@ -148,6 +151,7 @@ public class ScriptService extends AbstractComponent implements Closeable {
 
         this.scriptEngines = scriptEngines;
         this.scriptContextRegistry = scriptContextRegistry;
+        this.scriptResultsCache = new ScriptResultsCache(settings);
         int cacheMaxSize = settings.getAsInt(SCRIPT_CACHE_SIZE_SETTING, SCRIPT_CACHE_SIZE_DEFAULT);
         TimeValue cacheExpire = settings.getAsTime(SCRIPT_CACHE_EXPIRE_SETTING, null);
         logger.debug("using script cache with max_size [{}], expire [{}]", cacheMaxSize, cacheExpire);
@@ -201,8 +205,14 @@ public class ScriptService extends AbstractComponent implements Closeable {
         this.client = client;
     }
 
+    @Inject(optional=true)
+    public void setCircuitBreakerService(CircuitBreakerService circuitBreakerService) {
+        scriptResultsCache.setCircuitBreakerService(circuitBreakerService);
+    }
+
     @Override
     public void close() throws IOException {
+        scriptResultsCache.close();
         IOUtils.close(scriptEngines);
     }
 
@@ -453,7 +463,8 @@ public class ScriptService extends AbstractComponent implements Closeable {
      */
     public SearchScript search(SearchLookup lookup, Script script, ScriptContext scriptContext, Map<String, String> params) {
         CompiledScript compiledScript = compile(script, scriptContext, SearchContext.current(), params);
-        return getScriptEngineServiceForLang(compiledScript.lang()).search(compiledScript, lookup, script.getParams());
+        SearchScript searchScript = getScriptEngineServiceForLang(compiledScript.lang()).search(compiledScript, lookup, script.getParams());
+        return scriptResultsCache.wrap(compiledScript, script.getParams(), searchScript);
     }
 
     private boolean isAnyScriptContextEnabled(String lang, ScriptEngineService scriptEngineService, ScriptType scriptType) {
@@ -484,7 +495,9 @@ public class ScriptService extends AbstractComponent implements Closeable {
     }
 
     public ScriptStats stats() {
-        return scriptMetrics.stats();
+        ScriptStats stats = scriptMetrics.stats();
+        return new ScriptStats(stats.getCompilations(), stats.getCacheEvictions(), scriptResultsCache.memorySizeInBytes(),
+                scriptResultsCache.evictions());
     }
 
     /**
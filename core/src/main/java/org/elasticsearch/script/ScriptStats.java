@@ -22,6 +22,7 @@ package org.elasticsearch.script;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Streamable;
+import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentBuilderString;
@@ -31,18 +32,28 @@ import java.io.IOException;
 public class ScriptStats implements Streamable, ToXContent {
     private long compilations;
     private long cacheEvictions;
+    private long resultsCacheMemorySize;
+    private long resultsCacheEvictions;
 
     public ScriptStats() {
     }
 
     public ScriptStats(long compilations, long cacheEvictions) {
+        this(compilations, cacheEvictions, 0, 0);
+    }
+
+    public ScriptStats(long compilations, long cacheEvictions, long resultsCacheMemorySize, long resultsCacheEvictions) {
         this.compilations = compilations;
         this.cacheEvictions = cacheEvictions;
+        this.resultsCacheMemorySize = resultsCacheMemorySize;
+        this.resultsCacheEvictions = resultsCacheEvictions;
     }
 
     public void add(ScriptStats stats) {
         this.compilations += stats.compilations;
         this.cacheEvictions += stats.cacheEvictions;
+        this.resultsCacheMemorySize += stats.resultsCacheMemorySize;
+        this.resultsCacheEvictions += stats.resultsCacheEvictions;
     }
 
     public long getCompilations() {
@@ -53,16 +64,35 @@ public class ScriptStats implements Streamable, ToXContent {
         return cacheEvictions;
     }
 
+    /**
+     * Returns the memory used by the cached results of search scripts, in bytes
+     */
+    public long getResultsCacheMemorySizeInBytes() {
+        return resultsCacheMemorySize;
+    }
+
+    public ByteSizeValue getResultsCacheMemorySize() {
+        return new ByteSizeValue(resultsCacheMemorySize);
+    }
+
+    public long getResultsCacheEvictions() {
+        return resultsCacheEvictions;
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
         compilations = in.readVLong();
         cacheEvictions = in.readVLong();
+        resultsCacheMemorySize = in.readVLong();
+        resultsCacheEvictions = in.readVLong();
     }
 
     @Override
     public void writeTo(StreamOutput out) throws IOException {
         out.writeVLong(compilations);
         out.writeVLong(cacheEvictions);
+        out.writeVLong(resultsCacheMemorySize);
+        out.writeVLong(resultsCacheEvictions);
     }
 
     @Override
@@ -70,6 +100,10 @@ public class ScriptStats implements Streamable, ToXContent {
         builder.startObject(Fields.SCRIPT_STATS);
         builder.field(Fields.COMPILATIONS, getCompilations());
         builder.field(Fields.CACHE_EVICTIONS, getCacheEvictions());
+        builder.startObject(Fields.RESULTS_CACHE);
+        builder.byteSizeField(Fields.MEMORY_SIZE_IN_BYTES, Fields.MEMORY_SIZE, resultsCacheMemorySize);
+        builder.field(Fields.EVICTIONS, getResultsCacheEvictions());
+        builder.endObject();
         builder.endObject();
         return builder;
     }
@@ -78,5 +112,9 @@ public class ScriptStats implements Streamable, ToXContent {
         static final XContentBuilderString SCRIPT_STATS = new XContentBuilderString("script");
         static final XContentBuilderString COMPILATIONS = new XContentBuilderString("compilations");
         static final XContentBuilderString CACHE_EVICTIONS = new XContentBuilderString("cache_evictions");
+        static final XContentBuilderString RESULTS_CACHE = new XContentBuilderString("results_cache");
+        static final XContentBuilderString MEMORY_SIZE = new XContentBuilderString("memory_size");
+        static final XContentBuilderString MEMORY_SIZE_IN_BYTES = new XContentBuilderString("memory_size_in_bytes");
+        static final XContentBuilderString EVICTIONS = new XContentBuilderString("evictions");
     }
 }
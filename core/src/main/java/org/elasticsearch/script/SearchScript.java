@@ -36,4 +36,15 @@ public interface SearchScript {
      */
     boolean needsScores();
 
+    /**
+     * Indicates if the results of this {@link SearchScript} only depend on the document and the script parameters,
+     * and not on scores, variables or the source. The results of deterministic scripts are numbers that may be cached
+     * per segment, see {@link ScriptResultsCache}.
+     *
+     * @return {@code true} if the results are deterministic.
+     */
+    default boolean isDeterministic() {
+        return false;
+    }
+
 }
\ No newline at end of file
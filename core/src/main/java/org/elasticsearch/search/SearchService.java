@@ -89,6 +89,7 @@ import org.elasticsearch.search.internal.*;
 import org.elasticsearch.search.internal.SearchContext.Lifetime;
 import org.elasticsearch.search.profile.Profilers;
 import org.elasticsearch.search.query.*;
+import org.elasticsearch.search.sort.SearchAfterValues;
 import org.elasticsearch.search.warmer.IndexWarmersMetaData;
 import org.elasticsearch.threadpool.ThreadPool;
 
@@ -713,6 +714,15 @@ public class SearchService extends AbstractLifecycleComponent<SearchService> imp
                 throw new SearchParseException(context, "failed to parse sort source [" + sSource + "]", location, e);
             }
         }
+        if (source.searchAfter() != null && source.searchAfter().length > 0) {
+            if (context.scrollContext() != null) {
+                throw new SearchContextException(context, "[search_after] cannot be used in a scroll context");
+            }
+            if (context.from() > 0) {
+                throw new SearchContextException(context, "[from] must be set to 0 when [search_after] is used");
+            }
+            context.searchAfter(SearchAfterValues.buildFieldDoc(context.sort(), source.searchAfter()));
+        }
         context.trackScores(source.trackScores());
         if (source.minScore() != null) {
             context.minimumScore(source.minScore());
@@ -47,6 +47,7 @@ import org.elasticsearch.search.fetch.source.FetchSourceContext;
 import org.elasticsearch.search.highlight.HighlightBuilder;
 import org.elasticsearch.search.internal.SearchContext;
 import org.elasticsearch.search.rescore.RescoreBuilder;
+import org.elasticsearch.search.sort.SearchAfterValues;
 import org.elasticsearch.search.sort.SortBuilder;
 import org.elasticsearch.search.sort.SortBuilders;
 import org.elasticsearch.search.sort.SortOrder;
@@ -54,6 +55,7 @@ import org.elasticsearch.search.suggest.SuggestBuilder;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
@@ -83,6 +85,7 @@ public final class SearchSourceBuilder extends ToXContentToBytes implements Writ
     public static final ParseField SCRIPT_FIELD = new ParseField("script");
     public static final ParseField IGNORE_FAILURE_FIELD = new ParseField("ignore_failure");
     public static final ParseField SORT_FIELD = new ParseField("sort");
+    public static final ParseField SEARCH_AFTER_FIELD = new ParseField("search_after");
     public static final ParseField TRACK_SCORES_FIELD = new ParseField("track_scores");
     public static final ParseField INDICES_BOOST_FIELD = new ParseField("indices_boost");
     public static final ParseField AGGREGATIONS_FIELD = new ParseField("aggregations", "aggs");
@@ -132,6 +135,8 @@ public final class SearchSourceBuilder extends ToXContentToBytes implements Writ
 
     private List<BytesReference> sorts;
 
+    private Object[] searchAfter;
+
     private boolean trackScores = false;
 
     private Float minScore;
@@ -364,6 +369,22 @@ public final class SearchSourceBuilder extends ToXContentToBytes implements Writ
         return sorts;
     }
 
+    /**
+     * Only returns the hits that sort after the given sort values, which are usually the sort values of the last
+     * hit of the previous page. Requires a sort and can't be combined with <tt>from</tt> or a scroll.
+     */
+    public SearchSourceBuilder searchAfter(Object... values) {
+        this.searchAfter = values;
+        return this;
+    }
+
+    /**
+     * Gets the sort values the returned hits sort after.
+     */
+    public Object[] searchAfter() {
+        return searchAfter;
+    }
+
     /**
      * Applies when sorting, and controls if scores will be tracked as well.
      * Defaults to <tt>false</tt>.
@@ -878,6 +899,8 @@ public final class SearchSourceBuilder extends ToXContentToBytes implements Writ
                         sorts.add(xContentBuilder.bytes());
                     }
                     builder.sorts = sorts;
+                } else if (context.parseFieldMatcher().match(currentFieldName, SEARCH_AFTER_FIELD)) {
+                    builder.searchAfter = SearchAfterValues.parse(parser);
                 } else if (context.parseFieldMatcher().match(currentFieldName, RESCORE_FIELD)) {
                     List<BytesReference> rescoreBuilders = new ArrayList<>();
                     while ((token = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
@@ -1000,6 +1023,14 @@ public final class SearchSourceBuilder extends ToXContentToBytes implements Writ
             builder.endArray();
         }
 
+        if (searchAfter != null) {
+            builder.startArray(SEARCH_AFTER_FIELD.getPreferredName());
+            for (Object value : searchAfter) {
+                builder.value(value);
+            }
+            builder.endArray();
+        }
+
         if (trackScores) {
             builder.field(TRACK_SCORES_FIELD.getPreferredName(), true);
         }
@@ -1221,6 +1252,13 @@ public final class SearchSourceBuilder extends ToXContentToBytes implements Writ
             }
             builder.sorts = sorts;
         }
+        if (in.getVersion().onOrAfter(Version.V_3_0_0) && in.readBoolean()) {
+            Object[] searchAfter = new Object[in.readVInt()];
+            for (int i = 0; i < searchAfter.length; i++) {
+                searchAfter[i] = in.readGenericValue();
+            }
+            builder.searchAfter = searchAfter;
+        }
         if (in.readBoolean()) {
             int size = in.readVInt();
             List<String> stats = new ArrayList<>();
@@ -1335,6 +1373,16 @@ public final class SearchSourceBuilder extends ToXContentToBytes implements Writ
                 out.writeBytesReference(sort);
             }
         }
+        if (out.getVersion().onOrAfter(Version.V_3_0_0)) {
+            boolean hasSearchAfter = searchAfter != null;
+            out.writeBoolean(hasSearchAfter);
+            if (hasSearchAfter) {
+                out.writeVInt(searchAfter.length);
+                for (Object value : searchAfter) {
+                    out.writeGenericValue(value);
+                }
+            }
+        }
         boolean hasStats = stats != null;
         out.writeBoolean(hasStats);
         if (hasStats) {
@@ -1366,7 +1414,8 @@ public final class SearchSourceBuilder extends ToXContentToBytes implements Writ
     public int hashCode() {
         return Objects.hash(aggregations, explain, fetchSourceContext, fieldDataFields, fieldNames, from,
                 highlightBuilder, indexBoost, innerHitsBuilder, minScore, postQueryBuilder, queryBuilder, rescoreBuilders, scriptFields,
-                size, sorts, stats, suggestBuilder, terminateAfter, timeoutInMillis, trackScores, version, profile);
+                size, sorts, Arrays.hashCode(searchAfter), stats, suggestBuilder, terminateAfter, timeoutInMillis, trackScores, version,
+                profile);
     }
 
     @Override
@@ -1394,6 +1443,7 @@ public final class SearchSourceBuilder extends ToXContentToBytes implements Writ
                 && Objects.equals(scriptFields, other.scriptFields)
                 && Objects.equals(size, other.size)
                 && Objects.equals(sorts, other.sorts)
+                && Arrays.equals(searchAfter, other.searchAfter)
                 && Objects.equals(stats, other.stats)
                 && Objects.equals(suggestBuilder, other.suggestBuilder)
                 && Objects.equals(terminateAfter, other.terminateAfter)
@@ -25,6 +25,7 @@ import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Weight;
 import org.apache.lucene.util.BitSet;
+import org.apache.lucene.util.InPlaceMergeSorter;
 import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.collect.Tuple;
@@ -137,10 +138,18 @@ public class FetchPhase implements SearchPhase {
 
         InternalSearchHit[] hits = new InternalSearchHit[context.docIdsToLoadSize()];
         FetchSubPhase.HitContext hitContext = new FetchSubPhase.HitContext();
-        for (int index = 0; index < context.docIdsToLoadSize(); index++) {
+        // load the documents in doc id order, so that each segment is resolved once and its stored fields are read
+        // sequentially, the hits are still returned in the order of the doc ids to load
+        final int[] docIdOrder = docIdOrder(context.docIdsToLoad(), context.docIdsToLoadFrom(), context.docIdsToLoadSize());
+        final List<LeafReaderContext> leaves = context.searcher().getIndexReader().leaves();
+        LeafReaderContext subReaderContext = null;
+        int subReaderEndDoc = 0;
+        for (int index : docIdOrder) {
             int docId = context.docIdsToLoad()[context.docIdsToLoadFrom() + index];
-            int readerIndex = ReaderUtil.subIndex(docId, context.searcher().getIndexReader().leaves());
-            LeafReaderContext subReaderContext = context.searcher().getIndexReader().leaves().get(readerIndex);
+            if (subReaderContext == null || docId >= subReaderEndDoc) {
+                subReaderContext = leaves.get(ReaderUtil.subIndex(docId, leaves));
+                subReaderEndDoc = subReaderContext.docBase + subReaderContext.reader().maxDoc();
+            }
             int subDocId = docId - subReaderContext.docBase;
 
             final InternalSearchHit searchHit;
@@ -173,6 +182,30 @@ public class FetchPhase implements SearchPhase {
         context.fetchResult().hits(new InternalSearchHits(hits, context.queryResult().topDocs().totalHits, context.queryResult().topDocs().getMaxScore()));
     }
 
+    /**
+     * Returns the positions of the doc ids to load, from the given offset, sorted by doc id.
+     */
+    static int[] docIdOrder(int[] docIdsToLoad, int from, int size) {
+        final int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        new InPlaceMergeSorter() {
+            @Override
+            protected void swap(int i, int j) {
+                final int tmp = order[i];
+                order[i] = order[j];
+                order[j] = tmp;
+            }
+
+            @Override
+            protected int compare(int i, int j) {
+                return Integer.compare(docIdsToLoad[from + order[i]], docIdsToLoad[from + order[j]]);
+            }
+        }.sort(0, size);
+        return order;
+    }
+
     private int findRootDocumentIfNested(SearchContext context, LeafReaderContext subReaderContext, int subDocId) throws IOException {
         if (context.mapperService().hasNested()) {
             BitSet bits = context.bitsetFilterCache().getBitSetProducer(Queries.newNonNestedFilter()).getBitSet(subReaderContext);
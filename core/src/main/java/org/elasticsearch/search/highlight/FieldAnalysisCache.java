@@ -0,0 +1,226 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.highlight;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.util.AttributeSource;
+import org.elasticsearch.index.mapper.FieldMapper;
+import org.elasticsearch.search.fetch.FetchSubPhase;
+import org.elasticsearch.search.internal.SearchContext;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Caches the values and the analyzed tokens of the fields of a single hit, so that a field that is highlighted
+ * several times, with different highlight queries, through several patterns or to pick a no match excerpt, is
+ * loaded and analyzed as few times as possible. A new cache is used for every hit.
+ */
+public final class FieldAnalysisCache {
+
+    private final Map<ValuesKey, List<Object>> values = new HashMap<>();
+    private final Set<TokensKey> requested = new HashSet<>();
+    private final Map<TokensKey, CachedTokens> tokens = new HashMap<>();
+
+    /**
+     * Returns the values of the field to highlight, loaded from stored fields or from the source.
+     */
+    public List<Object> fieldValues(SearchContextHighlight.Field field, FieldMapper mapper, SearchContext searchContext,
+                                    FetchSubPhase.HitContext hitContext) throws IOException {
+        final ValuesKey key = new ValuesKey(mapper.fieldType().names().indexName(), searchContext.highlight().forceSource(field));
+        List<Object> fieldValues = values.get(key);
+        if (fieldValues == null) {
+            fieldValues = HighlightUtils.loadFieldValues(field, mapper, searchContext, hitContext);
+            values.put(key, fieldValues);
+        }
+        return fieldValues;
+    }
+
+    /**
+     * Returns a token stream over the tokens of the given text. The first request analyzes the text without recording
+     * anything, as most texts are highlighted only once. The second request records the tokens while they are consumed,
+     * and once a stream was consumed to its end later requests replay the recorded tokens. The returned streams share
+     * their attributes, so they must be consumed one at a time.
+     */
+    public TokenStream tokenStream(Analyzer analyzer, String field, String text) throws IOException {
+        final TokensKey key = new TokensKey(field, text);
+        CachedTokens cachedTokens = tokens.get(key);
+        if (cachedTokens != null) {
+            return cachedTokens.replay();
+        }
+        TokenStream stream = analyzer.tokenStream(field, text);
+        if (requested.add(key)) {
+            return stream;
+        }
+        return new RecordingTokenStream(stream, key);
+    }
+
+    /**
+     * Returns the number of texts whose tokens are recorded
+     */
+    int recordedTexts() {
+        return tokens.size();
+    }
+
+    private static final class CachedTokens {
+
+        private final AttributeSource attributes;
+        private final List<AttributeSource.State> states;
+        private final AttributeSource.State finalState;
+
+        CachedTokens(AttributeSource attributes, List<AttributeSource.State> states, AttributeSource.State finalState) {
+            this.attributes = attributes;
+            this.states = states;
+            this.finalState = finalState;
+        }
+
+        TokenStream replay() {
+            return new ReplayTokenStream(this);
+        }
+    }
+
+    /**
+     * Captures the tokens of the analyzed text while they are consumed. The tokens are only cached if the consumer reads
+     * the stream to its end, a consumer that stops early leaves the text to be recorded by the next request.
+     */
+    private final class RecordingTokenStream extends TokenFilter {
+
+        private final TokensKey key;
+        private final List<AttributeSource.State> states = new ArrayList<>();
+        private boolean exhausted;
+
+        RecordingTokenStream(TokenStream input, TokensKey key) {
+            super(input);
+            this.key = key;
+        }
+
+        @Override
+        public boolean incrementToken() throws IOException {
+            if (input.incrementToken()) {
+                states.add(captureState());
+                return true;
+            }
+            exhausted = true;
+            return false;
+        }
+
+        @Override
+        public void end() throws IOException {
+            super.end();
+            if (exhausted) {
+                // the analyzer reuses its streams, so the tokens are replayed into attributes of their own
+                tokens.put(key, new CachedTokens(cloneAttributes(), states, captureState()));
+            }
+        }
+
+        @Override
+        public void reset() throws IOException {
+            super.reset();
+            states.clear();
+            exhausted = false;
+        }
+    }
+
+    private static final class ReplayTokenStream extends TokenStream {
+
+        private final CachedTokens tokens;
+        private int upto;
+
+        ReplayTokenStream(CachedTokens tokens) {
+            super(tokens.attributes);
+            this.tokens = tokens;
+        }
+
+        @Override
+        public boolean incrementToken() throws IOException {
+            if (upto == tokens.states.size()) {
+                return false;
+            }
+            restoreState(tokens.states.get(upto++));
+            return true;
+        }
+
+        @Override
+        public void end() throws IOException {
+            restoreState(tokens.finalState);
+        }
+
+        @Override
+        public void reset() throws IOException {
+            upto = 0;
+        }
+    }
+
+    private static final class ValuesKey {
+
+        final String field;
+        final boolean forceSource;
+
+        ValuesKey(String field, boolean forceSource) {
+            this.field = field;
+            this.forceSource = forceSource;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            ValuesKey that = (ValuesKey) o;
+            return forceSource == that.forceSource && field.equals(that.field);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(field, forceSource);
+        }
+    }
+
+    private static final class TokensKey {
+
+        final String field;
+        final String text;
+
+        TokensKey(String field, String text) {
+            this.field = field;
+            this.text = text;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            TokensKey that = (TokensKey) o;
+            return field.equals(that.field) && text.equals(that.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * field.hashCode() + text.hashCode();
+        }
+    }
+}
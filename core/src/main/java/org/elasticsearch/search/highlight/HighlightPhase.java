@@ -79,6 +79,8 @@ public class HighlightPhase extends AbstractComponent implements FetchSubPhase {
     @Override
     public void hitExecute(SearchContext context, HitContext hitContext) {
         Map<String, HighlightField> highlightFields = new HashMap<>();
+        // the fields of this hit are loaded and analyzed once for all the highlighted fields and queries
+        FieldAnalysisCache analysisCache = new FieldAnalysisCache();
         for (SearchContextHighlight.Field field : context.highlight().fields()) {
             Collection<String> fieldNamesToHighlight;
             if (Regex.isSimpleMatchPattern(field.field())) {
@@ -118,7 +120,8 @@ public class HighlightPhase extends AbstractComponent implements FetchSubPhase {
                 }
 
                 Query highlightQuery = field.fieldOptions().highlightQuery() == null ? context.parsedQuery().query() : field.fieldOptions().highlightQuery();
-                HighlighterContext highlighterContext = new HighlighterContext(fieldName, field, fieldMapper, context, hitContext, highlightQuery);
+                HighlighterContext highlighterContext = new HighlighterContext(fieldName, field, fieldMapper, context, hitContext, highlightQuery,
+                        analysisCache);
 
                 if ((highlighter.canHighlight(fieldMapper) == false) && fieldNameContainsWildcards) {
                     // if several fieldnames matched the wildcard then we want to skip those that we cannot highlight
@@ -34,14 +34,21 @@ public class HighlighterContext {
     public final SearchContext context;
     public final FetchSubPhase.HitContext hitContext;
     public final Query query;
+    public final FieldAnalysisCache analysisCache;
 
     public HighlighterContext(String fieldName, SearchContextHighlight.Field field, FieldMapper mapper, SearchContext context,
             FetchSubPhase.HitContext hitContext, Query query) {
+        this(fieldName, field, mapper, context, hitContext, query, new FieldAnalysisCache());
+    }
+
+    public HighlighterContext(String fieldName, SearchContextHighlight.Field field, FieldMapper mapper, SearchContext context,
+            FetchSubPhase.HitContext hitContext, Query query, FieldAnalysisCache analysisCache) {
         this.fieldName = fieldName;
         this.field = field;
         this.mapper = mapper;
         this.context = context;
         this.hitContext = hitContext;
         this.query = query;
+        this.analysisCache = analysisCache;
     }
 }
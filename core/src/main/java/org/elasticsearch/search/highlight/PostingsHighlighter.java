@@ -76,7 +76,7 @@ public class PostingsHighlighter implements Highlighter {
         int numberOfFragments;
         try {
             Analyzer analyzer = context.mapperService().documentMapper(hitContext.hit().type()).mappers().indexAnalyzer();
-            List<Object> fieldValues = HighlightUtils.loadFieldValues(field, fieldMapper, context, hitContext);
+            List<Object> fieldValues = highlighterContext.analysisCache.fieldValues(field, fieldMapper, context, hitContext);
             CustomPostingsHighlighter highlighter;
             if (field.fieldOptions().numberOfFragments() == 0) {
                 //we use a control char to separate values, which is the only char that the custom break iterator breaks the text on,
@@ -18,6 +18,7 @@
  */
 package org.elasticsearch.search.internal;
 
+import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.util.Counter;
@@ -198,6 +199,16 @@ public class SubSearchContext extends FilteredSearchContext {
         return trackScores;
     }
 
+    @Override
+    public SearchContext searchAfter(FieldDoc searchAfter) {
+        throw new UnsupportedOperationException("Not supported");
+    }
+
+    @Override
+    public FieldDoc searchAfter() {
+        return null;
+    }
+
     @Override
     public SearchContext parsedPostFilter(ParsedQuery postFilter) {
         throw new UnsupportedOperationException("Not supported");
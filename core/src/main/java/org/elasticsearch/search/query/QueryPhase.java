@@ -24,15 +24,20 @@ import org.apache.lucene.index.Term;
 import org.apache.lucene.queries.MinDocQuery;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.CollectionTerminatedException;
 import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.EarlyTerminatingSortingCollector;
 import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.FilterLeafCollector;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LeafCollector;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.MultiCollector;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TimeLimitingCollector;
 import org.apache.lucene.search.TopDocs;
@@ -46,6 +51,7 @@ import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.lucene.Lucene;
 import org.elasticsearch.common.lucene.MinimumScoreCollector;
 import org.elasticsearch.common.lucene.search.FilteredCollector;
+import org.elasticsearch.index.fielddata.fieldcomparator.LongValuesComparatorSource;
 import org.elasticsearch.search.SearchParseElement;
 import org.elasticsearch.search.SearchPhase;
 import org.elasticsearch.search.SearchService;
@@ -59,6 +65,7 @@ import org.elasticsearch.search.sort.SortParseElement;
 import org.elasticsearch.search.sort.TrackScoresParseElement;
 import org.elasticsearch.search.suggest.SuggestPhase;
 
+import java.io.IOException;
 import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -146,6 +153,37 @@ public class QueryPhase implements SearchPhase {
         }
     }
 
+    /**
+     * Returns whether a search on the given sort can stop collecting the documents of segments that are sorted with the
+     * given index sort once it collected enough of them. This is the case if the search sorts on the index sort field
+     * in the same order and with the default sort options, since both sorts then order documents the same way.
+     */
+    static boolean canEarlyTerminate(Sort searchSort, Sort indexSort) {
+        if (searchSort == null || indexSort == null) {
+            return false;
+        }
+        final SortField[] searchSortFields = searchSort.getSort();
+        final SortField[] indexSortFields = indexSort.getSort();
+        if (searchSortFields.length != indexSortFields.length) {
+            // ties on the index sort are not sorted on the other fields of the search sort
+            return false;
+        }
+        for (int i = 0; i < searchSortFields.length; i++) {
+            final SortField searchSortField = searchSortFields[i];
+            final SortField indexSortField = indexSortFields[i];
+            if (searchSortField.getComparatorSource() instanceof LongValuesComparatorSource == false
+                    || searchSortField.getField().equals(indexSortField.getField()) == false
+                    || searchSortField.getReverse() != indexSortField.getReverse()) {
+                return false;
+            }
+            final LongValuesComparatorSource comparatorSource = (LongValuesComparatorSource) searchSortField.getComparatorSource();
+            if (comparatorSource.hasDefaultOptions(searchSortField.getReverse()) == false) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * In a package-private method so that it can be tested without having to
      * wire everything (mapperService, etc.)
@@ -169,6 +207,7 @@ public class QueryPhase implements SearchPhase {
 
             Collector collector;
             Callable<TopDocs> topDocsCallable;
+            SortedSegmentsTerminatingCollector earlyTerminatingCollector = null;
 
             assert query == searcher.rewrite(query); // already rewritten
 
@@ -214,7 +253,8 @@ public class QueryPhase implements SearchPhase {
                         }
                     }
                 } else {
-                    lastEmittedDoc = null;
+                    // only collect the documents that sort after the search_after values, if any
+                    lastEmittedDoc = searchContext.searchAfter();
                 }
                 if (totalNumDocs == 0) {
                     // top collectors don't like a size of 0
@@ -232,6 +272,14 @@ public class QueryPhase implements SearchPhase {
                     topDocsCollector = TopScoreDocCollector.create(numDocs, lastEmittedDoc);
                 }
                 collector = topDocsCollector;
+                final Sort indexSort = searchContext.mapperService() == null ? null
+                        : searchContext.mapperService().getIndexSettings().getIndexSort();
+                if (scrollContext == null && lastEmittedDoc == null && canEarlyTerminate(searchContext.sort(), indexSort)) {
+                    // the documents of sorted segments are in the order of the search sort, so we can stop collecting
+                    // them once enough documents are collected, the total number of hits is then a lower bound
+                    earlyTerminatingCollector = new SortedSegmentsTerminatingCollector(collector, indexSort, numDocs);
+                    collector = earlyTerminatingCollector;
+                }
                 if (doProfile) {
                     collector = new InternalProfileCollector(collector, CollectorResult.REASON_SEARCH_TOP_HITS, Collections.emptyList());
                 }
@@ -394,6 +442,9 @@ public class QueryPhase implements SearchPhase {
             if (terminateAfterSet && queryResult.terminatedEarly() == null) {
                 queryResult.terminatedEarly(false);
             }
+            if (earlyTerminatingCollector != null && earlyTerminatingCollector.skippedDocs()) {
+                queryResult.terminatedEarly(true);
+            }
 
             queryResult.topDocs(topDocsCallable.call());
 
@@ -408,4 +459,40 @@ public class QueryPhase implements SearchPhase {
             throw new QueryPhaseExecutionException(searchContext, "Failed to execute main query", e);
         }
     }
+
+    /**
+     * Stops collecting the documents of the segments that are sorted with the index sort once the given number of
+     * documents is collected, and records whether documents were skipped.
+     */
+    static final class SortedSegmentsTerminatingCollector extends EarlyTerminatingSortingCollector {
+
+        private boolean skippedDocs;
+
+        SortedSegmentsTerminatingCollector(Collector in, Sort indexSort, int numDocsToCollect) {
+            // the search sort matches the index sort, see canEarlyTerminate
+            super(in, indexSort, numDocsToCollect, indexSort);
+        }
+
+        @Override
+        public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
+            final LeafCollector leafCollector = super.getLeafCollector(context);
+            final int maxDoc = context.reader().maxDoc();
+            return new FilterLeafCollector(leafCollector) {
+                @Override
+                public void collect(int doc) throws IOException {
+                    try {
+                        super.collect(doc);
+                    } catch (CollectionTerminatedException e) {
+                        // documents were skipped unless this was the last document of the segment
+                        skippedDocs |= doc < maxDoc - 1;
+                        throw e;
+                    }
+                }
+            };
+        }
+
+        boolean skippedDocs() {
+            return skippedDocs;
+        }
+    }
 }
@@ -189,6 +189,9 @@ public class ScriptSortParser implements SortParser {
                     @Override
                     protected SortedNumericDoubleValues getValues(LeafReaderContext context) throws IOException {
                         leafScript = searchScript.getLeafSearchScript(context);
+                        if (searchScript.needsScores() == false && leafScript.canRunBlocks()) {
+                            return FieldData.singleton(new BlockScriptValues(leafScript, context.reader().maxDoc()), null);
+                        }
                         final NumericDoubleValues values = new NumericDoubleValues() {
                             @Override
                             public double get(int docID) {
@@ -210,4 +213,57 @@ public class ScriptSortParser implements SortParser {
 
         return new SortField("_script", fieldComparatorSource, reverse);
     }
+
+    /**
+     * Values of a script that runs on blocks of consecutive documents. Sorts read the values of the documents they collect
+     * in increasing order, so a block is only computed when most of the documents of the previous block were read, and
+     * otherwise the script runs one document at a time.
+     */
+    private static final class BlockScriptValues extends NumericDoubleValues {
+        private static final int BLOCK_SIZE = 128;
+
+        private final LeafSearchScript leafScript;
+        private final int maxDoc;
+        private final int[] docs = new int[BLOCK_SIZE];
+        private final double[] values = new double[BLOCK_SIZE];
+        // the current window of documents, how many distinct documents of it were read and whether its values were computed
+        private int windowStart = -BLOCK_SIZE;
+        private int windowReads = BLOCK_SIZE;
+        private int lastDoc = -1;
+        private boolean computed;
+
+        BlockScriptValues(LeafSearchScript leafScript, int maxDoc) {
+            this.leafScript = leafScript;
+            this.maxDoc = maxDoc;
+        }
+
+        @Override
+        public double get(int docID) {
+            if (docID >= windowStart + BLOCK_SIZE) {
+                computed = windowReads * 2 >= BLOCK_SIZE;
+                windowStart = docID;
+                windowReads = 0;
+                if (computed) {
+                    final int count = Math.min(BLOCK_SIZE, maxDoc - docID);
+                    for (int i = 0; i < count; i++) {
+                        docs[i] = docID + i;
+                    }
+                    leafScript.runAsDoubles(docs, null, count, values);
+                }
+            }
+            if (docID < windowStart) {
+                leafScript.setDocument(docID);
+                return leafScript.runAsDouble();
+            }
+            if (docID != lastDoc) {
+                lastDoc = docID;
+                windowReads++;
+            }
+            if (computed) {
+                return values[docID - windowStart];
+            }
+            leafScript.setDocument(docID);
+            return leafScript.runAsDouble();
+        }
+    }
 }
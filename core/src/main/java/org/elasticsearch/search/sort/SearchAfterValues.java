@@ -0,0 +1,130 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.sort;
+
+import org.apache.lucene.search.FieldComparatorSource;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.ParsingException;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.index.fielddata.IndexFieldData;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helpers for the <code>search_after</code> values of a search request: the sort values of the last hit of the
+ * previous page. Each page is then an ordinary search that only collects the hits that sort after these values, so
+ * deep pagination does not need to keep a search context open between pages like scrolls do.
+ */
+public final class SearchAfterValues {
+
+    private SearchAfterValues() {
+    }
+
+    /**
+     * Parses the values of the <code>search_after</code> array the parser is positioned on.
+     */
+    public static Object[] parse(XContentParser parser) throws IOException {
+        List<Object> values = new ArrayList<>();
+        XContentParser.Token token;
+        while ((token = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
+            if (token == XContentParser.Token.VALUE_NUMBER) {
+                values.add(parser.numberValue());
+            } else if (token == XContentParser.Token.VALUE_STRING) {
+                values.add(parser.text());
+            } else if (token == XContentParser.Token.VALUE_BOOLEAN) {
+                values.add(parser.booleanValue());
+            } else if (token == XContentParser.Token.VALUE_NULL) {
+                values.add(null);
+            } else {
+                throw new ParsingException(parser.getTokenLocation(), "Expected a value in [search_after] but found [" + token + "]");
+            }
+        }
+        return values.toArray();
+    }
+
+    /**
+     * Builds the {@link FieldDoc} that the hits of a search must sort after from the given sort and
+     * <code>search_after</code> values. The values must match the sort fields one to one, and the hits that sort
+     * equally to them are skipped, so the sort should end with a unique field such as <code>_uid</code> to not
+     * miss any hit.
+     */
+    public static FieldDoc buildFieldDoc(Sort sort, Object[] values) {
+        if (sort == null || sort.getSort().length == 0) {
+            throw new IllegalArgumentException("[search_after] requires the search to be sorted on at least one field");
+        }
+        final SortField[] sortFields = sort.getSort();
+        if (sortFields.length != values.length) {
+            throw new IllegalArgumentException("[search_after] has " + values.length + " value(s) but the sort has "
+                    + sortFields.length + " field(s)");
+        }
+        final Object[] fieldValues = new Object[sortFields.length];
+        for (int i = 0; i < sortFields.length; i++) {
+            fieldValues[i] = convert(values[i], sortFields[i]);
+        }
+        // the doc id is the highest possible, so that documents that sort equally to the values are skipped on all shards
+        return new FieldDoc(Integer.MAX_VALUE, 0, fieldValues);
+    }
+
+    private static Object convert(Object value, SortField sortField) {
+        SortField.Type type = sortField.getType();
+        if (type == SortField.Type.CUSTOM) {
+            FieldComparatorSource comparatorSource = sortField.getComparatorSource();
+            if (comparatorSource instanceof IndexFieldData.XFieldComparatorSource == false) {
+                throw new IllegalArgumentException("[search_after] does not support custom sort on [" + sortField.getField() + "]");
+            }
+            type = ((IndexFieldData.XFieldComparatorSource) comparatorSource).reducedType();
+        }
+        if (value == null) {
+            // documents without a value have a null sort value on string fields only
+            if (type == SortField.Type.STRING || type == SortField.Type.STRING_VAL) {
+                return null;
+            }
+            throw new IllegalArgumentException("[search_after] doesn't accept a null value for the sort field [" + sortField.getField()
+                    + "] of type [" + type + "]");
+        }
+        try {
+            switch (type) {
+                case DOC:
+                case INT:
+                    return value instanceof Number ? ((Number) value).intValue() : Integer.parseInt(value.toString());
+                case SCORE:
+                case FLOAT:
+                    return value instanceof Number ? ((Number) value).floatValue() : Float.parseFloat(value.toString());
+                case LONG:
+                    return value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString());
+                case DOUBLE:
+                    return value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(value.toString());
+                case STRING:
+                case STRING_VAL:
+                    return new BytesRef(value.toString());
+                default:
+                    throw new IllegalArgumentException("[search_after] does not support sort type [" + type + "]");
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("[search_after] value [" + value + "] does not match the type of the sort field ["
+                    + sortField.getField() + "]", e);
+        }
+    }
+}
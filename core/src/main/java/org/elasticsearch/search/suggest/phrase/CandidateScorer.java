@@ -28,6 +28,7 @@ final class CandidateScorer {
     private final WordScorer scorer;
     private final int maxNumCorrections;
     private final int gramSize;
+    private static final double BOUND_SLACK = 1e-9;
 
     public CandidateScorer(WordScorer scorer, int maxNumCorrections, int gramSize) {
         this.scorer = scorer;
@@ -52,7 +53,10 @@ final class CandidateScorer {
         } else {
             numMissspellings = Math.round(errorFraction * sets.length);
         }
-        findCandidates(sets, new Candidate[sets.length], 0, Math.max(1, numMissspellings), corrections, cutoffScore, 0.0);
+        numMissspellings = Math.max(1, numMissspellings);
+        // with a single correction the candidate paths grow linearly, bounding them would cost more than it saves
+        final double[] bounds = numMissspellings > 1 ? bounds(sets) : null;
+        findCandidates(sets, new Candidate[sets.length], 0, numMissspellings, corrections, cutoffScore, 0.0, bounds);
         Correction[] result = new Correction[corrections.size()];
         for (int i = result.length - 1; i >= 0; i--) {
             result[i] = corrections.pop();
@@ -63,7 +67,11 @@ final class CandidateScorer {
     }
 
     public void findCandidates(CandidateSet[] candidates, Candidate[] path, int ord, int numMissspellingsLeft,
-            PriorityQueue<Correction> corrections, double cutoffScore, final double pathScore) throws IOException {
+            PriorityQueue<Correction> corrections, double cutoffScore, final double pathScore, final double[] bounds) throws IOException {
+        if (bounds != null && canCompete(pathScore + bounds[ord], corrections, cutoffScore) == false) {
+            // none of the paths that start with this prefix can make it into the top corrections
+            return;
+        }
         CandidateSet current = candidates[ord];
         if (ord == candidates.length - 1) {
             path[ord] = current.originalTerm;
@@ -77,17 +85,62 @@ final class CandidateScorer {
         } else {
             if (numMissspellingsLeft > 0) {
                 path[ord] = current.originalTerm;
-                findCandidates(candidates, path, ord + 1, numMissspellingsLeft, corrections, cutoffScore, pathScore + scorer.score(path, candidates, ord, gramSize));
+                findCandidates(candidates, path, ord + 1, numMissspellingsLeft, corrections, cutoffScore, pathScore + scorer.score(path, candidates, ord, gramSize), bounds);
                 for (int i = 0; i < current.candidates.length; i++) {
                     path[ord] = current.candidates[i];
-                    findCandidates(candidates, path, ord + 1, numMissspellingsLeft - 1, corrections, cutoffScore, pathScore + scorer.score(path, candidates, ord, gramSize));
+                    findCandidates(candidates, path, ord + 1, numMissspellingsLeft - 1, corrections, cutoffScore, pathScore + scorer.score(path, candidates, ord, gramSize), bounds);
                 }
             } else {
                 path[ord] = current.originalTerm;
-                findCandidates(candidates, path, ord + 1, 0, corrections, cutoffScore, pathScore + scorer.score(path, candidates, ord, gramSize));
+                findCandidates(candidates, path, ord + 1, 0, corrections, cutoffScore, pathScore + scorer.score(path, candidates, ord, gramSize), bounds);
+            }
+        }
+
+    }
+
+    /**
+     * Returns whether a path with the given log score could still be added to the top corrections. Bounds are
+     * sums of logs that are computed in a different order than path scores, hence the slack.
+     */
+    private boolean canCompete(double logScoreBound, PriorityQueue<Correction> corrections, double cutoffScore) {
+        final double scoreBound = Math.exp(logScoreBound + BOUND_SLACK);
+        if (scoreBound <= cutoffScore) {
+            return false;
+        }
+        return corrections.size() < maxNumCorrections || scoreBound >= corrections.top().score;
+    }
+
+    /**
+     * Computes, for every position, an upper bound of the score of the positions that follow it, including itself.
+     * The score of a position only depends on the candidates of the n-gram that ends at it, so its best score
+     * over all the combinations of these candidates bounds the score of any path.
+     */
+    double[] bounds(CandidateSet[] sets) throws IOException {
+        final double[] bounds = new double[sets.length + 1];
+        final Candidate[] path = new Candidate[sets.length];
+        for (int at = sets.length - 1; at >= 0; at--) {
+            final int first;
+            if (at == 0 || gramSize == 1) {
+                first = at;
+            } else if (at == 1 || gramSize == 2) {
+                first = at - 1;
+            } else {
+                first = at - 2;
             }
+            bounds[at] = bounds[at + 1] + maxScore(sets, path, first, at);
         }
+        return bounds;
+    }
 
+    private double maxScore(CandidateSet[] sets, Candidate[] path, int ord, int at) throws IOException {
+        final CandidateSet set = sets[ord];
+        path[ord] = set.originalTerm;
+        double max = ord == at ? scorer.score(path, sets, at, gramSize) : maxScore(sets, path, ord + 1, at);
+        for (Candidate candidate : set.candidates) {
+            path[ord] = candidate;
+            max = Math.max(max, ord == at ? scorer.score(path, sets, at, gramSize) : maxScore(sets, path, ord + 1, at));
+        }
+        return max;
     }
 
     private void updateTop(CandidateSet[] candidates, Candidate[] path, PriorityQueue<Correction> corrections, double cutoffScore, double score)
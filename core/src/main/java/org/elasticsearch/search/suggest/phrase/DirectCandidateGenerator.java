@@ -49,6 +49,7 @@ public final class DirectCandidateGenerator extends CandidateGenerator {
     private final CharsRefBuilder spare = new CharsRefBuilder();
     private final BytesRefBuilder byteSpare = new BytesRefBuilder();
     private final int numCandidates;
+    private TermFrequencyCache.Frequencies frequencies;
     
     public DirectCandidateGenerator(DirectSpellChecker spellchecker, String field, SuggestMode suggestMode, IndexReader reader, double nonErrorLikelihood, int numCandidates) throws IOException {
         this(spellchecker, field, suggestMode, reader,  nonErrorLikelihood, numCandidates, null, null, MultiFields.getTerms(reader, field));
@@ -94,11 +95,30 @@ public final class DirectCandidateGenerator extends CandidateGenerator {
 
 
     public long internalFrequency(BytesRef term) throws IOException {
+        if (frequencies != null) {
+            long frequency = frequencies.get(field, term);
+            if (frequency == -1) {
+                frequency = termFrequency(term);
+                frequencies.put(field, term, frequency);
+            }
+            return frequency;
+        }
+        return termFrequency(term);
+    }
+
+    private long termFrequency(BytesRef term) throws IOException {
         if (termsEnum.seekExact(term)) {
             return useTotalTermFrequency ? termsEnum.totalTermFreq() : termsEnum.docFreq(); 
         }
         return 0;
     }
+
+    /**
+     * Sets the cache that the frequencies of the terms of this generator's field are read from and stored into.
+     */
+    public void setFrequencies(TermFrequencyCache.Frequencies frequencies) {
+        this.frequencies = frequencies;
+    }
     
     public String getField() {
         return field;
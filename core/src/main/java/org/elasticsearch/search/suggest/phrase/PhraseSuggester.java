@@ -57,6 +57,7 @@ public final class PhraseSuggester extends Suggester<PhraseSuggestionContext> {
     private static final String SUGGESTION_TEMPLATE_VAR_NAME = "suggestion";
     private final ScriptService scriptService;
     private final IndicesService indicesService;
+    private final TermFrequencyCache frequencyCache = new TermFrequencyCache();
 
     public PhraseSuggester(ScriptService scriptService, IndicesService indicesService) {
         this.scriptService = scriptService;
@@ -77,6 +78,7 @@ public final class PhraseSuggester extends Suggester<PhraseSuggestionContext> {
         double realWordErrorLikelihood = suggestion.realworldErrorLikelyhood();
         final PhraseSuggestion response = new PhraseSuggestion(name, suggestion.getSize());
         final IndexReader indexReader = searcher.getIndexReader();
+        final TermFrequencyCache.Frequencies frequencies = frequencyCache.frequencies(indexReader);
         List<PhraseSuggestionContext.DirectCandidateGenerator>  generators = suggestion.generators();
         final int numGenerators = generators.size();
         final List<CandidateGenerator> gens = new ArrayList<>(generators.size());
@@ -85,8 +87,10 @@ public final class PhraseSuggester extends Suggester<PhraseSuggestionContext> {
             DirectSpellChecker directSpellChecker = SuggestUtils.getDirectSpellChecker(generator);
             Terms terms = MultiFields.getTerms(indexReader, generator.field());
             if (terms !=  null) {
-                gens.add(new DirectCandidateGenerator(directSpellChecker, generator.field(), generator.suggestMode(), 
-                        indexReader, realWordErrorLikelihood, generator.size(), generator.preFilter(), generator.postFilter(), terms));    
+                DirectCandidateGenerator candidateGenerator = new DirectCandidateGenerator(directSpellChecker, generator.field(), generator.suggestMode(),
+                        indexReader, realWordErrorLikelihood, generator.size(), generator.preFilter(), generator.postFilter(), terms);
+                candidateGenerator.setFrequencies(frequencies);
+                gens.add(candidateGenerator);
             }
         }
         final String suggestField = suggestion.getField();
@@ -95,6 +99,7 @@ public final class PhraseSuggester extends Suggester<PhraseSuggestionContext> {
             final NoisyChannelSpellChecker checker = new NoisyChannelSpellChecker(realWordErrorLikelihood, suggestion.getRequireUnigram(), suggestion.getTokenLimit());
             final BytesRef separator = suggestion.separator();
             WordScorer wordScorer = suggestion.model().newScorer(indexReader, suggestTerms, suggestField, realWordErrorLikelihood, separator);
+            wordScorer.setFrequencies(frequencies);
             Result checkerResult;
             try (TokenStream stream = checker.tokenStream(suggestion.getAnalyzer(), suggestion.getText(), spare, suggestion.getField())) {
                 checkerResult = checker.getCorrections(stream, new MultiCandidateGeneratorWrapper(suggestion.getShardSize(),
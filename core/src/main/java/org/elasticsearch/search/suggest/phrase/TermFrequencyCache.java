@@ -0,0 +1,138 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.suggest.phrase;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+import org.elasticsearch.common.lucene.index.ElasticsearchDirectoryReader;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Caches the frequencies of the terms and n-grams that the phrase suggester looks up, per shard reader and field.
+ * The same terms are looked up over and over by the requests that run against a reader, so later requests read
+ * the frequencies from the cache instead of seeking the terms dictionary again. The frequencies of a reader are
+ * released when the reader is closed.
+ */
+public final class TermFrequencyCache implements IndexReader.ReaderClosedListener {
+
+    /** the maximum number of readers the frequencies of which are cached */
+    static final int MAX_READERS = 1000;
+    /** the maximum number of frequencies cached per reader */
+    static final int MAX_TERMS_PER_READER = 10000;
+
+    private final Cache<Object, Frequencies> cache = CacheBuilder.<Object, Frequencies>builder()
+            .setMaximumWeight(MAX_READERS).build();
+
+    /**
+     * Returns the cached frequencies of the given reader, or <code>null</code> if the frequencies of this reader
+     * can not be cached because it is not the reader of a shard.
+     */
+    @Nullable
+    public Frequencies frequencies(IndexReader reader) {
+        if (reader instanceof ElasticsearchDirectoryReader == false) {
+            // wrapped readers may expose different frequencies and are not reused by later requests
+            return null;
+        }
+        final ElasticsearchDirectoryReader directoryReader = (ElasticsearchDirectoryReader) reader;
+        try {
+            return cache.computeIfAbsent(reader.getCoreCacheKey(), key -> {
+                ElasticsearchDirectoryReader.addReaderCloseListener(directoryReader, TermFrequencyCache.this);
+                return new Frequencies();
+            });
+        } catch (ExecutionException e) {
+            throw ExceptionsHelper.convertToElastic(e);
+        }
+    }
+
+    /**
+     * Returns the number of readers the frequencies of which are cached
+     */
+    public int count() {
+        return cache.count();
+    }
+
+    @Override
+    public void onClose(IndexReader reader) {
+        cache.invalidate(reader.getCoreCacheKey());
+    }
+
+    /**
+     * The frequencies of the terms of a reader, per field.
+     */
+    public static final class Frequencies {
+
+        private final Cache<Key, Long> cache = CacheBuilder.<Key, Long>builder()
+                .setMaximumWeight(MAX_TERMS_PER_READER).build();
+
+        private Frequencies() {
+        }
+
+        /**
+         * Returns the frequency of the given term in the given field, or <code>-1</code> if it is not cached.
+         */
+        public long get(String field, BytesRef term) {
+            final Long frequency = cache.get(new Key(field, term));
+            return frequency == null ? -1 : frequency;
+        }
+
+        /**
+         * Caches the frequency of the given term in the given field. The term is copied.
+         */
+        public void put(String field, BytesRef term, long frequency) {
+            cache.put(new Key(field, BytesRef.deepCopyOf(term)), frequency);
+        }
+
+        /**
+         * Returns the number of cached frequencies
+         */
+        public int count() {
+            return cache.count();
+        }
+    }
+
+    private static final class Key {
+
+        final String field;
+        final BytesRef term;
+
+        Key(String field, BytesRef term) {
+            this.field = field;
+            this.term = term;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return field.equals(key.field) && term.bytesEquals(key.term);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * field.hashCode() + term.hashCode();
+        }
+    }
+}
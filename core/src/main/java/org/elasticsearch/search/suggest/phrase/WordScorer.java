@@ -43,6 +43,7 @@ public abstract class WordScorer {
     private final TermsEnum termsEnum;
     private final long numTerms;
     private final boolean useTotalTermFreq;
+    private TermFrequencyCache.Frequencies frequencies;
 
     public WordScorer(IndexReader reader, String field, double realWordLikelyHood, BytesRef separator) throws IOException {
         this(reader, MultiFields.getTerms(reader, field), field, realWordLikelyHood, separator);
@@ -64,7 +65,26 @@ public abstract class WordScorer {
         this.separator = separator;
     }
 
+    /**
+     * Sets the cache that the frequencies of the terms of this scorer's field are read from and stored into.
+     */
+    public void setFrequencies(TermFrequencyCache.Frequencies frequencies) {
+        this.frequencies = frequencies;
+    }
+
     public long frequency(BytesRef term) throws IOException {
+        if (frequencies != null) {
+            long frequency = frequencies.get(field, term);
+            if (frequency == -1) {
+                frequency = termFrequency(term);
+                frequencies.put(field, term, frequency);
+            }
+            return frequency;
+        }
+        return termFrequency(term);
+    }
+
+    private long termFrequency(BytesRef term) throws IOException {
         if (termsEnum.seekExact(term)) {
             return useTotalTermFreq ? termsEnum.totalTermFreq() : termsEnum.docFreq();
         }
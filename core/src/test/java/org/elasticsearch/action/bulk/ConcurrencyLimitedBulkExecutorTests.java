@@ -0,0 +1,204 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.bulk;
+
+import org.elasticsearch.action.Action;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionRequestBuilder;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.rest.NoOpClient;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class ConcurrencyLimitedBulkExecutorTests extends ESTestCase {
+
+    private static BulkRequest createBulkRequest(int numberOfItems) {
+        BulkRequest request = new BulkRequest();
+        for (int i = 0; i < numberOfItems; i++) {
+            request.add(new DeleteRequest("index", "type", Integer.toString(i)));
+        }
+        return request;
+    }
+
+    public void testBatchesAreExecutedWithinWindowAndMergedInOrder() throws Exception {
+        final int numberOfItems = randomIntBetween(5, 50);
+        final int itemsPerBatch = randomIntBetween(1, 4);
+        final int maxConcurrentBatches = randomIntBetween(1, 3);
+        BulkRequest bulkRequest = createBulkRequest(numberOfItems);
+        long batchSize = bulkRequest.estimatedSizeInBytes() / numberOfItems * itemsPerBatch;
+
+        try (DeferringBulkClient client = new DeferringBulkClient(getTestName())) {
+            PlainActionFuture<BulkResponse> future = new PlainActionFuture<>();
+            new ConcurrencyLimitedBulkExecutor(client, bulkRequest, batchSize, maxConcurrentBatches, future).execute();
+
+            while (client.pending.isEmpty() == false) {
+                assertThat(client.pending.size(), lessThanOrEqualTo(maxConcurrentBatches));
+                assertFalse(future.isDone());
+                // complete a random in-flight batch, which makes room for the next one
+                client.respond(randomInt(client.pending.size() - 1));
+            }
+
+            assertThat(client.batches.size(), equalTo((numberOfItems + itemsPerBatch - 1) / itemsPerBatch));
+            for (int i = 0; i < client.batches.size() - 1; i++) {
+                assertThat(client.batches.get(i).numberOfActions(), equalTo(itemsPerBatch));
+            }
+            BulkResponse response = future.get();
+            assertThat(response.getItems().length, equalTo(numberOfItems));
+            for (int i = 0; i < numberOfItems; i++) {
+                assertThat(response.getItems()[i].getItemId(), equalTo(i));
+                assertThat(response.getItems()[i].getId(), equalTo(Integer.toString(i)));
+            }
+        }
+    }
+
+    public void testFailedBatchFailsItsItems() throws Exception {
+        BulkRequest bulkRequest = createBulkRequest(4);
+        long batchSize = bulkRequest.estimatedSizeInBytes() / 2;
+
+        try (DeferringBulkClient client = new DeferringBulkClient(getTestName())) {
+            PlainActionFuture<BulkResponse> future = new PlainActionFuture<>();
+            new ConcurrencyLimitedBulkExecutor(client, bulkRequest, batchSize, 1, future).execute();
+            client.fail(0, new IllegalStateException("boom"));
+            client.respond(0);
+
+            BulkResponse response = future.get();
+            assertThat(response.getItems().length, equalTo(4));
+            assertTrue(response.getItems()[0].isFailed());
+            assertTrue(response.getItems()[1].isFailed());
+            assertThat(response.getItems()[1].getFailure().getCause().getMessage(), equalTo("boom"));
+            assertThat(response.getItems()[2].getFailure().getCause().getMessage(), equalTo("respond"));
+            assertThat(response.getItems()[3].getId(), equalTo("3"));
+        }
+    }
+
+    public void testSmallRequestIsSentAsIs() throws Exception {
+        BulkRequest bulkRequest = createBulkRequest(3);
+
+        try (DeferringBulkClient client = new DeferringBulkClient(getTestName())) {
+            PlainActionFuture<BulkResponse> future = new PlainActionFuture<>();
+            new ConcurrencyLimitedBulkExecutor(client, bulkRequest, bulkRequest.estimatedSizeInBytes(), 1, future).execute();
+            assertThat(client.batches.size(), equalTo(1));
+            assertSame(bulkRequest, client.batches.get(0));
+            client.respond(0);
+            assertThat(future.get().getItems().length, equalTo(3));
+        }
+    }
+
+    public void testSynchronousResponsesDontRecurse() throws Exception {
+        final int numberOfItems = randomIntBetween(1000, 5000);
+        BulkRequest bulkRequest = createBulkRequest(numberOfItems);
+        final List<Integer> stackDepths = new ArrayList<>();
+
+        try (DeferringBulkClient client = new DeferringBulkClient(getTestName()) {
+            @Override
+            public void bulk(BulkRequest request, ActionListener<BulkResponse> listener) {
+                stackDepths.add(Thread.currentThread().getStackTrace().length);
+                super.bulk(request, listener);
+                respond(0);
+            }
+        }) {
+            PlainActionFuture<BulkResponse> future = new PlainActionFuture<>();
+            // one item per batch
+            new ConcurrencyLimitedBulkExecutor(client, bulkRequest, 1, randomIntBetween(1, 3), future).execute();
+
+            assertThat(future.get().getItems().length, equalTo(numberOfItems));
+            assertThat(client.batches.size(), equalTo(numberOfItems));
+            for (int stackDepth : stackDepths) {
+                assertThat(stackDepth, equalTo(stackDepths.get(0)));
+            }
+        }
+    }
+
+    public void testRefreshIsAppliedOnceAfterLastBatch() throws Exception {
+        final int numberOfItems = randomIntBetween(5, 20);
+        BulkRequest bulkRequest = createBulkRequest(numberOfItems);
+        bulkRequest.refresh(true);
+        final List<ActionRequest> otherRequests = new ArrayList<>();
+
+        try (DeferringBulkClient client = new DeferringBulkClient(getTestName()) {
+            @Override
+            protected <Request extends ActionRequest, Response extends ActionResponse, RequestBuilder extends ActionRequestBuilder<Request, Response, RequestBuilder>> void doExecute(Action<Request, Response, RequestBuilder> action, Request request, ActionListener<Response> listener) {
+                otherRequests.add(request);
+                super.doExecute(action, request, listener);
+            }
+        }) {
+            PlainActionFuture<BulkResponse> future = new PlainActionFuture<>();
+            new ConcurrencyLimitedBulkExecutor(client, bulkRequest, 1, randomIntBetween(1, 3), future).execute();
+            while (client.pending.isEmpty() == false) {
+                assertThat(otherRequests.size(), equalTo(0));
+                client.respond(randomInt(client.pending.size() - 1));
+            }
+
+            for (BulkRequest batch : client.batches) {
+                assertFalse(batch.refresh());
+            }
+            assertThat(otherRequests.size(), equalTo(1));
+            assertThat(otherRequests.get(0), instanceOf(RefreshRequest.class));
+            assertThat(((RefreshRequest) otherRequests.get(0)).indices(), arrayContaining("index"));
+            assertThat(future.get().getItems().length, equalTo(numberOfItems));
+        }
+    }
+
+    private static class DeferringBulkClient extends NoOpClient {
+        final List<BulkRequest> batches = new ArrayList<>();
+        final List<BulkRequest> pending = new ArrayList<>();
+        final List<ActionListener<BulkResponse>> listeners = new ArrayList<>();
+
+        DeferringBulkClient(String testName) {
+            super(testName);
+        }
+
+        @Override
+        public void bulk(BulkRequest request, ActionListener<BulkResponse> listener) {
+            batches.add(request);
+            pending.add(request);
+            listeners.add(listener);
+        }
+
+        /** answers the pending batch with one failure per item, carrying the item's id */
+        void respond(int pendingIndex) {
+            BulkRequest request = pending.remove(pendingIndex);
+            ActionListener<BulkResponse> listener = listeners.remove(pendingIndex);
+            BulkItemResponse[] items = new BulkItemResponse[request.numberOfActions()];
+            for (int i = 0; i < items.length; i++) {
+                DeleteRequest delete = (DeleteRequest) request.requests().get(i);
+                items[i] = new BulkItemResponse(i, "delete", new BulkItemResponse.Failure(delete.index(), delete.type(), delete.id(),
+                        new IllegalStateException("respond")));
+            }
+            listener.onResponse(new BulkResponse(items, 1));
+        }
+
+        void fail(int pendingIndex, Throwable t) {
+            pending.remove(pendingIndex);
+            listeners.remove(pendingIndex).onFailure(t);
+        }
+    }
+}
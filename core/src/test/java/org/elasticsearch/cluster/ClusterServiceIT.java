@@ -53,6 +53,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -871,6 +872,112 @@ public class ClusterServiceIT extends ESIntegTestCase {
         }
     }
 
+    public void testPipelinedApplication() throws Exception {
+        Settings settings = settingsBuilder()
+                .put("discovery.type", "local")
+                .put(InternalClusterService.SETTING_CLUSTER_SERVICE_PIPELINE_APPLY, true)
+                .build();
+        internalCluster().startNode(settings);
+        ClusterService clusterService = internalCluster().getInstance(ClusterService.class);
+
+        final List<Long> orderedVersions = new CopyOnWriteArrayList<>();
+        final List<Long> orderIndependentVersions = new CopyOnWriteArrayList<>();
+        final AtomicBoolean onUpdateThread = new AtomicBoolean(true);
+        clusterService.add(event -> {
+            if (Thread.currentThread().getName().contains(InternalClusterService.UPDATE_THREAD_NAME) == false) {
+                onUpdateThread.set(false);
+            }
+            orderedVersions.add(event.state().version());
+        });
+        clusterService.add((OrderIndependentClusterStateListener) event -> orderIndependentVersions.add(event.state().version()));
+
+        int numberOfTasks = randomIntBetween(5, 50);
+        final List<Long> processedVersions = new CopyOnWriteArrayList<>();
+        final CountDownLatch processed = new CountDownLatch(numberOfTasks);
+        for (int i = 0; i < numberOfTasks; i++) {
+            clusterService.submitStateUpdateTask("test" + i, new ClusterStateUpdateTask() {
+                @Override
+                public ClusterState execute(ClusterState currentState) {
+                    return ClusterState.builder(currentState).build();
+                }
+
+                @Override
+                public void onFailure(String source, Throwable t) {
+                    throw new RuntimeException(t);
+                }
+
+                @Override
+                public void clusterStateProcessed(String source, ClusterState oldState, ClusterState newState) {
+                    assertThat(newState.status(), equalTo(ClusterState.ClusterStateStatus.APPLIED));
+                    processedVersions.add(newState.version());
+                    processed.countDown();
+                }
+            });
+        }
+        assertTrue(processed.await(30, TimeUnit.SECONDS));
+
+        assertTrue("ordered listeners must run on the cluster state threads", onUpdateThread.get());
+        for (int i = 1; i < processedVersions.size(); i++) {
+            assertThat(processedVersions.get(i), greaterThan(processedVersions.get(i - 1)));
+        }
+        // every published state was applied, in order, before the processed callbacks were called
+        assertTrue(orderedVersions.containsAll(processedVersions));
+        assertTrue(orderIndependentVersions.containsAll(processedVersions));
+        for (int i = 1; i < orderedVersions.size(); i++) {
+            assertThat(orderedVersions.get(i), greaterThan(orderedVersions.get(i - 1)));
+        }
+    }
+
+    public void testDefaultApplicationKeepsOrderAndThreads() throws Exception {
+        Settings settings = settingsBuilder()
+                .put("discovery.type", "local")
+                .build();
+        internalCluster().startNode(settings);
+        ClusterService clusterService = internalCluster().getInstance(ClusterService.class);
+
+        final List<String> events = new CopyOnWriteArrayList<>();
+        final AtomicBoolean onUpdateThread = new AtomicBoolean(true);
+        clusterService.add((OrderIndependentClusterStateListener) event -> {
+            if ("test".equals(event.source()) == false) {
+                return;
+            }
+            if (Thread.currentThread().getName().contains(InternalClusterService.UPDATE_THREAD_NAME) == false) {
+                onUpdateThread.set(false);
+            }
+            events.add("listener");
+        });
+
+        final CountDownLatch published = new CountDownLatch(1);
+        clusterService.submitStateUpdateTask("test", new Object(), ClusterStateTaskConfig.build(Priority.NORMAL),
+                new ClusterStateTaskExecutor<Object>() {
+                    @Override
+                    public BatchResult<Object> execute(ClusterState currentState, List<Object> tasks) throws Exception {
+                        return BatchResult.builder().successes(tasks).build(ClusterState.builder(currentState).build());
+                    }
+
+                    @Override
+                    public void clusterStatePublished(ClusterState newClusterState) {
+                        events.add("published");
+                        published.countDown();
+                    }
+                },
+                new ClusterStateTaskListener() {
+                    @Override
+                    public void onFailure(String source, Throwable t) {
+                        throw new RuntimeException(t);
+                    }
+
+                    @Override
+                    public void clusterStateProcessed(String source, ClusterState oldState, ClusterState newState) {
+                        events.add("processed");
+                    }
+                });
+        assertTrue(published.await(30, TimeUnit.SECONDS));
+
+        assertTrue("order independent listeners must run on the cluster state update thread by default", onUpdateThread.get());
+        assertThat(events, equalTo(Arrays.asList("listener", "processed", "published")));
+    }
+
     @TestLogging("cluster:TRACE") // To ensure that we log cluster state events on TRACE level
     public void testClusterStateUpdateLogging() throws Exception {
         Settings settings = settingsBuilder()
@@ -0,0 +1,109 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.cluster.metadata;
+
+import org.elasticsearch.cluster.Diff;
+import org.elasticsearch.cluster.IncompatibleClusterStateVersionException;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.compress.CompressedXContent;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.index.mapper.internal.TimestampFieldMapper;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class MappingMetaDataDiffTests extends ESTestCase {
+
+    public void testUnchanged() throws IOException {
+        MappingMetaData mapping = mapping("type", 10, null);
+        MappingMetaData same = mapping("type", 10, null);
+        assertThat(roundTrip(same.diff(mapping)).apply(mapping), sameInstance(mapping));
+    }
+
+    public void testAddedFieldIsSentAsDelta() throws IOException {
+        int numFields = randomIntBetween(50, 100);
+        MappingMetaData before = mapping("type", numFields, null);
+        MappingMetaData after = mapping("type", numFields, "added_field");
+        BytesReference diffBytes = serialize(after.diff(before));
+        BytesReference fullBytes = serialize(after);
+        assertThat(diffBytes.length(), lessThan(fullBytes.length()));
+
+        MappingMetaData applied = MappingMetaData.PROTO.readDiffFrom(diffBytes.streamInput()).apply(before);
+        assertThat(applied, equalTo(after));
+        assertThat(applied.source().string(), equalTo(after.source().string()));
+        assertThat(applied.timestamp(), equalTo(after.timestamp()));
+    }
+
+    public void testDeltaRequiresSameBase() throws IOException {
+        MappingMetaData before = mapping("type", 20, null);
+        MappingMetaData after = mapping("type", 20, "added_field");
+        Diff<MappingMetaData> diff = roundTrip(after.diff(before));
+        MappingMetaData other = mapping("type", 21, null);
+        try {
+            diff.apply(other);
+            fail("applying a delta to a different mapping must fail");
+        } catch (IncompatibleClusterStateVersionException e) {
+            // expected, the master sends the full state instead
+        }
+    }
+
+    public void testRenamedTypeIsSentInFull() throws IOException {
+        MappingMetaData before = mapping("type", 5, null);
+        MappingMetaData after = mapping("other_type", 5, null);
+        assertThat(roundTrip(after.diff(before)).apply(before), equalTo(after));
+    }
+
+    private static MappingMetaData mapping(String type, int numFields, String extraField) throws IOException {
+        XContentBuilder builder = jsonBuilder().startObject().startObject(type).startObject("properties");
+        for (int i = 0; i < numFields; i++) {
+            builder.startObject("field_" + i).field("type", "string").field("index", "not_analyzed").endObject();
+        }
+        if (extraField != null) {
+            builder.startObject(extraField).field("type", "long").endObject();
+        }
+        builder.endObject().endObject().endObject();
+        return new MappingMetaData(type, new CompressedXContent(builder.bytes()), new MappingMetaData.Id(null),
+                new MappingMetaData.Routing(true, null),
+                new MappingMetaData.Timestamp(true, null, "dateOptionalTime", TimestampFieldMapper.Defaults.DEFAULT_TIMESTAMP, null),
+                false);
+    }
+
+    private static BytesReference serialize(Diff<MappingMetaData> diff) throws IOException {
+        BytesStreamOutput out = new BytesStreamOutput();
+        diff.writeTo(out);
+        return out.bytes();
+    }
+
+    private static BytesReference serialize(MappingMetaData mapping) throws IOException {
+        BytesStreamOutput out = new BytesStreamOutput();
+        mapping.writeTo(out);
+        return out.bytes();
+    }
+
+    private static Diff<MappingMetaData> roundTrip(Diff<MappingMetaData> diff) throws IOException {
+        return MappingMetaData.PROTO.readDiffFrom(serialize(diff).streamInput());
+    }
+}
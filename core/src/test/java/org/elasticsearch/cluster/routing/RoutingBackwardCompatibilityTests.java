@@ -60,6 +60,7 @@ public class RoutingBackwardCompatibilityTests extends ESTestCase {
                     ClusterState clusterState = ClusterState.builder(ClusterName.DEFAULT).metaData(metaData).routingTable(routingTable).build();
                     final int shardId = operationRouting.indexShards(clusterState, index, type, id, routing).shardId().getId();
                     assertEquals(currentExpectedShard, shardId);
+                    assertEquals(currentExpectedShard, OperationRouting.generateShardId(indexMetaData, id, routing));
                 }
             }
         }
@@ -0,0 +1,128 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.cluster.routing.allocation;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.routing.RoutingTable;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.test.ESAllocationTestCase;
+
+import static org.elasticsearch.cluster.routing.ShardRoutingState.INITIALIZING;
+import static org.elasticsearch.cluster.routing.ShardRoutingState.STARTED;
+import static org.elasticsearch.common.settings.Settings.settingsBuilder;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * Simulates allocating, balancing and evacuating large clusters. The nightly variant is a benchmark harness whose size
+ * can be set with the <code>tests.allocation.nodes</code>, <code>tests.allocation.indices</code>,
+ * <code>tests.allocation.shards</code> and <code>tests.allocation.replicas</code> system properties, it logs how long
+ * each phase takes.
+ */
+public class LargeClusterAllocationTests extends ESAllocationTestCase {
+
+    private final ESLogger logger = Loggers.getLogger(LargeClusterAllocationTests.class);
+
+    public void testEvacuateNode() {
+        simulate(randomIntBetween(5, 20), randomIntBetween(10, 50), randomIntBetween(1, 5), randomIntBetween(0, 2));
+    }
+
+    @Nightly
+    public void testSimulateLargeCluster() {
+        simulate(Integer.getInteger("tests.allocation.nodes", 100), Integer.getInteger("tests.allocation.indices", 2000),
+            Integer.getInteger("tests.allocation.shards", 5), Integer.getInteger("tests.allocation.replicas", 1));
+    }
+
+    private void simulate(int numNodes, int numIndices, int numShards, int numReplicas) {
+        final int numCopies = numShards * (numReplicas + 1);
+        logger.info("--> simulating [{}] nodes with [{}] indices of [{}] shards and [{}] replicas", numNodes, numIndices, numShards, numReplicas);
+        final Settings.Builder settings = settingsBuilder()
+                .put("cluster.routing.allocation.node_concurrent_recoveries", Integer.MAX_VALUE)
+                .put("cluster.routing.allocation.node_initial_primaries_recoveries", Integer.MAX_VALUE)
+                .put("cluster.routing.allocation.cluster_concurrent_rebalance", -1);
+        AllocationService strategy = createAllocationService(settings.build());
+
+        MetaData.Builder metaData = MetaData.builder();
+        for (int i = 0; i < numIndices; i++) {
+            metaData.put(IndexMetaData.builder("test_" + i).settings(settings(Version.CURRENT)).numberOfShards(numShards).numberOfReplicas(numReplicas));
+        }
+        RoutingTable.Builder routingTable = RoutingTable.builder();
+        for (int i = 0; i < numIndices; i++) {
+            routingTable.addAsNew(metaData.get("test_" + i));
+        }
+        // one node less than the cluster has in the end, the last one joins once all shards are started
+        DiscoveryNodes.Builder nodes = DiscoveryNodes.builder();
+        for (int i = 0; i < numNodes - 1; i++) {
+            nodes.put(newNode("node_" + i));
+        }
+        ClusterState clusterState = ClusterState.builder(ClusterName.DEFAULT).metaData(metaData).routingTable(routingTable.build()).nodes(nodes).build();
+
+        long start = System.nanoTime();
+        clusterState = reroute(strategy, clusterState);
+        logTime("initial allocation", start);
+        start = System.nanoTime();
+        clusterState = startAll(strategy, clusterState);
+        logTime("starting all shards", start);
+        assertThat(clusterState.getRoutingNodes().shardsWithState(STARTED).size(), equalTo(numIndices * numCopies));
+
+        clusterState = ClusterState.builder(clusterState).nodes(DiscoveryNodes.builder(clusterState.nodes()).put(newNode("node_" + (numNodes - 1)))).build();
+        start = System.nanoTime();
+        clusterState = reroute(strategy, clusterState);
+        logTime("rebalancing to the new node", start);
+        clusterState = startAll(strategy, clusterState);
+
+        strategy = createAllocationService(settingsBuilder().put(settings.build()).put("cluster.routing.allocation.exclude._id", "node_0").build());
+        start = System.nanoTime();
+        clusterState = reroute(strategy, clusterState);
+        logTime("evacuating a node", start);
+        clusterState = startAll(strategy, clusterState);
+
+        if (numNodes - 1 > numReplicas) {
+            // every copy fits on the remaining nodes
+            assertThat(clusterState.getRoutingNodes().node("node_0").size(), equalTo(0));
+            assertThat(clusterState.getRoutingNodes().unassigned().size(), equalTo(0));
+            assertThat(clusterState.getRoutingNodes().shardsWithState(STARTED).size(), equalTo(numIndices * numCopies));
+        }
+    }
+
+    private ClusterState reroute(AllocationService strategy, ClusterState clusterState) {
+        RoutingAllocation.Result result = strategy.reroute(clusterState, "reroute");
+        return ClusterState.builder(clusterState).routingResult(result).build();
+    }
+
+    private ClusterState startAll(AllocationService strategy, ClusterState clusterState) {
+        while (clusterState.getRoutingNodes().hasInactiveShards()) {
+            RoutingAllocation.Result result = strategy.applyStartedShards(clusterState, clusterState.getRoutingNodes().shardsWithState(INITIALIZING));
+            clusterState = ClusterState.builder(clusterState).routingResult(result).build();
+        }
+        return clusterState;
+    }
+
+    private void logTime(String phase, long startNanos) {
+        logger.info("--> {} took [{}]", phase, TimeValue.timeValueNanos(System.nanoTime() - startNanos));
+    }
+}
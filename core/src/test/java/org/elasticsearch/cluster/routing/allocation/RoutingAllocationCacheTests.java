@@ -0,0 +1,120 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.cluster.routing.allocation;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.ClusterInfo;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.routing.RoutingNode;
+import org.elasticsearch.cluster.routing.RoutingNodes;
+import org.elasticsearch.cluster.routing.RoutingTable;
+import org.elasticsearch.cluster.routing.allocation.command.AllocationCommands;
+import org.elasticsearch.cluster.routing.allocation.command.MoveAllocationCommand;
+import org.elasticsearch.cluster.routing.allocation.decider.AllocationDecider;
+import org.elasticsearch.cluster.routing.allocation.decider.AllocationDeciders;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.test.ESAllocationTestCase;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.elasticsearch.cluster.routing.ShardRoutingState.INITIALIZING;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasKey;
+
+public class RoutingAllocationCacheTests extends ESAllocationTestCase {
+
+    public void testNodeCacheIsInvalidatedPerNode() {
+        ClusterState clusterState = clusterState(2);
+        RoutingNodes routingNodes = new RoutingNodes(clusterState, false);
+        RoutingAllocation allocation = new RoutingAllocation(new AllocationDeciders(Settings.EMPTY, new AllocationDecider[0]),
+                routingNodes, clusterState.nodes(), ClusterInfo.EMPTY, System.nanoTime());
+        AtomicInteger computations = new AtomicInteger();
+        Object key = new Object();
+
+        RoutingNode node1 = routingNodes.node("node1");
+        RoutingNode node2 = routingNodes.node("node2");
+        assertThat(allocation.nodeCache(key, node1, n -> computations.incrementAndGet()), equalTo(1));
+        assertThat(allocation.nodeCache(key, node2, n -> computations.incrementAndGet()), equalTo(2));
+        assertThat(allocation.nodeCache(key, node1, n -> computations.incrementAndGet()), equalTo(1));
+        assertThat(allocation.routingCache(key, computations::incrementAndGet), equalTo(3));
+        assertThat(allocation.routingCache(key, computations::incrementAndGet), equalTo(3));
+
+        // assigning a shard to node1 invalidates the values of node1 and those depending on all nodes
+        RoutingNodes.UnassignedShards.UnassignedIterator unassigned = routingNodes.unassigned().iterator();
+        unassigned.next();
+        unassigned.initialize("node1", 0, -1);
+        assertThat(allocation.nodeCache(key, node1, n -> computations.incrementAndGet()), equalTo(4));
+        assertThat(allocation.nodeCache(key, node2, n -> computations.incrementAndGet()), equalTo(2));
+        assertThat(allocation.routingCache(key, computations::incrementAndGet), equalTo(5));
+
+        // starting it invalidates them again
+        routingNodes.started(node1.iterator().next());
+        assertThat(allocation.nodeCache(key, node1, n -> computations.incrementAndGet()), equalTo(6));
+        assertThat(allocation.nodeCache(key, node2, n -> computations.incrementAndGet()), equalTo(2));
+
+        // relocating invalidates both the source and the target
+        routingNodes.relocate(node1.iterator().next(), "node2", -1);
+        assertThat(allocation.nodeCache(key, node1, n -> computations.incrementAndGet()), equalTo(7));
+        assertThat(allocation.nodeCache(key, node2, n -> computations.incrementAndGet()), equalTo(8));
+    }
+
+    public void testExplainedRerouteReportsDeciderTimings() throws Exception {
+        AllocationService strategy = createAllocationService(Settings.EMPTY);
+        ClusterState clusterState = clusterState(2);
+        clusterState = ClusterState.builder(clusterState).routingResult(strategy.reroute(clusterState, "reroute")).build();
+        clusterState = ClusterState.builder(clusterState)
+                .routingResult(strategy.applyStartedShards(clusterState, clusterState.getRoutingNodes().shardsWithState(INITIALIZING))).build();
+        String from = clusterState.getRoutingNodes().node("node1").size() == 1 ? "node1" : "node2";
+        String to = from.equals("node1") ? "node2" : "node1";
+        MoveAllocationCommand move = new MoveAllocationCommand(new ShardId("test", 0), from, to);
+
+        RoutingExplanations explanations = strategy.reroute(clusterState, new AllocationCommands(move), true).explanations();
+        assertThat(explanations.deciderTimings().timings(), hasKey("SameShardAllocationDecider"));
+        assertThat(explanations.deciderTimings().timings().get("SameShardAllocationDecider").getCount(), greaterThan(0L));
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        RoutingExplanations.writeTo(explanations, out);
+        RoutingExplanations read = RoutingExplanations.readFrom(out.bytes().streamInput());
+        assertThat(read.deciderTimings().timings().keySet(), equalTo(explanations.deciderTimings().timings().keySet()));
+
+        // timings are only reported for explained reroutes
+        explanations = strategy.reroute(clusterState, new AllocationCommands(move), false).explanations();
+        assertTrue(explanations.deciderTimings().isEmpty());
+    }
+
+    private ClusterState clusterState(int numNodes) {
+        MetaData metaData = MetaData.builder()
+                .put(IndexMetaData.builder("test").settings(settings(Version.CURRENT)).numberOfShards(1).numberOfReplicas(0))
+                .build();
+        RoutingTable routingTable = RoutingTable.builder().addAsNew(metaData.index("test")).build();
+        DiscoveryNodes.Builder nodes = DiscoveryNodes.builder();
+        for (int i = 1; i <= numNodes; i++) {
+            nodes.put(newNode("node" + i));
+        }
+        return ClusterState.builder(ClusterName.DEFAULT).metaData(metaData).routingTable(routingTable).nodes(nodes).build();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.util.concurrent;
+
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.equalTo;
+
+public class CooperativeTasksTests extends ESTestCase {
+
+    public void testRunsAllTasks() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(randomIntBetween(1, 4));
+        try {
+            final int numTasks = randomIntBetween(0, 100);
+            final AtomicInteger[] runs = new AtomicInteger[numTasks];
+            final List<CooperativeTasks.Task> tasks = new ArrayList<>();
+            for (int i = 0; i < numTasks; i++) {
+                final AtomicInteger counter = runs[i] = new AtomicInteger();
+                tasks.add(counter::incrementAndGet);
+            }
+            CooperativeTasks.run(tasks, executor);
+            for (AtomicInteger counter : runs) {
+                assertThat(counter.get(), equalTo(1));
+            }
+        } finally {
+            terminate(executor);
+        }
+    }
+
+    public void testCallerRunsTasksIfExecutorRejects() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final List<CooperativeTasks.Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            tasks.add(runs::incrementAndGet);
+        }
+        CooperativeTasks.run(tasks, runnable -> {
+            throw new EsRejectedExecutionException("rejected");
+        });
+        assertThat(runs.get(), equalTo(10));
+    }
+
+    public void testRethrowsFailure() throws Exception {
+        final List<CooperativeTasks.Task> tasks = new ArrayList<>();
+        tasks.add(() -> {
+            throw new IOException("boom");
+        });
+        final AtomicInteger runs = new AtomicInteger();
+        for (int i = 0; i < 10; i++) {
+            tasks.add(runs::incrementAndGet);
+        }
+        try {
+            // run everything on the calling thread so that the tasks after the failing one are skipped
+            CooperativeTasks.run(tasks, runnable -> {
+                throw new EsRejectedExecutionException("rejected");
+            });
+            fail("expected the failure of the first task");
+        } catch (IOException e) {
+            assertThat(e.getMessage(), equalTo("boom"));
+        }
+        assertThat(runs.get(), equalTo(0));
+    }
+}
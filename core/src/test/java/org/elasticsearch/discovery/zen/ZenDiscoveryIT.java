@@ -262,16 +262,6 @@ public class ZenDiscoveryIT extends ESIntegTestCase {
     }
 
     public void testDiscoveryStats() throws IOException {
-        String expectedStatsJsonResponse = "{\n" +
-                "  \"discovery\" : {\n" +
-                "    \"cluster_state_queue\" : {\n" +
-                "      \"total\" : 0,\n" +
-                "      \"pending\" : 0,\n" +
-                "      \"committed\" : 0\n" +
-                "    }\n" +
-                "  }\n" +
-                "}";
-
         Settings nodeSettings = Settings.settingsBuilder()
                 .put("discovery.type", "zen") // <-- To override the local setting if set externally
                 .build();
@@ -286,6 +276,28 @@ public class ZenDiscoveryIT extends ESIntegTestCase {
         assertThat(stats.getQueueStats().getTotal(), equalTo(0));
         assertThat(stats.getQueueStats().getCommitted(), equalTo(0));
         assertThat(stats.getQueueStats().getPending(), equalTo(0));
+        // a single node doesn't send cluster states to other nodes
+        assertThat(stats.getQueueStats().getFullStatesSent(), equalTo(0L));
+        assertThat(stats.getQueueStats().getDiffsSent(), equalTo(0L));
+
+        String expectedStatsJsonResponse = "{\n" +
+                "  \"discovery\" : {\n" +
+                "    \"cluster_state_queue\" : {\n" +
+                "      \"total\" : 0,\n" +
+                "      \"pending\" : 0,\n" +
+                "      \"committed\" : 0\n" +
+                "    },\n" +
+                "    \"cluster_state_publish\" : {\n" +
+                "      \"published\" : " + stats.getQueueStats().getPublished() + ",\n" +
+                "      \"full_states_sent\" : 0,\n" +
+                "      \"diffs_sent\" : 0,\n" +
+                "      \"diff_time_in_millis\" : " + stats.getQueueStats().getDiffTime().millis() + ",\n" +
+                "      \"serialization_time_in_millis\" : " + stats.getQueueStats().getSerializationTime().millis() + ",\n" +
+                "      \"commit_time_in_millis\" : " + stats.getQueueStats().getCommitTime().millis() + ",\n" +
+                "      \"completion_time_in_millis\" : " + stats.getQueueStats().getCompletionTime().millis() + "\n" +
+                "    }\n" +
+                "  }\n" +
+                "}";
 
         XContentBuilder builder = XContentFactory.jsonBuilder().prettyPrint();
         builder.startObject();
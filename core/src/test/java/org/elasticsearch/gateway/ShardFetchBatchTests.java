@@ -0,0 +1,111 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.gateway;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.support.nodes.BaseNodeResponse;
+import org.elasticsearch.action.support.nodes.BaseNodesResponse;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.equalTo;
+
+public class ShardFetchBatchTests extends ESTestCase {
+
+    public void testFetchesAreSentOnFlush() {
+        TestAction action = new TestAction();
+        ShardFetchBatch<Responses, Response> batch = new ShardFetchBatch<>(action);
+        int numShards = randomIntBetween(1, 20);
+        for (int i = 0; i < numShards; i++) {
+            batch.list(new ShardId("test", i), null, new String[] {"node1", "node2"}, new NoopListener());
+        }
+        assertThat(action.batches.size(), equalTo(0));
+        assertThat(batch.size(), equalTo(numShards));
+
+        batch.flush();
+        assertThat(action.batches.size(), equalTo(1));
+        assertThat(action.batches.get(0).size(), equalTo(numShards));
+        for (int i = 0; i < numShards; i++) {
+            assertThat(action.batches.get(0).get(i).shardId(), equalTo(new ShardId("test", i)));
+        }
+        assertThat(batch.size(), equalTo(0));
+
+        // nothing to send
+        batch.flush();
+        assertThat(action.batches.size(), equalTo(1));
+    }
+
+    public void testFailureToSendFailsAllFetches() {
+        ShardFetchBatch<Responses, Response> batch = new ShardFetchBatch<>(new TestAction() {
+            @Override
+            public void list(List<ShardFetchBatch.ShardRequest> shards, List<ActionListener<Responses>> listeners) {
+                throw new IllegalStateException("simulated");
+            }
+        });
+        int numShards = randomIntBetween(1, 20);
+        NoopListener listener = new NoopListener();
+        for (int i = 0; i < numShards; i++) {
+            batch.list(new ShardId("test", i), null, new String[] {"node1"}, listener);
+        }
+        batch.flush();
+        assertThat(listener.failures.get(), equalTo(numShards));
+    }
+
+    static class TestAction implements ShardFetchBatch.BatchedList<Responses, Response> {
+
+        final List<List<ShardFetchBatch.ShardRequest>> batches = new ArrayList<>();
+
+        @Override
+        public void list(List<ShardFetchBatch.ShardRequest> shards, List<ActionListener<Responses>> listeners) {
+            assertThat(listeners.size(), equalTo(shards.size()));
+            batches.add(shards);
+        }
+
+        @Override
+        public void list(ShardId shardId, IndexMetaData indexMetaData, String[] nodesIds, ActionListener<Responses> listener) {
+            throw new AssertionError("fetches must be batched");
+        }
+    }
+
+    static class NoopListener implements ActionListener<Responses> {
+
+        final AtomicInteger failures = new AtomicInteger();
+
+        @Override
+        public void onResponse(Responses responses) {
+        }
+
+        @Override
+        public void onFailure(Throwable e) {
+            failures.incrementAndGet();
+        }
+    }
+
+    static class Response extends BaseNodeResponse {
+    }
+
+    static class Responses extends BaseNodesResponse<Response> {
+    }
+}
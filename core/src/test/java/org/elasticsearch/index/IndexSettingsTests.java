@@ -18,6 +18,9 @@
  */
 package org.elasticsearch.index;
 
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortedNumericSelector;
+import org.apache.lucene.search.SortedNumericSortField;
 import org.elasticsearch.Version;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.common.settings.Settings;
@@ -117,6 +120,33 @@ public class IndexSettingsTests extends ESTestCase {
     }
 
 
+    public void testIndexSort() {
+        assertNull(IndexSettings.buildIndexSort(Settings.EMPTY));
+
+        Sort sort = IndexSettings.buildIndexSort(Settings.settingsBuilder().put(IndexSettings.INDEX_SORT_FIELD, "timestamp").build());
+        assertEquals(1, sort.getSort().length);
+        SortedNumericSortField sortField = (SortedNumericSortField) sort.getSort()[0];
+        assertEquals("timestamp", sortField.getField());
+        assertFalse(sortField.getReverse());
+        assertEquals(SortedNumericSelector.Type.MIN, sortField.getSelector());
+        assertEquals(Long.MAX_VALUE, sortField.missingValue);
+
+        sort = IndexSettings.buildIndexSort(Settings.settingsBuilder().put(IndexSettings.INDEX_SORT_FIELD, "timestamp")
+                .put(IndexSettings.INDEX_SORT_ORDER, "desc").build());
+        sortField = (SortedNumericSortField) sort.getSort()[0];
+        assertTrue(sortField.getReverse());
+        assertEquals(SortedNumericSelector.Type.MAX, sortField.getSelector());
+        assertEquals(Long.MIN_VALUE, sortField.missingValue);
+
+        try {
+            IndexSettings.buildIndexSort(Settings.settingsBuilder().put(IndexSettings.INDEX_SORT_FIELD, "timestamp")
+                    .put(IndexSettings.INDEX_SORT_ORDER, "up").build());
+            fail("invalid sort order");
+        } catch (IllegalArgumentException ex) {
+            assertEquals("illegal value for [index.sort.order], must be [asc] or [desc] but was [up]", ex.getMessage());
+        }
+    }
+
     public void testNodeSettingsAreContained() {
         final int numShards = randomIntBetween(1, 10);
         final int numReplicas = randomIntBetween(0, 10);
@@ -0,0 +1,137 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index;
+
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.mapper.MapperParsingException;
+import org.elasticsearch.search.sort.SortOrder;
+import org.elasticsearch.test.ESIntegTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.elasticsearch.cluster.metadata.IndexMetaData.SETTING_NUMBER_OF_REPLICAS;
+import static org.elasticsearch.cluster.metadata.IndexMetaData.SETTING_NUMBER_OF_SHARDS;
+import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertNoFailures;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+
+public class IndexSortIT extends ESIntegTestCase {
+
+    private static Settings sortedIndexSettings(String order) {
+        return Settings.settingsBuilder()
+                .put(SETTING_NUMBER_OF_SHARDS, 1)
+                .put(SETTING_NUMBER_OF_REPLICAS, 0)
+                .put(IndexSettings.INDEX_SORT_FIELD, "timestamp")
+                .put(IndexSettings.INDEX_SORT_ORDER, order)
+                .build();
+    }
+
+    public void testSortedSearchTerminatesEarly() throws Exception {
+        assertAcked(prepareCreate("test").setSettings(sortedIndexSettings("desc")).addMapping("type", "timestamp", "type=long"));
+        int numDocs = randomIntBetween(50, 200);
+        List<IndexRequestBuilder> builders = new ArrayList<>();
+        for (int i = 0; i < numDocs; i++) {
+            builders.add(client().prepareIndex("test", "type", Integer.toString(i)).setSource("timestamp", i));
+        }
+        indexRandom(true, builders);
+        // the documents of merged segments are sorted, flushed segments are not
+        assertNoFailures(client().admin().indices().prepareForceMerge("test").setFlush(true).setMaxNumSegments(1).get());
+        refresh();
+
+        int size = randomIntBetween(1, 20);
+        SearchResponse response = client().prepareSearch("test")
+                .setQuery(matchAllQuery())
+                .addSort("timestamp", SortOrder.DESC)
+                .setSize(size).get();
+        assertNoFailures(response);
+        assertThat(response.getHits().getHits().length, equalTo(size));
+        for (int i = 0; i < size; i++) {
+            assertThat(response.getHits().getAt(i).getId(), equalTo(Integer.toString(numDocs - 1 - i)));
+        }
+        assertThat(response.isTerminatedEarly(), equalTo(true));
+        // the total number of hits is a lower bound
+        assertThat(response.getHits().getTotalHits(), greaterThanOrEqualTo((long) size));
+        assertThat(response.getHits().getTotalHits(), lessThan((long) numDocs));
+
+        // a sort that doesn't match the index sort collects all documents
+        response = client().prepareSearch("test")
+                .setQuery(matchAllQuery())
+                .addSort("timestamp", SortOrder.ASC)
+                .setSize(size).get();
+        assertNoFailures(response);
+        for (int i = 0; i < size; i++) {
+            assertThat(response.getHits().getAt(i).getId(), equalTo(Integer.toString(i)));
+        }
+        assertThat(response.isTerminatedEarly(), nullValue());
+        assertThat(response.getHits().getTotalHits(), equalTo((long) numDocs));
+    }
+
+    public void testNestedMappingsAreRejected() throws Exception {
+        try {
+            prepareCreate("test").setSettings(sortedIndexSettings("asc"))
+                    .addMapping("type", "timestamp", "type=long", "nested", "type=nested").get();
+            fail("nested objects can't be used in sorted indices");
+        } catch (MapperParsingException e) {
+            assertThat(e.getMessage(), containsString("Nested object [nested] can't be used in an index that is sorted on [timestamp]"));
+        }
+
+        assertAcked(prepareCreate("test").setSettings(sortedIndexSettings("asc")).addMapping("type", "timestamp", "type=long"));
+        try {
+            client().admin().indices().preparePutMapping("test").setType("type").setSource("nested", "type=nested").get();
+            fail("nested objects can't be used in sorted indices");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), containsString("Nested object [nested] can't be used in an index that is sorted on [timestamp]"));
+        }
+    }
+
+    public void testSortFieldMustBeIntegralWithDocValues() throws Exception {
+        try {
+            prepareCreate("test").setSettings(sortedIndexSettings("asc")).addMapping("type", "timestamp", "type=string").get();
+            fail("string fields can't be used to sort the index");
+        } catch (MapperParsingException e) {
+            assertThat(e.getMessage(), containsString("Field [timestamp] of type [string] can't be used to sort the index"));
+        }
+
+        try {
+            prepareCreate("test").setSettings(sortedIndexSettings("asc")).addMapping("type", "timestamp", "type=long,doc_values=false").get();
+            fail("fields without doc values can't be used to sort the index");
+        } catch (MapperParsingException e) {
+            assertThat(e.getMessage(), containsString("Field [timestamp] can't be used to sort the index without doc values"));
+        }
+
+        // the sort field may be mapped after the index is created
+        assertAcked(prepareCreate("test").setSettings(sortedIndexSettings("asc")));
+        try {
+            client().admin().indices().preparePutMapping("test").setType("type").setSource("timestamp", "type=string").get();
+            fail("string fields can't be used to sort the index");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), containsString("Field [timestamp] of type [string] can't be used to sort the index"));
+        }
+        assertAcked(client().admin().indices().preparePutMapping("test").setType("type").setSource("timestamp", "type=date"));
+    }
+}
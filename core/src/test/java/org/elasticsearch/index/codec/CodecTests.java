@@ -33,11 +33,14 @@ import org.apache.lucene.codecs.lucene50.Lucene50StoredFieldsFormat.Mode;
 import org.apache.lucene.codecs.lucene53.Lucene53Codec;
 import org.apache.lucene.codecs.lucene54.Lucene54Codec;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.StoredField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.SegmentReader;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.LuceneTestCase.SuppressCodecs;
 import org.elasticsearch.common.logging.ESLoggerFactory;
 import org.elasticsearch.common.settings.Settings;
@@ -85,6 +88,65 @@ public class CodecTests extends ESTestCase {
         assertCompressionEquals(Mode.BEST_COMPRESSION, codec);
     }
 
+    public void testColumnarSource() throws Exception {
+        Codec codec = createCodecService().codec("columnar_source");
+        assertThat(codec, instanceOf(ColumnarSourceCodec.class));
+        Directory dir = newDirectory();
+        IndexWriterConfig iwc = newIndexWriterConfig(null);
+        iwc.setCodec(codec);
+        IndexWriter iw = new IndexWriter(dir, iwc);
+        final int numDocs = scaledRandomIntBetween(1, 3000);
+        String[] sources = new String[numDocs];
+        for (int i = 0; i < numDocs; i++) {
+            switch (randomInt(3)) {
+                case 0:
+                    sources[i] = "{\"@timestamp\":" + (1450000000000L + i) + ",\"level\":\"" + randomFrom("INFO", "WARN") +
+                            "\",\"message\":\"" + randomUnicodeOfLength(10).replace('"', 'x').replace('\\', 'x') + "\",\"took\":" +
+                            randomDouble() + ",\"tags\":[\"a\",1,true,null,{\"nested\":" + randomLong() + "}]}";
+                    break;
+                case 1:
+                    // pretty printed, can't be restored from columns and is stored as is
+                    sources[i] = "{\n  \"level\" : \"INFO\"\n}";
+                    break;
+                case 2:
+                    sources[i] = "{\"big\":123456789012345678901234567890,\"empty\":{},\"list\":[]}";
+                    break;
+                default:
+                    sources[i] = randomRealisticUnicodeOfLength(20);
+            }
+            Document doc = new Document();
+            doc.add(new StoredField("id", i));
+            doc.add(new StoredField("_source", new BytesRef(sources[i])));
+            doc.add(new StoredField("name", "doc" + i));
+            iw.addDocument(doc);
+            if (rarely()) {
+                iw.commit();
+            }
+        }
+        if (randomBoolean()) {
+            iw.forceMerge(1);
+        }
+        iw.close();
+
+        DirectoryReader ir = DirectoryReader.open(dir);
+        for (LeafReaderContext context : ir.leaves()) {
+            for (int doc = 0; doc < context.reader().maxDoc(); doc++) {
+                Document document = context.reader().document(doc);
+                int id = document.getField("id").numericValue().intValue();
+                assertEquals(sources[id], document.getBinaryValue("_source").utf8ToString());
+                assertEquals("doc" + id, document.get("name"));
+            }
+        }
+        // single documents can be read in any order
+        for (int i = 0; i < 10; i++) {
+            int doc = randomInt(ir.maxDoc() - 1);
+            Document document = ir.document(doc);
+            assertEquals(sources[document.getField("id").numericValue().intValue()], document.getBinaryValue("_source").utf8ToString());
+        }
+        ir.close();
+        dir.close();
+    }
+
     // write some docs with it, inspect .si to see this was the used compression
     private void assertCompressionEquals(Mode expected, Codec actual) throws Exception {
         Directory dir = newDirectory();
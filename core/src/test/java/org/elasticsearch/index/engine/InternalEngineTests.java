@@ -487,6 +487,32 @@ public class InternalEngineTests extends ESTestCase {
         assertThat(stats2.getUserData().get(Translog.TRANSLOG_UUID_KEY), equalTo(stats1.getUserData().get(Translog.TRANSLOG_UUID_KEY)));
     }
 
+    public void testSeqNoInCommitData() {
+        final int numDocs = randomIntBetween(1, 10);
+        for (int i = 0; i < numDocs; i++) {
+            ParsedDocument doc = testParsedDocument(Integer.toString(i), Integer.toString(i), "test", null, -1, -1, testDocument(), B_1, null);
+            Engine.Index index = new Engine.Index(newUid(Integer.toString(i)), doc);
+            engine.index(index);
+            assertThat(index.seqNo(), equalTo((long) i));
+        }
+        Engine.Delete delete = new Engine.Delete("test", "0", newUid("0"));
+        engine.delete(delete);
+        assertThat(delete.seqNo(), equalTo((long) numDocs));
+
+        engine.flush(true, true);
+        Map<String, String> userData = engine.commitStats().getUserData();
+        assertThat(userData.get(Engine.LOCAL_CHECKPOINT_KEY), equalTo(Integer.toString(numDocs)));
+        assertThat(userData.get(Engine.MAX_SEQ_NO_KEY), equalTo(Integer.toString(numDocs)));
+        assertThat(userData.get(Engine.HISTORY_UUID_KEY), equalTo(engine.getHistoryUUID()));
+
+        final String historyUUID = engine.getHistoryUUID();
+        engine.startNewHistory();
+        assertThat(engine.getHistoryUUID(), not(equalTo(historyUUID)));
+        engine.adoptHistory(historyUUID, numDocs + 5);
+        assertThat(engine.getHistoryUUID(), equalTo(historyUUID));
+        assertThat(engine.getLocalCheckpointTracker().getCheckpoint(), equalTo(numDocs + 5L));
+    }
+
     public void testIndexSearcherWrapper() throws Exception {
         final AtomicInteger counter = new AtomicInteger();
         IndexSearcherWrapper wrapper = new IndexSearcherWrapper() {
@@ -891,6 +917,62 @@ public class InternalEngineTests extends ESTestCase {
         assertThat(index.version(), equalTo(1l));
     }
 
+    public void testAppendOnlyAutoGeneratedIds() throws IOException {
+        IndexSettings indexSettings = IndexSettingsModule.newIndexSettings("test", Settings.builder()
+                .put(defaultSettings.getSettings())
+                .put(EngineConfig.INDEX_OPTIMIZE_AUTO_GENERATED_ID_SETTING, true)
+                .build());
+        try (Store store = createStore();
+             Engine engine = createEngine(indexSettings, store, createTempDir(), new MergeSchedulerConfig(indexSettings), newMergePolicy())) {
+            ParsedDocument doc = testParsedDocument("1", "1", "test", null, -1, -1, testDocument(), B_1, null);
+            Engine.Index index = new Engine.Index(newUid("1"), doc, Versions.MATCH_ANY, VersionType.INTERNAL, PRIMARY, System.nanoTime(), 10, false);
+            assertTrue(engine.index(index));
+            assertThat(index.version(), equalTo(1l));
+
+            // a retry of the same request must not add a second copy
+            index = new Engine.Index(newUid("1"), doc, Versions.MATCH_ANY, VersionType.INTERNAL, PRIMARY, System.nanoTime(), 10, true);
+            engine.index(index);
+            // ... and neither must a late arrival of the original request once a retry has been seen
+            index = new Engine.Index(newUid("1"), doc, Versions.MATCH_ANY, VersionType.INTERNAL, PRIMARY, System.nanoTime(), 10, false);
+            engine.index(index);
+            engine.refresh("test");
+            try (Engine.Searcher searcher = engine.acquireSearcher("test")) {
+                MatcherAssert.assertThat(searcher, EngineSearcherTotalHitsMatcher.engineSearcherTotalHits(1));
+            }
+
+            // newer auto-generated ids are appended again
+            doc = testParsedDocument("2", "2", "test", null, -1, -1, testDocument(), B_2, null);
+            index = new Engine.Index(newUid("2"), doc, Versions.MATCH_ANY, VersionType.INTERNAL, PRIMARY, System.nanoTime(), 11, false);
+            assertTrue(engine.index(index));
+            engine.refresh("test");
+            try (Engine.Searcher searcher = engine.acquireSearcher("test")) {
+                MatcherAssert.assertThat(searcher, EngineSearcherTotalHitsMatcher.engineSearcherTotalHits(2));
+            }
+        }
+    }
+
+    public void testRetryOfAppendedAutoGeneratedIdBeforeRefresh() throws IOException {
+        IndexSettings indexSettings = IndexSettingsModule.newIndexSettings("test", Settings.builder()
+                .put(defaultSettings.getSettings())
+                .put(EngineConfig.INDEX_OPTIMIZE_AUTO_GENERATED_ID_SETTING, true)
+                .build());
+        try (Store store = createStore();
+             Engine engine = createEngine(indexSettings, store, createTempDir(), new MergeSchedulerConfig(indexSettings), newMergePolicy())) {
+            ParsedDocument doc = testParsedDocument("1", "1", "test", null, -1, -1, testDocument(), B_1, null);
+            Engine.Index original = new Engine.Index(newUid("1"), doc, Versions.MATCH_ANY, VersionType.INTERNAL, PRIMARY, System.nanoTime(), 10, false);
+            assertTrue(engine.index(original));
+
+            // the appended original is neither in the version map nor visible to the version lookup yet
+            Engine.Index retry = new Engine.Index(newUid("1"), doc, Versions.MATCH_ANY, VersionType.INTERNAL, PRIMARY, System.nanoTime(), 10, true);
+            engine.index(retry);
+            engine.refresh("test");
+            try (Engine.Searcher searcher = engine.acquireSearcher("test")) {
+                MatcherAssert.assertThat(searcher, EngineSearcherTotalHitsMatcher.engineSearcherTotalHits(1));
+                assertEquals(1, searcher.reader().numDocs());
+            }
+        }
+    }
+
     public void testExternalVersioningNewIndex() {
         ParsedDocument doc = testParsedDocument("1", "1", "test", null, -1, -1, testDocument(), B_1, null);
         Engine.Index index = new Engine.Index(newUid("1"), doc, 12, VersionType.EXTERNAL, PRIMARY, 0);
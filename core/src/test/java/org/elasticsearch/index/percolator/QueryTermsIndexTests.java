@@ -0,0 +1,118 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.percolator;
+
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.memory.MemoryIndex;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TermRangeQuery;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class QueryTermsIndexTests extends ESTestCase {
+
+    public void testExtractQueryTerms() {
+        TermQuery term = new TermQuery(new Term("field", "value"));
+        assertThat(QueryTermsIndex.extractQueryTerms(term).terms, containsInAnyOrder(new Term("field", "value")));
+
+        PhraseQuery phrase = new PhraseQuery("field", "a", "longest", "the");
+        assertThat(QueryTermsIndex.extractQueryTerms(phrase).terms, containsInAnyOrder(new Term("field", "longest")));
+
+        // required clauses: one of them is enough
+        BooleanQuery.Builder required = new BooleanQuery.Builder();
+        required.add(new TermQuery(new Term("field", "short")), Occur.MUST);
+        required.add(new TermQuery(new Term("field", "longer")), Occur.FILTER);
+        required.add(new TermQuery(new Term("field", "optional")), Occur.SHOULD);
+        required.add(new TermQuery(new Term("field", "excluded")), Occur.MUST_NOT);
+        assertThat(QueryTermsIndex.extractQueryTerms(required.build()).terms, containsInAnyOrder(new Term("field", "longer")));
+
+        // optional clauses only: any of them may match
+        BooleanQuery.Builder optional = new BooleanQuery.Builder();
+        optional.add(new TermQuery(new Term("field1", "a")), Occur.SHOULD);
+        optional.add(new TermQuery(new Term("field2", "b")), Occur.SHOULD);
+        assertThat(QueryTermsIndex.extractQueryTerms(optional.build()).terms,
+                containsInAnyOrder(new Term("field1", "a"), new Term("field2", "b")));
+        optional.add(new MatchAllDocsQuery(), Occur.SHOULD);
+        assertThat(QueryTermsIndex.extractQueryTerms(optional.build()), nullValue());
+
+        TermRangeQuery range = TermRangeQuery.newStringRange("field", "a", "c", true, true);
+        assertThat(QueryTermsIndex.extractQueryTerms(range).fields, containsInAnyOrder("field"));
+    }
+
+    public void testCandidates() throws IOException {
+        QueryTermsIndex index = new QueryTermsIndex();
+        index.add(new BytesRef("1"), new TermQuery(new Term("field", "brown")));
+        index.add(new BytesRef("2"), new TermQuery(new Term("field", "red")));
+        index.add(new BytesRef("3"), new PhraseQuery("field", "quick", "fox"));
+        index.add(new BytesRef("4"), TermRangeQuery.newStringRange("other_field", "a", "c", true, true));
+        index.add(new BytesRef("5"), new MatchAllDocsQuery());
+        assertThat(index.unsupportedQueries(), equalTo(1));
+
+        assertThat(candidates(index, "the quick brown fox"), equalTo(ids("1", "3", "5")));
+
+        // replacing a query replaces its terms
+        index.add(new BytesRef("2"), new TermQuery(new Term("field", "fox")));
+        assertThat(candidates(index, "the quick brown fox"), equalTo(ids("1", "2", "3", "5")));
+        index.add(new BytesRef("5"), new TermQuery(new Term("field", "lazy")));
+        assertThat(index.unsupportedQueries(), equalTo(0));
+        assertThat(candidates(index, "the quick brown fox"), equalTo(ids("1", "2", "3")));
+
+        index.remove(new BytesRef("1"));
+        assertThat(candidates(index, "the quick brown fox"), equalTo(ids("2", "3")));
+
+        MemoryIndex memoryIndex = new MemoryIndex();
+        memoryIndex.addField("other_field", "z", new WhitespaceAnalyzer());
+        assertThat(index.candidates(memoryIndex.createSearcher().getIndexReader()), equalTo(ids("4")));
+
+        index.clear();
+        assertThat(candidates(index, "the quick brown fox").isEmpty(), equalTo(true));
+    }
+
+    private static Set<BytesRef> candidates(QueryTermsIndex index, String text) throws IOException {
+        MemoryIndex memoryIndex = new MemoryIndex();
+        memoryIndex.addField("field", text, new WhitespaceAnalyzer());
+        IndexReader reader = memoryIndex.createSearcher().getIndexReader();
+        return index.candidates(reader);
+    }
+
+    private static Set<BytesRef> ids(String... ids) {
+        Set<BytesRef> set = new HashSet<>();
+        for (String id : Arrays.asList(ids)) {
+            set.add(new BytesRef(id));
+        }
+        return set;
+    }
+}
@@ -29,9 +29,13 @@ import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.SortedNumericDocValues;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.Explanation;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.Weight;
@@ -67,6 +71,8 @@ import org.junit.Before;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
 import static org.hamcrest.core.Is.is;
@@ -560,4 +566,129 @@ public class FunctionScoreTests extends ESTestCase {
         float score = topDocsWithWeights.scoreDocs[0].score;
         assertThat(score, equalTo(2.0f));
     }
-}
\ No newline at end of file
+
+    private static class BlockScoreFunctionStub extends ScoreFunction {
+        private final int seed;
+        private final boolean blocks;
+
+        BlockScoreFunctionStub(int seed, boolean blocks) {
+            super(CombineFunction.REPLACE);
+            this.seed = seed;
+            this.blocks = blocks;
+        }
+
+        @Override
+        public LeafScoreFunction getLeafScoreFunction(LeafReaderContext ctx) throws IOException {
+            return new LeafScoreFunction() {
+                int lastDoc = -1;
+
+                @Override
+                public double score(int docId, float subQueryScore) {
+                    return (docId * 31 + seed) % 17 / 4d + subQueryScore;
+                }
+
+                @Override
+                public boolean scoresBlocks() {
+                    return blocks;
+                }
+
+                @Override
+                public void score(int[] docIds, float[] subQueryScores, int count, double[] scores) {
+                    if (blocks == false) {
+                        super.score(docIds, subQueryScores, count, scores);
+                        return;
+                    }
+                    for (int i = 0; i < count; i++) {
+                        assertThat(docIds[i] > lastDoc, is(true));
+                        lastDoc = docIds[i];
+                        scores[i] = score(docIds[i], subQueryScores[i]);
+                    }
+                }
+
+                @Override
+                public Explanation explainScore(int docId, Explanation subQueryScore) throws IOException {
+                    return Explanation.match((float) score(docId, subQueryScore.getValue()), "a score for testing");
+                }
+            };
+        }
+
+        @Override
+        public boolean needsScores() {
+            return true;
+        }
+
+        @Override
+        protected boolean doEquals(ScoreFunction other) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks that scoring blocks of documents gives the same scores as scoring one document at a time.
+     */
+    public void testBlockScoring() throws IOException {
+        String[] words = new String[] {"a", "b", "c", "d"};
+        try (Directory dir = newDirectory();
+             IndexWriter w = new IndexWriter(dir, newIndexWriterConfig(new StandardAnalyzer()))) {
+            int numDocs = randomIntBetween(1, 1000);
+            for (int i = 0; i < numDocs; i++) {
+                StringBuilder text = new StringBuilder();
+                for (int j = randomIntBetween(1, 5); j > 0; j--) {
+                    text.append(randomFrom(words)).append(' ');
+                }
+                Document d = new Document();
+                d.add(new TextField(FIELD, text.toString(), Field.Store.NO));
+                w.addDocument(d);
+            }
+            try (DirectoryReader reader = DirectoryReader.open(w, true)) {
+                IndexSearcher searcher = newSearcher(reader);
+                for (int iter = 0; iter < 20; iter++) {
+                    Query subQuery = new TermQuery(new Term(FIELD, randomFrom(words)));
+                    Float minScore = randomBoolean() ? null : (float) randomDoubleBetween(0, 5, true);
+                    CombineFunction combineFunction = randomFrom(CombineFunction.values());
+                    int numFunctions = randomIntBetween(0, 3);
+                    FiltersFunctionScoreQuery.ScoreMode scoreMode = randomFrom(FiltersFunctionScoreQuery.ScoreMode.values());
+                    Query filter = randomBoolean() ? null : new TermQuery(new Term(FIELD, randomFrom(words)));
+                    int[] seeds = new int[Math.max(1, numFunctions)];
+                    Query[] functionFilters = new Query[numFunctions];
+                    boolean[] blocks = new boolean[numFunctions];
+                    for (int i = 0; i < seeds.length; i++) {
+                        seeds[i] = randomInt(100);
+                    }
+                    for (int i = 0; i < numFunctions; i++) {
+                        functionFilters[i] = new TermQuery(new Term(FIELD, randomFrom(words)));
+                        blocks[i] = randomBoolean();
+                    }
+
+                    Map<Integer, Float> expected = null;
+                    for (boolean blockScoring : new boolean[] {false, true}) {
+                        Query query;
+                        if (numFunctions == 0) {
+                            query = new FunctionScoreQuery(subQuery, new BlockScoreFunctionStub(seeds[0], blockScoring), minScore, combineFunction, Float.MAX_VALUE);
+                        } else {
+                            FiltersFunctionScoreQuery.FilterFunction[] filterFunctions = new FiltersFunctionScoreQuery.FilterFunction[numFunctions];
+                            for (int i = 0; i < numFunctions; i++) {
+                                filterFunctions[i] = new FiltersFunctionScoreQuery.FilterFunction(functionFilters[i],
+                                        new BlockScoreFunctionStub(seeds[i], blockScoring && blocks[i]));
+                            }
+                            query = new FiltersFunctionScoreQuery(subQuery, scoreMode, filterFunctions, Float.MAX_VALUE, minScore, combineFunction);
+                        }
+                        if (filter != null) {
+                            // documents are then found with advance
+                            query = new BooleanQuery.Builder().add(filter, Occur.FILTER).add(query, Occur.MUST).build();
+                        }
+                        Map<Integer, Float> scores = new HashMap<>();
+                        for (ScoreDoc scoreDoc : searcher.search(query, numDocs).scoreDocs) {
+                            scores.put(scoreDoc.doc, scoreDoc.score);
+                        }
+                        if (expected == null) {
+                            expected = scores;
+                        } else {
+                            assertEquals(expected, scores);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
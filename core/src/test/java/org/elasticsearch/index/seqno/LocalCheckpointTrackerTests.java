@@ -0,0 +1,107 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.seqno;
+
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+
+public class LocalCheckpointTrackerTests extends ESTestCase {
+
+    public void testEmpty() {
+        LocalCheckpointTracker tracker = new LocalCheckpointTracker(LocalCheckpointTracker.NO_OPS_PERFORMED, LocalCheckpointTracker.NO_OPS_PERFORMED);
+        assertThat(tracker.getCheckpoint(), equalTo(LocalCheckpointTracker.NO_OPS_PERFORMED));
+        assertThat(tracker.getMaxSeqNo(), equalTo(LocalCheckpointTracker.NO_OPS_PERFORMED));
+        assertThat(tracker.generateSeqNo(), equalTo(0L));
+    }
+
+    public void testInOrder() {
+        LocalCheckpointTracker tracker = new LocalCheckpointTracker(LocalCheckpointTracker.NO_OPS_PERFORMED, LocalCheckpointTracker.NO_OPS_PERFORMED);
+        for (int i = 0; i < 10; i++) {
+            long seqNo = tracker.generateSeqNo();
+            assertThat(seqNo, equalTo((long) i));
+            tracker.markSeqNoAsCompleted(seqNo);
+            assertThat(tracker.getCheckpoint(), equalTo(seqNo));
+        }
+        assertThat(tracker.getMaxSeqNo(), equalTo(9L));
+    }
+
+    public void testOutOfOrder() {
+        LocalCheckpointTracker tracker = new LocalCheckpointTracker(LocalCheckpointTracker.NO_OPS_PERFORMED, LocalCheckpointTracker.NO_OPS_PERFORMED);
+        int numOps = randomIntBetween(1, 200);
+        List<Long> seqNos = new ArrayList<>();
+        for (int i = 0; i < numOps; i++) {
+            seqNos.add(tracker.generateSeqNo());
+        }
+        Collections.shuffle(seqNos, random());
+        long expectedCheckpoint = LocalCheckpointTracker.NO_OPS_PERFORMED;
+        boolean[] completed = new boolean[numOps];
+        for (long seqNo : seqNos) {
+            tracker.markSeqNoAsCompleted(seqNo);
+            completed[(int) seqNo] = true;
+            while (expectedCheckpoint + 1 < numOps && completed[(int) (expectedCheckpoint + 1)]) {
+                expectedCheckpoint++;
+            }
+            assertThat(tracker.getCheckpoint(), equalTo(expectedCheckpoint));
+        }
+        assertThat(tracker.getCheckpoint(), equalTo(numOps - 1L));
+    }
+
+    public void testReplicaAdvancesMaxSeqNo() {
+        LocalCheckpointTracker tracker = new LocalCheckpointTracker(LocalCheckpointTracker.NO_OPS_PERFORMED, LocalCheckpointTracker.NO_OPS_PERFORMED);
+        tracker.markSeqNoAsCompleted(5);
+        assertThat(tracker.getCheckpoint(), equalTo(LocalCheckpointTracker.NO_OPS_PERFORMED));
+        assertThat(tracker.getMaxSeqNo(), equalTo(5L));
+        assertThat(tracker.generateSeqNo(), equalTo(6L));
+    }
+
+    public void testFastForward() {
+        LocalCheckpointTracker tracker = new LocalCheckpointTracker(LocalCheckpointTracker.NO_OPS_PERFORMED, LocalCheckpointTracker.NO_OPS_PERFORMED);
+        tracker.markSeqNoAsCompleted(3);
+        tracker.markSeqNoAsCompleted(6);
+        tracker.fastForward(4);
+        // 5 is still missing
+        assertThat(tracker.getCheckpoint(), equalTo(4L));
+        tracker.markSeqNoAsCompleted(5);
+        assertThat(tracker.getCheckpoint(), equalTo(6L));
+        // moving backwards is a noop
+        tracker.fastForward(2);
+        assertThat(tracker.getCheckpoint(), equalTo(6L));
+        tracker.fastForward(10);
+        assertThat(tracker.getCheckpoint(), equalTo(10L));
+        assertThat(tracker.getMaxSeqNo(), equalTo(10L));
+    }
+
+    public void testResumeFromCommit() {
+        LocalCheckpointTracker tracker = new LocalCheckpointTracker(7, 4);
+        assertThat(tracker.getCheckpoint(), equalTo(4L));
+        assertThat(tracker.generateSeqNo(), equalTo(8L));
+        try {
+            new LocalCheckpointTracker(3, 4);
+            fail("max seq no must not be below the checkpoint");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), equalTo("max seq no [3] must be greater or equal to the local checkpoint [4]"));
+        }
+    }
+}
@@ -88,6 +88,7 @@ import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BrokenBarrierException;
 import java.util.concurrent.CyclicBarrier;
@@ -876,6 +877,10 @@ public class IndexShardTests extends ESSingleNodeTestCase {
                 }
             }
 
+            @Override
+            public void resumeRestore(SnapshotId snapshotId, ShardId shardId, Map<String, BytesReference> detachedFiles) {
+            }
+
             @Override
             public IndexShardSnapshotStatus snapshotStatus(SnapshotId snapshotId, Version version, ShardId shardId) {
                 return null;
@@ -0,0 +1,56 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.index.snapshots.blobstore;
+
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.zip.CRC32;
+
+import static org.hamcrest.Matchers.equalTo;
+
+public class CRC32CombineTests extends ESTestCase {
+
+    public void testCombine() {
+        final byte[] bytes = new byte[randomIntBetween(0, 1 << 16)];
+        random().nextBytes(bytes);
+        final CRC32 expected = new CRC32();
+        expected.update(bytes, 0, bytes.length);
+
+        // split into random parts and combine their checksums in order
+        long combined = 0;
+        int offset = 0;
+        while (offset < bytes.length) {
+            final int length = randomIntBetween(1, bytes.length - offset);
+            final CRC32 part = new CRC32();
+            part.update(bytes, offset, length);
+            combined = CRC32Combine.combine(combined, part.getValue(), length);
+            offset += length;
+        }
+        assertThat(combined, equalTo(expected.getValue()));
+    }
+
+    public void testCombineWithEmpty() {
+        final byte[] bytes = new byte[randomIntBetween(1, 1024)];
+        random().nextBytes(bytes);
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        assertThat(CRC32Combine.combine(crc.getValue(), 0, 0), equalTo(crc.getValue()));
+        assertThat(CRC32Combine.combine(0, crc.getValue(), bytes.length), equalTo(crc.getValue()));
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.index.snapshots.blobstore;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.blobstore.BlobContainer;
+import org.elasticsearch.common.blobstore.BlobPath;
+import org.elasticsearch.common.blobstore.fs.FsBlobStore;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.index.snapshots.blobstore.BlobStoreIndexShardSnapshot.FileInfo;
+import org.elasticsearch.index.store.StoreFileMetaData;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+
+public class IncrementalShardSnapshotsFormatTests extends ESTestCase {
+
+    public void testChain() throws IOException {
+        final FsBlobStore store = new FsBlobStore(Settings.EMPTY, createTempDir());
+        final BlobContainer container = store.blobContainer(BlobPath.cleanPath());
+        final FileInfo shared = fileInfo("__1", "_0.cfs", null);
+        final FileInfo first = fileInfo("__2", "segments_1", new ByteSizeValue(randomIntBetween(1, 100)));
+        final FileInfo second = fileInfo("__3", "segments_2", null);
+        final SnapshotFiles snap1 = new SnapshotFiles("snap1", Arrays.asList(shared, first));
+        final SnapshotFiles snap2 = new SnapshotFiles("snap2", Arrays.asList(shared, second));
+
+        final List<SnapshotFiles> full = Collections.singletonList(snap1);
+        IncrementalShardSnapshotsFormat.write(IncrementalShardSnapshotsFormat.Generation.full(full, 2, Collections.emptyList()), Collections.emptySet(),
+                container, "index-0.bin");
+        // snap2 is added and snap1 removed in a single generation
+        final List<SnapshotFiles> next = Collections.singletonList(snap2);
+        IncrementalShardSnapshotsFormat.write(IncrementalShardSnapshotsFormat.Generation.diff(full, next, 3, Collections.singletonList(first.name())),
+                new HashSet<>(Arrays.asList(shared.name(), first.name())), container, "index-1.bin");
+
+        final byte[] fullBytes = IncrementalShardSnapshotsFormat.readBytes(container, "index-0.bin");
+        final byte[] diffBytes = IncrementalShardSnapshotsFormat.readBytes(container, "index-1.bin");
+        assertTrue(IncrementalShardSnapshotsFormat.isFull(fullBytes, "index-0.bin"));
+        assertFalse(IncrementalShardSnapshotsFormat.isFull(diffBytes, "index-1.bin"));
+        // the shared file is only referenced by the diff
+        assertThat(diffBytes.length, lessThan(fullBytes.length));
+
+        final Map<String, FileInfo> knownFiles = new HashMap<>();
+        List<SnapshotFiles> snapshots = new ArrayList<>();
+        IncrementalShardSnapshotsFormat.Generation generation = IncrementalShardSnapshotsFormat.read(fullBytes, "index-0.bin", knownFiles);
+        snapshots = generation.applyTo(snapshots);
+        assertThat(generation.dataGeneration(), equalTo(2L));
+        assertThat(generation.pendingDeletes(), empty());
+        assertSnapshots(snapshots, full);
+
+        generation = IncrementalShardSnapshotsFormat.read(diffBytes, "index-1.bin", knownFiles);
+        snapshots = generation.applyTo(snapshots);
+        assertThat(generation.dataGeneration(), equalTo(3L));
+        // the blob of snap1's own file is deleted after the generation was written
+        assertThat(generation.pendingDeletes(), contains(first.name()));
+        assertSnapshots(snapshots, next);
+    }
+
+    public void testUnknownFileReference() throws IOException {
+        final FsBlobStore store = new FsBlobStore(Settings.EMPTY, createTempDir());
+        final BlobContainer container = store.blobContainer(BlobPath.cleanPath());
+        final FileInfo file = fileInfo("__1", "_0.cfs", null);
+        final List<SnapshotFiles> snapshots = Collections.singletonList(new SnapshotFiles("snap", Collections.singletonList(file)));
+        IncrementalShardSnapshotsFormat.write(IncrementalShardSnapshotsFormat.Generation.diff(Collections.emptyList(), snapshots, 1, Collections.emptyList()),
+                Collections.singleton(file.name()), container, "index-0.bin");
+        final byte[] bytes = IncrementalShardSnapshotsFormat.readBytes(container, "index-0.bin");
+        try {
+            IncrementalShardSnapshotsFormat.read(bytes, "index-0.bin", new HashMap<>());
+            fail("the referenced file is not known");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("references unknown file [__1]"));
+        }
+    }
+
+    private static FileInfo fileInfo(String name, String physicalName, ByteSizeValue partSize) {
+        final BytesRef hash = new BytesRef(randomAsciiOfLength(randomIntBetween(0, 10)));
+        final StoreFileMetaData metaData = new StoreFileMetaData(physicalName, randomIntBetween(0, 1000),
+                randomAsciiOfLength(8), randomBoolean() ? null : org.apache.lucene.util.Version.LATEST, hash);
+        return new FileInfo(name, metaData, partSize);
+    }
+
+    private static void assertSnapshots(List<SnapshotFiles> actual, List<SnapshotFiles> expected) {
+        assertThat(actual.size(), equalTo(expected.size()));
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i).snapshot(), equalTo(expected.get(i).snapshot()));
+            final List<FileInfo> actualFiles = actual.get(i).indexFiles();
+            final List<FileInfo> expectedFiles = expected.get(i).indexFiles();
+            assertThat(actualFiles.size(), equalTo(expectedFiles.size()));
+            for (int j = 0; j < expectedFiles.size(); j++) {
+                assertTrue(actualFiles.get(j).isSame(expectedFiles.get(j)));
+                assertThat(actualFiles.get(j).name(), equalTo(expectedFiles.get(j).name()));
+            }
+        }
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.store;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.Version;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+@LuceneTestCase.SuppressFileSystems({"ExtrasFS", "WindowsFS"}) // cache files are moved and deleted while they are open
+public class OnDemandDirectoryTests extends ESTestCase {
+
+    public void testReadRemoteFile() throws IOException {
+        final byte[] content = randomFileContent();
+        final CountingRemoteFile remoteFile = new CountingRemoteFile("_0.cfs", content, checksum(content));
+        final Path path = createTempDir();
+        try (OnDemandDirectory directory = new OnDemandDirectory(new NIOFSDirectory(path))) {
+            assertTrue(directory.supportsRemoteFiles());
+            directory.addRemoteFile("_0.cfs", remoteFile);
+            assertTrue(directory.isRemote("_0.cfs"));
+            assertThat(Arrays.asList(directory.listAll()), equalTo(Arrays.asList("_0.cfs")));
+            assertThat(directory.fileLength("_0.cfs"), equalTo((long) content.length));
+
+            try (IndexInput input = directory.openInput("_0.cfs", IOContext.DEFAULT)) {
+                assertThat(input.length(), equalTo((long) content.length));
+                for (int i = 0; i < 20; i++) {
+                    final int offset = randomIntBetween(0, content.length - 1);
+                    final int length = randomIntBetween(0, Math.min(content.length - offset, 4096));
+                    final byte[] bytes = new byte[length];
+                    input.seek(offset);
+                    input.readBytes(bytes, 0, length);
+                    assertArrayEquals(Arrays.copyOfRange(content, offset, offset + length), bytes);
+                }
+                final int sliceOffset = randomIntBetween(0, content.length - 1);
+                final IndexInput slice = input.slice("slice", sliceOffset, content.length - sliceOffset);
+                assertThat(slice.readByte(), equalTo(content[sliceOffset]));
+            }
+            // every block is fetched at most once
+            final int numBlocks = (content.length + OnDemandDirectory.BLOCK_SIZE - 1) / OnDemandDirectory.BLOCK_SIZE;
+            assertThat(remoteFile.fetches.get(), lessThanOrEqualTo(numBlocks));
+
+            directory.hydrate("_0.cfs", Function.identity());
+            assertFalse(directory.isRemote("_0.cfs"));
+            assertThat(Arrays.asList(directory.listAll()), equalTo(Arrays.asList("_0.cfs")));
+            assertArrayEquals(content, Files.readAllBytes(path.resolve("_0.cfs")));
+            assertFalse(Files.exists(path.resolve("_0.cfs" + OnDemandDirectory.CACHE_FILE_SUFFIX)));
+            final int fetches = remoteFile.fetches.get();
+            try (IndexInput input = directory.openInput("_0.cfs", IOContext.DEFAULT)) {
+                CodecUtil.checksumEntireFile(input);
+            }
+            assertThat(remoteFile.fetches.get(), equalTo(fetches));
+        }
+    }
+
+    public void testHydrateDetectsCorruption() throws IOException {
+        final byte[] content = randomFileContent();
+        final String checksum = checksum(content);
+        final int corrupted = randomIntBetween(0, content.length - 9);
+        content[corrupted] = (byte) ~content[corrupted];
+        final Path path = createTempDir();
+        try (OnDemandDirectory directory = new OnDemandDirectory(new NIOFSDirectory(path))) {
+            directory.addRemoteFile("_0.cfs", new CountingRemoteFile("_0.cfs", content, checksum));
+            try {
+                directory.hydrate("_0.cfs", Function.identity());
+                fail("expected a corruption");
+            } catch (CorruptIndexException e) {
+                // expected
+            }
+            assertTrue(directory.isRemote("_0.cfs"));
+            assertFalse(Files.exists(path.resolve("_0.cfs")));
+        }
+    }
+
+    public void testDeleteRemoteFile() throws IOException {
+        final byte[] content = randomFileContent();
+        final Path path = createTempDir();
+        try (OnDemandDirectory directory = new OnDemandDirectory(new NIOFSDirectory(path))) {
+            directory.addRemoteFile("_0.cfs", new CountingRemoteFile("_0.cfs", content, checksum(content)));
+            final IndexInput input = directory.openInput("_0.cfs", IOContext.DEFAULT);
+            directory.deleteFile("_0.cfs");
+            assertThat(directory.listAll().length, equalTo(0));
+            assertFalse(Files.exists(path.resolve("_0.cfs" + OnDemandDirectory.CACHE_FILE_SUFFIX)));
+            // open inputs can still be read
+            input.seek(content.length - 1);
+            assertThat(input.readByte(), equalTo(content[content.length - 1]));
+            input.close();
+            // hydrating a deleted file is a noop
+            directory.hydrate("_0.cfs", Function.identity());
+            assertFalse(Files.exists(path.resolve("_0.cfs")));
+        }
+    }
+
+    public void testCacheFileIsClosedWithLastInput() throws IOException {
+        final byte[] content = randomFileContent();
+        final Path path = createTempDir();
+        try (OnDemandDirectory directory = new OnDemandDirectory(new NIOFSDirectory(path))) {
+            directory.addRemoteFile("_0.cfs", new CountingRemoteFile("_0.cfs", content, checksum(content)));
+            final IndexInput input = directory.openInput("_0.cfs", IOContext.DEFAULT);
+            final IndexInput clone = input.clone();
+            directory.deleteFile("_0.cfs");
+            // closing a clone doesn't release the cache file
+            clone.close();
+            clone.seek(content.length - 1);
+            assertThat(clone.readByte(), equalTo(content[content.length - 1]));
+            // closing the last input does
+            input.close();
+            try {
+                clone.seek(0);
+                clone.readByte();
+                fail("the cache file should be closed");
+            } catch (ClosedChannelException e) {
+                // expected
+            }
+        }
+    }
+
+    public void testReadsDontWaitForFetchesOfOtherBlocks() throws Exception {
+        final byte[] content = randomFileContent();
+        final CountDownLatch fetchStarted = new CountDownLatch(1);
+        final CountDownLatch releaseFetch = new CountDownLatch(1);
+        final OnDemandDirectory.RemoteFile remoteFile = new CountingRemoteFile("_0.cfs", content, checksum(content)) {
+            @Override
+            public InputStream openStream(long position, long length) throws IOException {
+                if (position == 0) {
+                    fetchStarted.countDown();
+                    try {
+                        releaseFetch.await();
+                    } catch (InterruptedException e) {
+                        throw new AssertionError(e);
+                    }
+                }
+                return super.openStream(position, length);
+            }
+        };
+        final Path path = createTempDir();
+        try (OnDemandDirectory directory = new OnDemandDirectory(new NIOFSDirectory(path))) {
+            directory.addRemoteFile("_0.cfs", remoteFile);
+            final Thread hydrate = new Thread(() -> {
+                try {
+                    directory.hydrate("_0.cfs", Function.identity());
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+            });
+            hydrate.start();
+            fetchStarted.await();
+            // the first block is being fetched, the last one can still be read
+            try (IndexInput input = directory.openInput("_0.cfs", IOContext.DEFAULT)) {
+                input.seek(content.length - 1);
+                assertThat(input.readByte(), equalTo(content[content.length - 1]));
+            }
+            releaseFetch.countDown();
+            hydrate.join();
+            assertFalse(directory.isRemote("_0.cfs"));
+            assertArrayEquals(content, Files.readAllBytes(path.resolve("_0.cfs")));
+        }
+    }
+
+    public void testListAllWhileHydrating() throws Exception {
+        final byte[] content = randomFileContent();
+        for (int i = 0; i < 10; i++) {
+            final Path path = createTempDir();
+            try (OnDemandDirectory directory = new OnDemandDirectory(new NIOFSDirectory(path))) {
+                directory.addRemoteFile("_0.cfs", new CountingRemoteFile("_0.cfs", content, checksum(content)));
+                final Thread hydrate = new Thread(() -> {
+                    try {
+                        directory.hydrate("_0.cfs", Function.identity());
+                    } catch (IOException e) {
+                        throw new AssertionError(e);
+                    }
+                });
+                hydrate.start();
+                while (hydrate.isAlive()) {
+                    assertThat(Arrays.asList(directory.listAll()), equalTo(Collections.singletonList("_0.cfs")));
+                }
+                hydrate.join();
+                assertFalse(directory.isRemote("_0.cfs"));
+                assertThat(Arrays.asList(directory.listAll()), equalTo(Collections.singletonList("_0.cfs")));
+            }
+        }
+    }
+
+    public void testRemoteFilesAreRegisteredAgainAfterRestart() throws IOException {
+        final byte[] content = randomFileContent();
+        final CountingRemoteFile remoteFile = new CountingRemoteFile("_0.cfs", content, checksum(content));
+        final Path path = createTempDir();
+        try (OnDemandDirectory directory = new OnDemandDirectory(new NIOFSDirectory(path))) {
+            directory.addRemoteFile("_0.cfs", remoteFile);
+            try (IndexInput input = directory.openInput("_0.cfs", IOContext.DEFAULT)) {
+                input.seek(content.length - 1);
+                assertThat(input.readByte(), equalTo(content[content.length - 1]));
+            }
+        }
+        try (OnDemandDirectory directory = new OnDemandDirectory(new NIOFSDirectory(path))) {
+            assertTrue(directory.isRemote("_0.cfs"));
+            assertThat(Arrays.asList(directory.listAll()), equalTo(Arrays.asList("_0.cfs")));
+            assertThat(directory.fileLength("_0.cfs"), equalTo((long) content.length));
+            assertThat(directory.detachedFiles().keySet(), equalTo(Collections.singleton("_0.cfs")));
+            assertThat(directory.detachedFiles().get("_0.cfs"), equalTo(remoteFile.source()));
+            try (IndexInput input = directory.openInput("_0.cfs", IOContext.DEFAULT)) {
+                input.readByte();
+                fail("detached files can't be read");
+            } catch (IOException e) {
+                assertThat(e.getMessage(), equalTo("remote file [_0.cfs] is not attached to its remote content"));
+            }
+
+            directory.attachRemoteFile("_0.cfs", remoteFile);
+            assertThat(directory.detachedFiles().size(), equalTo(0));
+            try (IndexInput input = directory.openInput("_0.cfs", IOContext.DEFAULT)) {
+                input.seek(content.length - 1);
+                assertThat(input.readByte(), equalTo(content[content.length - 1]));
+            }
+            directory.hydrate("_0.cfs", Function.identity());
+            assertFalse(directory.isRemote("_0.cfs"));
+            assertArrayEquals(content, Files.readAllBytes(path.resolve("_0.cfs")));
+            assertFalse(Files.exists(path.resolve("_0.cfs" + OnDemandDirectory.SOURCE_FILE_SUFFIX)));
+        }
+        try (OnDemandDirectory directory = new OnDemandDirectory(new NIOFSDirectory(path))) {
+            assertFalse(directory.isRemote("_0.cfs"));
+            assertThat(Arrays.asList(directory.listAll()), equalTo(Arrays.asList("_0.cfs")));
+        }
+    }
+
+    public void testDeletedRemoteFilesAreNotRegisteredAgain() throws IOException {
+        final byte[] content = randomFileContent();
+        final Path path = createTempDir();
+        try (OnDemandDirectory directory = new OnDemandDirectory(new NIOFSDirectory(path))) {
+            directory.addRemoteFile("_0.cfs", new CountingRemoteFile("_0.cfs", content, checksum(content)));
+            directory.deleteFile("_0.cfs");
+            assertFalse(Files.exists(path.resolve("_0.cfs" + OnDemandDirectory.SOURCE_FILE_SUFFIX)));
+        }
+        try (OnDemandDirectory directory = new OnDemandDirectory(new NIOFSDirectory(path))) {
+            assertThat(directory.listAll().length, equalTo(0));
+            assertThat(directory.detachedFiles().size(), equalTo(0));
+        }
+    }
+
+    public void testLeftoverCacheFilesAreDeleted() throws IOException {
+        final Path path = createTempDir();
+        Files.write(path.resolve("_0.cfs" + OnDemandDirectory.CACHE_FILE_SUFFIX), new byte[] {1, 2, 3});
+        // the node stopped while the source of the file was written
+        Files.write(path.resolve("_1.cfs" + OnDemandDirectory.SOURCE_FILE_SUFFIX), new byte[] {1, 2, 3});
+        Files.write(path.resolve("_1.cfs" + OnDemandDirectory.CACHE_FILE_SUFFIX), new byte[] {1, 2, 3});
+        try (OnDemandDirectory directory = new OnDemandDirectory(new NIOFSDirectory(path))) {
+            assertThat(directory.listAll().length, equalTo(0));
+            assertThat(directory.detachedFiles().size(), equalTo(0));
+        }
+        assertFalse(Files.exists(path.resolve("_0.cfs" + OnDemandDirectory.CACHE_FILE_SUFFIX)));
+        assertFalse(Files.exists(path.resolve("_1.cfs" + OnDemandDirectory.SOURCE_FILE_SUFFIX)));
+        assertFalse(Files.exists(path.resolve("_1.cfs" + OnDemandDirectory.CACHE_FILE_SUFFIX)));
+    }
+
+    public void testRequiresFileSystemDirectory() throws IOException {
+        try (OnDemandDirectory directory = new OnDemandDirectory(new RAMDirectory())) {
+            assertFalse(directory.supportsRemoteFiles());
+            try {
+                directory.addRemoteFile("_0.cfs", new CountingRemoteFile("_0.cfs", new byte[0], null));
+                fail("remote files require a file system directory");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        }
+    }
+
+    private static byte[] randomFileContent() throws IOException {
+        final byte[] bytes = new byte[randomIntBetween(OnDemandDirectory.BLOCK_SIZE, 3 * OnDemandDirectory.BLOCK_SIZE)];
+        random().nextBytes(bytes);
+        try (RAMDirectory directory = new RAMDirectory()) {
+            try (IndexOutput output = directory.createOutput("file", IOContext.DEFAULT)) {
+                CodecUtil.writeHeader(output, "on_demand_test", 0);
+                output.writeBytes(bytes, bytes.length);
+                CodecUtil.writeFooter(output);
+            }
+            final byte[] content = new byte[(int) directory.fileLength("file")];
+            try (IndexInput input = directory.openInput("file", IOContext.DEFAULT)) {
+                input.readBytes(content, 0, content.length);
+            }
+            return content;
+        }
+    }
+
+    private static String checksum(byte[] content) throws IOException {
+        try (RAMDirectory directory = new RAMDirectory()) {
+            try (IndexOutput output = directory.createOutput("file", IOContext.DEFAULT)) {
+                output.writeBytes(content, content.length);
+            }
+            try (IndexInput input = directory.openInput("file", IOContext.DEFAULT)) {
+                return Store.digestToString(CodecUtil.retrieveChecksum(input));
+            }
+        }
+    }
+
+    private static class CountingRemoteFile implements OnDemandDirectory.RemoteFile {
+
+        private final StoreFileMetaData metadata;
+        private final BytesReference source;
+        private final byte[] content;
+        private final AtomicInteger fetches = new AtomicInteger();
+
+        CountingRemoteFile(String name, byte[] content, String checksum) {
+            this.metadata = new StoreFileMetaData(name, content.length, checksum, Version.LATEST);
+            this.source = new BytesArray("remote/" + name);
+            this.content = content;
+        }
+
+        @Override
+        public StoreFileMetaData metadata() {
+            return metadata;
+        }
+
+        @Override
+        public InputStream openStream(long position, long length) throws IOException {
+            fetches.incrementAndGet();
+            return new ByteArrayInputStream(content, (int) position, (int) length);
+        }
+
+        @Override
+        public BytesReference source() {
+            return source;
+        }
+    }
+}
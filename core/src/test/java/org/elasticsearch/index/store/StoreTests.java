@@ -1331,6 +1331,46 @@ public class StoreTests extends ESTestCase {
         store.close();
     }
 
+    public void testReadLastCommitId() throws IOException {
+        IndexWriterConfig iwc = newIndexWriterConfig();
+        Path tempDir = createTempDir();
+        final BaseDirectoryWrapper dir = newFSDirectory(tempDir);
+        assertNull(Store.readLastCommitId(tempDir));
+        IndexWriter writer = new IndexWriter(dir, iwc);
+        Document doc = new Document();
+        doc.add(new StringField("id", "1", Field.Store.NO));
+        writer.addDocument(doc);
+        writer.commit();
+        final String commitId = Store.readLastCommitId(tempDir);
+        assertNotNull(commitId);
+        assertEquals(commitId, Store.readLastCommitId(tempDir));
+        assertTrue(commitId.startsWith(Store.readMetadataSnapshot(tempDir, logger).getSegmentsFile().name() + "/"));
+
+        doc = new Document();
+        doc.add(new StringField("id", "2", Field.Store.NO));
+        writer.addDocument(doc);
+        writer.commit();
+        writer.close();
+        assertNotEquals(commitId, Store.readLastCommitId(tempDir));
+
+        final ShardId shardId = new ShardId(new Index("index"), 1);
+        DirectoryService directoryService = new DirectoryService(shardId, INDEX_SETTINGS) {
+            @Override
+            public long throttleTimeInNanos() {
+                return 0;
+            }
+
+            @Override
+            public Directory newDirectory() throws IOException {
+                return dir;
+            }
+        };
+        Store store = new Store(shardId, INDEX_SETTINGS, directoryService, new DummyShardLock(shardId));
+        store.markStoreCorrupted(new CorruptIndexException("foo", "bar"));
+        assertNull(Store.readLastCommitId(tempDir));
+        store.close();
+    }
+
     public void testDeserializeCorruptionException() throws IOException {
         final ShardId shardId = new ShardId(new Index("index"), 1);
         final Directory dir = new RAMDirectory(); // I use ram dir to prevent that virusscanner being a PITA
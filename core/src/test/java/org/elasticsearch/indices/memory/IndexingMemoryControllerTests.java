@@ -44,6 +44,9 @@ public class IndexingMemoryControllerTests extends ESSingleNodeTestCase {
 
         final Map<IndexShard, Long> lastIndexTimeNanos = new HashMap<>();
         final Set<IndexShard> activeShards = new HashSet<>();
+        final Map<IndexShard, Long> indexedBytes = new HashMap<>();
+        final Map<IndexShard, Long> indexBufferRAMBytesUsed = new HashMap<>();
+        final Set<IndexShard> writtenIndexingBuffers = new HashSet<>();
 
         long currentTimeSec = TimeValue.timeValueNanos(System.nanoTime()).seconds();
 
@@ -108,6 +111,24 @@ public class IndexingMemoryControllerTests extends ESSingleNodeTestCase {
             }
         }
 
+        @Override
+        protected long getAndResetIndexedBytes(IndexShard shard) {
+            Long bytes = indexedBytes.remove(shard);
+            return bytes == null ? 0 : bytes;
+        }
+
+        @Override
+        protected long getIndexBufferRAMBytesUsed(IndexShard shard) {
+            Long bytes = indexBufferRAMBytesUsed.get(shard);
+            return bytes == null ? 0 : bytes;
+        }
+
+        @Override
+        protected void writeIndexingBufferAsync(IndexShard shard) {
+            writtenIndexingBuffers.add(shard);
+            indexBufferRAMBytesUsed.remove(shard);
+        }
+
         public void incrementTimeSec(int sec) {
             currentTimeSec += sec;
         }
@@ -207,6 +228,67 @@ public class IndexingMemoryControllerTests extends ESSingleNodeTestCase {
         controller.assertBuffers(shard1, new ByteSizeValue(10, ByteSizeUnit.MB), new ByteSizeValue(64, ByteSizeUnit.KB));
     }
 
+    public void testBuffersFollowWriteRate() {
+        createIndex("test", Settings.builder().put(SETTING_NUMBER_OF_SHARDS, 3).put(SETTING_NUMBER_OF_REPLICAS, 0).build());
+        IndicesService indicesService = getInstanceFromNode(IndicesService.class);
+        IndexService test = indicesService.indexService("test");
+
+        MockController controller = new MockController(Settings.builder()
+            .put(IndexingMemoryController.INDEX_BUFFER_SIZE_SETTING, "40mb")
+            .put(IndexingMemoryController.TRANSLOG_BUFFER_SIZE_SETTING, "100kb")
+            .put(IndexingMemoryController.MIN_SHARD_INDEX_BUFFER_SIZE_SETTING, "1mb")
+            .put(IndexingMemoryController.MIN_SHARD_TRANSLOG_BUFFER_SIZE_SETTING, "1kb").build());
+
+        IndexShard shard0 = test.getShard(0);
+        IndexShard shard1 = test.getShard(1);
+        IndexShard shard2 = test.getShard(2);
+        controller.simulateIndexing(shard0);
+        controller.simulateIndexing(shard1);
+        controller.simulateIndexing(shard2);
+
+        // shard0 is hot, shard1 is warm and shard2 only saw a trickle of writes
+        controller.indexedBytes.put(shard0, 30L * 1024 * 1024);
+        controller.indexedBytes.put(shard1, 9L * 1024 * 1024);
+        controller.indexedBytes.put(shard2, 1L * 1024 * 1024);
+        controller.forceCheck();
+        controller.assertBuffers(shard0, new ByteSizeValue(30, ByteSizeUnit.MB), new ByteSizeValue(64, ByteSizeUnit.KB)); // translog is maxed at 64K
+        controller.assertBuffers(shard1, new ByteSizeValue(9, ByteSizeUnit.MB), new ByteSizeValue(23040));
+        controller.assertBuffers(shard2, new ByteSizeValue(1, ByteSizeUnit.MB), new ByteSizeValue(2560));
+
+        // no writes sampled since the last check: fall back to an even split
+        controller.forceCheck();
+        controller.assertBuffers(shard0, new ByteSizeValue(40L * 1024 * 1024 / 3), new ByteSizeValue(100L * 1024 / 3));
+        controller.assertBuffers(shard2, new ByteSizeValue(40L * 1024 * 1024 / 3), new ByteSizeValue(100L * 1024 / 3));
+    }
+
+    public void testWritesLargestIndexingBuffersFirst() {
+        createIndex("test", Settings.builder().put(SETTING_NUMBER_OF_SHARDS, 3).put(SETTING_NUMBER_OF_REPLICAS, 0).build());
+        IndicesService indicesService = getInstanceFromNode(IndicesService.class);
+        IndexService test = indicesService.indexService("test");
+
+        MockController controller = new MockController(Settings.builder()
+            .put(IndexingMemoryController.INDEX_BUFFER_SIZE_SETTING, "10mb").build());
+
+        IndexShard shard0 = test.getShard(0);
+        IndexShard shard1 = test.getShard(1);
+        IndexShard shard2 = test.getShard(2);
+        controller.simulateIndexing(shard0);
+        controller.simulateIndexing(shard1);
+        controller.simulateIndexing(shard2);
+
+        // within budget: nothing is written
+        controller.indexBufferRAMBytesUsed.put(shard0, 2L * 1024 * 1024);
+        controller.indexBufferRAMBytesUsed.put(shard1, 6L * 1024 * 1024);
+        controller.indexBufferRAMBytesUsed.put(shard2, 1L * 1024 * 1024);
+        controller.forceCheck();
+        assertTrue(controller.writtenIndexingBuffers.isEmpty());
+
+        // over budget: only the largest buffer needs to be written to get back under
+        controller.indexBufferRAMBytesUsed.put(shard0, 4L * 1024 * 1024);
+        controller.forceCheck();
+        assertThat(controller.writtenIndexingBuffers, equalTo(Collections.singleton(shard1)));
+    }
+
     public void testMinShardBufferSizes() {
         MockController controller = new MockController(Settings.builder()
             .put(IndexingMemoryController.INDEX_BUFFER_SIZE_SETTING, "10mb")
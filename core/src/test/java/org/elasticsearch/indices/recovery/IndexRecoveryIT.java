@@ -19,6 +19,7 @@
 
 package org.elasticsearch.indices.recovery;
 
+import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
 import org.elasticsearch.action.admin.cluster.node.stats.NodeStats;
 import org.elasticsearch.action.admin.cluster.node.stats.NodesStatsResponse;
@@ -32,6 +33,8 @@ import org.elasticsearch.action.index.IndexRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.cluster.routing.UnassignedInfo;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.cluster.routing.allocation.command.MoveAllocationCommand;
 import org.elasticsearch.cluster.routing.allocation.decider.FilterAllocationDecider;
@@ -39,6 +42,7 @@ import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.discovery.DiscoveryService;
+import org.elasticsearch.index.IndexService;
 import org.elasticsearch.index.recovery.RecoveryStats;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.store.Store;
@@ -73,6 +77,7 @@ import static org.elasticsearch.common.settings.Settings.settingsBuilder;
 import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
 import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertHitCount;
 import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
@@ -243,6 +248,80 @@ public class IndexRecoveryIT extends ESIntegTestCase {
         validateIndexRecoveryState(nodeBRecoveryState.getIndex());
     }
 
+    public void testReplicaRecoveryReplaysMissingOperations() throws Exception {
+        logger.info("--> start nodes A and B");
+        internalCluster().startNode();
+        internalCluster().startNode();
+
+        assertAcked(prepareCreate(INDEX_NAME, 2, settingsBuilder().put("number_of_shards", 1).put("number_of_replicas", 1)
+                .put(UnassignedInfo.INDEX_DELAYED_NODE_LEFT_TIMEOUT_SETTING, "0"))
+                .addMapping(INDEX_TYPE, "immense", "type=string,index=not_analyzed"));
+        ensureGreen();
+
+        logger.info("--> indexing sample data");
+        int numDocs = between(10, 100);
+        for (int i = 0; i < numDocs; i++) {
+            client().prepareIndex(INDEX_NAME, INDEX_TYPE, Integer.toString(i)).setSource("foo", i).get();
+        }
+        // a primary operation that fails in the index writer must not leave a gap in the sequence numbers of the replica
+        try {
+            client().prepareIndex(INDEX_NAME, INDEX_TYPE, "immense").setSource("immense", randomAsciiOfLength(40000)).get();
+            fail("immense terms can't be indexed");
+        } catch (Exception e) {
+            assertThat(ExceptionsHelper.detailedMessage(e), containsString("immense term"));
+        }
+        flush(INDEX_NAME);
+
+        final String replicaNode = internalCluster().clusterService().state().nodes()
+                .get(findShardCopy(INDEX_NAME, false).currentNodeId()).getName();
+        final int numMissingDocs = between(1, 50);
+        logger.info("--> restart replica node {} and index {} docs in the meantime", replicaNode, numMissingDocs);
+        internalCluster().restartNode(replicaNode, new InternalTestCluster.RestartCallback() {
+            @Override
+            public Settings onNodeStopped(String nodeName) throws Exception {
+                for (int i = 0; i < numMissingDocs; i++) {
+                    client().prepareIndex(INDEX_NAME, INDEX_TYPE, "missing-" + i).setSource("foo", i).get();
+                }
+                return super.onNodeStopped(nodeName);
+            }
+        });
+        ensureGreen();
+
+        logger.info("--> check that the replica only replayed the missing operations");
+        RecoveryResponse response = client().admin().indices().prepareRecoveries(INDEX_NAME).get();
+        List<RecoveryState> recoveryStates = findRecoveriesForTargetNode(replicaNode, response.shardRecoveryStates().get(INDEX_NAME));
+        assertThat(recoveryStates.size(), equalTo(1));
+        RecoveryState recoveryState = recoveryStates.get(0);
+        assertThat(recoveryState.getType(), equalTo(Type.REPLICA));
+        assertThat(recoveryState.getIndex().totalFileCount(), equalTo(0));
+        assertThat(recoveryState.getTranslog().recoveredOperations(), equalTo(numMissingDocs));
+
+        long[] localCheckpoints = new long[2];
+        int copies = 0;
+        for (IndicesService indicesService : internalCluster().getInstances(IndicesService.class)) {
+            IndexService indexService = indicesService.indexService(INDEX_NAME);
+            if (indexService != null) {
+                localCheckpoints[copies++] = indexService.getShard(0).getLocalCheckpoint();
+            }
+        }
+        assertThat(copies, equalTo(2));
+        assertThat(localCheckpoints[0], equalTo((long) numDocs + numMissingDocs - 1));
+        assertThat(localCheckpoints[1], equalTo(localCheckpoints[0]));
+
+        client().admin().indices().prepareRefresh(INDEX_NAME).get();
+        assertHitCount(client().prepareSearch(INDEX_NAME).setPreference("_only_node:" + internalCluster().clusterService(replicaNode).localNode().id())
+                .setSize(0).get(), numDocs + numMissingDocs);
+    }
+
+    private ShardRouting findShardCopy(String index, boolean primary) {
+        for (ShardRouting shardRouting : internalCluster().clusterService().state().routingTable().index(index).shard(0)) {
+            if (shardRouting.primary() == primary) {
+                return shardRouting;
+            }
+        }
+        throw new IllegalStateException("no " + (primary ? "primary" : "replica") + " copy of [" + index + "]");
+    }
+
     @TestLogging("indices.recovery:TRACE")
     public void testRerouteRecovery() throws Exception {
         logger.info("--> start node A");
@@ -254,6 +254,8 @@ public class RecoveryStateTests extends ESTestCase {
         long recoveredBytes = 0;
         long sourceThrottling = Index.UNKNOWN;
         long targetThrottling = Index.UNKNOWN;
+        long sourceStallTime = 0;
+        long sourceStalls = 0;
         while (bytesToRecover > 0) {
             File file = randomFrom(filesToRecover);
             final long toRecover = Math.min(bytesToRecover, randomIntBetween(1, (int) (file.length() - file.recovered())));
@@ -273,6 +275,12 @@ public class RecoveryStateTests extends ESTestCase {
                 targetThrottling += throttledOnTarget;
             }
             index.addTargetThrottling(throttledOnTarget);
+            if (rarely()) {
+                final long stalledOnSource = randomIntBetween(1, 200);
+                index.addSourceStall(stalledOnSource);
+                sourceStallTime += stalledOnSource;
+                sourceStalls++;
+            }
             bytesToRecover -= toRecover;
             recoveredBytes += toRecover;
             if (file.reused() || file.fullyRecovered()) {
@@ -300,6 +308,8 @@ public class RecoveryStateTests extends ESTestCase {
         assertThat(lastRead.stopTime(), equalTo(index.stopTime()));
         assertThat(lastRead.targetThrottling(), equalTo(index.targetThrottling()));
         assertThat(lastRead.sourceThrottling(), equalTo(index.sourceThrottling()));
+        assertThat(lastRead.sourceStallTime(), equalTo(index.sourceStallTime()));
+        assertThat(lastRead.sourceStalls(), equalTo(index.sourceStalls()));
 
         logger.info("testing post recovery");
         assertThat(index.totalBytes(), equalTo(totalFileBytes));
@@ -312,6 +322,8 @@ public class RecoveryStateTests extends ESTestCase {
         assertThat(index.recoveredBytes(), equalTo(recoveredBytes));
         assertThat(index.targetThrottling().nanos(), equalTo(targetThrottling));
         assertThat(index.sourceThrottling().nanos(), equalTo(sourceThrottling));
+        assertThat(index.sourceStallTime().nanos(), equalTo(sourceStallTime));
+        assertThat(index.sourceStalls(), equalTo(sourceStalls));
         if (index.totalRecoverFiles() == 0) {
             assertThat((double) index.recoveredFilesPercent(), equalTo(100.0));
             assertThat((double) index.recoveredBytesPercent(), equalTo(100.0));
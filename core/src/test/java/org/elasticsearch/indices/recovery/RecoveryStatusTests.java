@@ -18,17 +18,28 @@
  */
 package org.elasticsearch.indices.recovery;
 
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.store.IndexOutput;
 import org.elasticsearch.Version;
 import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.transport.LocalTransportAddress;
 import org.elasticsearch.common.util.set.Sets;
 import org.elasticsearch.index.IndexService;
 import org.elasticsearch.index.shard.IndexShard;
+import org.elasticsearch.index.store.Store;
 import org.elasticsearch.index.store.StoreFileMetaData;
 import org.elasticsearch.test.ESSingleNodeTestCase;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 import java.util.regex.Pattern;
 
@@ -81,4 +92,98 @@ public class RecoveryStatusTests extends ESSingleNodeTestCase {
         // we must fail the recovery because marking it as done will try to move the shard to POST_RECOVERY, which will fail because it's started
         status.fail(new RecoveryFailedException(status.state(), "end of test. OK.", null), false);
     }
+
+    public void testWriteFileChunksOutOfOrder() throws IOException {
+        IndexService service = createIndex("foo");
+        IndexShard indexShard = service.getShardOrNull(0);
+        DiscoveryNode node = new DiscoveryNode("foo", new LocalTransportAddress("bar"), Version.CURRENT);
+        RecoveryStatus status = new RecoveryStatus(indexShard, node, new RecoveryTarget.RecoveryListener() {
+            @Override
+            public void onRecoveryDone(RecoveryState state) {
+            }
+
+            @Override
+            public void onRecoveryFailure(RecoveryState state, RecoveryFailedException e, boolean sendShardFailure) {
+            }
+        });
+
+        final byte[] bytes;
+        final String checksum;
+        try (Directory dir = newDirectory()) {
+            try (IndexOutput output = dir.createOutput("foo.bar", IOContext.DEFAULT)) {
+                byte[] content = new byte[randomIntBetween(1, 1 << 16)];
+                random().nextBytes(content);
+                output.writeBytes(content, content.length);
+                CodecUtil.writeFooter(output);
+            }
+            try (IndexInput input = dir.openInput("foo.bar", IOContext.DEFAULT)) {
+                checksum = Store.digestToString(CodecUtil.retrieveChecksum(input));
+                bytes = new byte[(int) input.length()];
+                input.seek(0);
+                input.readBytes(bytes, 0, bytes.length);
+            }
+        }
+
+        logger.info("--> deliver the chunks of a file in random order");
+        StoreFileMetaData metaData = new StoreFileMetaData("foo.bar", bytes.length, checksum, org.apache.lucene.util.Version.LATEST);
+        status.state().getIndex().addFileDetail(metaData.name(), metaData.length(), false);
+        for (Chunk chunk : randomChunks(bytes)) {
+            status.writeFileChunk(metaData, chunk.position, new BytesArray(chunk.content), chunk.lastChunk);
+        }
+        assertNull("the file must be closed once all of its chunks were written", status.getOpenIndexOutput("foo.bar"));
+        assertEquals(bytes.length, status.state().getIndex().recoveredBytes());
+        try (IndexInput input = status.store().directory().openInput(status.getTempNameForFile("foo.bar"), IOContext.DEFAULT)) {
+            byte[] written = new byte[(int) input.length()];
+            input.readBytes(written, 0, written.length);
+            assertArrayEquals(bytes, written);
+        }
+
+        logger.info("--> deliver the chunks of a corrupted file in random order");
+        byte[] corrupted = Arrays.copyOf(bytes, bytes.length);
+        int position = randomIntBetween(0, corrupted.length - CodecUtil.footerLength() - 1);
+        corrupted[position] = (byte) ~corrupted[position];
+        StoreFileMetaData corruptedMetaData = new StoreFileMetaData("bar.foo", bytes.length, checksum, org.apache.lucene.util.Version.LATEST);
+        status.state().getIndex().addFileDetail(corruptedMetaData.name(), corruptedMetaData.length(), false);
+        int failures = 0;
+        for (Chunk chunk : randomChunks(corrupted)) {
+            try {
+                status.writeFileChunk(corruptedMetaData, chunk.position, new BytesArray(chunk.content), chunk.lastChunk);
+            } catch (CorruptIndexException e) {
+                failures++;
+            }
+        }
+        assertEquals("the checksum must be verified once, when the chunks are complete", 1, failures);
+
+        status.fail(new RecoveryFailedException(status.state(), "end of test. OK.", null), false);
+    }
+
+    private static final class Chunk {
+        final long position;
+        final byte[] content;
+        final boolean lastChunk;
+
+        Chunk(long position, byte[] content, boolean lastChunk) {
+            this.position = position;
+            this.content = content;
+            this.lastChunk = lastChunk;
+        }
+    }
+
+    /**
+     * Splits the given bytes in chunks that are returned in random order, the last chunk always comes first if there
+     * are several chunks.
+     */
+    private static List<Chunk> randomChunks(byte[] bytes) {
+        List<Chunk> chunks = new ArrayList<>();
+        int position = 0;
+        while (position < bytes.length) {
+            int length = Math.min(bytes.length - position, randomIntBetween(1, 4096));
+            chunks.add(new Chunk(position, Arrays.copyOfRange(bytes, position, position + length), position + length == bytes.length));
+            position += length;
+        }
+        Chunk last = chunks.remove(chunks.size() - 1);
+        Collections.shuffle(chunks, random());
+        chunks.add(0, last);
+        return chunks;
+    }
 }
@@ -41,6 +41,7 @@ import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.index.engine.DocumentMissingException;
 import org.elasticsearch.index.engine.VersionConflictEngineException;
 import org.elasticsearch.index.percolator.PercolatorException;
+import org.elasticsearch.index.percolator.PercolatorQueriesRegistry;
 import org.elasticsearch.index.query.Operator;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.index.query.QueryShardException;
@@ -232,6 +233,44 @@ public class PercolatorIT extends ESIntegTestCase {
         assertThat(convertFromTextArray(response.getMatches(), "test"), arrayContaining("test1"));
     }
 
+    public void testLazyQueryParsing() throws Exception {
+        assertAcked(prepareCreate("test").setSettings(settingsBuilder()
+                .put(PercolatorQueriesRegistry.LAZY_QUERY_PARSING, true)
+                .put(PercolatorQueriesRegistry.PARSED_QUERIES_CACHE_SIZE, 1))
+                .addMapping("type", "field1", "type=string"));
+        ensureGreen();
+
+        int numQueries = scaledRandomIntBetween(10, 50);
+        for (int i = 0; i < numQueries; i++) {
+            client().prepareIndex("test", PercolatorService.TYPE_NAME, Integer.toString(i))
+                    .setSource(jsonBuilder().startObject().field("query", matchQuery("field1", "value" + (i % 2))).endObject())
+                    .get();
+        }
+        refresh();
+
+        PercolateResponse response = client().preparePercolate()
+                .setIndices("test").setDocumentType("type")
+                .setPercolateDoc(docBuilder().setDoc(jsonBuilder().startObject().field("field1", "value0").endObject()))
+                .get();
+        assertMatchCount(response, (numQueries + 1) / 2);
+
+        logger.info("--> reload the queries by closing and opening the index");
+        assertAcked(client().admin().indices().prepareClose("test"));
+        assertAcked(client().admin().indices().prepareOpen("test"));
+        ensureGreen();
+        response = client().preparePercolate()
+                .setIndices("test").setDocumentType("type")
+                .setPercolateDoc(docBuilder().setDoc(jsonBuilder().startObject().field("field1", "value1").endObject()))
+                .get();
+        assertMatchCount(response, numQueries / 2);
+
+        IndicesStatsResponse stats = client().admin().indices().prepareStats("test").setPercolate(true).get();
+        assertThat(stats.getPrimaries().getPercolate().getNumQueries(), equalTo((long) numQueries));
+        // only the queries on the terms of the document are executed
+        assertThat(stats.getTotal().getPercolate().getCandidateCount(), equalTo((long) numQueries / 2));
+        assertThat(stats.getTotal().getPercolate().getMatchCount(), equalTo((long) numQueries / 2));
+    }
+
     public void testPercolateQueriesWithRouting() throws Exception {
         client().admin().indices().prepareCreate("test")
                 .setSettings(settingsBuilder().put("index.number_of_shards", 2))
@@ -44,6 +44,12 @@ public class RecoverySettingsTests extends ESSingleNodeTestCase {
                 assertEquals(expectedValue, recoverySettings.concurrentSmallFileStreamPool().getMaximumPoolSize());
             }
         });
+        innerTestSettings(RecoverySettings.INDICES_RECOVERY_MAX_CONCURRENT_FILE_CHUNKS, randomIntBetween(1, 200), new Validator() {
+            @Override
+            public void validate(RecoverySettings recoverySettings, int expectedValue) {
+                assertEquals(expectedValue, recoverySettings.maxConcurrentFileChunks());
+            }
+        });
         innerTestSettings(RecoverySettings.INDICES_RECOVERY_MAX_BYTES_PER_SEC, 0, new Validator() {
             @Override
             public void validate(RecoverySettings recoverySettings, int expectedValue) {
@@ -0,0 +1,252 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.script;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.LogByteSizeMergePolicy;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.store.RAMDirectory;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.lucene.index.ElasticsearchDirectoryReader;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
+import org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService;
+import org.elasticsearch.node.settings.NodeSettingsService;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class ScriptResultsCacheTests extends ESTestCase {
+
+    private static final Settings ENABLED = Settings.builder()
+            .put(ScriptResultsCache.SCRIPT_RESULTS_CACHE_SIZE_SETTING, "1mb").build();
+
+    private static DirectoryReader createReader(IndexWriter writer) throws IOException {
+        for (int i = 0; i < 3; i++) {
+            Document document = new Document();
+            document.add(new NumericDocValuesField("field", i));
+            writer.addDocument(document);
+            writer.commit();
+        }
+        return ElasticsearchDirectoryReader.wrap(DirectoryReader.open(writer, false), new ShardId("test", 0));
+    }
+
+    public void testDeterministicScriptsAreCachedPerSegment() throws IOException {
+        IndexWriter writer = new IndexWriter(new RAMDirectory(),
+                new IndexWriterConfig(new StandardAnalyzer()).setMergePolicy(new LogByteSizeMergePolicy()));
+        DirectoryReader reader = createReader(writer);
+
+        ScriptResultsCache cache = new ScriptResultsCache(ENABLED);
+        CompiledScript compiledScript = new CompiledScript(ScriptService.ScriptType.INLINE, "test", "test", null);
+        DoublingScript script = new DoublingScript(true);
+
+        // scripts are only cached once they ran with the same parameters before
+        assertThat(cache.wrap(compiledScript, Collections.singletonMap("param", 1), script), sameInstance((SearchScript) script));
+        assertThat(sum(script, reader), equalTo(6.0));
+        assertThat(script.evaluations.get(), equalTo(3));
+        assertThat(cache.count(), equalTo(0));
+
+        SearchScript cached = cache.wrap(compiledScript, Collections.singletonMap("param", 1), script);
+        assertThat(sum(cached, reader), equalTo(6.0));
+        assertThat(script.evaluations.get(), equalTo(6));
+        assertThat(cache.count(), equalTo(3));
+        assertThat(cache.memorySizeInBytes(), greaterThan(0L));
+
+        // later requests for the same script and parameters read the cached results
+        cached = cache.wrap(compiledScript, Collections.singletonMap("param", 1), script);
+        assertThat(sum(cached, reader), equalTo(6.0));
+        assertThat(script.evaluations.get(), equalTo(6));
+
+        // other parameters are tracked and cached on their own
+        assertThat(cache.wrap(compiledScript, Collections.singletonMap("param", 2), script), sameInstance((SearchScript) script));
+        cached = cache.wrap(compiledScript, Collections.singletonMap("param", 2), script);
+        assertThat(sum(cached, reader), equalTo(6.0));
+        assertThat(script.evaluations.get(), equalTo(9));
+        assertThat(cache.count(), equalTo(6));
+
+        // scripts that are not deterministic are never cached
+        DoublingScript other = new DoublingScript(false);
+        assertThat(cache.wrap(compiledScript, null, other), sameInstance((SearchScript) other));
+        assertThat(cache.wrap(compiledScript, null, other), sameInstance((SearchScript) other));
+
+        writer.forceMerge(1);
+        reader.close();
+        writer.close();
+        // the segments are closed, so their results are released
+        assertThat(cache.count(), equalTo(0));
+        assertThat(cache.memorySizeInBytes(), equalTo(0L));
+        assertThat(cache.evictions(), equalTo(0L));
+        cache.close();
+    }
+
+    public void testResultsAreChargedToCircuitBreaker() throws IOException {
+        IndexWriter writer = new IndexWriter(new RAMDirectory(), new IndexWriterConfig(new StandardAnalyzer()));
+        DirectoryReader reader = createReader(writer);
+        CircuitBreakerService breakerService = new HierarchyCircuitBreakerService(Settings.EMPTY,
+                new NodeSettingsService(Settings.EMPTY));
+        CircuitBreaker breaker = breakerService.getBreaker(CircuitBreaker.FIELDDATA);
+
+        ScriptResultsCache cache = new ScriptResultsCache(ENABLED);
+        cache.setCircuitBreakerService(breakerService);
+        CompiledScript compiledScript = new CompiledScript(ScriptService.ScriptType.INLINE, "test", "test", null);
+        DoublingScript script = new DoublingScript(true);
+        cache.wrap(compiledScript, null, script);
+        assertThat(sum(cache.wrap(compiledScript, null, script), reader), equalTo(6.0));
+        assertThat(breaker.getUsed(), equalTo(cache.memorySizeInBytes()));
+        assertThat(breaker.getUsed(), greaterThan(0L));
+
+        cache.close();
+        assertThat(breaker.getUsed(), equalTo(0L));
+        assertThat(cache.memorySizeInBytes(), equalTo(0L));
+        reader.close();
+        writer.close();
+    }
+
+    public void testResultsThatBreakTheCircuitBreakerAreNotCached() throws IOException {
+        IndexWriter writer = new IndexWriter(new RAMDirectory(), new IndexWriterConfig(new StandardAnalyzer()));
+        DirectoryReader reader = createReader(writer);
+        CircuitBreakerService breakerService = new HierarchyCircuitBreakerService(Settings.builder()
+                .put(HierarchyCircuitBreakerService.FIELDDATA_CIRCUIT_BREAKER_LIMIT_SETTING, "1b").build(),
+                new NodeSettingsService(Settings.EMPTY));
+
+        ScriptResultsCache cache = new ScriptResultsCache(ENABLED);
+        cache.setCircuitBreakerService(breakerService);
+        CompiledScript compiledScript = new CompiledScript(ScriptService.ScriptType.INLINE, "test", "test", null);
+        DoublingScript script = new DoublingScript(true);
+        cache.wrap(compiledScript, null, script);
+        // the script is evaluated for the requested documents instead
+        assertThat(sum(cache.wrap(compiledScript, null, script), reader), equalTo(6.0));
+        assertThat(script.evaluations.get(), equalTo(3));
+        assertThat(cache.count(), equalTo(0));
+        assertThat(breakerService.getBreaker(CircuitBreaker.FIELDDATA).getUsed(), equalTo(0L));
+        cache.close();
+        reader.close();
+        writer.close();
+    }
+
+    public void testDisabledByDefault() {
+        ScriptResultsCache cache = new ScriptResultsCache(Settings.EMPTY);
+        DoublingScript script = new DoublingScript(true);
+        CompiledScript compiledScript = new CompiledScript(ScriptService.ScriptType.INLINE, "test", "test", null);
+        for (int i = 0; i < 3; i++) {
+            assertThat(cache.wrap(compiledScript, null, script), sameInstance((SearchScript) script));
+        }
+    }
+
+    private static double sum(SearchScript script, DirectoryReader reader) throws IOException {
+        double sum = 0;
+        for (LeafReaderContext context : reader.leaves()) {
+            LeafSearchScript leafScript = script.getLeafSearchScript(context);
+            for (int doc = 0; doc < context.reader().maxDoc(); doc++) {
+                leafScript.setDocument(doc);
+                double value = leafScript.runAsDouble();
+                assertThat(leafScript.run(), equalTo((Object) value));
+                sum += value;
+            }
+        }
+        return sum;
+    }
+
+    private static class DoublingScript implements SearchScript {
+
+        final AtomicInteger evaluations = new AtomicInteger();
+        final boolean deterministic;
+
+        DoublingScript(boolean deterministic) {
+            this.deterministic = deterministic;
+        }
+
+        @Override
+        public LeafSearchScript getLeafSearchScript(LeafReaderContext context) throws IOException {
+            final NumericDocValues values = context.reader().getNumericDocValues("field");
+            return new LeafSearchScript() {
+                int doc;
+
+                @Override
+                public void setDocument(int doc) {
+                    this.doc = doc;
+                }
+
+                @Override
+                public double runAsDouble() {
+                    evaluations.incrementAndGet();
+                    return values.get(doc) * 2;
+                }
+
+                @Override
+                public float runAsFloat() {
+                    return (float) (values.get(doc) * 2);
+                }
+
+                @Override
+                public long runAsLong() {
+                    return values.get(doc) * 2;
+                }
+
+                @Override
+                public Object run() {
+                    return (double) (values.get(doc) * 2);
+                }
+
+                @Override
+                public Object unwrap(Object value) {
+                    return value;
+                }
+
+                @Override
+                public void setNextVar(String name, Object value) {
+                }
+
+                @Override
+                public void setScorer(Scorer scorer) {
+                }
+
+                @Override
+                public void setSource(Map<String, Object> source) {
+                }
+            };
+        }
+
+        @Override
+        public boolean needsScores() {
+            return false;
+        }
+
+        @Override
+        public boolean isDeterministic() {
+            return deterministic;
+        }
+    }
+}
@@ -254,6 +254,13 @@ public class SearchSourceBuilderTests extends ESTestCase {
                 }
             }
         }
+        if (randomBoolean()) {
+            Object[] searchAfter = new Object[randomIntBetween(1, 5)];
+            for (int i = 0; i < searchAfter.length; i++) {
+                searchAfter[i] = randomBoolean() ? randomInt() : randomAsciiOfLengthBetween(5, 20);
+            }
+            builder.searchAfter(searchAfter);
+        }
         if (randomBoolean()) {
             builder.highlighter(HighlightBuilderTests.randomHighlighterBuilder());
         }
@@ -0,0 +1,51 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.fetch;
+
+import org.elasticsearch.test.ESTestCase;
+
+public class FetchPhaseTests extends ESTestCase {
+
+    public void testDocIdOrder() {
+        int[] docIdsToLoad = new int[] {-1, 42, 3, 17, 3, 0, -1};
+        int[] order = FetchPhase.docIdOrder(docIdsToLoad, 1, 5);
+        assertArrayEquals(new int[] {4, 1, 3, 2, 0}, order);
+        assertArrayEquals(new int[0], FetchPhase.docIdOrder(docIdsToLoad, 0, 0));
+    }
+
+    public void testRandomDocIdOrder() {
+        int size = randomIntBetween(1, 100);
+        int from = randomIntBetween(0, 10);
+        int[] docIdsToLoad = new int[from + size];
+        for (int i = 0; i < docIdsToLoad.length; i++) {
+            docIdsToLoad[i] = randomIntBetween(0, 1000);
+        }
+        int[] order = FetchPhase.docIdOrder(docIdsToLoad, from, size);
+        assertEquals(size, order.length);
+        boolean[] seen = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            assertFalse(seen[order[i]]);
+            seen[order[i]] = true;
+            if (i > 0) {
+                assertTrue(docIdsToLoad[from + order[i - 1]] <= docIdsToLoad[from + order[i]]);
+            }
+        }
+    }
+}
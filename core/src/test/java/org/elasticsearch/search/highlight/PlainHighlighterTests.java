@@ -20,6 +20,7 @@
 package org.elasticsearch.search.highlight;
 
 import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.PhraseQuery;
 import org.apache.lucene.search.Query;
@@ -39,4 +40,57 @@ public class PlainHighlighterTests extends LuceneTestCase {
         assertArrayEquals(new String[] {"bar <B>foo</B> <B>bar</B> foo"}, frags);
     }
 
+    public void testHighlightCachedAnalysis() throws Exception {
+        Query query = new PhraseQuery.Builder()
+                .add(new Term("field", "foo"))
+                .add(new Term("field", "bar"))
+                .build();
+        MockAnalyzer analyzer = new MockAnalyzer(random());
+        FieldAnalysisCache analysisCache = new FieldAnalysisCache();
+        for (int i = 0; i < 3; i++) {
+            org.apache.lucene.search.highlight.Highlighter highlighter = new org.apache.lucene.search.highlight.Highlighter(new CustomQueryScorer(query));
+            try (TokenStream tokenStream = analysisCache.tokenStream(analyzer, "field", "bar foo bar foo")) {
+                String[] frags = highlighter.getBestFragments(tokenStream, "bar foo bar foo", 10);
+                assertArrayEquals(new String[] {"bar <B>foo</B> <B>bar</B> foo"}, frags);
+            }
+            // the analyzer reuses its stream for other texts in between, this must not affect the cached tokens
+            try (TokenStream other = analyzer.tokenStream("field", "baz baz baz")) {
+                other.reset();
+                while (other.incrementToken()) {
+                }
+                other.end();
+            }
+        }
+        assertEquals(1, analysisCache.recordedTexts());
+    }
+
+    public void testTokensAreRecordedLazily() throws Exception {
+        MockAnalyzer analyzer = new MockAnalyzer(random());
+        // a consumer that stops early doesn't call end() after the last token
+        analyzer.setEnableChecks(false);
+        FieldAnalysisCache analysisCache = new FieldAnalysisCache();
+        assertEquals(4, consume(analysisCache.tokenStream(analyzer, "field", "bar foo bar foo"), Integer.MAX_VALUE));
+        assertEquals("texts that are analyzed once aren't recorded", 0, analysisCache.recordedTexts());
+
+        assertEquals(2, consume(analysisCache.tokenStream(analyzer, "field", "bar foo bar foo"), 2));
+        assertEquals("partially consumed tokens aren't recorded", 0, analysisCache.recordedTexts());
+
+        assertEquals(4, consume(analysisCache.tokenStream(analyzer, "field", "bar foo bar foo"), Integer.MAX_VALUE));
+        assertEquals(1, analysisCache.recordedTexts());
+        assertEquals(4, consume(analysisCache.tokenStream(analyzer, "field", "bar foo bar foo"), Integer.MAX_VALUE));
+        assertEquals(1, analysisCache.recordedTexts());
+    }
+
+    private static int consume(TokenStream tokenStream, int maxTokens) throws Exception {
+        int count = 0;
+        try (TokenStream stream = tokenStream) {
+            stream.reset();
+            while (count < maxTokens && stream.incrementToken()) {
+                count++;
+            }
+            stream.end();
+        }
+        return count;
+    }
+
 }
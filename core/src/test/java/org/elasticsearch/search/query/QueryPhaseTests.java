@@ -37,10 +37,16 @@ import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.MatchNoDocsQuery;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.SortedNumericSelector;
+import org.apache.lucene.search.SortedNumericSortField;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.Weight;
 import org.apache.lucene.store.Directory;
+import org.elasticsearch.index.fielddata.fieldcomparator.LongValuesComparatorSource;
 import org.elasticsearch.index.query.ParsedQuery;
+import org.elasticsearch.search.MultiValueMode;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.test.TestSearchContext;
 
@@ -165,4 +171,24 @@ public class QueryPhaseTests extends ESTestCase {
         assertTrue(collected.get());
     }
 
+
+    public void testCanEarlyTerminate() {
+        Sort indexSort = new Sort(new SortedNumericSortField("timestamp", SortField.Type.LONG, true, SortedNumericSelector.Type.MAX));
+        SortField desc = new SortField("timestamp", new LongValuesComparatorSource(null, null, MultiValueMode.MAX, null), true);
+        assertTrue(QueryPhase.canEarlyTerminate(new Sort(desc), indexSort));
+        assertFalse(QueryPhase.canEarlyTerminate(null, indexSort));
+        assertFalse(QueryPhase.canEarlyTerminate(new Sort(desc), null));
+
+        // different order, field, options or number of sort fields
+        SortField asc = new SortField("timestamp", new LongValuesComparatorSource(null, null, MultiValueMode.MIN, null), false);
+        assertFalse(QueryPhase.canEarlyTerminate(new Sort(asc), indexSort));
+        SortField otherField = new SortField("date", new LongValuesComparatorSource(null, null, MultiValueMode.MAX, null), true);
+        assertFalse(QueryPhase.canEarlyTerminate(new Sort(otherField), indexSort));
+        SortField missingFirst = new SortField("timestamp", new LongValuesComparatorSource(null, "_first", MultiValueMode.MAX, null), true);
+        assertFalse(QueryPhase.canEarlyTerminate(new Sort(missingFirst), indexSort));
+        SortField avg = new SortField("timestamp", new LongValuesComparatorSource(null, null, MultiValueMode.AVG, null), true);
+        assertFalse(QueryPhase.canEarlyTerminate(new Sort(avg), indexSort));
+        assertFalse(QueryPhase.canEarlyTerminate(new Sort(desc, SortField.FIELD_DOC), indexSort));
+        assertFalse(QueryPhase.canEarlyTerminate(new Sort(new SortField("timestamp", SortField.Type.LONG, true)), indexSort));
+    }
 }
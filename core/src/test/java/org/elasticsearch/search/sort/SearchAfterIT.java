@@ -0,0 +1,128 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.sort;
+
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.search.SearchPhaseExecutionException;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.test.ESIntegTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertNoFailures;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+
+public class SearchAfterIT extends ESIntegTestCase {
+
+    public void testPaginateWithSearchAfter() throws Exception {
+        assertAcked(prepareCreate("test").addMapping("type", "number", "type=long"));
+        int numDocs = randomIntBetween(10, 100);
+        List<IndexRequestBuilder> builders = new ArrayList<>();
+        for (int i = 0; i < numDocs; i++) {
+            builders.add(client().prepareIndex("test", "type", Integer.toString(i)).setSource("number", i % 7));
+        }
+        indexRandom(true, builders);
+
+        SearchResponse control = client().prepareSearch("test")
+                .setQuery(matchAllQuery())
+                .addSort("number", SortOrder.DESC)
+                .addSort("_uid", SortOrder.ASC)
+                .setSize(numDocs).get();
+        assertNoFailures(control);
+        assertThat(control.getHits().getHits().length, equalTo(numDocs));
+
+        int pageSize = randomIntBetween(1, 10);
+        List<String> ids = new ArrayList<>();
+        Object[] searchAfter = null;
+        while (true) {
+            SearchResponse page = client().prepareSearch("test")
+                    .setQuery(matchAllQuery())
+                    .addSort("number", SortOrder.DESC)
+                    .addSort("_uid", SortOrder.ASC)
+                    .searchAfter(searchAfter)
+                    .setSize(pageSize).get();
+            assertNoFailures(page);
+            assertThat(page.getHits().getTotalHits(), equalTo((long) numDocs));
+            SearchHit[] hits = page.getHits().getHits();
+            if (hits.length == 0) {
+                break;
+            }
+            for (SearchHit hit : hits) {
+                ids.add(hit.getId());
+            }
+            Object[] sortValues = hits[hits.length - 1].getSortValues();
+            searchAfter = new Object[sortValues.length];
+            for (int i = 0; i < sortValues.length; i++) {
+                // sort values on strings are returned as text
+                searchAfter[i] = sortValues[i] instanceof Number ? sortValues[i] : sortValues[i].toString();
+            }
+        }
+
+        assertThat(ids.size(), equalTo(numDocs));
+        for (int i = 0; i < numDocs; i++) {
+            assertThat(ids.get(i), equalTo(control.getHits().getAt(i).getId()));
+        }
+    }
+
+    public void testInvalidSearchAfter() throws Exception {
+        createIndex("test");
+        client().prepareIndex("test", "type", "1").setSource("number", 1).setRefresh(true).get();
+
+        try {
+            client().prepareSearch("test").searchAfter(1).get();
+            fail("search_after requires a sort");
+        } catch (SearchPhaseExecutionException e) {
+            assertThat(e.shardFailures()[0].reason(), containsString("requires the search to be sorted"));
+        }
+
+        try {
+            client().prepareSearch("test").addSort("number", SortOrder.ASC).searchAfter(1, 2).get();
+            fail("search_after must have as many values as the sort");
+        } catch (SearchPhaseExecutionException e) {
+            assertThat(e.shardFailures()[0].reason(), containsString("has 2 value(s) but the sort has 1 field(s)"));
+        }
+
+        try {
+            client().prepareSearch("test").addSort("number", SortOrder.ASC).searchAfter((Object) null).get();
+            fail("search_after only accepts null values for string sort fields");
+        } catch (SearchPhaseExecutionException e) {
+            assertThat(e.shardFailures()[0].reason(), containsString("doesn't accept a null value for the sort field [number]"));
+        }
+
+        try {
+            client().prepareSearch("test").addSort("number", SortOrder.ASC).searchAfter(1).setFrom(10).get();
+            fail("search_after can't be combined with from");
+        } catch (SearchPhaseExecutionException e) {
+            assertThat(e.shardFailures()[0].reason(), containsString("[from] must be set to 0"));
+        }
+
+        try {
+            client().prepareSearch("test").addSort("number", SortOrder.ASC).searchAfter(1).setScroll("1m").get();
+            fail("search_after can't be combined with a scroll");
+        } catch (SearchPhaseExecutionException e) {
+            assertThat(e.shardFailures()[0].reason(), containsString("cannot be used in a scroll context"));
+        }
+    }
+}
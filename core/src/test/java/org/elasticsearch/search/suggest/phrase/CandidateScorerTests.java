@@ -0,0 +1,137 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.suggest.phrase;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.shingle.ShingleFilter;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.PriorityQueue;
+import org.elasticsearch.search.suggest.phrase.DirectCandidateGenerator.Candidate;
+import org.elasticsearch.search.suggest.phrase.DirectCandidateGenerator.CandidateSet;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CandidateScorerTests extends ESTestCase {
+
+    /**
+     * Checks that bounding the scores of the candidate paths never changes the corrections that are found.
+     */
+    public void testBoundsDontChangeCorrections() throws IOException {
+        final BytesRef separator = new BytesRef(" ");
+        final String[] words = new String[randomIntBetween(3, 12)];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = "w" + i;
+        }
+        IndexWriter writer = new IndexWriter(new RAMDirectory(), new IndexWriterConfig(new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String fieldName) {
+                Tokenizer t = new WhitespaceTokenizer();
+                ShingleFilter tf = new ShingleFilter(t, 2, 3);
+                tf.setOutputUnigrams(true);
+                return new TokenStreamComponents(t, tf);
+            }
+        }));
+        int numDocs = randomIntBetween(10, 100);
+        for (int i = 0; i < numDocs; i++) {
+            StringBuilder text = new StringBuilder();
+            int numWords = randomIntBetween(1, 10);
+            for (int j = 0; j < numWords; j++) {
+                text.append(randomFrom(words)).append(' ');
+            }
+            Document doc = new Document();
+            doc.add(new Field("body_ngram", text.toString(), TextField.TYPE_NOT_STORED));
+            writer.addDocument(doc);
+        }
+        try (DirectoryReader reader = DirectoryReader.open(writer, false)) {
+            for (int iter = 0; iter < 20; iter++) {
+                final WordScorer wordScorer;
+                switch (randomIntBetween(0, 2)) {
+                    case 0:
+                        wordScorer = new LaplaceScorer(reader, MultiFields.getTerms(reader, "body_ngram"), "body_ngram", 0.95d, separator, 0.5f);
+                        break;
+                    case 1:
+                        wordScorer = new StupidBackoffScorer(reader, MultiFields.getTerms(reader, "body_ngram"), "body_ngram", 0.95d, separator, 0.4f);
+                        break;
+                    default:
+                        wordScorer = new LinearInterpoatingScorer(reader, MultiFields.getTerms(reader, "body_ngram"), "body_ngram", 0.95d, separator, 0.5, 0.4, 0.1);
+                        break;
+                }
+
+                final CandidateSet[] sets = new CandidateSet[randomIntBetween(2, 6)];
+                final Candidate[] originalPath = new Candidate[sets.length];
+                for (int i = 0; i < sets.length; i++) {
+                    originalPath[i] = candidate(wordScorer, randomFrom(words), 1.0d, true);
+                    List<Candidate> candidates = new ArrayList<>();
+                    int numCandidates = randomIntBetween(0, 4);
+                    for (int j = 0; j < numCandidates; j++) {
+                        candidates.add(candidate(wordScorer, randomFrom(words), randomDoubleBetween(0.1, 0.99, true), false));
+                    }
+                    sets[i] = new CandidateSet(candidates.toArray(new Candidate[candidates.size()]), originalPath[i]);
+                }
+
+                final int gramSize = randomIntBetween(1, 3);
+                final int maxNumCorrections = randomIntBetween(1, 5);
+                final int maxErrors = randomIntBetween(2, sets.length);
+                final CandidateScorer scorer = new CandidateScorer(wordScorer, maxNumCorrections, gramSize);
+                final double cutoffScore = randomBoolean() ? Double.MIN_VALUE : scorer.score(originalPath, sets) * randomDouble();
+
+                // max errors > 1 bounds the candidate paths
+                Correction[] bounded = scorer.findBestCandiates(sets, maxErrors, cutoffScore);
+
+                PriorityQueue<Correction> queue = new PriorityQueue<Correction>(maxNumCorrections) {
+                    @Override
+                    protected boolean lessThan(Correction a, Correction b) {
+                        return a.compareTo(b) < 0;
+                    }
+                };
+                scorer.findCandidates(sets, new Candidate[sets.length], 0, maxErrors, queue, cutoffScore, 0.0, null);
+                Correction[] exhaustive = new Correction[queue.size()];
+                for (int i = exhaustive.length - 1; i >= 0; i--) {
+                    exhaustive[i] = queue.pop();
+                }
+
+                assertEquals(exhaustive.length, bounded.length);
+                for (int i = 0; i < exhaustive.length; i++) {
+                    assertEquals(exhaustive[i].score, bounded[i].score, 0.0d);
+                    assertEquals(exhaustive[i].join(separator), bounded[i].join(separator));
+                }
+            }
+        }
+        writer.close();
+    }
+
+    private static Candidate candidate(WordScorer wordScorer, String word, double stringDistance, boolean userInput) throws IOException {
+        BytesRef term = new BytesRef(word);
+        return new Candidate(term, wordScorer.frequency(term), stringDistance, 0.0d, userInput);
+    }
+}
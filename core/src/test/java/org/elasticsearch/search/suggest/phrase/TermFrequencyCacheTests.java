@@ -0,0 +1,91 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.suggest.phrase;
+
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.search.spell.DirectSpellChecker;
+import org.apache.lucene.search.spell.SuggestMode;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.lucene.index.ElasticsearchDirectoryReader;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class TermFrequencyCacheTests extends ESTestCase {
+
+    public void testFrequenciesAreCachedPerReader() throws IOException {
+        IndexWriter writer = new IndexWriter(new RAMDirectory(), new IndexWriterConfig(new WhitespaceAnalyzer()));
+        Document doc = new Document();
+        doc.add(new Field("body", "the quick brown fox", TextField.TYPE_NOT_STORED));
+        writer.addDocument(doc);
+        doc = new Document();
+        doc.add(new Field("body", "the lazy dog", TextField.TYPE_NOT_STORED));
+        writer.addDocument(doc);
+
+        TermFrequencyCache cache = new TermFrequencyCache();
+        DirectoryReader plainReader = DirectoryReader.open(writer, false);
+        assertThat(cache.frequencies(plainReader), nullValue());
+        plainReader.close();
+
+        DirectoryReader reader = ElasticsearchDirectoryReader.wrap(DirectoryReader.open(writer, false), new ShardId("test", 0));
+        TermFrequencyCache.Frequencies frequencies = cache.frequencies(reader);
+        assertThat(frequencies, notNullValue());
+        assertThat(cache.frequencies(reader), sameInstance(frequencies));
+        assertThat(cache.count(), equalTo(1));
+
+        WordScorer scorer = new StupidBackoffScorer(reader, MultiFields.getTerms(reader, "body"), "body", 0.95d, new BytesRef(" "), 0.4f);
+        scorer.setFrequencies(frequencies);
+        assertThat(scorer.frequency(new BytesRef("the")), equalTo(2L));
+        assertThat(scorer.frequency(new BytesRef("cat")), equalTo(0L));
+        assertThat(frequencies.count(), equalTo(2));
+        assertThat(frequencies.get("body", new BytesRef("the")), equalTo(2L));
+        assertThat(frequencies.get("body", new BytesRef("fox")), equalTo(-1L));
+        assertThat(frequencies.get("title", new BytesRef("the")), equalTo(-1L));
+
+        // the generator shares the frequencies of the scorer's field
+        DirectCandidateGenerator generator = new DirectCandidateGenerator(new DirectSpellChecker(), "body", SuggestMode.SUGGEST_ALWAYS,
+                reader, 0.95, 5);
+        generator.setFrequencies(frequencies);
+        assertThat(generator.frequency(new BytesRef("fox")), equalTo(1L));
+        assertThat(frequencies.count(), equalTo(3));
+
+        // cached frequencies are read without looking up the terms again
+        frequencies.put("body", new BytesRef("dog"), 42);
+        assertThat(scorer.frequency(new BytesRef("dog")), equalTo(42L));
+
+        reader.close();
+        assertThat(cache.count(), equalTo(0));
+        writer.close();
+    }
+}
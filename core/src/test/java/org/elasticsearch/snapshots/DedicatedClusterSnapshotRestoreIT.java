@@ -54,6 +54,7 @@ import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.discovery.zen.ZenDiscovery;
 import org.elasticsearch.discovery.zen.elect.ElectMasterService;
 import org.elasticsearch.index.store.IndexStore;
+import org.elasticsearch.index.store.OnDemandDirectory;
 import org.elasticsearch.indices.recovery.RecoveryState;
 import org.elasticsearch.indices.ttl.IndicesTTLService;
 import org.elasticsearch.plugins.Plugin;
@@ -69,6 +70,7 @@ import org.elasticsearch.test.ESIntegTestCase.ClusterScope;
 import org.elasticsearch.test.ESIntegTestCase.Scope;
 import org.elasticsearch.test.InternalTestCluster;
 import org.elasticsearch.test.rest.FakeRestRequest;
+import org.elasticsearch.test.store.MockFSIndexStore;
 
 import java.io.IOException;
 import java.nio.file.Path;
@@ -84,6 +86,8 @@ import java.util.concurrent.atomic.AtomicReference;
 import static org.elasticsearch.common.settings.Settings.settingsBuilder;
 import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
 import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertBlocked;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertHitCount;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertNoFailures;
 import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertThrows;
 import static org.hamcrest.Matchers.allOf;
 import static org.hamcrest.Matchers.containsString;
@@ -610,6 +614,49 @@ public class DedicatedClusterSnapshotRestoreIT extends AbstractSnapshotIntegTest
         assertThat(reusedShards.size(), greaterThanOrEqualTo(numberOfShards / 2));
     }
 
+    public void testRestoreOnDemandSurvivesFullRestart() throws Exception {
+        logger.info("--> start node");
+        internalCluster().startNode();
+
+        logger.info("--> create repository");
+        // the content of the files restored on demand is fetched slowly, so that it isn't fully available locally before the restart
+        assertAcked(client().admin().cluster().preparePutRepository("test-repo")
+                .setType("fs").setSettings(Settings.settingsBuilder()
+                        .put("location", randomRepoPath())
+                        .put("max_restore_bytes_per_sec", "100k")));
+
+        logger.info("--> create an index with a stored fields file that is larger than a block");
+        assertAcked(prepareCreate("test-idx", 1, settingsBuilder().put("number_of_shards", 1).put("number_of_replicas", 0))
+                .addMapping("doc", "foo", "type=string,index=no"));
+        ensureGreen();
+        final int numDocs = 3000;
+        IndexRequestBuilder[] builders = new IndexRequestBuilder[numDocs];
+        for (int i = 0; i < numDocs; i++) {
+            builders[i] = client().prepareIndex("test-idx", "doc", Integer.toString(i)).setSource("foo", randomAsciiOfLength(1000));
+        }
+        indexRandom(true, builders);
+        assertNoFailures(client().admin().indices().prepareForceMerge("test-idx").setMaxNumSegments(1).get());
+
+        logger.info("--> snapshot");
+        assertThat(client().admin().cluster().prepareCreateSnapshot("test-repo", "test-snap").setIndices("test-idx").setWaitForCompletion(true)
+                .get().getSnapshotInfo().state(), equalTo(SnapshotState.SUCCESS));
+        cluster().wipeIndices("test-idx");
+
+        logger.info("--> restore on demand");
+        RestoreSnapshotResponse restoreSnapshotResponse = client().admin().cluster().prepareRestoreSnapshot("test-repo", "test-snap")
+                .setIndexSettings(settingsBuilder().put(OnDemandDirectory.INDEX_STORE_RESTORE_ON_DEMAND, true)
+                        .put(MockFSIndexStore.CHECK_INDEX_ON_CLOSE, false)) // checking the index would fetch all files
+                .setWaitForCompletion(true).get();
+        assertThat(restoreSnapshotResponse.getRestoreInfo().failedShards(), equalTo(0));
+        ensureGreen("test-idx");
+
+        logger.info("--> restart the node before the files restored on demand are fully fetched");
+        internalCluster().fullRestart();
+        ensureGreen("test-idx");
+        assertHitCount(client().prepareSearch("test-idx").setSize(0).get(), numDocs);
+        assertThat(client().prepareGet("test-idx", "doc", Integer.toString(randomInt(numDocs - 1))).get().isExists(), equalTo(true));
+    }
+
     public void testRegistrationFailure() {
         logger.info("--> start first node");
         internalCluster().startNode();
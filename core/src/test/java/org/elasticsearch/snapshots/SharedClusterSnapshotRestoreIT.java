@@ -60,21 +60,28 @@ import org.elasticsearch.common.collect.ImmutableOpenMap;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.IndexService;
+import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.store.IndexStore;
+import org.elasticsearch.indices.IndicesService;
 import org.elasticsearch.indices.InvalidIndexNameException;
 import org.elasticsearch.repositories.RepositoriesService;
 import org.elasticsearch.repositories.RepositoryException;
 import org.elasticsearch.test.junit.annotations.TestLogging;
 
+import java.io.IOException;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -206,6 +213,183 @@ public class SharedClusterSnapshotRestoreIT extends AbstractSnapshotIntegTestCas
         }
     }
 
+    public void testSnapshotVerifiesUploadedChecksums() throws Exception {
+        Client client = client();
+
+        logger.info("-->  creating repository");
+        assertAcked(client.admin().cluster().preparePutRepository("test-repo")
+                .setType("fs").setSettings(Settings.settingsBuilder()
+                        .put("location", randomRepoPath())
+                        .put("compress", randomBoolean())
+                        .put("max_concurrent_uploads", randomIntBetween(1, 4))
+                        .put("chunk_size", randomIntBetween(100, 1000), ByteSizeUnit.BYTES)));
+
+        createIndex("test-idx");
+        ensureGreen();
+
+        logger.info("--> indexing some data");
+        int numDocs = randomIntBetween(50, 200);
+        for (int i = 0; i < numDocs; i++) {
+            index("test-idx", "doc", Integer.toString(i), "foo", "bar" + i);
+        }
+        // flushed files carry a footer checksum that the combined checksums of the uploaded parts are verified against
+        flushAndRefresh("test-idx");
+
+        logger.info("--> snapshot");
+        CreateSnapshotResponse createSnapshotResponse = client.admin().cluster().prepareCreateSnapshot("test-repo", "test-snap")
+                .setWaitForCompletion(true).setIndices("test-idx").get();
+        assertThat(createSnapshotResponse.getSnapshotInfo().successfulShards(), greaterThan(0));
+        assertThat(createSnapshotResponse.getSnapshotInfo().successfulShards(), equalTo(createSnapshotResponse.getSnapshotInfo().totalShards()));
+        assertThat(createSnapshotResponse.getSnapshotInfo().state(), equalTo(SnapshotState.SUCCESS));
+
+        logger.info("--> check that the snapshotted stores are not marked as corrupted");
+        for (IndicesService indicesService : internalCluster().getInstances(IndicesService.class)) {
+            IndexService indexService = indicesService.indexService("test-idx");
+            if (indexService != null) {
+                for (IndexShard indexShard : indexService) {
+                    assertFalse(indexShard.store().isMarkedCorrupted());
+                }
+            }
+        }
+
+        logger.info("--> restore the index from the snapshot");
+        client.admin().indices().prepareClose("test-idx").get();
+        RestoreSnapshotResponse restoreSnapshotResponse = client.admin().cluster().prepareRestoreSnapshot("test-repo", "test-snap")
+                .setWaitForCompletion(true).get();
+        assertThat(restoreSnapshotResponse.getRestoreInfo().successfulShards(), equalTo(restoreSnapshotResponse.getRestoreInfo().totalShards()));
+        ensureGreen();
+        assertHitCount(client.prepareSearch("test-idx").setSize(0).get(), numDocs);
+    }
+
+    private static Set<String> shardBlobs(Path shardPath, String prefix) throws IOException {
+        Set<String> blobs = new HashSet<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(shardPath, prefix + "*")) {
+            for (Path blob : stream) {
+                blobs.add(blob.getFileName().toString());
+            }
+        }
+        return blobs;
+    }
+
+    private void createSnapshotAndCheck(String snapshot) {
+        CreateSnapshotResponse createSnapshotResponse = client().admin().cluster().prepareCreateSnapshot("test-repo", snapshot)
+                .setWaitForCompletion(true).setIndices("test-idx").get();
+        assertThat(createSnapshotResponse.getSnapshotInfo().state(), equalTo(SnapshotState.SUCCESS));
+        assertThat(createSnapshotResponse.getSnapshotInfo().successfulShards(), equalTo(createSnapshotResponse.getSnapshotInfo().totalShards()));
+    }
+
+    private void restoreAndCheck(String snapshot, long numDocs) {
+        assertAcked(client().admin().indices().prepareDelete("test-idx"));
+        RestoreSnapshotResponse restoreSnapshotResponse = client().admin().cluster().prepareRestoreSnapshot("test-repo", snapshot)
+                .setWaitForCompletion(true).get();
+        assertThat(restoreSnapshotResponse.getRestoreInfo().successfulShards(), equalTo(restoreSnapshotResponse.getRestoreInfo().totalShards()));
+        ensureGreen();
+        assertHitCount(client().prepareSearch("test-idx").setSize(0).get(), numDocs);
+    }
+
+    public void testDeleteSnapshotDeletesItsBlobsByName() throws Exception {
+        Path repo = randomRepoPath();
+        assertAcked(client().admin().cluster().preparePutRepository("test-repo")
+                .setType("fs").setSettings(Settings.settingsBuilder().put("location", repo)));
+        assertAcked(prepareCreate("test-idx", 1, Settings.builder().put(SETTING_NUMBER_OF_SHARDS, 1).put(SETTING_NUMBER_OF_REPLICAS, 0)));
+        ensureGreen();
+        Path shardPath = repo.resolve("indices").resolve("test-idx").resolve("0");
+
+        int numDocs = randomIntBetween(10, 50);
+        for (int i = 0; i < numDocs; i++) {
+            index("test-idx", "doc", Integer.toString(i), "foo", "bar" + i);
+        }
+        flushAndRefresh("test-idx");
+        createSnapshotAndCheck("test-snap-1");
+        Set<String> firstSnapshotBlobs = shardBlobs(shardPath, "__");
+
+        logger.info("--> add a segment and take a second snapshot");
+        for (int i = numDocs; i < numDocs * 2; i++) {
+            index("test-idx", "doc", Integer.toString(i), "foo", "bar" + i);
+        }
+        flushAndRefresh("test-idx");
+        createSnapshotAndCheck("test-snap-2");
+        assertThat(shardBlobs(shardPath, "__").size(), greaterThan(firstSnapshotBlobs.size()));
+
+        logger.info("--> delete the second snapshot, the blobs only it referenced are deleted");
+        client().admin().cluster().prepareDeleteSnapshot("test-repo", "test-snap-2").get();
+        assertThat(shardBlobs(shardPath, "__"), equalTo(firstSnapshotBlobs));
+        // the deletion is recorded as a diff generation of the snapshot index
+        assertTrue(shardBlobs(shardPath, "index-").contains("index-2.bin"));
+
+        restoreAndCheck("test-snap-1", numDocs);
+    }
+
+    public void testShardSnapshotIndexIsCompacted() throws Exception {
+        Path repo = randomRepoPath();
+        assertAcked(client().admin().cluster().preparePutRepository("test-repo")
+                .setType("fs").setSettings(Settings.settingsBuilder().put("location", repo)));
+        assertAcked(prepareCreate("test-idx", 1, Settings.builder().put(SETTING_NUMBER_OF_SHARDS, 1).put(SETTING_NUMBER_OF_REPLICAS, 0)));
+        ensureGreen();
+        Path shardPath = repo.resolve("indices").resolve("test-idx").resolve("0");
+
+        logger.info("--> take a full generation and 16 diff generations of the shard snapshot index");
+        int numDocs = 0;
+        for (int i = 0; i <= 16; i++) {
+            index("test-idx", "doc", Integer.toString(numDocs++), "foo", "bar");
+            flushAndRefresh("test-idx");
+            createSnapshotAndCheck("test-snap-" + i);
+        }
+        Set<String> indexBlobs = shardBlobs(shardPath, "index-");
+        assertThat(indexBlobs.size(), equalTo(17));
+        assertTrue(indexBlobs.contains("index-0.bin"));
+        assertTrue(indexBlobs.contains("index-16.bin"));
+
+        logger.info("--> leak a blob, the cleanup of the next full generation lists the container and deletes it");
+        Files.write(shardPath.resolve("__leaked"), new byte[] {1, 2, 3});
+
+        index("test-idx", "doc", Integer.toString(numDocs++), "foo", "bar");
+        flushAndRefresh("test-idx");
+        createSnapshotAndCheck("test-snap-17");
+        assertThat(shardBlobs(shardPath, "index-"), equalTo(Collections.singleton("index-17.bin")));
+        assertFalse(Files.exists(shardPath.resolve("__leaked")));
+
+        restoreAndCheck("test-snap-17", numDocs);
+        restoreAndCheck("test-snap-0", 1);
+    }
+
+    public void testCorruptShardSnapshotIndexFallsBackToListing() throws Exception {
+        Path repo = randomRepoPath();
+        assertAcked(client().admin().cluster().preparePutRepository("test-repo")
+                .setType("fs").setSettings(Settings.settingsBuilder().put("location", repo)));
+        assertAcked(prepareCreate("test-idx", 1, Settings.builder().put(SETTING_NUMBER_OF_SHARDS, 1).put(SETTING_NUMBER_OF_REPLICAS, 0)));
+        ensureGreen();
+        Path shardPath = repo.resolve("indices").resolve("test-idx").resolve("0");
+
+        int numDocs = randomIntBetween(10, 50);
+        for (int i = 0; i < numDocs; i++) {
+            index("test-idx", "doc", Integer.toString(i), "foo", "bar" + i);
+        }
+        flushAndRefresh("test-idx");
+        createSnapshotAndCheck("test-snap-1");
+        index("test-idx", "doc", Integer.toString(numDocs), "foo", "bar");
+        flushAndRefresh("test-idx");
+        createSnapshotAndCheck("test-snap-2");
+        assertThat(shardBlobs(shardPath, "index-"), equalTo(new HashSet<>(Arrays.asList("index-0.bin", "index-1.bin"))));
+
+        logger.info("--> corrupt the latest generation of the shard snapshot index");
+        Path latest = shardPath.resolve("index-1.bin");
+        byte[] bytes = Files.readAllBytes(latest);
+        int position = randomIntBetween(0, bytes.length - 1);
+        bytes[position] = (byte) ~bytes[position];
+        Files.write(latest, bytes);
+
+        logger.info("--> the next snapshot reads the shard snapshots from the listed container and writes a full generation");
+        index("test-idx", "doc", Integer.toString(numDocs + 1), "foo", "bar");
+        flushAndRefresh("test-idx");
+        createSnapshotAndCheck("test-snap-3");
+        assertThat(shardBlobs(shardPath, "index-"), equalTo(Collections.singleton("index-2.bin")));
+
+        restoreAndCheck("test-snap-1", numDocs);
+        restoreAndCheck("test-snap-2", numDocs + 1);
+        restoreAndCheck("test-snap-3", numDocs + 2);
+    }
+
     public void testSingleGetAfterRestore() throws Exception {
         String indexName = "testindex";
         String repoName = "test-restore-snapshot-repo";
@@ -20,13 +20,16 @@ package org.elasticsearch.snapshots.mockstore;
 
 import org.elasticsearch.common.blobstore.BlobContainer;
 import org.elasticsearch.common.blobstore.BlobMetaData;
+import org.elasticsearch.common.blobstore.BlobPart;
 import org.elasticsearch.common.blobstore.BlobPath;
 import org.elasticsearch.common.bytes.BytesReference;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  *
@@ -53,6 +56,11 @@ public class BlobContainerWrapper implements BlobContainer {
         return delegate.readBlob(name);
     }
 
+    @Override
+    public InputStream readBlob(String blobName, long position, long length) throws IOException {
+        return delegate.readBlob(blobName, position, length);
+    }
+
     @Override
     public void writeBlob(String blobName, InputStream inputStream, long blobSize) throws IOException {
         delegate.writeBlob(blobName, inputStream, blobSize);
@@ -63,6 +71,11 @@ public class BlobContainerWrapper implements BlobContainer {
         delegate.writeBlob(blobName, bytes);
     }
 
+    @Override
+    public void writeBlob(String blobName, List<? extends BlobPart> parts, Executor executor) throws IOException {
+        delegate.writeBlob(blobName, parts, executor);
+    }
+
     @Override
     public void deleteBlob(String blobName) throws IOException {
         delegate.deleteBlob(blobName);
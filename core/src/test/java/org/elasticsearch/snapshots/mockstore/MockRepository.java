@@ -25,6 +25,7 @@ import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.cluster.metadata.SnapshotId;
 import org.elasticsearch.common.blobstore.BlobContainer;
 import org.elasticsearch.common.blobstore.BlobMetaData;
+import org.elasticsearch.common.blobstore.BlobPart;
 import org.elasticsearch.common.blobstore.BlobPath;
 import org.elasticsearch.common.blobstore.BlobStore;
 import org.elasticsearch.common.bytes.BytesReference;
@@ -54,6 +55,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static org.elasticsearch.common.settings.Settings.settingsBuilder;
@@ -322,6 +324,12 @@ public class MockRepository extends FsRepository {
                 return super.readBlob(name);
             }
 
+            @Override
+            public InputStream readBlob(String name, long position, long length) throws IOException {
+                maybeIOExceptionOrBlock(name);
+                return super.readBlob(name, position, length);
+            }
+
             @Override
             public void deleteBlob(String blobName) throws IOException {
                 maybeIOExceptionOrBlock(blobName);
@@ -363,6 +371,12 @@ public class MockRepository extends FsRepository {
                 maybeIOExceptionOrBlock(blobName);
                 super.writeBlob(blobName, inputStream, blobSize);
             }
+
+            @Override
+            public void writeBlob(String blobName, List<? extends BlobPart> parts, Executor executor) throws IOException {
+                maybeIOExceptionOrBlock(blobName);
+                super.writeBlob(blobName, parts, executor);
+            }
         }
     }
 }
@@ -0,0 +1,52 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.script.expression;
+
+import org.apache.lucene.queries.function.FunctionValues;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * {@link FunctionValues} over the decoded values of a block of documents, addressed by their position in the block.
+ * Compiled expressions evaluated over blocks only read values of this final class, so their loads are monomorphic.
+ */
+final class BlockFunctionValues extends FunctionValues {
+    double[] values = new double[0];
+
+    /**
+     * Returns an array that can hold the values of {@code count} documents.
+     */
+    double[] grow(int count) {
+        if (values.length < count) {
+            values = new double[ArrayUtil.oversize(count, RamUsageEstimator.NUM_BYTES_DOUBLE)];
+        }
+        return values;
+    }
+
+    @Override
+    public double doubleVal(int index) {
+        return values[index];
+    }
+
+    @Override
+    public String toString(int index) {
+        return "block(" + values[index] + ")";
+    }
+}
@@ -27,7 +27,7 @@ import org.elasticsearch.index.fielddata.SortedNumericDoubleValues;
 /**
  * FunctionValues to get the count of the number of values in a field for a document.
  */
-public class CountMethodFunctionValues extends DoubleDocValues {
+public class CountMethodFunctionValues extends DoubleDocValues implements BlockValues {
     SortedNumericDoubleValues values;
 
     CountMethodFunctionValues(ValueSource parent, AtomicNumericFieldData fieldData) {
@@ -41,4 +41,12 @@ public class CountMethodFunctionValues extends DoubleDocValues {
         values.setDocument(doc);
         return values.count();
     }
+
+    @Override
+    public void fill(int[] docs, int count, double[] values) {
+        for (int i = 0; i < count; i++) {
+            this.values.setDocument(docs[i]);
+            values[i] = this.values.count();
+        }
+    }
 }
@@ -44,4 +44,11 @@ class DateMethodFunctionValues extends FieldDataFunctionValues {
         calendar.setTimeInMillis(millis);
         return calendar.get(calendarType);
     }
+
+    @Override
+    public void fill(int[] docs, int count, double[] values) {
+        for (int i = 0; i < count; i++) {
+            values[i] = doubleVal(docs[i]);
+        }
+    }
 }
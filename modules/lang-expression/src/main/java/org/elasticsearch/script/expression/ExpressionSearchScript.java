@@ -44,6 +44,7 @@ class ExpressionSearchScript implements SearchScript {
 
     final CompiledScript compiledScript;
     final SimpleBindings bindings;
+    final Expression expression;
     final ValueSource source;
     final ReplaceableConstValueSource specialValue; // _value
     final boolean needsScores;
@@ -53,7 +54,8 @@ class ExpressionSearchScript implements SearchScript {
     ExpressionSearchScript(CompiledScript c, SimpleBindings b, ReplaceableConstValueSource v, boolean needsScores) {
         compiledScript = c;
         bindings = b;
-        source = ((Expression)compiledScript.compiled()).getValueSource(bindings);
+        expression = (Expression)compiledScript.compiled();
+        source = expression.getValueSource(bindings);
         specialValue = v;
         this.needsScores = needsScores;
     }
@@ -63,12 +65,22 @@ class ExpressionSearchScript implements SearchScript {
         return needsScores;
     }
 
+    @Override
+    public boolean isDeterministic() {
+        // without the score and _value, expressions only read doc values and constant parameters
+        return needsScores == false && specialValue == null;
+    }
+
     @Override
     public LeafSearchScript getLeafSearchScript(final LeafReaderContext leaf) throws IOException {
         return new LeafSearchScript() {
 
             FunctionValues values = source.getValues(Collections.singletonMap("scorer", Lucene.illegalScorer("Scores are not available in the current context")), leaf);
 
+            // the values of the variables, null for _score, and their decoded values for the current block when running on blocks
+            FunctionValues[] variables;
+            BlockFunctionValues[] blocks;
+
             double evaluate() {
                 try {
                     return values.doubleVal(docid);
@@ -89,6 +101,54 @@ class ExpressionSearchScript implements SearchScript {
             @Override
             public double runAsDouble() { return evaluate(); }
 
+            @Override
+            public boolean canRunBlocks() {
+                // _value changes between documents
+                return specialValue == null;
+            }
+
+            @Override
+            public void runAsDoubles(int[] docs, float[] scores, int count, double[] results) {
+                if (specialValue != null) {
+                    throw new UnsupportedOperationException("expressions using _value can't run on blocks of documents");
+                }
+                if (needsScores && scores == null) {
+                    throw new IllegalArgumentException("scores are needed to run " + compiledScript);
+                }
+                try {
+                    if (variables == null) {
+                        Map<String, Object> context = Collections.singletonMap("scorer", Lucene.illegalScorer("Scores are not available in the current context"));
+                        variables = new FunctionValues[expression.variables.length];
+                        blocks = new BlockFunctionValues[expression.variables.length];
+                        for (int i = 0; i < variables.length; i++) {
+                            if (expression.variables[i].equals("_score") == false) {
+                                variables[i] = bindings.getValueSource(expression.variables[i]).getValues(context, leaf);
+                            }
+                            blocks[i] = new BlockFunctionValues();
+                        }
+                    }
+                    for (int i = 0; i < variables.length; i++) {
+                        double[] block = blocks[i].grow(count);
+                        if (variables[i] == null) {
+                            for (int j = 0; j < count; j++) {
+                                block[j] = scores[j];
+                            }
+                        } else if (variables[i] instanceof BlockValues) {
+                            ((BlockValues) variables[i]).fill(docs, count, block);
+                        } else {
+                            for (int j = 0; j < count; j++) {
+                                block[j] = variables[i].doubleVal(docs[j]);
+                            }
+                        }
+                    }
+                    for (int i = 0; i < count; i++) {
+                        results[i] = expression.evaluate(i, blocks);
+                    }
+                } catch (Exception exception) {
+                    throw new ScriptException("Error evaluating " + compiledScript, exception);
+                }
+            }
+
             @Override
             public Object unwrap(Object value) { return value; }
 
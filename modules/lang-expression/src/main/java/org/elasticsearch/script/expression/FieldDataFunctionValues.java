@@ -28,7 +28,7 @@ import org.elasticsearch.search.MultiValueMode;
 /**
  * A {@link org.apache.lucene.queries.function.FunctionValues} which wrap field data.
  */
-class FieldDataFunctionValues extends DoubleDocValues {
+class FieldDataFunctionValues extends DoubleDocValues implements BlockValues {
     NumericDoubleValues dataAccessor;
 
     FieldDataFunctionValues(ValueSource parent, MultiValueMode m, AtomicNumericFieldData d) {
@@ -40,4 +40,11 @@ class FieldDataFunctionValues extends DoubleDocValues {
     public double doubleVal(int i) {
         return dataAccessor.get(i);
     }
+
+    @Override
+    public void fill(int[] docs, int count, double[] values) {
+        for (int i = 0; i < count; i++) {
+            values[i] = dataAccessor.get(docs[i]);
+        }
+    }
 }
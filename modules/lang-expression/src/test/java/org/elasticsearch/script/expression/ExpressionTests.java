@@ -19,14 +19,19 @@
 
 package org.elasticsearch.script.expression;
 
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.Scorer;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.index.IndexService;
+import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.script.CompiledScript;
+import org.elasticsearch.script.LeafSearchScript;
 import org.elasticsearch.script.ScriptService.ScriptType;
 import org.elasticsearch.script.SearchScript;
 import org.elasticsearch.search.lookup.SearchLookup;
 import org.elasticsearch.test.ESSingleNodeTestCase;
 
+import java.io.IOException;
 import java.util.Collections;
 
 public class ExpressionTests extends ESSingleNodeTestCase {
@@ -54,4 +59,89 @@ public class ExpressionTests extends ESSingleNodeTestCase {
         assertTrue(ss.needsScores());
     }
 
+    public void testBlockEvaluation() throws IOException {
+        IndexService index = createIndex("test", Settings.builder().put("index.number_of_shards", 1).build(),
+                "type", "d", "type=double", "date", "type=date");
+        int numDocs = randomIntBetween(1, 100);
+        for (int i = 0; i < numDocs; i++) {
+            if (randomBoolean()) {
+                client().prepareIndex("test", "type", Integer.toString(i)).setSource("d", randomDouble(), "date", randomIntBetween(0, 1000000000)).get();
+            } else {
+                client().prepareIndex("test", "type", Integer.toString(i)).setSource("d", new double[] {randomDouble(), randomDouble()}).get();
+            }
+        }
+        client().admin().indices().prepareRefresh("test").get();
+
+        ExpressionScriptEngineService service = new ExpressionScriptEngineService(Settings.EMPTY);
+        SearchLookup lookup = new SearchLookup(index.mapperService(), index.fieldData(), null);
+        Object compiled = service.compile("doc['d'].value * factor + doc['d'].count() + doc['date'].getYear() + _score", Collections.emptyMap());
+        SearchScript ss = service.search(new CompiledScript(ScriptType.INLINE, "randomName", "expression", compiled), lookup,
+                Collections.<String, Object>singletonMap("factor", 3));
+
+        try (Engine.Searcher searcher = index.getShard(0).acquireSearcher("test")) {
+            for (LeafReaderContext leaf : searcher.reader().leaves()) {
+                int maxDoc = leaf.reader().maxDoc();
+                int[] docs = new int[maxDoc];
+                float[] scores = new float[maxDoc];
+                int count = 0;
+                for (int doc = 0; doc < maxDoc; doc++) {
+                    if (randomBoolean()) {
+                        scores[count] = randomFloat();
+                        docs[count++] = doc;
+                    }
+                }
+                double[] results = new double[count];
+                LeafSearchScript leafScript = ss.getLeafSearchScript(leaf);
+                assertTrue(leafScript.canRunBlocks());
+                leafScript.runAsDoubles(docs, scores, count, results);
+                for (int i = 0; i < count; i++) {
+                    leafScript.setScorer(new CannedScorer(docs[i], scores[i]));
+                    leafScript.setDocument(docs[i]);
+                    assertEquals(leafScript.runAsDouble(), results[i], 0d);
+                }
+            }
+        }
+    }
+
+    private static class CannedScorer extends Scorer {
+        private final int doc;
+        private final float score;
+
+        CannedScorer(int doc, float score) {
+            super(null);
+            this.doc = doc;
+            this.score = score;
+        }
+
+        @Override
+        public int docID() {
+            return doc;
+        }
+
+        @Override
+        public float score() {
+            return score;
+        }
+
+        @Override
+        public int freq() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int nextDoc() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int advance(int target) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long cost() {
+            return 1;
+        }
+    }
+
 }
@@ -25,6 +25,7 @@ import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.search.SearchPhaseExecutionException;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.index.IndexRequestBuilder;
 import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.action.update.UpdateRequestBuilder;
 import org.elasticsearch.common.lucene.search.function.CombineFunction;
@@ -50,6 +51,7 @@ import org.elasticsearch.search.sort.SortOrder;
 import org.elasticsearch.test.ESIntegTestCase;
 import org.elasticsearch.test.hamcrest.ElasticsearchAssertions;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -137,6 +139,40 @@ public class MoreExpressionTests extends ESIntegTestCase {
         assertEquals("2", hits.getAt(2).getId());
     }
 
+    public void testFunctionScoreAndSortOnManyDocuments() throws Exception {
+        createIndex("test");
+        ensureGreen("test");
+        int numDocs = randomIntBetween(100, 1000);
+        List<IndexRequestBuilder> docs = new ArrayList<>();
+        for (int i = 0; i < numDocs; i++) {
+            docs.add(client().prepareIndex("test", "doc", Integer.toString(i)).setSource("x", i));
+        }
+        indexRandom(true, docs);
+
+        ScoreFunctionBuilder score = ScoreFunctionBuilders.scriptFunction(new Script("doc['x'].value * 2 + _score", ScriptType.INLINE, "expression", null));
+        SearchResponse rsp = client().prepareSearch("test")
+                .setQuery(QueryBuilders.functionScoreQuery(QueryBuilders.constantScoreQuery(QueryBuilders.matchAllQuery()), score).boostMode(CombineFunction.REPLACE))
+                .setSize(numDocs).get();
+        assertSearchResponse(rsp);
+        assertEquals(numDocs, rsp.getHits().getHits().length);
+        for (int i = 0; i < numDocs; i++) {
+            assertEquals(Integer.toString(numDocs - 1 - i), rsp.getHits().getAt(i).getId());
+            assertEquals((numDocs - 1 - i) * 2 + 1, rsp.getHits().getAt(i).getScore(), 0.0f);
+        }
+
+        rsp = client().prepareSearch("test")
+                .setQuery(QueryBuilders.rangeQuery("x").gte(numDocs / 2))
+                .addSort(SortBuilders.scriptSort(new Script("doc['x'].value * -1", ScriptType.INLINE, "expression", null), "number"))
+                .setSize(numDocs).get();
+        assertSearchResponse(rsp);
+        int numHits = numDocs - numDocs / 2;
+        assertEquals(numHits, rsp.getHits().getHits().length);
+        for (int i = 0; i < numHits; i++) {
+            assertEquals(Integer.toString(numDocs - 1 - i), rsp.getHits().getAt(i).getId());
+            assertEquals(-(numDocs - 1 - i), ((Number) rsp.getHits().getAt(i).getSortValues()[0]).doubleValue(), 0.0d);
+        }
+    }
+
     public void testDateMethods() throws Exception {
         ElasticsearchAssertions.assertAcked(prepareCreate("test").addMapping("doc", "date0", "type=date", "date1", "type=date"));
         ensureGreen("test");
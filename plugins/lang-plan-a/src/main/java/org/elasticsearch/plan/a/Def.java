@@ -237,8 +237,12 @@ public class Def {
     }
 
     public static Method getMethod(final Object owner, final String name, final Definition definition) {
+        return getMethod(owner.getClass(), name, definition);
+    }
+
+    public static Method getMethod(final Class<?> ownerClass, final String name, final Definition definition) {
         Struct struct = null;
-        Class<?> clazz = owner.getClass();
+        Class<?> clazz = ownerClass;
         Method method = null;
 
         while (clazz != null) {
@@ -276,15 +280,19 @@ public class Def {
         }
 
         if (struct == null) {
-            throw new IllegalArgumentException("Unable to find a dynamic struct for class [" + owner.getClass() + "].");
+            throw new IllegalArgumentException("Unable to find a dynamic struct for class [" + ownerClass + "].");
         }
 
         return method;
     }
 
     public static Field getField(final Object owner, final String name, final Definition definition) {
+        return getField(owner.getClass(), name, definition);
+    }
+
+    public static Field getField(final Class<?> ownerClass, final String name, final Definition definition) {
         Struct struct = null;
-        Class<?> clazz = owner.getClass();
+        Class<?> clazz = ownerClass;
         Field field = null;
 
         while (clazz != null) {
@@ -322,7 +330,7 @@ public class Def {
         }
 
         if (struct == null) {
-            throw new IllegalArgumentException("Unable to find a dynamic struct for class [" + owner.getClass() + "].");
+            throw new IllegalArgumentException("Unable to find a dynamic struct for class [" + ownerClass + "].");
         }
 
         return field;
@@ -393,6 +401,12 @@ public class Def {
         return null;
     }
 
+    public static Object convert(final Object value, final Class<?> clazz, final Definition definition) throws Throwable {
+        final Transform transform = getTransform(value.getClass(), clazz, definition);
+
+        return transform == null ? value : transform.method.handle.invoke(value);
+    }
+
     public static Object not(final Object unary) {
         if (unary instanceof Double || unary instanceof Float || unary instanceof Long) {
             return ~((Number)unary).longValue();
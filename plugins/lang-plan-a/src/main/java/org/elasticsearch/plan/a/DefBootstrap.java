@@ -0,0 +1,369 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.plan.a;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.elasticsearch.plan.a.Definition.*;
+
+/**
+ * Links the method calls, field accesses and array accesses of def typed values. Every call site remembers the
+ * handles it resolved for the last receiver classes it has seen, so the lookups of {@link Def} only run the first
+ * time a class reaches the call site and the arguments are no longer copied into arrays to be invoked reflectively.
+ * Call sites that see too many different classes fall back to the generic lookups of {@link Def}.
+ */
+public final class DefBootstrap {
+    public static final int METHOD_CALL = 0;
+    public static final int LOAD = 1;
+    public static final int STORE = 2;
+    public static final int ARRAY_LOAD = 3;
+    public static final int ARRAY_STORE = 4;
+
+    /** the number of receiver classes a call site links before it falls back to the generic lookups */
+    static final int MAX_DEPTH = 5;
+
+    private static final MethodHandle FALLBACK;
+    private static final MethodHandle GENERIC;
+    private static final MethodHandle CHECK_CLASS;
+    private static final MethodHandle CONVERT;
+    private static final MethodHandle RETHROW;
+    private static final MethodHandle ARRAY_LENGTH;
+    private static final MethodHandle ARRAY_GET;
+    private static final MethodHandle ARRAY_SET;
+    private static final MethodHandle MAP_GET;
+    private static final MethodHandle MAP_PUT;
+    private static final MethodHandle LIST_GET;
+    private static final MethodHandle LIST_ADD;
+
+    static {
+        final Lookup lookup = MethodHandles.lookup();
+
+        try {
+            FALLBACK = lookup.findVirtual(InliningCallSite.class, "fallback",
+                    MethodType.methodType(Object.class, Object[].class));
+            GENERIC = lookup.findVirtual(InliningCallSite.class, "generic",
+                    MethodType.methodType(Object.class, Object[].class));
+            CHECK_CLASS = lookup.findStatic(DefBootstrap.class, "checkClass",
+                    MethodType.methodType(boolean.class, Class.class, Object.class));
+            CONVERT = lookup.findStatic(Def.class, "convert",
+                    MethodType.methodType(Object.class, Object.class, Class.class, Definition.class));
+            RETHROW = lookup.findStatic(DefBootstrap.class, "rethrow",
+                    MethodType.methodType(Object.class, Throwable.class, String.class));
+            ARRAY_LENGTH = lookup.findStatic(Array.class, "getLength", MethodType.methodType(int.class, Object.class));
+            ARRAY_GET = lookup.findStatic(Array.class, "get", MethodType.methodType(Object.class, Object.class, int.class));
+            ARRAY_SET = lookup.findStatic(Array.class, "set",
+                    MethodType.methodType(void.class, Object.class, int.class, Object.class));
+            MAP_GET = lookup.findVirtual(Map.class, "get", MethodType.methodType(Object.class, Object.class));
+            MAP_PUT = lookup.findVirtual(Map.class, "put", MethodType.methodType(Object.class, Object.class, Object.class));
+            LIST_GET = lookup.findVirtual(List.class, "get", MethodType.methodType(Object.class, int.class));
+            LIST_ADD = lookup.findVirtual(List.class, "add", MethodType.methodType(void.class, int.class, Object.class));
+        } catch (final ReflectiveOperationException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private DefBootstrap() {}
+
+    /**
+     * The bootstrap method of the def call sites written by {@link Writer}. The last parameter of every call site
+     * is the {@link Definition} of the script. The typesafe flags hold a 't' or an 'f' for every value that may
+     * need a transform: the arguments of a method call, the value of a field store, or the index and the value
+     * of an array access.
+     */
+    public static CallSite bootstrap(final Lookup lookup, final String name, final MethodType type,
+                                     final int flavor, final String typesafe) {
+        return new InliningCallSite(name, type, flavor, typesafe);
+    }
+
+    static boolean checkClass(final Class<?> clazz, final Object receiver) {
+        return receiver != null && receiver.getClass() == clazz;
+    }
+
+    static Object rethrow(final Throwable throwable, final String message) {
+        throw new IllegalArgumentException(message, throwable);
+    }
+
+    static final class InliningCallSite extends MutableCallSite {
+        private final String name;
+        private final int flavor;
+        private final boolean[] typesafe;
+
+        private int depth;
+
+        InliningCallSite(final String name, final MethodType type, final int flavor, final String typesafe) {
+            super(type);
+
+            this.name = name;
+            this.flavor = flavor;
+            this.typesafe = new boolean[typesafe.length()];
+
+            for (int index = 0; index < typesafe.length(); ++index) {
+                this.typesafe[index] = typesafe.charAt(index) == 't';
+            }
+
+            setTarget(FALLBACK.bindTo(this).asCollector(Object[].class, type.parameterCount()).asType(type));
+        }
+
+        synchronized int depth() {
+            return depth;
+        }
+
+        Object fallback(final Object[] arguments) throws Throwable {
+            final Class<?> receiverClass = arguments[0].getClass();
+            final Definition definition = (Definition)arguments[arguments.length - 1];
+            final MethodHandle target;
+
+            synchronized (this) {
+                if (depth >= MAX_DEPTH) {
+                    setTarget(GENERIC.bindTo(this).asCollector(Object[].class, arguments.length).asType(type()));
+
+                    return generic(arguments);
+                }
+
+                target = link(receiverClass, definition);
+                ++depth;
+                setTarget(MethodHandles.guardWithTest(CHECK_CLASS.bindTo(receiverClass), target, getTarget()));
+            }
+
+            return target.invokeWithArguments(arguments);
+        }
+
+        Object generic(final Object[] arguments) {
+            final Definition definition = (Definition)arguments[arguments.length - 1];
+
+            switch (flavor) {
+                case METHOD_CALL:
+                    return Def.methodCall(arguments[0], name, definition,
+                            Arrays.copyOfRange(arguments, 1, arguments.length - 1), typesafe);
+                case LOAD:
+                    return Def.fieldLoad(arguments[0], name, definition);
+                case STORE:
+                    Def.fieldStore(arguments[0], arguments[1], name, definition, typesafe[0]);
+                    return null;
+                case ARRAY_LOAD:
+                    return Def.arrayLoad(arguments[0], arguments[1], definition, typesafe[0]);
+                case ARRAY_STORE:
+                    Def.arrayStore(arguments[0], arguments[1], arguments[2], definition, typesafe[0], typesafe[1]);
+                    return null;
+                default:
+                    throw new IllegalStateException("Unknown def call site flavor [" + flavor + "].");
+            }
+        }
+
+        private MethodHandle link(final Class<?> receiverClass, final Definition definition) {
+            switch (flavor) {
+                case METHOD_CALL:
+                    return linkMethodCall(receiverClass, definition);
+                case LOAD:
+                    return linkLoad(receiverClass, definition);
+                case STORE:
+                    return linkStore(receiverClass, definition);
+                case ARRAY_LOAD:
+                    return linkArrayLoad(receiverClass, definition);
+                case ARRAY_STORE:
+                    return linkArrayStore(receiverClass, definition);
+                default:
+                    throw new IllegalStateException("Unknown def call site flavor [" + flavor + "].");
+            }
+        }
+
+        private MethodHandle linkMethodCall(final Class<?> receiverClass, final Definition definition) {
+            final Method method = Def.getMethod(receiverClass, name, definition);
+
+            if (method == null) {
+                throw new IllegalArgumentException("Unable to find dynamic method [" + name + "] " +
+                        "for class [" + receiverClass.getCanonicalName() + "].");
+            }
+
+            final List<Type> types = method.arguments;
+            final int arity = type().parameterCount() - 2;
+
+            if (types.size() != arity) {
+                throw new IllegalArgumentException("When dynamically calling [" + name + "] from class " +
+                        "[" + receiverClass + "] expected [" + types.size() + "] arguments," +
+                        " but found [" + arity + "].");
+            }
+
+            MethodHandle handle = method.handle;
+
+            for (int argument = 0; argument < arity; ++argument) {
+                if (!typesafe[argument]) {
+                    handle = MethodHandles.filterArguments(handle, argument + 1,
+                            convert(types.get(argument).clazz, handle.type().parameterType(argument + 1), definition));
+                }
+            }
+
+            return guard(handle, "Error invoking method [" + name + "] " +
+                    "with owner class [" + receiverClass.getCanonicalName() + "].");
+        }
+
+        private MethodHandle linkLoad(final Class<?> receiverClass, final Definition definition) {
+            if (receiverClass.isArray() && "length".equals(name)) {
+                return adapt(ARRAY_LENGTH);
+            }
+
+            final Field field = Def.getField(receiverClass, name, definition);
+            final MethodHandle handle;
+
+            if (field == null) {
+                final String get = "get" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+                final Method method = Def.getMethod(receiverClass, get, definition);
+
+                if (method != null) {
+                    handle = method.handle;
+                } else if (Map.class.isAssignableFrom(receiverClass)) {
+                    return adapt(MethodHandles.insertArguments(MAP_GET, 1, name));
+                } else if (List.class.isAssignableFrom(receiverClass)) {
+                    return adapt(MethodHandles.insertArguments(LIST_GET, 1, index(name)));
+                } else {
+                    throw new IllegalArgumentException("Unable to find dynamic field [" + name + "] " +
+                            "for class [" + receiverClass.getCanonicalName() + "].");
+                }
+            } else if (field.getter == null) {
+                throw new IllegalArgumentException(
+                        "Unable to read from field [" + name + "] with owner class [" + receiverClass + "].");
+            } else {
+                handle = field.getter;
+            }
+
+            return guard(handle, "Error loading value from " +
+                    "field [" + name + "] with owner class [" + receiverClass + "].");
+        }
+
+        private MethodHandle linkStore(final Class<?> receiverClass, final Definition definition) {
+            final Field field = Def.getField(receiverClass, name, definition);
+            MethodHandle handle = null;
+
+            if (field == null) {
+                final String set = "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+                final Method method = Def.getMethod(receiverClass, set, definition);
+
+                if (method != null) {
+                    handle = method.handle;
+                }
+            } else {
+                handle = field.setter;
+            }
+
+            if (handle != null) {
+                if (handle.type().parameterCount() != 2) {
+                    throw new IllegalArgumentException("Error storing value " +
+                            "in field [" + name + "] with owner class [" + receiverClass + "].");
+                }
+
+                if (!typesafe[0]) {
+                    final Class<?> clazz = handle.type().parameterType(1);
+                    handle = MethodHandles.filterArguments(handle, 1, convert(clazz, clazz, definition));
+                }
+
+                return guard(handle, "Error storing value " +
+                        "in field [" + name + "] with owner class [" + receiverClass + "].");
+            } else if (Map.class.isAssignableFrom(receiverClass)) {
+                return adapt(MethodHandles.insertArguments(MAP_PUT, 1, name));
+            } else if (List.class.isAssignableFrom(receiverClass)) {
+                return adapt(MethodHandles.insertArguments(LIST_ADD, 1, index(name)));
+            } else {
+                throw new IllegalArgumentException("Unable to find dynamic field [" + name + "] " +
+                        "for class [" + receiverClass.getCanonicalName() + "].");
+            }
+        }
+
+        private MethodHandle linkArrayLoad(final Class<?> receiverClass, final Definition definition) {
+            if (Map.class.isAssignableFrom(receiverClass)) {
+                return adapt(MAP_GET);
+            } else if (receiverClass.isArray()) {
+                return guard(convertIndex(ARRAY_GET, definition), "Error loading value from " +
+                        "array class [" + receiverClass.getCanonicalName() + "].");
+            } else if (List.class.isAssignableFrom(receiverClass)) {
+                return adapt(convertIndex(LIST_GET, definition));
+            } else {
+                throw new IllegalArgumentException("Attempting to address a non-array type " +
+                        "[" + receiverClass.getCanonicalName() + "] as an array.");
+            }
+        }
+
+        private MethodHandle linkArrayStore(final Class<?> receiverClass, final Definition definition) {
+            if (Map.class.isAssignableFrom(receiverClass)) {
+                return adapt(MAP_PUT);
+            } else if (receiverClass.isArray()) {
+                MethodHandle handle = convertIndex(ARRAY_SET, definition);
+
+                if (!typesafe[1]) {
+                    handle = MethodHandles.filterArguments(handle, 2,
+                            convert(receiverClass.getComponentType(), Object.class, definition));
+                }
+
+                return guard(handle, "Error storing value " +
+                        "in array class [" + receiverClass.getCanonicalName() + "].");
+            } else if (List.class.isAssignableFrom(receiverClass)) {
+                return adapt(convertIndex(LIST_ADD, definition));
+            } else {
+                throw new IllegalArgumentException("Attempting to address a non-array type " +
+                        "[" + receiverClass.getCanonicalName() + "] as an array.");
+            }
+        }
+
+        /** Appends the definition parameter to the handle and converts it to the type of the call site. */
+        private MethodHandle adapt(final MethodHandle handle) {
+            return MethodHandles.dropArguments(handle, handle.type().parameterCount(), Definition.class).asType(type());
+        }
+
+        /** Adapts the handle, rethrowing what it throws as an {@link IllegalArgumentException} with the given message. */
+        private MethodHandle guard(final MethodHandle handle, final String message) {
+            final MethodHandle rethrow = MethodHandles.insertArguments(RETHROW, 1, message)
+                    .asType(MethodType.methodType(type().returnType(), Throwable.class));
+
+            return MethodHandles.catchException(adapt(handle), Throwable.class,
+                    MethodHandles.dropArguments(rethrow, 1, type().parameterArray()));
+        }
+
+        /** Applies the transform of the definition to the index of an array access unless it is typesafe. */
+        private MethodHandle convertIndex(final MethodHandle handle, final Definition definition) {
+            if (typesafe[0]) {
+                return handle;
+            }
+
+            return MethodHandles.filterArguments(handle, 1, convert(Integer.class, int.class, definition));
+        }
+    }
+
+    /** Returns a filter transforming a value to the given class and casting it to the parameter type of a handle. */
+    private static MethodHandle convert(final Class<?> clazz, final Class<?> parameter, final Definition definition) {
+        return MethodHandles.insertArguments(CONVERT, 1, clazz, definition)
+                .asType(MethodType.methodType(parameter, Object.class));
+    }
+
+    private static int index(final String name) {
+        try {
+            return Integer.parseInt(name);
+        } catch (final NumberFormatException exception) {
+            throw new IllegalArgumentException("Illegal list shortcut value [" + name + "].");
+        }
+    }
+}
@@ -22,10 +22,14 @@ package org.elasticsearch.plan.a;
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.tree.ParseTree;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.commons.GeneratorAdapter;
 
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.HashMap;
@@ -71,20 +75,18 @@ class Writer extends PlanAParserBaseVisitor<Void> {
 
     private final static org.objectweb.asm.Type DEFINITION_TYPE = org.objectweb.asm.Type.getType(Definition.class);
 
-    private final static org.objectweb.asm.commons.Method DEF_METHOD_CALL = org.objectweb.asm.commons.Method.getMethod(
-            "java.lang.Object methodCall(java.lang.Object, java.lang.String, " +
-            "org.elasticsearch.plan.a.Definition, java.lang.Object[], boolean[])");
-    private final static org.objectweb.asm.commons.Method DEF_ARRAY_STORE = org.objectweb.asm.commons.Method.getMethod(
-            "void arrayStore(java.lang.Object, java.lang.Object, java.lang.Object, " +
-            "org.elasticsearch.plan.a.Definition, boolean, boolean)");
-    private final static org.objectweb.asm.commons.Method DEF_ARRAY_LOAD = org.objectweb.asm.commons.Method.getMethod(
-            "java.lang.Object arrayLoad(java.lang.Object, java.lang.Object, " +
-            "org.elasticsearch.plan.a.Definition, boolean)");
-    private final static org.objectweb.asm.commons.Method DEF_FIELD_STORE = org.objectweb.asm.commons.Method.getMethod(
-            "void fieldStore(java.lang.Object, java.lang.Object, java.lang.String, " +
-            "org.elasticsearch.plan.a.Definition, boolean)");
-    private final static org.objectweb.asm.commons.Method DEF_FIELD_LOAD = org.objectweb.asm.commons.Method.getMethod(
-            "java.lang.Object fieldLoad(java.lang.Object, java.lang.String, org.elasticsearch.plan.a.Definition)");
+    private final static Handle DEF_BOOTSTRAP = new Handle(Opcodes.H_INVOKESTATIC,
+            org.objectweb.asm.Type.getInternalName(DefBootstrap.class), "bootstrap",
+            MethodType.methodType(CallSite.class, MethodHandles.Lookup.class, String.class, MethodType.class,
+                    int.class, String.class).toMethodDescriptorString());
+    private final static String DEF_ARRAY_STORE_DESCRIPTOR = MethodType.methodType(
+            void.class, Object.class, Object.class, Object.class, Definition.class).toMethodDescriptorString();
+    private final static String DEF_ARRAY_LOAD_DESCRIPTOR = MethodType.methodType(
+            Object.class, Object.class, Object.class, Definition.class).toMethodDescriptorString();
+    private final static String DEF_FIELD_STORE_DESCRIPTOR = MethodType.methodType(
+            void.class, Object.class, Object.class, Definition.class).toMethodDescriptorString();
+    private final static String DEF_FIELD_LOAD_DESCRIPTOR = MethodType.methodType(
+            Object.class, Object.class, Definition.class).toMethodDescriptorString();
 
     private final static org.objectweb.asm.commons.Method DEF_NOT_CALL = org.objectweb.asm.commons.Method.getMethod(
             "java.lang.Object not(java.lang.Object)");
@@ -1964,16 +1966,14 @@ class Writer extends PlanAParserBaseVisitor<Void> {
             final ExternalMetadata parentemd = adapter.getExternalMetadata(sourceemd.parent);
             final ExpressionMetadata expremd = adapter.getExpressionMetadata(parentemd.storeExpr);
 
-            execute.push(name);
             execute.loadThis();
             execute.getField(CLASS_TYPE, "definition", DEFINITION_TYPE);
-            execute.push(parentemd.token == 0 && expremd.typesafe);
-            execute.invokeStatic(definition.defobjType.type, DEF_FIELD_STORE);
+            execute.invokeDynamic(name, DEF_FIELD_STORE_DESCRIPTOR, DEF_BOOTSTRAP,
+                    DefBootstrap.STORE, typesafe(parentemd.token == 0 && expremd.typesafe));
         } else {
-            execute.push(name);
             execute.loadThis();
             execute.getField(CLASS_TYPE, "definition", DEFINITION_TYPE);
-            execute.invokeStatic(definition.defobjType.type, DEF_FIELD_LOAD);
+            execute.invokeDynamic(name, DEF_FIELD_LOAD_DESCRIPTOR, DEF_BOOTSTRAP, DefBootstrap.LOAD, "");
         }
     }
 
@@ -1993,14 +1993,13 @@ class Writer extends PlanAParserBaseVisitor<Void> {
 
                 execute.loadThis();
                 execute.getField(CLASS_TYPE, "definition", DEFINITION_TYPE);
-                execute.push(expremd0.typesafe);
-                execute.push(parentemd.token == 0 && expremd1.typesafe);
-                execute.invokeStatic(definition.defobjType.type, DEF_ARRAY_STORE);
+                execute.invokeDynamic("arrayStore", DEF_ARRAY_STORE_DESCRIPTOR, DEF_BOOTSTRAP, DefBootstrap.ARRAY_STORE,
+                        typesafe(expremd0.typesafe) + typesafe(parentemd.token == 0 && expremd1.typesafe));
             } else {
                 execute.loadThis();
                 execute.getField(CLASS_TYPE, "definition", DEFINITION_TYPE);
-                execute.push(expremd0.typesafe);
-                execute.invokeStatic(definition.defobjType.type, DEF_ARRAY_LOAD);
+                execute.invokeDynamic("arrayLoad", DEF_ARRAY_LOAD_DESCRIPTOR, DEF_BOOTSTRAP, DefBootstrap.ARRAY_LOAD,
+                        typesafe(expremd0.typesafe));
             }
         } else {
             if (store) {
@@ -2115,34 +2114,31 @@ class Writer extends PlanAParserBaseVisitor<Void> {
                 execute.checkCast(target.rtn.type);
             }
         } else {
-            execute.push((String)sourceenmd.target);
-            execute.loadThis();
-            execute.getField(CLASS_TYPE, "definition", DEFINITION_TYPE);
+            final Class<?>[] parameters = new Class<?>[arguments.size() + 2];
+            final StringBuilder typesafe = new StringBuilder();
 
-            execute.push(arguments.size());
-            execute.newArray(definition.defType.type);
+            parameters[0] = Object.class;
 
             for (int argument = 0; argument < arguments.size(); ++argument) {
-                execute.dup();
-                execute.push(argument);
                 visit(arguments.get(argument));
-                execute.arrayStore(definition.defType.type);
+                parameters[argument + 1] = Object.class;
+                typesafe.append(typesafe(adapter.getExpressionMetadata(arguments.get(argument)).typesafe));
             }
 
-            execute.push(arguments.size());
-            execute.newArray(definition.booleanType.type);
+            parameters[arguments.size() + 1] = Definition.class;
 
-            for (int argument = 0; argument < arguments.size(); ++argument) {
-                execute.dup();
-                execute.push(argument);
-                execute.push(adapter.getExpressionMetadata(arguments.get(argument)).typesafe);
-                execute.arrayStore(definition.booleanType.type);
-            }
-
-            execute.invokeStatic(definition.defobjType.type, DEF_METHOD_CALL);
+            execute.loadThis();
+            execute.getField(CLASS_TYPE, "definition", DEFINITION_TYPE);
+            execute.invokeDynamic((String)sourceenmd.target,
+                    MethodType.methodType(Object.class, parameters).toMethodDescriptorString(),
+                    DEF_BOOTSTRAP, DefBootstrap.METHOD_CALL, typesafe.toString());
         }
     }
 
+    private static String typesafe(final boolean typesafe) {
+        return typesafe ? "t" : "f";
+    }
+
     private void writePop(final int size) {
         if (size == 1) {
             execute.pop();
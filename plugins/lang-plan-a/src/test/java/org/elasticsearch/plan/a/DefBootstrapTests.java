@@ -0,0 +1,127 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.plan.a;
+
+import org.elasticsearch.test.ESTestCase;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class DefBootstrapTests extends ESTestCase {
+    private final Definition definition = new Definition();
+
+    public void testMethodCallCachesReceiverClasses() throws Throwable {
+        CallSite site = DefBootstrap.bootstrap(MethodHandles.publicLookup(), "size",
+                MethodType.methodType(Object.class, Object.class, Definition.class), DefBootstrap.METHOD_CALL, "");
+        MethodHandle handle = site.dynamicInvoker();
+
+        assertEquals(2, (Object)handle.invoke((Object)Arrays.asList(1, 2), definition));
+        assertEquals(1, ((DefBootstrap.InliningCallSite)site).depth());
+        assertEquals(0, (Object)handle.invoke((Object)new HashMap<>(), definition));
+        assertEquals(2, ((DefBootstrap.InliningCallSite)site).depth());
+        assertEquals(3, (Object)handle.invoke((Object)Arrays.asList(1, 2, 3), definition));
+        assertEquals(2, ((DefBootstrap.InliningCallSite)site).depth());
+    }
+
+    public void testMegamorphicMethodCall() throws Throwable {
+        CallSite site = DefBootstrap.bootstrap(MethodHandles.publicLookup(), "toString",
+                MethodType.methodType(Object.class, Object.class, Definition.class), DefBootstrap.METHOD_CALL, "");
+        MethodHandle handle = site.dynamicInvoker();
+        List<Object> receivers = Arrays.asList(1, 2L, 3F, 4D, "5", new ArrayList<>(), new HashMap<>());
+
+        for (int iteration = 0; iteration < 2; ++iteration) {
+            for (Object receiver : receivers) {
+                assertEquals(receiver.toString(), (Object)handle.invoke(receiver, definition));
+            }
+        }
+
+        assertEquals(DefBootstrap.MAX_DEPTH, ((DefBootstrap.InliningCallSite)site).depth());
+    }
+
+    public void testMethodCallArguments() throws Throwable {
+        CallSite site = DefBootstrap.bootstrap(MethodHandles.publicLookup(), "get",
+                MethodType.methodType(Object.class, Object.class, Object.class, Definition.class), DefBootstrap.METHOD_CALL, "f");
+        MethodHandle handle = site.dynamicInvoker();
+
+        assertEquals("b", (Object)handle.invoke((Object)Arrays.asList("a", "b"), (Object)1, definition));
+
+        try {
+            Object ignored = handle.invoke((Object)new ArrayList<>(), (Object)1, definition);
+            fail("should have hit IAE");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("Error invoking method [get]"));
+        }
+    }
+
+    public void testFieldShortcuts() throws Throwable {
+        MethodHandle store = DefBootstrap.bootstrap(MethodHandles.publicLookup(), "x",
+                MethodType.methodType(void.class, Object.class, Object.class, Definition.class), DefBootstrap.STORE, "f")
+                .dynamicInvoker();
+        MethodHandle load = DefBootstrap.bootstrap(MethodHandles.publicLookup(), "x",
+                MethodType.methodType(Object.class, Object.class, Definition.class), DefBootstrap.LOAD, "")
+                .dynamicInvoker();
+        MethodHandle length = DefBootstrap.bootstrap(MethodHandles.publicLookup(), "length",
+                MethodType.methodType(Object.class, Object.class, Definition.class), DefBootstrap.LOAD, "")
+                .dynamicInvoker();
+
+        Map<String, Object> map = new HashMap<>();
+        store.invoke((Object)map, (Object)5, definition);
+        assertEquals(5, map.get("x"));
+        assertEquals(5, (Object)load.invoke((Object)map, definition));
+        assertEquals(3, (Object)length.invoke((Object)new int[3], definition));
+        assertEquals(1, (Object)length.invoke((Object)new String[1], definition));
+    }
+
+    public void testArrayAccesses() throws Throwable {
+        MethodHandle store = DefBootstrap.bootstrap(MethodHandles.publicLookup(), "arrayStore",
+                MethodType.methodType(void.class, Object.class, Object.class, Object.class, Definition.class),
+                DefBootstrap.ARRAY_STORE, "tt").dynamicInvoker();
+        MethodHandle load = DefBootstrap.bootstrap(MethodHandles.publicLookup(), "arrayLoad",
+                MethodType.methodType(Object.class, Object.class, Object.class, Definition.class),
+                DefBootstrap.ARRAY_LOAD, "t").dynamicInvoker();
+
+        int[] array = new int[2];
+        store.invoke((Object)array, (Object)1, (Object)7, definition);
+        assertEquals(7, array[1]);
+        assertEquals(7, (Object)load.invoke((Object)array, (Object)1, definition));
+
+        List<Object> list = new ArrayList<>();
+        store.invoke((Object)list, (Object)0, (Object)"a", definition);
+        assertEquals("a", (Object)load.invoke((Object)list, (Object)0, definition));
+
+        Map<Object, Object> map = new HashMap<>();
+        store.invoke((Object)map, (Object)"key", (Object)"value", definition);
+        assertEquals("value", (Object)load.invoke((Object)map, (Object)"key", definition));
+
+        try {
+            Object ignored = load.invoke((Object)array, (Object)2, definition);
+            fail("should have hit IAE");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("Error loading value from array class"));
+        }
+    }
+}
@@ -911,4 +911,9 @@ public class DefTests extends ScriptTestCase {
         assertEquals(true, exec("def x = (float)6 def y = (double)2 return x >= y"));
         assertEquals(true, exec("def x = (double)7 def y = (double)1 return x >= y"));
     }
+
+    public void testPolymorphicCallSite() {
+        assertEquals(2, exec("def a = new HashMap(); a.k = 1; def b = new ArrayList(); def t = 0;" +
+                "for (int i = 0; i < 4; ++i) { def x = i % 2 == 0 ? a : b; t = t + x.size(); } return t;"));
+    }
 }
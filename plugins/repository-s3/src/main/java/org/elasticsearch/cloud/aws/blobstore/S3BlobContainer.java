@@ -23,6 +23,7 @@ import com.amazonaws.AmazonClientException;
 import com.amazonaws.services.s3.model.*;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.blobstore.BlobMetaData;
+import org.elasticsearch.common.blobstore.BlobPart;
 import org.elasticsearch.common.blobstore.BlobPath;
 import org.elasticsearch.common.blobstore.BlobStoreException;
 import org.elasticsearch.common.blobstore.support.AbstractBlobContainer;
@@ -30,18 +31,32 @@ import org.elasticsearch.common.blobstore.support.PlainBlobMetaData;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.collect.MapBuilder;
 import org.elasticsearch.common.io.Streams;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.util.concurrent.CooperativeTasks;
 
+import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  *
  */
 public class S3BlobContainer extends AbstractBlobContainer {
 
+    private static final long MULTIPART_MIN_PART_SIZE = new ByteSizeValue(5, ByteSizeUnit.MB).bytes();
+
+    private static final long MULTIPART_MAX_PART_SIZE = new ByteSizeValue(5, ByteSizeUnit.GB).bytes();
+
+    private static final int MULTIPART_MAX_PARTS = 10000;
+
     protected final S3BlobStore blobStore;
 
     protected final String keyPath;
@@ -91,6 +106,34 @@ public class S3BlobContainer extends AbstractBlobContainer {
         throw new BlobStoreException("retries exhausted while attempting to access blob object [name:" + blobName + ", bucket:" + blobStore.bucket() +"]");
     }
 
+    @Override
+    public InputStream readBlob(String blobName, long position, long length) throws IOException {
+        if (length == 0) {
+            // a range can't be empty
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        int retry = 0;
+        while (retry <= blobStore.numberOfRetries()) {
+            try {
+                GetObjectRequest request = new GetObjectRequest(blobStore.bucket(), buildKey(blobName))
+                        .withRange(position, position + length - 1);
+                return blobStore.client().getObject(request).getObjectContent();
+            } catch (AmazonClientException e) {
+                if (blobStore.shouldRetry(e) && (retry < blobStore.numberOfRetries())) {
+                    retry++;
+                } else {
+                    if (e instanceof AmazonS3Exception) {
+                        if (404 == ((AmazonS3Exception) e).getStatusCode()) {
+                            throw new FileNotFoundException("Blob object [" + blobName + "] not found: " + e.getMessage());
+                        }
+                    }
+                    throw e;
+                }
+            }
+        }
+        throw new BlobStoreException("retries exhausted while attempting to access blob object [name:" + blobName + ", bucket:" + blobStore.bucket() +"]");
+    }
+
     @Override
     public void writeBlob(String blobName, InputStream inputStream, long blobSize) throws IOException {
         try (OutputStream stream = createOutput(blobName)) {
@@ -105,6 +148,119 @@ public class S3BlobContainer extends AbstractBlobContainer {
         }
     }
 
+    /**
+     * Writes the parts with a multipart upload, uploading them concurrently. Falls back to writing a single stream if
+     * there is only one part or the parts don't meet the size limits of multipart uploads.
+     */
+    @Override
+    public void writeBlob(String blobName, List<? extends BlobPart> parts, Executor executor) throws IOException {
+        if (supportsMultipartUpload(parts) == false) {
+            super.writeBlob(blobName, parts, executor);
+            return;
+        }
+        final String key = buildKey(blobName);
+        final String uploadId = initiateMultipartUpload(key);
+        boolean success = false;
+        try {
+            final PartETag[] partETags = new PartETag[parts.size()];
+            final List<CooperativeTasks.Task> tasks = new ArrayList<>(parts.size());
+            for (int i = 0; i < parts.size(); i++) {
+                final int partNumber = i + 1;
+                final BlobPart part = parts.get(i);
+                final boolean lastPart = partNumber == parts.size();
+                tasks.add(() -> partETags[partNumber - 1] = uploadPart(key, uploadId, partNumber, part, lastPart));
+            }
+            CooperativeTasks.run(tasks, executor);
+            completeMultipartUpload(key, uploadId, Arrays.asList(partETags));
+            success = true;
+        } finally {
+            if (success == false) {
+                try {
+                    blobStore.client().abortMultipartUpload(new AbortMultipartUploadRequest(blobStore.bucket(), key, uploadId));
+                } catch (AmazonClientException e) {
+                    // the upload failed already, the bucket's lifecycle policy has to clean up the parts
+                }
+            }
+        }
+    }
+
+    private static boolean supportsMultipartUpload(List<? extends BlobPart> parts) {
+        if (parts.size() < 2 || parts.size() > MULTIPART_MAX_PARTS) {
+            return false;
+        }
+        for (int i = 0; i < parts.size(); i++) {
+            final long length = parts.get(i).length();
+            // only the last part may be smaller than the minimum part size
+            if (length > MULTIPART_MAX_PART_SIZE || (length < MULTIPART_MIN_PART_SIZE && i < parts.size() - 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String initiateMultipartUpload(String key) {
+        InitiateMultipartUploadRequest request = new InitiateMultipartUploadRequest(blobStore.bucket(), key)
+                .withCannedACL(blobStore.getCannedACL())
+                .withStorageClass(blobStore.getStorageClass());
+        if (blobStore.serverSideEncryption()) {
+            ObjectMetadata md = new ObjectMetadata();
+            md.setSSEAlgorithm(ObjectMetadata.AES_256_SERVER_SIDE_ENCRYPTION);
+            request.setObjectMetadata(md);
+        }
+        int retry = 0;
+        while (true) {
+            try {
+                return blobStore.client().initiateMultipartUpload(request).getUploadId();
+            } catch (AmazonClientException e) {
+                if (blobStore.shouldRetry(e) && retry < blobStore.numberOfRetries()) {
+                    retry++;
+                } else {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private PartETag uploadPart(String key, String uploadId, int partNumber, BlobPart part, boolean lastPart) throws IOException {
+        int retry = 0;
+        while (true) {
+            // every attempt reads the part from its beginning
+            try (InputStream is = part.openStream()) {
+                UploadPartRequest request = new UploadPartRequest()
+                        .withBucketName(blobStore.bucket())
+                        .withKey(key)
+                        .withUploadId(uploadId)
+                        .withPartNumber(partNumber)
+                        .withInputStream(is)
+                        .withPartSize(part.length())
+                        .withLastPart(lastPart);
+                return blobStore.client().uploadPart(request).getPartETag();
+            } catch (AmazonClientException e) {
+                if (blobStore.shouldRetry(e) && retry < blobStore.numberOfRetries()) {
+                    retry++;
+                } else {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void completeMultipartUpload(String key, String uploadId, List<PartETag> partETags) {
+        int retry = 0;
+        while (true) {
+            try {
+                blobStore.client().completeMultipartUpload(new CompleteMultipartUploadRequest(blobStore.bucket(), key, uploadId, partETags));
+                return;
+            } catch (AmazonClientException e) {
+                if (blobStore.shouldRetry(e) && retry < blobStore.numberOfRetries()) {
+                    retry++;
+                } else {
+                    throw e;
+                }
+            }
+        }
+    }
+
     @Override
     public void deleteBlob(String blobName) throws IOException {
         try {